@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the regular JMH command line options; unless a thread count is given
+ * with <tt>-t</tt>, every selected benchmark is run once per thread count listed in the <tt>threads</tt> system
+ * property (by default 1, 2, 4 and the number of available processors), and a summary of all runs is printed at
+ * the end.
+ * <p/>
+ * Example: <tt>java -Dthreads=1,8 -jar target/benchmarks.jar "BoundedConcurrentHashMap.*" -p eviction=LIRS</tt>
+ *
+ * @since 5.0
+ */
+public class BenchmarkRunner {
+
+   public static final String THREADS_PROPERTY = "threads";
+
+   public static void main(String[] args) throws Exception {
+      CommandLineOptions options = new CommandLineOptions(args);
+      if (options.shouldHelp()) {
+         options.showHelp();
+         return;
+      }
+      if (options.shouldList()) {
+         new Runner(options).list();
+         return;
+      }
+
+      List<RunResult> results = new ArrayList<RunResult>();
+      if (options.getThreads().hasValue()) {
+         results.addAll(new Runner(options).run());
+      } else {
+         for (int threads : threadCounts()) {
+            Options threadOptions = new OptionsBuilder().parent(options).threads(threads).build();
+            results.addAll(new Runner(threadOptions).run());
+         }
+      }
+      printSummary(results);
+   }
+
+   static List<Integer> threadCounts() {
+      List<Integer> counts = new ArrayList<Integer>();
+      String property = System.getProperty(THREADS_PROPERTY);
+      if (property != null) {
+         for (String count : property.split(",")) {
+            addCount(counts, Integer.parseInt(count.trim()));
+         }
+      } else {
+         addCount(counts, 1);
+         addCount(counts, 2);
+         addCount(counts, 4);
+         addCount(counts, Runtime.getRuntime().availableProcessors());
+      }
+      return counts;
+   }
+
+   private static void addCount(List<Integer> counts, int count) {
+      if (count > 0 && !counts.contains(count)) counts.add(count);
+   }
+
+   private static void printSummary(Collection<RunResult> results) {
+      System.out.println();
+      System.out.printf("%-60s %-40s %8s %14s %12s  %s%n", "Benchmark", "Params", "Threads", "Score", "Error", "Units");
+      for (RunResult result : results) {
+         BenchmarkParams params = result.getParams();
+         Result primary = result.getPrimaryResult();
+         StringBuilder sb = new StringBuilder();
+         for (String key : params.getParamsKeys()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(key).append('=').append(params.getParam(key));
+         }
+         System.out.printf("%-60s %-40s %8d %14.3f %12.3f  %s%n", params.getBenchmark(), sb, params.getThreads(),
+                           primary.getScore(), primary.getScoreError(), primary.getScoreUnit());
+      }
+   }
+
+}
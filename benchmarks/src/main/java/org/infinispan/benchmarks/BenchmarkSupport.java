@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Helpers shared by the benchmarks: pre-built keys and values, so that their creation is not measured, and a cheap
+ * per-thread sequence of random key indexes.
+ *
+ * @since 5.0
+ */
+public final class BenchmarkSupport {
+
+   private BenchmarkSupport() {
+   }
+
+   public static String[] keys(int count) {
+      String[] keys = new String[count];
+      for (int i = 0; i < count; i++) {
+         keys[i] = "key" + i;
+      }
+      return keys;
+   }
+
+   public static byte[] value(int size) {
+      byte[] value = new byte[size];
+      for (int i = 0; i < size; i++) {
+         value[i] = (byte) i;
+      }
+      return value;
+   }
+
+   /**
+    * Xorshift random sequence owned by each benchmark thread: unlike {@link java.util.Random} it involves no shared
+    * state, so it doesn't add contention of its own.
+    */
+   @State(Scope.Thread)
+   public static class KeySequence {
+      private int seed = (int) System.nanoTime() | 1;
+
+      public int next(int bound) {
+         seed ^= seed << 13;
+         seed ^= seed >>> 17;
+         seed ^= seed << 5;
+         return (seed & Integer.MAX_VALUE) % bound;
+      }
+
+      /**
+       * @return true with the given percentage of probability
+       */
+      public boolean percent(int percentage) {
+         return next(100) < percentage;
+      }
+   }
+
+}
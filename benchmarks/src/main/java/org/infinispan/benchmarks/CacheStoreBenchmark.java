@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.benchmarks.BenchmarkSupport.KeySequence;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderManager;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.file.FileCacheStoreConfig;
+import org.infinispan.loaders.jdbc.TableManipulation;
+import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
+import org.infinispan.loaders.jdbc.connectionfactory.PooledConnectionFactory;
+import org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStoreConfig;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and stores going straight to a {@link CacheStore}, bypassing the interceptor chain. The file based store
+ * writes to a temporary directory, the JDBC one to an in-memory H2 database, so neither needs any external setup.
+ *
+ * @since 5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheStoreBenchmark {
+
+   @Param({"file", "jdbc-h2"})
+   public String store;
+
+   @Param({"64", "1024"})
+   public int valueSize;
+
+   @Param({"10000"})
+   public int entries;
+
+   private File location;
+   private EmbeddedCacheManager cacheManager;
+   private CacheStore cacheStore;
+   private InternalCacheEntry[] storedEntries;
+
+   @Setup
+   public void setUp() throws Exception {
+      GlobalConfiguration global = GlobalConfiguration.getNonClusteredDefault();
+      global.setAllowDuplicateDomains(true);
+      Configuration configuration = new Configuration();
+      configuration.fluent().loaders().addCacheLoader(createStoreConfig());
+      cacheManager = new DefaultCacheManager(global, configuration);
+      cacheStore = cacheManager.getCache().getAdvancedCache().getComponentRegistry()
+            .getComponent(CacheLoaderManager.class).getCacheStore();
+
+      String[] keys = BenchmarkSupport.keys(entries);
+      byte[] value = BenchmarkSupport.value(valueSize);
+      storedEntries = new InternalCacheEntry[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+         storedEntries[i] = InternalEntryFactory.create(keys[i], value);
+         cacheStore.store(storedEntries[i]);
+      }
+   }
+
+   private CacheLoaderConfig createStoreConfig() throws Exception {
+      if ("file".equals(store)) {
+         location = File.createTempFile("ispn-bench", "");
+         location.delete();
+         location.mkdirs();
+         return new FileCacheStoreConfig().location(location.getAbsolutePath()).purgeOnStartup(true);
+      } else if ("jdbc-h2".equals(store)) {
+         ConnectionFactoryConfig connectionFactory = new ConnectionFactoryConfig(PooledConnectionFactory.class.getName(),
+               "org.h2.Driver", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa", "");
+         TableManipulation table = new TableManipulation("ID_COLUMN", "VARCHAR(255)", "ISPN_BENCH", "DATA_COLUMN",
+               "BLOB", "TIMESTAMP_COLUMN", "BIGINT");
+         JdbcStringBasedCacheStoreConfig config = new JdbcStringBasedCacheStoreConfig(connectionFactory, table);
+         config.setPurgeOnStartup(true);
+         return config;
+      }
+      throw new IllegalArgumentException("Unknown store " + store);
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+      if (location != null) delete(location);
+   }
+
+   private static void delete(File file) {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) delete(child);
+      }
+      file.delete();
+   }
+
+   @Benchmark
+   public InternalCacheEntry load(KeySequence sequence) throws Exception {
+      return cacheStore.load(storedEntries[sequence.next(storedEntries.length)].getKey());
+   }
+
+   @Benchmark
+   public void store(KeySequence sequence) throws Exception {
+      cacheStore.store(storedEntries[sequence.next(storedEntries.length)]);
+   }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.benchmarks.BenchmarkSupport.KeySequence;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.infinispan.util.hash.MurmurHash3;
+import org.jgroups.util.UUID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owner lookup through {@link ConsistentHash#locate(Object, int)} and {@link ConsistentHash#isKeyLocalToAddress(Address,
+ * Object, int)}, which are performed for every key touched by a distributed cache, comparing the hash wheel with the
+ * segment owner table.
+ *
+ * @since 5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsistentHashBenchmark {
+
+   @Param({"4", "32", "256"})
+   public int numNodes;
+
+   @Param({"1", "2"})
+   public int numOwners;
+
+   @Param({"100000"})
+   public int entries;
+
+   @Param({"wheel", "segmented"})
+   public String type;
+
+   private ConsistentHash consistentHash;
+   private Address localAddress;
+   private String[] keys;
+
+   @Setup
+   public void setUp() {
+      Set<Address> nodes = new HashSet<Address>(numNodes);
+      for (int i = 0; i < numNodes; i++) {
+         nodes.add(new JGroupsAddress(UUID.randomUUID()));
+      }
+      if ("segmented".equals(type)) {
+         SegmentedConsistentHash segmented = new SegmentedConsistentHash(new MurmurHash3());
+         segmented.setNumOwners(numOwners);
+         consistentHash = segmented;
+      } else {
+         consistentHash = new DefaultConsistentHash(new MurmurHash3());
+      }
+      consistentHash.setCaches(nodes);
+      localAddress = nodes.iterator().next();
+      keys = BenchmarkSupport.keys(entries);
+   }
+
+   @Benchmark
+   public List<Address> locate(KeySequence sequence) {
+      return consistentHash.locate(keys[sequence.next(keys.length)], numOwners);
+   }
+
+   @Benchmark
+   public boolean isKeyLocalToAddress(KeySequence sequence) {
+      return consistentHash.isKeyLocalToAddress(localAddress, keys[sequence.next(keys.length)], numOwners);
+   }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.benchmarks.BenchmarkSupport.KeySequence;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes on the {@link DefaultDataContainer}, including the creation of the internal entries on writes.
+ *
+ * @since 5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataContainerBenchmark {
+
+   @Param({"64", "1024"})
+   public int valueSize;
+
+   @Param({"100000"})
+   public int entries;
+
+   private DataContainer container;
+   private String[] keys;
+   private byte[] value;
+
+   @Setup
+   public void setUp() {
+      container = DefaultDataContainer.unBoundedDataContainer(32);
+      keys = BenchmarkSupport.keys(entries);
+      value = BenchmarkSupport.value(valueSize);
+      for (String key : keys) {
+         container.put(key, value, -1, -1);
+      }
+   }
+
+   @Benchmark
+   public InternalCacheEntry get(KeySequence sequence) {
+      return container.get(keys[sequence.next(keys.length)]);
+   }
+
+   @Benchmark
+   public void put(KeySequence sequence) {
+      container.put(keys[sequence.next(keys.length)], value, -1, -1);
+   }
+
+   @Benchmark
+   public void putWithLifespan(KeySequence sequence) {
+      container.put(keys[sequence.next(keys.length)], value, 600000, -1);
+   }
+
+}
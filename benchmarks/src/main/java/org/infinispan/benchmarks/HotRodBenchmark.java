@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.benchmarks.BenchmarkSupport.KeySequence;
+import org.infinispan.client.hotrod.RemoteCache;
+import org.infinispan.client.hotrod.RemoteCacheManager;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.server.core.Main;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.ServerSocket;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot Rod get and put round trips over the loopback interface, covering client side encoding, the server's decoder,
+ * the cache operation and response encoding. The server and the client run in the same JVM.
+ *
+ * @since 5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotRodBenchmark {
+
+   @Param({"64", "1024", "16384"})
+   public int valueSize;
+
+   @Param({"10000"})
+   public int entries;
+
+   private EmbeddedCacheManager cacheManager;
+   private HotRodServer server;
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, byte[]> cache;
+   private String[] keys;
+   private byte[] value;
+
+   @Setup
+   public void setUp() throws Exception {
+      GlobalConfiguration global = GlobalConfiguration.getNonClusteredDefault();
+      global.setAllowDuplicateDomains(true);
+      cacheManager = new DefaultCacheManager(global, new Configuration());
+
+      int port = freePort();
+      Properties properties = new Properties();
+      properties.setProperty(Main.PROP_KEY_HOST(), "127.0.0.1");
+      properties.setProperty(Main.PROP_KEY_PORT(), String.valueOf(port));
+      server = new HotRodServer();
+      server.start(properties, cacheManager);
+
+      remoteCacheManager = new RemoteCacheManager("127.0.0.1", port);
+      cache = remoteCacheManager.getCache();
+      keys = BenchmarkSupport.keys(entries);
+      value = BenchmarkSupport.value(valueSize);
+      for (String key : keys) {
+         cache.put(key, value);
+      }
+   }
+
+   private static int freePort() throws Exception {
+      ServerSocket socket = new ServerSocket(0);
+      try {
+         return socket.getLocalPort();
+      } finally {
+         socket.close();
+      }
+   }
+
+   @TearDown
+   public void tearDown() {
+      remoteCacheManager.stop();
+      server.stop();
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public byte[] get(KeySequence sequence) {
+      return cache.get(keys[sequence.next(keys.length)]);
+   }
+
+   @Benchmark
+   public byte[] put(KeySequence sequence) {
+      return cache.put(keys[sequence.next(keys.length)], value);
+   }
+
+}
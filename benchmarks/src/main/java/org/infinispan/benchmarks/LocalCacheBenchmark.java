@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.Cache;
+import org.infinispan.benchmarks.BenchmarkSupport.KeySequence;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes through the public API of a local cache, measuring the whole interceptor chain down to the data
+ * container. Optionally with statistics enabled, to measure the cost of {@link org.infinispan.interceptors.CacheMgmtInterceptor}.
+ *
+ * @since 5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalCacheBenchmark {
+
+   @Param({"64", "1024"})
+   public int valueSize;
+
+   @Param({"100000"})
+   public int entries;
+
+   @Param({"false", "true"})
+   public boolean statistics;
+
+   private EmbeddedCacheManager cacheManager;
+   private Cache<String, byte[]> cache;
+   private String[] keys;
+   private byte[] value;
+
+   @Setup
+   public void setUp() {
+      GlobalConfiguration global = GlobalConfiguration.getNonClusteredDefault();
+      global.setAllowDuplicateDomains(true);
+      Configuration configuration = new Configuration();
+      configuration.setExposeJmxStatistics(statistics);
+      cacheManager = new DefaultCacheManager(global, configuration);
+      cache = cacheManager.getCache();
+      keys = BenchmarkSupport.keys(entries);
+      value = BenchmarkSupport.value(valueSize);
+      for (String key : keys) {
+         cache.put(key, value);
+      }
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public byte[] get(KeySequence sequence) {
+      return cache.get(keys[sequence.next(keys.length)]);
+   }
+
+   @Benchmark
+   public byte[] put(KeySequence sequence) {
+      return cache.put(keys[sequence.next(keys.length)], value);
+   }
+
+   /**
+    * 90% reads and 10% writes.
+    */
+   @Benchmark
+   public byte[] mixed(KeySequence sequence) {
+      String key = keys[sequence.next(keys.length)];
+      return sequence.percent(10) ? cache.put(key, value) : cache.get(key);
+   }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marshalling and unmarshalling of internal cache entries and of a write command with the cache's
+ * {@link org.infinispan.marshall.VersionAwareMarshaller}, as done when replicating or storing data.
+ *
+ * @since 5.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshallerBenchmark {
+
+   @Param({"64", "1024", "16384"})
+   public int valueSize;
+
+   private EmbeddedCacheManager cacheManager;
+   private StreamingMarshaller marshaller;
+   private InternalCacheEntry entry;
+   private PutKeyValueCommand command;
+   private byte[] marshalledEntry;
+   private byte[] marshalledCommand;
+
+   @Setup
+   public void setUp() throws Exception {
+      GlobalConfiguration global = GlobalConfiguration.getNonClusteredDefault();
+      global.setAllowDuplicateDomains(true);
+      cacheManager = new DefaultCacheManager(global, new Configuration());
+      ComponentRegistry registry = cacheManager.getCache().getAdvancedCache().getComponentRegistry();
+      marshaller = registry.getGlobalComponentRegistry().getComponent(StreamingMarshaller.class);
+      byte[] value = BenchmarkSupport.value(valueSize);
+      entry = InternalEntryFactory.create("key", value, 600000);
+      command = registry.getComponent(CommandsFactory.class).buildPutKeyValueCommand("key", value, -1, -1, null);
+      marshalledEntry = marshaller.objectToByteBuffer(entry);
+      marshalledCommand = marshaller.objectToByteBuffer(command);
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public byte[] marshallEntry() throws Exception {
+      return marshaller.objectToByteBuffer(entry);
+   }
+
+   @Benchmark
+   public Object unmarshallEntry() throws Exception {
+      return marshaller.objectFromByteBuffer(marshalledEntry);
+   }
+
+   @Benchmark
+   public byte[] marshallCommand() throws Exception {
+      return marshaller.objectToByteBuffer(command);
+   }
+
+   @Benchmark
+   public Object unmarshallCommand() throws Exception {
+      return marshaller.objectFromByteBuffer(marshalledCommand);
+   }
+
+}
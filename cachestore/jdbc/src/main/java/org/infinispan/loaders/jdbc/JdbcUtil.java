@@ -74,6 +74,30 @@ public class JdbcUtil {
       }
    }
 
+   /**
+    * Rolls back the current transaction of the connection, logging rather than propagating any failure as this is
+    * only ever called while handling a previous failure.
+    */
+   public static void safeRollback(Connection connection) {
+      if (connection != null) {
+         try {
+            connection.rollback();
+         } catch (SQLException e) {
+            log.sqlFailureUnexpected(e);
+         }
+      }
+   }
+
+   public static void safeSetAutoCommit(Connection connection, boolean autoCommit) {
+      if (connection != null) {
+         try {
+            connection.setAutoCommit(autoCommit);
+         } catch (SQLException e) {
+            log.sqlFailureUnexpected(e);
+         }
+      }
+   }
+
    public static ByteBuffer marshall(StreamingMarshaller marshaller, Object bucket) throws CacheLoaderException, InterruptedException {
       try {
          return marshaller.objectToBuffer(bucket);
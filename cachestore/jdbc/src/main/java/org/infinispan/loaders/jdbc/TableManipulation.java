@@ -83,6 +83,8 @@ public class TableManipulation implements Cloneable {
    public DatabaseType databaseType;
    private String loadAllKeysBinarySql;
    private String loadAllKeysStringSql;
+   private String upsertRowSql;
+   private boolean upsertRowSqlResolved;
 
    public TableManipulation(String idColumnName, String idColumnType, String tableNamePrefix, String dataColumnName,
                             String dataColumnType, String timestampColumnName, String timestampColumnType) {
@@ -291,6 +293,54 @@ public class TableManipulation implements Cloneable {
       return updateRowSql;
    }
 
+   /**
+    * Returns a statement that inserts the row if it is missing or updates it otherwise, in the dialect of the
+    * configured {@link DatabaseType}. Parameters are bound in the same order as for {@link #getInsertRowSql()}: data,
+    * timestamp and id. Returns null for the dialects which don't have a single statement upsert, in which case callers
+    * need to fall back to {@link #getInsertRowSql()} or {@link #getUpdateRowSql()}.
+    */
+   public String getUpsertRowSql() {
+      if (!upsertRowSqlResolved) {
+         switch (getDatabaseType()) {
+            case MYSQL:
+               upsertRowSql = String.format("%s ON DUPLICATE KEY UPDATE %s = VALUES(%s), %s = VALUES(%s)",
+                                            getInsertRowSql(), dataColumnName, dataColumnName,
+                                            timestampColumnName, timestampColumnName);
+               break;
+            case POSTGRES:
+               upsertRowSql = String.format("%s ON CONFLICT (%s) DO UPDATE SET %s = EXCLUDED.%s, %s = EXCLUDED.%s",
+                                            getInsertRowSql(), idColumnName, dataColumnName, dataColumnName,
+                                            timestampColumnName, timestampColumnName);
+               break;
+            case H2:
+               upsertRowSql = String.format("MERGE INTO %s (%s, %s, %s) KEY(%s) VALUES(?,?,?)", getTableName(),
+                                            dataColumnName, timestampColumnName, idColumnName, idColumnName);
+               break;
+            case ORACLE:
+               upsertRowSql = String.format("MERGE INTO %1$s t USING (SELECT ? %2$s, ? %3$s, ? %4$s FROM DUAL) tmp ON (t.%4$s = tmp.%4$s) " +
+                                                  "WHEN MATCHED THEN UPDATE SET t.%2$s = tmp.%2$s, t.%3$s = tmp.%3$s " +
+                                                  "WHEN NOT MATCHED THEN INSERT (%2$s, %3$s, %4$s) VALUES (tmp.%2$s, tmp.%3$s, tmp.%4$s)",
+                                            getTableName(), dataColumnName, timestampColumnName, idColumnName);
+               break;
+            case SQL_SERVER:
+               upsertRowSql = String.format("MERGE %1$s WITH (HOLDLOCK) AS t USING (VALUES (?, ?, ?)) AS tmp (%2$s, %3$s, %4$s) ON t.%4$s = tmp.%4$s " +
+                                                  "WHEN MATCHED THEN UPDATE SET t.%2$s = tmp.%2$s, t.%3$s = tmp.%3$s " +
+                                                  "WHEN NOT MATCHED THEN INSERT (%2$s, %3$s, %4$s) VALUES (tmp.%2$s, tmp.%3$s, tmp.%4$s);",
+                                            getTableName(), dataColumnName, timestampColumnName, idColumnName);
+               break;
+            default:
+               upsertRowSql = null;
+               break;
+         }
+         upsertRowSqlResolved = true;
+      }
+      return upsertRowSql;
+   }
+
+   public boolean isUpsertSupported() {
+      return getUpsertRowSql() != null;
+   }
+
    public String getSelectRowSql() {
       if (selectRowSql == null) {
          selectRowSql = "SELECT " + idColumnName + ", " + dataColumnName + " FROM " + getTableName() + " WHERE " + idColumnName + " = ?";
@@ -298,6 +348,32 @@ public class TableManipulation implements Cloneable {
       return selectRowSql;
    }
 
+   /**
+    * Returns a select for the id and data columns of <tt>numberOfKeys</tt> rows at once, using an <tt>IN</tt> clause.
+    * Callers should not pass more than {@link #getBatchSize()} keys, as some databases limit the size of the clause.
+    */
+   public String getSelectMultipleRowSql(int numberOfKeys) {
+      return buildSelectInSql(idColumnName + ", " + dataColumnName, numberOfKeys);
+   }
+
+   /**
+    * Same as {@link #getSelectMultipleRowSql(int)}, but only selects the id column. Used for finding out which of a set
+    * of rows already exist.
+    */
+   public String getSelectMultipleIdSql(int numberOfKeys) {
+      return buildSelectInSql(idColumnName, numberOfKeys);
+   }
+
+   private String buildSelectInSql(String columns, int numberOfKeys) {
+      StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(getTableName())
+            .append(" WHERE ").append(idColumnName).append(" IN (");
+      for (int i = 0; i < numberOfKeys; i++) {
+         if (i > 0) sql.append(',');
+         sql.append('?');
+      }
+      return sql.append(')').toString();
+   }
+
    public String getDeleteRowSql() {
       if (deleteRowSql == null) {
          deleteRowSql = "DELETE FROM " + getTableName() + " WHERE " + idColumnName + " = ?";
@@ -483,21 +559,25 @@ public class TableManipulation implements Cloneable {
    private DatabaseType getDatabaseType() {
       if (databaseType == null) {
          // need to guess from the database type!
+         Connection connection = null;
          try {
-            String dbProduct = connectionFactory.getConnection().getMetaData().getDatabaseProductName();
+            connection = connectionFactory.getConnection();
+            String dbProduct = connection.getMetaData().getDatabaseProductName();
             databaseType = guessDatabaseType(dbProduct);
          } catch (Exception e) {
             log.debug("Unable to guess database type from JDBC metadata.", e);
          }
          if (databaseType == null) {
             log.debug("Unable to detect database type using connection metadata.  Attempting to guess on driver name.");
+            try {
+               if (connection == null) connection = connectionFactory.getConnection();
+               String dbProduct = connection.getMetaData().getDriverName();
+               databaseType = guessDatabaseType(dbProduct);
+            } catch (Exception e) {
+               log.debug("Unable to guess database type from JDBC driver name.", e);
+            }
          }
-         try {
-            String dbProduct = connectionFactory.getConnection().getMetaData().getDriverName();
-            databaseType = guessDatabaseType(dbProduct);
-         } catch (Exception e) {
-            log.debug("Unable to guess database type from JDBC driver name.", e);
-         }
+         if (connection != null) connectionFactory.releaseConnection(connection);
 
          if (databaseType == null) {
             throw new ConfigurationException("Unable to detect database type from JDBC driver name or connection metadata.  Please provide this manually using the 'databaseType' property in your configuration.  Supported database type strings are " + Arrays.toString(DatabaseType.values()));
@@ -28,12 +28,16 @@ import org.infinispan.io.ByteBuffer;
 import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.loaders.MultiKeyCacheLoader;
 import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.loaders.bucket.BucketBasedCacheStore;
 import org.infinispan.loaders.jdbc.DataManipulationHelper;
 import org.infinispan.loaders.jdbc.JdbcUtil;
 import org.infinispan.loaders.jdbc.TableManipulation;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.loaders.jdbc.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -46,9 +50,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -70,7 +79,7 @@ import java.util.Set;
  * @see org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore
  */
 @CacheLoaderMetadata(configurationClass = JdbcBinaryCacheStoreConfig.class)
-public class JdbcBinaryCacheStore extends BucketBasedCacheStore {
+public class JdbcBinaryCacheStore extends BucketBasedCacheStore implements MultiKeyCacheLoader {
 
    private static final Log log = LogFactory.getLog(JdbcBinaryCacheStore.class, Log.class);
 
@@ -241,6 +250,207 @@ public class JdbcBinaryCacheStore extends BucketBasedCacheStore {
       }
    }
 
+   /**
+    * Loads all the given buckets with one select per {@link TableManipulation#getBatchSize()} buckets. Buckets that are
+    * not stored are not part of the returned map.
+    */
+   private Map<String, Bucket> loadBuckets(Connection conn, Collection<String> bucketNames) throws SQLException, CacheLoaderException {
+      Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+      List<String> names = new ArrayList<String>(bucketNames);
+      int batchSize = tableManipulation.getBatchSize();
+      for (int from = 0; from < names.size(); from += batchSize) {
+         List<String> chunk = names.subList(from, Math.min(from + batchSize, names.size()));
+         String sql = tableManipulation.getSelectMultipleRowSql(chunk.size());
+         if (log.isTraceEnabled()) {
+            log.tracef("Running loadBuckets. Sql: '%s', on keys: %s", sql, chunk);
+         }
+         PreparedStatement ps = null;
+         ResultSet rs = null;
+         try {
+            ps = conn.prepareStatement(sql);
+            for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+            rs = ps.executeQuery();
+            while (rs.next()) {
+               String bucketName = rs.getString(1);
+               Bucket bucket = (Bucket) JdbcUtil.unmarshall(getMarshaller(), rs.getBinaryStream(2));
+               bucket.setBucketName(bucketName);//bucket name is volatile, so not persisted.
+               buckets.put(bucketName, bucket);
+            }
+         } finally {
+            JdbcUtil.safeClose(rs);
+            JdbcUtil.safeClose(ps);
+         }
+      }
+      return buckets;
+   }
+
+   /**
+    * Loads the entries mapped to the given keys, reading all the buckets involved with a few multi-row selects rather
+    * than one select per key. Keys that are not stored, or whose entries have expired, are not part of the result.
+    */
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      Set<String> bucketNames = new HashSet<String>();
+      for (Object key : keys) bucketNames.add(getLockFromKey(key));
+      if (bucketNames.isEmpty()) return result;
+
+      lockAllForReading(bucketNames);
+      Connection conn = null;
+      try {
+         conn = connectionFactory.getConnection();
+         Map<String, Bucket> buckets = loadBuckets(conn, bucketNames);
+         for (Object key : keys) {
+            Bucket bucket = buckets.get(getLockFromKey(key));
+            InternalCacheEntry se = bucket == null ? null : bucket.getEntry(key);
+            if (se != null && !se.isExpired()) result.add(se);
+         }
+      } catch (SQLException e) {
+         log.sqlFailureLoadingKeys(bucketNames, e);
+         throw new CacheLoaderException("Sql failure while loading keys: " + bucketNames, e);
+      } finally {
+         connectionFactory.releaseConnection(conn);
+         unlockAll(bucketNames);
+      }
+      return result;
+   }
+
+   /**
+    * Applies a list of modifications (e.g. the ones of a committing transaction) bucket-wise: all the affected buckets
+    * are read with multi-row selects, modified in memory, and then written back with batched inserts, updates and
+    * deletes, on a single connection and within a single database transaction. A clear discards all the modifications
+    * preceding it.
+    */
+   @Override
+   protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+      int lastClear = -1;
+      for (int i = 0; i < mods.size(); i++) {
+         if (mods.get(i).getType() == Modification.Type.CLEAR) lastClear = i;
+      }
+      if (lastClear >= 0) clear();
+
+      List<? extends Modification> toApply = mods.subList(lastClear + 1, mods.size());
+      Set<String> bucketNames = new HashSet<String>();
+      for (Modification m : toApply) {
+         switch (m.getType()) {
+            case STORE:
+               InternalCacheEntry entry = ((Store) m).getStoredEntry();
+               if (entry != null) bucketNames.add(getLockFromKey(entry.getKey()));
+               break;
+            case REMOVE:
+               bucketNames.add(getLockFromKey(((Remove) m).getKey()));
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown modification type " + m.getType());
+         }
+      }
+      if (bucketNames.isEmpty()) return;
+
+      lockAllForWriting(bucketNames);
+      Connection conn = null;
+      boolean autoCommit = true;
+      boolean committed = false;
+      try {
+         conn = connectionFactory.getConnection();
+         autoCommit = conn.getAutoCommit();
+         conn.setAutoCommit(false);
+         Map<String, Bucket> existing = loadBuckets(conn, bucketNames);
+         Map<String, Bucket> modified = new HashMap<String, Bucket>(existing);
+         for (Modification m : toApply) {
+            if (m.getType() == Modification.Type.STORE) {
+               InternalCacheEntry entry = ((Store) m).getStoredEntry();
+               if (entry == null) continue;
+               String bucketName = getLockFromKey(entry.getKey());
+               Bucket bucket = modified.get(bucketName);
+               if (entry.isExpired()) {
+                  if (bucket != null) bucket.removeEntry(entry.getKey());
+               } else {
+                  if (bucket == null) {
+                     bucket = new Bucket();
+                     bucket.setBucketName(bucketName);
+                     modified.put(bucketName, bucket);
+                  }
+                  bucket.addEntry(entry);
+               }
+            } else {
+               Object key = ((Remove) m).getKey();
+               Bucket bucket = modified.get(getLockFromKey(key));
+               if (bucket != null) bucket.removeEntry(key);
+            }
+         }
+
+         List<Bucket> toInsert = new ArrayList<Bucket>();
+         List<Bucket> toUpdate = new ArrayList<Bucket>();
+         List<Bucket> toDelete = new ArrayList<Bucket>();
+         for (Bucket bucket : modified.values()) {
+            boolean stored = existing.containsKey(bucket.getBucketName());
+            if (bucket.isEmpty()) {
+               if (stored) toDelete.add(bucket);
+            } else {
+               (stored ? toUpdate : toInsert).add(bucket);
+            }
+         }
+         executeBucketBatch(conn, tableManipulation.getInsertRowSql(), toInsert);
+         executeBucketBatch(conn, tableManipulation.getUpdateRowSql(), toUpdate);
+         executeDeleteBatch(conn, toDelete);
+         conn.commit();
+         committed = true;
+         if (log.isTraceEnabled())
+            log.tracef("Inserted %d, updated %d and deleted %d buckets in batch", toInsert.size(), toUpdate.size(), toDelete.size());
+      } catch (SQLException e) {
+         log.sqlFailureApplyingModifications(e);
+         throw new CacheLoaderException("Sql failure while applying modifications to the store", e);
+      } catch (InterruptedException ie) {
+         if (log.isTraceEnabled()) log.trace("Interrupted while marshalling modified buckets");
+         Thread.currentThread().interrupt();
+      } finally {
+         if (conn != null) {
+            if (!committed) JdbcUtil.safeRollback(conn);
+            JdbcUtil.safeSetAutoCommit(conn, autoCommit);
+            connectionFactory.releaseConnection(conn);
+         }
+         unlockAll(bucketNames);
+      }
+   }
+
+   private void executeBucketBatch(Connection conn, String sql, List<Bucket> buckets)
+         throws SQLException, CacheLoaderException, InterruptedException {
+      if (buckets.isEmpty()) return;
+      if (log.isTraceEnabled()) log.tracef("Running sql '%s' in batch on %d buckets", sql, buckets.size());
+      PreparedStatement ps = conn.prepareStatement(sql);
+      try {
+         int batchSize = tableManipulation.getBatchSize();
+         int count = 0;
+         for (Bucket bucket : buckets) {
+            ByteBuffer byteBuffer = JdbcUtil.marshall(getMarshaller(), bucket);
+            ps.setBinaryStream(1, byteBuffer.getStream(), byteBuffer.getLength());
+            ps.setLong(2, bucket.timestampOfFirstEntryToExpire());
+            ps.setString(3, bucket.getBucketName());
+            ps.addBatch();
+            if (++count % batchSize == 0) ps.executeBatch();
+         }
+         if (count % batchSize != 0) ps.executeBatch();
+      } finally {
+         JdbcUtil.safeClose(ps);
+      }
+   }
+
+   private void executeDeleteBatch(Connection conn, List<Bucket> buckets) throws SQLException {
+      if (buckets.isEmpty()) return;
+      PreparedStatement ps = conn.prepareStatement(tableManipulation.getDeleteRowSql());
+      try {
+         int batchSize = tableManipulation.getBatchSize();
+         int count = 0;
+         for (Bucket bucket : buckets) {
+            ps.setString(1, bucket.getBucketName());
+            ps.addBatch();
+            if (++count % batchSize == 0) ps.executeBatch();
+         }
+         if (count % batchSize != 0) ps.executeBatch();
+      } finally {
+         JdbcUtil.safeClose(ps);
+      }
+   }
+
    @Override
    public Set<InternalCacheEntry> loadAllLockSafe() throws CacheLoaderException {
       return dmHelper.loadAllSupport(false);
@@ -158,4 +158,12 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "SQL error while fetching stored entry with key: %s, lockingKey: %s", id = 8027)
    void sqlFailureReadingKey(Object key, String lockingKey, @Cause SQLException e);
 
+   @LogMessage(level = ERROR)
+   @Message(value = "SQL failure while applying modifications to the store", id = 8028)
+   void sqlFailureApplyingModifications(@Cause SQLException e);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "SQL failure while loading keys: %s", id = 8029)
+   void sqlFailureLoadingKeys(Object keys, @Cause SQLException e);
+
 }
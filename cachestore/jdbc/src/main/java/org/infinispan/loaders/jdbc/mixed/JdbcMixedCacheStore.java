@@ -29,16 +29,23 @@ import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.MultiKeyCacheLoader;
 import org.infinispan.loaders.jdbc.binary.JdbcBinaryCacheStore;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
 import org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -67,7 +74,7 @@ import java.util.Set;
  * @see org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore
  */
 @CacheLoaderMetadata(configurationClass = JdbcMixedCacheStoreConfig.class)
-public class JdbcMixedCacheStore extends AbstractCacheStore {
+public class JdbcMixedCacheStore extends AbstractCacheStore implements MultiKeyCacheLoader {
 
    private static final Log log = LogFactory.getLog(JdbcMixedCacheStore.class);
 
@@ -146,6 +153,53 @@ public class JdbcMixedCacheStore extends AbstractCacheStore {
       return fromBuckets;
    }
 
+   /**
+    * Loads the entries mapped to the given keys, using the multi-row loads of the two aggregated stores.
+    */
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      List<Object> stringKeys = new ArrayList<Object>();
+      List<Object> binaryKeys = new ArrayList<Object>();
+      for (Object key : keys) {
+         (getCacheStore(key) == stringBasedCacheStore ? stringKeys : binaryKeys).add(key);
+      }
+      Set<InternalCacheEntry> result = stringBasedCacheStore.loadAll(stringKeys);
+      result.addAll(binaryCacheStore.loadAll(binaryKeys));
+      return result;
+   }
+
+   /**
+    * Splits the modifications between the two aggregated stores, so that each of them can apply its share in batch.
+    * Clears are passed to both of them.
+    */
+   @Override
+   protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+      List<Modification> stringMods = new ArrayList<Modification>();
+      List<Modification> binaryMods = new ArrayList<Modification>();
+      for (Modification m : mods) {
+         switch (m.getType()) {
+            case STORE:
+               InternalCacheEntry entry = ((Store) m).getStoredEntry();
+               if (entry != null) getModifications(entry.getKey(), stringMods, binaryMods).add(m);
+               break;
+            case REMOVE:
+               getModifications(((Remove) m).getKey(), stringMods, binaryMods).add(m);
+               break;
+            case CLEAR:
+               stringMods.add(m);
+               binaryMods.add(m);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown modification type " + m.getType());
+         }
+      }
+      if (!stringMods.isEmpty()) stringBasedCacheStore.prepare(stringMods, null, true);
+      if (!binaryMods.isEmpty()) binaryCacheStore.prepare(binaryMods, null, true);
+   }
+
+   private List<Modification> getModifications(Object key, List<Modification> stringMods, List<Modification> binaryMods) {
+      return getCacheStore(key) == stringBasedCacheStore ? stringMods : binaryMods;
+   }
+
    public void store(InternalCacheEntry ed) throws CacheLoaderException {
       getCacheStore(ed.getKey()).store(ed);
    }
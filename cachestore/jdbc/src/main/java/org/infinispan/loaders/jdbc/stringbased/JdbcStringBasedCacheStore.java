@@ -30,6 +30,7 @@ import org.infinispan.loaders.CacheLoaderConfig;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderMetadata;
 import org.infinispan.loaders.LockSupportCacheStore;
+import org.infinispan.loaders.MultiKeyCacheLoader;
 import org.infinispan.loaders.jdbc.DataManipulationHelper;
 import org.infinispan.loaders.jdbc.JdbcUtil;
 import org.infinispan.loaders.jdbc.TableManipulation;
@@ -37,6 +38,9 @@ import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.keymappers.Key2StringMapper;
 import org.infinispan.loaders.keymappers.TwoWayKey2StringMapper;
 import org.infinispan.loaders.keymappers.UnsupportedKeyTypeException;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.loaders.jdbc.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -49,6 +53,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -85,7 +95,7 @@ import java.util.Set;
  * @see org.infinispan.loaders.keymappers.DefaultTwoWayKey2StringMapper
  */
 @CacheLoaderMetadata(configurationClass = JdbcStringBasedCacheStoreConfig.class)
-public class JdbcStringBasedCacheStore extends LockSupportCacheStore {
+public class JdbcStringBasedCacheStore extends LockSupportCacheStore implements MultiKeyCacheLoader {
 
    private static final Log log = LogFactory.getLog(JdbcStringBasedCacheStore.class, Log.class);
 
@@ -191,12 +201,14 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore {
 
    @Override
    public void storeLockSafe(InternalCacheEntry ed, String lockingKey) throws CacheLoaderException {
-      InternalCacheEntry existingOne = readStoredEntry(ed, lockingKey);
-      String sql;
-      if (existingOne == null) {
-         sql = tableManipulation.getInsertRowSql();
-      } else {
-         sql = tableManipulation.getUpdateRowSql();
+      String sql = tableManipulation.getUpsertRowSql();
+      if (sql == null) {
+         InternalCacheEntry existingOne = readStoredEntry(ed, lockingKey);
+         if (existingOne == null) {
+            sql = tableManipulation.getInsertRowSql();
+         } else {
+            sql = tableManipulation.getUpdateRowSql();
+         }
       }
       if (log.isTraceEnabled())
          log.tracef("Running sql '%s' on %s. Key string is '%s'", sql, ed, lockingKey);
@@ -225,6 +237,201 @@ public class JdbcStringBasedCacheStore extends LockSupportCacheStore {
       }
    }
 
+   /**
+    * Applies a list of modifications (e.g. the ones of a committing transaction) on a single connection and within a
+    * single database transaction, grouping the stores and the removals in JDBC batches. Only the last modification of
+    * each key is sent to the database, and a clear discards all the modifications preceding it.
+    */
+   @Override
+   protected void applyModifications(List<? extends Modification> mods) throws CacheLoaderException {
+      int lastClear = -1;
+      for (int i = 0; i < mods.size(); i++) {
+         if (mods.get(i).getType() == Modification.Type.CLEAR) lastClear = i;
+      }
+      if (lastClear >= 0) clear();
+
+      Map<String, InternalCacheEntry> toStore = new HashMap<String, InternalCacheEntry>();
+      Set<String> toRemove = new HashSet<String>();
+      for (Modification m : mods.subList(lastClear + 1, mods.size())) {
+         switch (m.getType()) {
+            case STORE:
+               InternalCacheEntry entry = ((Store) m).getStoredEntry();
+               if (entry == null) break;
+               String lockingKey = getLockFromKey(entry.getKey());
+               if (entry.isExpired()) {
+                  toStore.remove(lockingKey);
+                  toRemove.add(lockingKey);
+               } else {
+                  toRemove.remove(lockingKey);
+                  toStore.put(lockingKey, entry);
+               }
+               break;
+            case REMOVE:
+               lockingKey = getLockFromKey(((Remove) m).getKey());
+               toStore.remove(lockingKey);
+               toRemove.add(lockingKey);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown modification type " + m.getType());
+         }
+      }
+      if (toStore.isEmpty() && toRemove.isEmpty()) return;
+
+      Set<String> lockingKeys = new HashSet<String>(toStore.keySet());
+      lockingKeys.addAll(toRemove);
+      lockAllForWriting(lockingKeys);
+      Connection connection = null;
+      boolean autoCommit = true;
+      boolean committed = false;
+      try {
+         connection = connectionFactory.getConnection();
+         autoCommit = connection.getAutoCommit();
+         connection.setAutoCommit(false);
+         if (!toStore.isEmpty()) batchStore(connection, toStore);
+         if (!toRemove.isEmpty()) batchRemove(connection, toRemove);
+         connection.commit();
+         committed = true;
+         if (log.isTraceEnabled())
+            log.tracef("Applied %d stores and %d removals in batch", toStore.size(), toRemove.size());
+      } catch (SQLException e) {
+         log.sqlFailureApplyingModifications(e);
+         throw new CacheLoaderException("SQL failure while applying modifications to the store", e);
+      } catch (InterruptedException e) {
+         if (log.isTraceEnabled()) log.trace("Interrupted while marshalling modifications to store");
+         Thread.currentThread().interrupt();
+      } finally {
+         if (connection != null) {
+            if (!committed) JdbcUtil.safeRollback(connection);
+            JdbcUtil.safeSetAutoCommit(connection, autoCommit);
+            connectionFactory.releaseConnection(connection);
+         }
+         unlockAll(lockingKeys);
+      }
+   }
+
+   private void batchStore(Connection connection, Map<String, InternalCacheEntry> toStore)
+         throws SQLException, CacheLoaderException, InterruptedException {
+      String upsertSql = tableManipulation.getUpsertRowSql();
+      if (upsertSql != null) {
+         executeStoreBatch(connection, upsertSql, toStore);
+      } else {
+         Set<String> existing = selectExistingKeys(connection, toStore.keySet());
+         Map<String, InternalCacheEntry> toInsert = new HashMap<String, InternalCacheEntry>();
+         Map<String, InternalCacheEntry> toUpdate = new HashMap<String, InternalCacheEntry>();
+         for (Map.Entry<String, InternalCacheEntry> e : toStore.entrySet()) {
+            (existing.contains(e.getKey()) ? toUpdate : toInsert).put(e.getKey(), e.getValue());
+         }
+         executeStoreBatch(connection, tableManipulation.getInsertRowSql(), toInsert);
+         executeStoreBatch(connection, tableManipulation.getUpdateRowSql(), toUpdate);
+      }
+   }
+
+   private void executeStoreBatch(Connection connection, String sql, Map<String, InternalCacheEntry> entries)
+         throws SQLException, CacheLoaderException, InterruptedException {
+      if (entries.isEmpty()) return;
+      if (log.isTraceEnabled()) log.tracef("Running sql '%s' in batch on %d entries", sql, entries.size());
+      PreparedStatement ps = connection.prepareStatement(sql);
+      try {
+         int batchSize = tableManipulation.getBatchSize();
+         int count = 0;
+         for (Map.Entry<String, InternalCacheEntry> e : entries.entrySet()) {
+            ByteBuffer byteBuffer = JdbcUtil.marshall(getMarshaller(), e.getValue().toInternalCacheValue());
+            ps.setBinaryStream(1, byteBuffer.getStream(), byteBuffer.getLength());
+            ps.setLong(2, e.getValue().getExpiryTime());
+            ps.setString(3, e.getKey());
+            ps.addBatch();
+            if (++count % batchSize == 0) ps.executeBatch();
+         }
+         if (count % batchSize != 0) ps.executeBatch();
+      } finally {
+         JdbcUtil.safeClose(ps);
+      }
+   }
+
+   private void batchRemove(Connection connection, Set<String> toRemove) throws SQLException {
+      String sql = tableManipulation.getDeleteRowSql();
+      if (log.isTraceEnabled()) log.tracef("Running sql '%s' in batch on %s", sql, toRemove);
+      PreparedStatement ps = connection.prepareStatement(sql);
+      try {
+         int batchSize = tableManipulation.getBatchSize();
+         int count = 0;
+         for (String lockingKey : toRemove) {
+            ps.setString(1, lockingKey);
+            ps.addBatch();
+            if (++count % batchSize == 0) ps.executeBatch();
+         }
+         if (count % batchSize != 0) ps.executeBatch();
+      } finally {
+         JdbcUtil.safeClose(ps);
+      }
+   }
+
+   private Set<String> selectExistingKeys(Connection connection, Set<String> lockingKeys) throws SQLException {
+      Set<String> existing = new HashSet<String>();
+      List<String> keys = new ArrayList<String>(lockingKeys);
+      int batchSize = tableManipulation.getBatchSize();
+      for (int from = 0; from < keys.size(); from += batchSize) {
+         List<String> chunk = keys.subList(from, Math.min(from + batchSize, keys.size()));
+         PreparedStatement ps = null;
+         ResultSet rs = null;
+         try {
+            ps = connection.prepareStatement(tableManipulation.getSelectMultipleIdSql(chunk.size()));
+            for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+            rs = ps.executeQuery();
+            while (rs.next()) existing.add(rs.getString(1));
+         } finally {
+            JdbcUtil.safeClose(rs);
+            JdbcUtil.safeClose(ps);
+         }
+      }
+      return existing;
+   }
+
+   /**
+    * Loads the entries mapped to the given keys with one select per {@link TableManipulation#getBatchSize()} keys,
+    * rather than one per key. Keys that are not stored, or whose entries have expired, are not part of the result.
+    */
+   public Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      Map<String, Object> keysByLockingKey = new HashMap<String, Object>();
+      for (Object key : keys) keysByLockingKey.put(getLockFromKey(key), key);
+      if (keysByLockingKey.isEmpty()) return result;
+
+      lockAllForReading(keysByLockingKey.keySet());
+      Connection connection = null;
+      try {
+         connection = connectionFactory.getConnection();
+         List<String> lockingKeys = new ArrayList<String>(keysByLockingKey.keySet());
+         int batchSize = tableManipulation.getBatchSize();
+         for (int from = 0; from < lockingKeys.size(); from += batchSize) {
+            List<String> chunk = lockingKeys.subList(from, Math.min(from + batchSize, lockingKeys.size()));
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+               ps = connection.prepareStatement(tableManipulation.getSelectMultipleRowSql(chunk.size()));
+               for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+               rs = ps.executeQuery();
+               while (rs.next()) {
+                  Object key = keysByLockingKey.get(rs.getString(1));
+                  InternalCacheValue icv = (InternalCacheValue) JdbcUtil.unmarshall(getMarshaller(), rs.getBinaryStream(2));
+                  InternalCacheEntry storedEntry = icv.toInternalCacheEntry(key);
+                  if (!storedEntry.isExpired()) result.add(storedEntry);
+               }
+            } finally {
+               JdbcUtil.safeClose(rs);
+               JdbcUtil.safeClose(ps);
+            }
+         }
+      } catch (SQLException e) {
+         log.sqlFailureLoadingKeys(keys, e);
+         throw new CacheLoaderException("SQL failure while loading keys: " + keys, e);
+      } finally {
+         connectionFactory.releaseConnection(connection);
+         unlockAll(keysByLockingKey.keySet());
+      }
+      return result;
+   }
+
    @Override
    public boolean removeLockSafe(Object key, String keyStr) throws CacheLoaderException {
       Connection connection = null;
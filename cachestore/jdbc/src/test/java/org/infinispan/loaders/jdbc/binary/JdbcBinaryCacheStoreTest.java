@@ -25,6 +25,7 @@ package org.infinispan.loaders.jdbc.binary;
 import static org.easymock.classextension.EasyMock.*;
 
 import org.infinispan.CacheDelegate;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.InternalEntryFactory;
 import org.infinispan.loaders.BaseCacheStoreTest;
 import org.infinispan.loaders.CacheLoaderException;
@@ -32,12 +33,19 @@ import org.infinispan.loaders.CacheStore;
 import org.infinispan.loaders.jdbc.TableManipulation;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.marshall.TestObjectStreamMarshaller;
 import org.infinispan.test.TestingUtil;
 import org.infinispan.test.fwk.UnitTestDatabaseManager;
 import org.testng.annotations.Test;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Tester class for {@link JdbcBinaryCacheStore}
@@ -122,4 +130,23 @@ public class JdbcBinaryCacheStoreTest extends BaseCacheStoreTest {
       }
    }
 
+   public void testBatchedModificationsAndMultiKeyLoad() throws Exception {
+      List<Modification> mods = new ArrayList<Modification>();
+      for (int i = 0; i < 250; i++) mods.add(new Store(InternalEntryFactory.create("k" + i, "v" + i)));
+      for (int i = 0; i < 250; i += 2) mods.add(new Remove("k" + i));
+      mods.add(new Store(InternalEntryFactory.create("k1", "updated")));
+      cs.prepare(mods, gtf.newGlobalTransaction(null, true), true);
+
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 250; i++) keys.add("k" + i);
+      keys.add("missing");
+      Set<InternalCacheEntry> loaded = ((JdbcBinaryCacheStore) cs).loadAll(keys);
+      assert loaded.size() == 125 : "Expected 125 entries but got " + loaded.size();
+      for (InternalCacheEntry ice : loaded) {
+         int index = Integer.parseInt(((String) ice.getKey()).substring(1));
+         assert index % 2 == 1;
+         assert ice.getValue().equals(index == 1 ? "updated" : "v" + index);
+      }
+      assert cs.load("k2") == null;
+   }
 }
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.jdbc.stringbased;
+
+import org.infinispan.CacheDelegate;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.jdbc.TableManipulation;
+import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Store;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.fwk.UnitTestDatabaseManager;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares storing entries one by one with applying them as a single list of modifications, which goes through the
+ * batched upsert path of {@link JdbcStringBasedCacheStore}. Runs against the in-memory H2 database used by the rest of
+ * the JDBC tests, or against MySQL when <tt>infinispan.test.jdbc.db</tt> is set accordingly.
+ *
+ * @since 5.0
+ */
+@Test(groups = "profiling", enabled = false, testName = "loaders.jdbc.stringbased.JdbcStringBasedCacheStoreBatchPerfTest")
+public class JdbcStringBasedCacheStoreBatchPerfTest extends AbstractInfinispanTest {
+
+   private static final int NUM_ENTRIES = 20000;
+   private static final int NUM_ROUNDS = 3;
+
+   public void testBatchedVersusSingleStores() throws Exception {
+      JdbcStringBasedCacheStore store = createCacheStore();
+      TransactionFactory gtf = new TransactionFactory();
+      gtf.init(false, false, true);
+      try {
+         for (int round = 0; round < NUM_ROUNDS; round++) {
+            // both phases start from an empty table, so they perform the same inserts
+            store.clear();
+            long start = System.nanoTime();
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+               store.store(InternalEntryFactory.create("k" + i, "single-" + round));
+            }
+            long single = System.nanoTime() - start;
+            store.clear();
+
+            List<Modification> mods = new ArrayList<Modification>(NUM_ENTRIES);
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+               mods.add(new Store(InternalEntryFactory.create("k" + i, "batched-" + round)));
+            }
+            start = System.nanoTime();
+            store.prepare(mods, gtf.newGlobalTransaction(null, true), true);
+            long batched = System.nanoTime() - start;
+
+            System.out.printf("Round %d: %d single stores took %d ms, the same stores applied in batch took %d ms%n",
+                              round, NUM_ENTRIES, single / 1000000, batched / 1000000);
+         }
+      } finally {
+         store.clear();
+         store.stop();
+      }
+   }
+
+   private JdbcStringBasedCacheStore createCacheStore() throws Exception {
+      ConnectionFactoryConfig connectionFactoryConfig = UnitTestDatabaseManager.getUniqueConnectionFactoryConfig();
+      TableManipulation tm = UnitTestDatabaseManager.buildDefaultTableManipulation();
+      JdbcStringBasedCacheStoreConfig config = new JdbcStringBasedCacheStoreConfig(connectionFactoryConfig, tm);
+      JdbcStringBasedCacheStore store = new JdbcStringBasedCacheStore();
+      store.init(config, new CacheDelegate("batchPerf"), new TestObjectStreamMarshaller(false));
+      store.start();
+      return store;
+   }
+}
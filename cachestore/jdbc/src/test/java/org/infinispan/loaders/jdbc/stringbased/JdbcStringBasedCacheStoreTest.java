@@ -23,15 +23,25 @@
 package org.infinispan.loaders.jdbc.stringbased;
 
 import static org.easymock.classextension.EasyMock.*;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
 import org.infinispan.loaders.BaseCacheStoreTest;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.loaders.jdbc.TableManipulation;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactory;
 import org.infinispan.loaders.jdbc.connectionfactory.ConnectionFactoryConfig;
+import org.infinispan.loaders.modifications.Modification;
+import org.infinispan.loaders.modifications.Remove;
+import org.infinispan.loaders.modifications.Store;
 import org.infinispan.test.fwk.UnitTestDatabaseManager;
 import org.infinispan.CacheDelegate;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Tester class  for {@link org.infinispan.loaders.jdbc.stringbased.JdbcStringBasedCacheStore}.
  *
@@ -77,4 +87,24 @@ public class JdbcStringBasedCacheStoreTest extends BaseCacheStoreTest {
       stringBasedCacheStore.stop();
       verify(tableManipulation, connectionFactory);
    }
+
+   public void testBatchedModificationsAndMultiKeyLoad() throws Exception {
+      List<Modification> mods = new ArrayList<Modification>();
+      for (int i = 0; i < 250; i++) mods.add(new Store(InternalEntryFactory.create("k" + i, "v" + i)));
+      for (int i = 0; i < 250; i += 2) mods.add(new Remove("k" + i));
+      mods.add(new Store(InternalEntryFactory.create("k1", "updated")));
+      cs.prepare(mods, gtf.newGlobalTransaction(null, true), true);
+
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 250; i++) keys.add("k" + i);
+      keys.add("missing");
+      Set<InternalCacheEntry> loaded = ((JdbcStringBasedCacheStore) cs).loadAll(keys);
+      assert loaded.size() == 125 : "Expected 125 entries but got " + loaded.size();
+      for (InternalCacheEntry ice : loaded) {
+         int index = Integer.parseInt(((String) ice.getKey()).substring(1));
+         assert index % 2 == 1;
+         assert ice.getValue().equals(index == 1 ? "updated" : "v" + index);
+      }
+      assert cs.load("k2") == null;
+   }
 }
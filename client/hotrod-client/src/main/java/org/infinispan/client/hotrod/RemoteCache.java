@@ -47,10 +47,9 @@ import java.util.concurrent.TimeUnit;
  * is returned instead. E.g. {@link java.util.Map#put(Object, Object)} returns the previous value associated to the
  * supplied key. In case of RemoteCache, this returns null.
  * <p/>
- * <b>Synthetic operations</b>: aggregate operations are being implemented based on other Hot Rod operations. E.g. all
- * the {@link java.util.Map#putAll(java.util.Map)} is implemented through multiple individual puts. This means that the
- * these operations are not atomic and that they are costly, e.g. as the number of network round-trips is not one, but
- * the size of the added map. All these synthetic operations are documented as such.
+ * <b>Synthetic operations</b>: aggregate operations are being implemented based on other Hot Rod operations. These
+ * operations are not atomic and might be costly, e.g. as the number of network round-trips is not one, but the number
+ * of servers involved. All these synthetic operations are documented as such.
  * <p/>
  * <b>changing default behavior through {@link org.infinispan.client.hotrod.Flag}s</b>: it is possible to change the
  * default cache behaviour by using flags on an per invocation basis. E.g.
@@ -311,9 +310,9 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
    void putForExternalRead(K key, V value);
 
    /**
-    * Synthetic operation. The client iterates over the set of keys and calls put for each one of them. This results in
-    * operation not being atomic (if a failure happens after few puts it is not rolled back) and costly (for each key in
-    * the parameter map a remote call is performed).
+    * Synthetic operation. The client groups the entries by the server owning them and sends a single request to each of
+    * these servers, in parallel. The operation is not atomic: if a failure happens on one of the servers, the entries
+    * stored by the other ones are not rolled back.
     */
    @Override
    void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit unit);
@@ -383,7 +382,8 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
     *
     * @return the returned values depend on the configuration of the back-end infinispan servers. Read <a
     *         href="http://community.jboss.org/wiki/HotRodBulkGet-Design#Server_side">this</a> for more details. The
-    *         returned Map is unmodifiable.
+    *         returned Map is unmodifiable. As the whole cache is materialized in a single response, prefer {@link
+    *         #retrieveEntries(int)} for big caches.
     */
    Map<K, V> getBulk();
 
@@ -392,4 +392,38 @@ public interface RemoteCache<K, V> extends Cache<K, V> {
     * guarantee that "size" elements are returned( e.g. if the number of elements in the back-end server is smaller that "size")
     */
    Map<K, V> getBulk(int size);
+
+   /**
+    * Iterates over all the entries of the remote cache, pulling at most batchSize entries per request. Unlike {@link
+    * #getBulk()}, neither the servers nor the client hold the whole cache in memory. Every entry present during the
+    * whole iteration is returned; entries written or removed meanwhile may or may not be returned. Each entry is
+    * returned once, unless the topology changes or a server fails while iterating: entries returned before that may
+    * then be returned a second time.
+    * <p/>
+    * The iterator must be {@link CloseableIterator#close() closed} if it is not iterated until its end.
+    */
+   CloseableIterator<Map.Entry<K, V>> retrieveEntries(int batchSize);
+
+   /**
+    * Same as {@link #retrieveEntries(int)}, but if includeCacheStore is true, the entries that are only in the cache
+    * stores of the servers are returned as well. The cache loader API cannot page through the stored keys, so each
+    * server loads the keys, though not the values, of its whole cache store when the iteration reaches it.
+    */
+   CloseableIterator<Map.Entry<K, V>> retrieveEntries(int batchSize, boolean includeCacheStore);
+
+   /**
+    * Retrieves the values associated to several keys. The client groups the keys by the server owning them and sends a
+    * single request to each of these servers, in parallel.
+    *
+    * @return the keys that exist in the remote cache, mapped to their values
+    */
+   Map<K, V> getAll(Set<? extends K> keys);
+
+   /**
+    * Synthetic operation. Removes several keys, sending a single request to each of the servers owning them. Previously
+    * existing values are not returned, regardless of {@link Flag#FORCE_RETURN_VALUE}.
+    *
+    * @see #putAll(java.util.Map, long, java.util.concurrent.TimeUnit)
+    */
+   void removeAll(Set<? extends K> keys);
 }
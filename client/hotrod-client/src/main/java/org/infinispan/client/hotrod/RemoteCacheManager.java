@@ -26,6 +26,7 @@ import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.impl.ConfigurationProperties;
 import org.infinispan.client.hotrod.impl.operations.OperationsFactory;
 import org.infinispan.client.hotrod.impl.RemoteCacheImpl;
+import org.infinispan.client.hotrod.impl.nearcache.NearCache;
 import org.infinispan.client.hotrod.impl.operations.PingOperation.PingResult;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
@@ -77,7 +78,9 @@ import static org.infinispan.util.Util.getInstance;
  * <li><tt>infinispan.client.hotrod.force_return_values</tt>, default = false.  Whether or not to implicitly {@link org.infinispan.client.hotrod.Flag#FORCE_RETURN_VALUE} for all calls.</li>
  * <li><tt>infinispan.client.hotrod.tcp_no_delay</tt>, default = true.  Affects TCP NODELAY on the TCP stack.</li>
  * <li><tt>infinispan.client.hotrod.ping_on_startup</tt>, default = true.  If true, a ping request is sent to a back end server in order to fetch cluster's topology.</li>
- * <li><tt>infinispan.client.hotrod.transport_factory</tt>, default = org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory - controls which transport to use.  Currently only the TcpTransport is supported.</li>
+ * <li><tt>infinispan.client.hotrod.transport_factory</tt>, default = org.infinispan.client.hotrod.impl.transport.tcp.TcpTransportFactory - controls which transport to use.  The TcpTransportFactory uses a pool of blocking connections.
+ * Alternatively, org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory multiplexes any number of outstanding requests over a few non-blocking connections per server, so that async calls don't need a thread each.</li>
+ * <li><tt>infinispan.client.hotrod.nio.connections_per_server</tt>, default = 1.  If the NioTransportFactory is used, the number of connections opened to each server.</li>
  * <li><tt>infinispan.client.hotrod.marshaller</tt>, default = org.infinispan.marshall.jboss.GenericJBossMarshaller.  Allows you to specify a custom {@link org.infinispan.marshall.Marshaller} implementation to serialize and deserialize user objects. For portable serialization payloads, you should configure the marshaller to be {@link org.infinispan.client.hotrod.marshall.ApacheAvroMarshaller}</li>
  * <li><tt>infinispan.client.hotrod.async_executor_factory</tt>, default = org.infinispan.client.hotrod.impl.async.DefaultAsyncExecutorFactory.  Allows you to specify a custom asynchroous executor for async calls.</li>
  * <li><tt>infinispan.client.hotrod.default_executor_factory.pool_size</tt>, default = 10.  If the default executor is used, this configures the number of threads to initialize the executor with.</li>
@@ -359,6 +362,11 @@ public class RemoteCacheManager implements CacheContainer {
    @Override
    public void stop() {
       if (isStarted()) {
+         synchronized (cacheName2RemoteCache) {
+            for (RemoteCacheImpl remoteCache : cacheName2RemoteCache.values()) {
+               remoteCache.stop();
+            }
+         }
          transportFactory.destroy();
       }
       started = false;
@@ -387,6 +395,7 @@ public class RemoteCacheManager implements CacheContainer {
             // Default cache is always started, so don't do for it
             if (!cacheName.equals(CacheContainer.DEFAULT_CACHE_NAME) &&
                   ping(result) == PingResult.CACHE_DOES_NOT_EXIST) {
+               result.stop();
                return null;
             } else {
                cacheName2RemoteCache.put(cacheName, result);
@@ -413,7 +422,9 @@ public class RemoteCacheManager implements CacheContainer {
 
    private <K, V> void startRemoteCache(RemoteCacheImpl<K, V> result) {
       OperationsFactory operationsFactory = new OperationsFactory(transportFactory, result.getName(), topologyId, forceReturnValueDefault);
-      result.init(marshaller, asyncExecutorService, operationsFactory, config.getKeySizeEstimate(), config.getValueSizeEstimate());
+      int nearCacheMaxEntries = config.getNearCacheMaxEntries();
+      NearCache nearCache = nearCacheMaxEntries > 0 ? new NearCache(nearCacheMaxEntries, config.getNearCacheMaxAge()) : null;
+      result.init(marshaller, asyncExecutorService, operationsFactory, config.getKeySizeEstimate(), config.getValueSizeEstimate(), nearCache);
    }
 
    private void setMarshaller(Marshaller marshaller) {
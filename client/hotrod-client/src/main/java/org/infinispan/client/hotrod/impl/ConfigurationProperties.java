@@ -55,6 +55,9 @@ public class ConfigurationProperties {
    public static final String HASH_FUNCTION_PREFIX = "infinispan.client.hotrod.hash_function_impl";
    public static final String DEFAULT_EXECUTOR_FACTORY_QUEUE_SIZE ="infinispan.client.hotrod.default_executor_factory.queue_size";
    public static final String SO_TIMEOUT = "infinispan.client.hotrod.socket_timeout";
+   public static final String NIO_CONNECTIONS_PER_SERVER = "infinispan.client.hotrod.nio.connections_per_server";
+   public static final String NEAR_CACHE_MAX_ENTRIES = "infinispan.client.hotrod.near_cache.max_entries";
+   public static final String NEAR_CACHE_MAX_AGE = "infinispan.client.hotrod.near_cache.max_age";
 
    // defaults
 
@@ -62,6 +65,9 @@ public class ConfigurationProperties {
    private static final int DEFAULT_VALUE_SIZE = 512;
    private static final int DEFAULT_HOTROD_PORT = 11222;
    private static final int DEFAULT_SO_TIMEOUT = 60000;
+   private static final int DEFAULT_NIO_CONNECTIONS_PER_SERVER = 1;
+   private static final int DEFAULT_NEAR_CACHE_MAX_ENTRIES = 0;
+   private static final long DEFAULT_NEAR_CACHE_MAX_AGE = 60000;
 
    private final TypedProperties props;
 
@@ -142,4 +148,23 @@ public class ConfigurationProperties {
    public int getSoTimeout() {
       return props.getIntProperty(SO_TIMEOUT, DEFAULT_SO_TIMEOUT);
    }
+
+   public int getNioConnectionsPerServer() {
+      return props.getIntProperty(NIO_CONNECTIONS_PER_SERVER, DEFAULT_NIO_CONNECTIONS_PER_SERVER);
+   }
+
+   /**
+    * @return the number of entries each remote cache keeps in its near cache, or 0 if near caching is disabled
+    */
+   public int getNearCacheMaxEntries() {
+      return props.getIntProperty(NEAR_CACHE_MAX_ENTRIES, DEFAULT_NEAR_CACHE_MAX_ENTRIES);
+   }
+
+   /**
+    * @return milliseconds after which a near cached entry is read from the server again. Invalidations are not sent
+    *         for entries that expire on the server, so this bounds how long such an entry can be served stale.
+    */
+   public long getNearCacheMaxAge() {
+      return props.getLongProperty(NEAR_CACHE_MAX_AGE, DEFAULT_NEAR_CACHE_MAX_AGE);
+   }
 }
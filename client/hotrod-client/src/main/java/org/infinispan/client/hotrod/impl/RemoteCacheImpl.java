@@ -22,6 +22,7 @@
  */
 package org.infinispan.client.hotrod.impl;
 
+import org.infinispan.client.hotrod.CloseableIterator;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.RemoteCache;
 import org.infinispan.client.hotrod.RemoteCacheManager;
@@ -31,21 +32,34 @@ import org.infinispan.client.hotrod.VersionedValue;
 import org.infinispan.client.hotrod.exceptions.RemoteCacheManagerNotStartedException;
 import org.infinispan.client.hotrod.exceptions.TransportException;
 import org.infinispan.client.hotrod.impl.async.NotifyingFutureImpl;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.iteration.RemoteEntryIterator;
+import org.infinispan.client.hotrod.impl.nearcache.NearCache;
 import org.infinispan.client.hotrod.impl.operations.*;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.marshall.Marshaller;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.concurrent.FutureListener;
 import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Mircea.Markus@jboss.com
@@ -62,6 +76,7 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    private OperationsFactory operationsFactory;
    private int estimateKeySize;
    private int estimateValueSize;
+   private NearCache nearCache;
 
 
    public RemoteCacheImpl(RemoteCacheManager rcm, String name) {
@@ -73,11 +88,28 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    }
 
    public void init(Marshaller marshaller, ExecutorService executorService, OperationsFactory operationsFactory, int estimateKeySize, int estimateValueSize) {
+      init(marshaller, executorService, operationsFactory, estimateKeySize, estimateValueSize, null);
+   }
+
+   /**
+    * @param nearCache the near cache to serve reads from, or null if it is disabled
+    */
+   public void init(Marshaller marshaller, ExecutorService executorService, OperationsFactory operationsFactory, int estimateKeySize, int estimateValueSize, NearCache nearCache) {
       this.marshaller = marshaller;
       this.executorService = executorService;
       this.operationsFactory = operationsFactory;
       this.estimateKeySize = estimateKeySize;
       this.estimateValueSize = estimateValueSize;
+      if (this.nearCache != null) this.nearCache.stop();
+      this.nearCache = nearCache;
+      if (nearCache != null) nearCache.start(operationsFactory, name);
+   }
+
+   /**
+    * @return the near cache reads are served from, or null if it is disabled
+    */
+   public NearCache getNearCache() {
+      return nearCache;
    }
 
    public RemoteCacheManager getRemoteCacheManager() {
@@ -87,14 +119,24 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public boolean removeWithVersion(K key, long version) {
       assertRemoteCacheManagerIsStarted();
-      RemoveIfUnmodifiedOperation op = operationsFactory.newRemoveIfUnmodifiedOperation(obj2bytes(key, true), version);
-      VersionedOperationResponse response = (VersionedOperationResponse) op.execute();
-      return response.getCode().isUpdated();
+      byte[] keyBytes = obj2bytes(key, true);
+      RemoveIfUnmodifiedOperation op = operationsFactory.newRemoveIfUnmodifiedOperation(keyBytes, version);
+      try {
+         VersionedOperationResponse response = (VersionedOperationResponse) op.execute();
+         return response.getCode().isUpdated();
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
    }
 
    @Override
    public NotifyingFuture<Boolean> removeWithVersionAsync(final K key, final long version) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         byte[] keyBytes = obj2bytes(key, true);
+         RemoveIfUnmodifiedOperation op = operationsFactory.newRemoveIfUnmodifiedOperation(keyBytes, version);
+         return executeAsync(op, new VersionedResponseConverter(), keyBytes);
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -111,14 +153,24 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public boolean replaceWithVersion(K key, V newValue, long version, int lifespanSeconds, int maxIdleTimeSeconds) {
       assertRemoteCacheManagerIsStarted();
-      ReplaceIfUnmodifiedOperation op = operationsFactory.newReplaceIfUnmodifiedOperation(obj2bytes(key, true), obj2bytes(newValue, false), lifespanSeconds, maxIdleTimeSeconds, version);
-      VersionedOperationResponse response = (VersionedOperationResponse) op.execute();
-      return response.getCode().isUpdated();
+      byte[] keyBytes = obj2bytes(key, true);
+      ReplaceIfUnmodifiedOperation op = operationsFactory.newReplaceIfUnmodifiedOperation(keyBytes, obj2bytes(newValue, false), lifespanSeconds, maxIdleTimeSeconds, version);
+      try {
+         VersionedOperationResponse response = (VersionedOperationResponse) op.execute();
+         return response.getCode().isUpdated();
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
    }
 
    @Override
    public NotifyingFuture<Boolean> replaceWithVersionAsync(final K key, final V newValue, final long version, final int lifespanSeconds, final int maxIdleSeconds) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         byte[] keyBytes = obj2bytes(key, true);
+         ReplaceIfUnmodifiedOperation op = operationsFactory.newReplaceIfUnmodifiedOperation(keyBytes, obj2bytes(newValue, false), lifespanSeconds, maxIdleSeconds, version);
+         return executeAsync(op, new VersionedResponseConverter(), keyBytes);
+      }
       final NotifyingFutureImpl<Boolean> result = new NotifyingFutureImpl<Boolean>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -143,14 +195,21 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public void putAll(Map<? extends K, ? extends V> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
       assertRemoteCacheManagerIsStarted();
-      for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
-         put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+      Map<byte[], byte[]> entries = entries2bytes(map);
+      List<PutAllOperation> ops = operationsFactory.newPutAllOperations(entries, toSeconds(lifespan, lifespanUnit), toSeconds(maxIdleTime, maxIdleTimeUnit));
+      try {
+         RetryOnFailureOperation.executeInParallel(ops);
+      } finally {
+         invalidateNearCache(entries.keySet());
       }
    }
 
    @Override
    public NotifyingFuture<Void> putAllAsync(final Map<? extends K, ? extends V> data, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         return putAllAsync(data, toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+      }
       final NotifyingFutureImpl<Void> result = new NotifyingFutureImpl<Void>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -197,8 +256,14 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       if (log.isTraceEnabled()) {
          log.tracef("About to add (K,V): (%s, %s) lifespanSecs:%d, maxIdleSecs:%d", key, value, lifespanSecs, maxIdleSecs);
       }
-      PutOperation op = operationsFactory.newPutKeyValueOperation(obj2bytes(key, true), obj2bytes(value, false), lifespanSecs, maxIdleSecs);
-      byte[] result = (byte[]) op.execute();
+      byte[] keyBytes = obj2bytes(key, true);
+      PutOperation op = operationsFactory.newPutKeyValueOperation(keyBytes, obj2bytes(value, false), lifespanSecs, maxIdleSecs);
+      byte[] result;
+      try {
+         result = (byte[]) op.execute();
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
       return (V) bytes2obj(result);
    }
 
@@ -208,8 +273,14 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       assertRemoteCacheManagerIsStarted();
       int lifespanSecs = toSeconds(lifespan, lifespanUnit);
       int maxIdleSecs = toSeconds(maxIdleTime, maxIdleTimeUnit);
-      PutIfAbsentOperation op = operationsFactory.newPutIfAbsentOperation(obj2bytes(key, true), obj2bytes(value, false), lifespanSecs, maxIdleSecs);
-      byte[] bytes = (byte[]) op.execute();
+      byte[] keyBytes = obj2bytes(key, true);
+      PutIfAbsentOperation op = operationsFactory.newPutIfAbsentOperation(keyBytes, obj2bytes(value, false), lifespanSecs, maxIdleSecs);
+      byte[] bytes;
+      try {
+         bytes = (byte[]) op.execute();
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
       return (V) bytes2obj(bytes);
    }
 
@@ -218,14 +289,25 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       assertRemoteCacheManagerIsStarted();
       int lifespanSecs = toSeconds(lifespan, lifespanUnit);
       int maxIdleSecs = toSeconds(maxIdleTime, maxIdleTimeUnit);
-      ReplaceOperation op = operationsFactory.newReplaceOperation(obj2bytes(key, true), obj2bytes(value, false), lifespanSecs, maxIdleSecs);
-      byte[] bytes = (byte[]) op.execute();
+      byte[] keyBytes = obj2bytes(key, true);
+      ReplaceOperation op = operationsFactory.newReplaceOperation(keyBytes, obj2bytes(value, false), lifespanSecs, maxIdleSecs);
+      byte[] bytes;
+      try {
+         bytes = (byte[]) op.execute();
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
       return (V) bytes2obj(bytes);
    }
 
    @Override
    public NotifyingFuture<V> putAsync(final K key, final V value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         byte[] keyBytes = obj2bytes(key, true);
+         PutOperation op = operationsFactory.newPutKeyValueOperation(keyBytes, obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+         return executeAsync(op, new ValueResponseConverter(), keyBytes);
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -242,6 +324,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<Void> clearAsync() {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         return executeAsync(operationsFactory.newClearOperation(), new VoidResponseConverter(), null);
+      }
       final NotifyingFutureImpl<Void> result = new NotifyingFutureImpl<Void>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -258,6 +343,11 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> putIfAbsentAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         byte[] keyBytes = obj2bytes(key, true);
+         PutIfAbsentOperation op = operationsFactory.newPutIfAbsentOperation(keyBytes, obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+         return executeAsync(op, new ValueResponseConverter(), keyBytes);
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -274,6 +364,10 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> removeAsync(final Object key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         byte[] keyBytes = obj2bytes(key, true);
+         return executeAsync(operationsFactory.newRemoveOperation(keyBytes), new ValueResponseConverter(), keyBytes);
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -290,6 +384,11 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> replaceAsync(final K key,final V value,final long lifespan,final TimeUnit lifespanUnit,final long maxIdle,final TimeUnit maxIdleUnit) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         byte[] keyBytes = obj2bytes(key, true);
+         ReplaceOperation op = operationsFactory.newReplaceOperation(keyBytes, obj2bytes(value, false), toSeconds(lifespan, lifespanUnit), toSeconds(maxIdle, maxIdleUnit));
+         return executeAsync(op, new ValueResponseConverter(), keyBytes);
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -314,8 +413,7 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    public V get(Object key) {
       assertRemoteCacheManagerIsStarted();
       byte[] keyBytes = obj2bytes(key, true);
-      GetOperation gco = operationsFactory.newGetKeyOperation(keyBytes);
-      byte[] bytes = (byte[]) gco.execute();
+      byte[] bytes = nearCache == null ? getRemote(keyBytes) : getNearCached(keyBytes);
       V result = (V) bytes2obj(bytes);
       if (log.isTraceEnabled()) {
          log.tracef("For key(%s) returning %s", key, result);
@@ -323,6 +421,24 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return result;
    }
 
+   private byte[] getRemote(byte[] keyBytes) {
+      GetOperation gco = operationsFactory.newGetKeyOperation(keyBytes);
+      return (byte[]) gco.execute();
+   }
+
+   private byte[] getNearCached(byte[] keyBytes) {
+      ByteArrayKey nearKey = new ByteArrayKey(keyBytes);
+      byte[] bytes = nearCache.get(nearKey);
+      if (bytes != null) return bytes;
+      Object read = nearCache.startRead(nearKey);
+      try {
+         bytes = getRemote(keyBytes);
+      } finally {
+         nearCache.endRead(nearKey, read, bytes);
+      }
+      return bytes;
+   }
+
    @Override
    public Map<K, V> getBulk() {
       return getBulk(0);
@@ -342,11 +458,71 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return Collections.unmodifiableMap(toReturn);
    }
 
+   @Override
+   public CloseableIterator<Map.Entry<K, V>> retrieveEntries(int batchSize) {
+      return retrieveEntries(batchSize, false);
+   }
+
+   @Override
+   public CloseableIterator<Map.Entry<K, V>> retrieveEntries(int batchSize, boolean includeCacheStore) {
+      assertRemoteCacheManagerIsStarted();
+      return new RemoteEntryIterator<Map.Entry<K, V>>(operationsFactory, batchSize, includeCacheStore) {
+         @Override
+         protected Map.Entry<K, V> toEntry(byte[] key, byte[] value) {
+            return new AbstractMap.SimpleImmutableEntry<K, V>((K) bytes2obj(key), (V) bytes2obj(value));
+         }
+      };
+   }
+
+   @Override
+   public Map<K, V> getAll(Set<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      // the server returns its own copy of the keys, so match them by content rather than unmarshalling them
+      Map<ByteArrayKey, K> keysByBytes = new HashMap<ByteArrayKey, K>();
+      List<byte[]> keyBytes = new ArrayList<byte[]>(keys.size());
+      for (K key : keys) {
+         byte[] bytes = obj2bytes(key, true);
+         keysByBytes.put(new ByteArrayKey(bytes), key);
+         keyBytes.add(bytes);
+      }
+      List<GetAllOperation> ops = operationsFactory.newGetAllOperations(keyBytes);
+      Map<K, V> result = new HashMap<K, V>();
+      for (Object response : RetryOnFailureOperation.executeInParallel(ops)) {
+         for (Map.Entry<byte[], byte[]> entry : ((Map<byte[], byte[]>) response).entrySet()) {
+            result.put(keysByBytes.get(new ByteArrayKey(entry.getKey())), (V) bytes2obj(entry.getValue()));
+         }
+      }
+      if (log.isTraceEnabled()) {
+         log.tracef("For keys(%s) returning %s", keys, result);
+      }
+      return result;
+   }
+
+   @Override
+   public void removeAll(Set<? extends K> keys) {
+      assertRemoteCacheManagerIsStarted();
+      List<byte[]> keyBytes = new ArrayList<byte[]>(keys.size());
+      for (K key : keys) {
+         keyBytes.add(obj2bytes(key, true));
+      }
+      try {
+         RetryOnFailureOperation.executeInParallel(operationsFactory.newRemoveAllOperations(keyBytes));
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
+   }
+
    @Override
    public V remove(Object key) {
       assertRemoteCacheManagerIsStarted();
-      RemoveOperation removeOperation = operationsFactory.newRemoveOperation(obj2bytes(key, true));
-      byte[] existingValue = (byte[]) removeOperation.execute();
+      byte[] keyBytes = obj2bytes(key, true);
+      RemoveOperation removeOperation = operationsFactory.newRemoveOperation(keyBytes);
+      byte[] existingValue;
+      try {
+         existingValue = (byte[]) removeOperation.execute();
+      } finally {
+         invalidateNearCache(keyBytes);
+      }
       return (V) bytes2obj(existingValue);
    }
 
@@ -354,7 +530,11 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    public void clear() {
       assertRemoteCacheManagerIsStarted();
       ClearOperation op = operationsFactory.newClearOperation() ;
-      op.execute();
+      try {
+         op.execute();
+      } finally {
+         if (nearCache != null) nearCache.clear();
+      }
    }
 
    @Override
@@ -367,8 +547,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public void stop() {
       if (log.isDebugEnabled()) {
-         log.debugf("Stop called, nothing to do here(%s)", getName());
+         log.debugf("Stop called(%s)", getName());
       }
+      if (nearCache != null) nearCache.stop();
    }
 
    @Override
@@ -390,6 +571,9 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
    @Override
    public NotifyingFuture<V> getAsync(final K key) {
       assertRemoteCacheManagerIsStarted();
+      if (operationsFactory.supportsAsyncOperations()) {
+         return executeAsync(operationsFactory.newGetKeyOperation(obj2bytes(key, true)), new ValueResponseConverter());
+      }
       final NotifyingFutureImpl<V> result = new NotifyingFutureImpl<V>();
       Future future = executorService.submit(new Callable() {
          @Override
@@ -403,6 +587,79 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return result;
    }
 
+   private NotifyingFuture<Void> putAllAsync(Map<? extends K, ? extends V> data, int lifespanSecs, int maxIdleSecs) {
+      final Map<byte[], byte[]> entries = entries2bytes(data);
+      List<PutAllOperation> ops = operationsFactory.newPutAllOperations(entries, lifespanSecs, maxIdleSecs);
+      final ResponseFuture<Void> result = new ResponseFuture<Void>();
+      if (ops.isEmpty()) {
+         result.complete(null);
+         return result;
+      }
+      final AtomicInteger remaining = new AtomicInteger(ops.size());
+      FutureListener<Object> listener = new FutureListener<Object>() {
+         @Override
+         public void futureDone(Future<Object> future) {
+            try {
+               future.get();
+               if (remaining.decrementAndGet() == 0) {
+                  invalidateNearCache(entries.keySet());
+                  result.complete(null);
+               }
+            } catch (ExecutionException e) {
+               invalidateNearCache(entries.keySet());
+               result.fail(e.getCause());
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               result.fail(e);
+            }
+         }
+      };
+      for (PutAllOperation op : ops) {
+         op.executeAsync().attachListener(listener);
+      }
+      return result;
+   }
+
+   /**
+    * Sends the operation without blocking and converts its result once the response arrives.
+    */
+   private <T> NotifyingFuture<T> executeAsync(RetryOnFailureOperation op, ResponseConverter<T> converter) {
+      op.executeAsync().attachListener(converter);
+      return converter.result;
+   }
+
+   /**
+    * Like {@link #executeAsync(RetryOnFailureOperation, ResponseConverter)}, for an operation that modifies the key, or
+    * all the keys if null. The near cache is invalidated before the returned future completes.
+    */
+   private <T> NotifyingFuture<T> executeAsync(RetryOnFailureOperation op, ResponseConverter<T> converter, final byte[] keyBytes) {
+      NotifyingFuture<Object> future = op.executeAsync();
+      if (nearCache != null) {
+         future.attachListener(new FutureListener<Object>() {
+            @Override
+            public void futureDone(Future<Object> future) {
+               if (keyBytes == null) nearCache.clear();
+               else invalidateNearCache(keyBytes);
+            }
+         });
+      }
+      future.attachListener(converter);
+      return converter.result;
+   }
+
+   /**
+    * Drops a key modified by this client, whose invalidation may still be on its way from the server.
+    */
+   private void invalidateNearCache(byte[] keyBytes) {
+      if (nearCache != null) nearCache.invalidate(new ByteArrayKey(keyBytes));
+   }
+
+   private void invalidateNearCache(Collection<byte[]> keys) {
+      if (nearCache != null) {
+         for (byte[] keyBytes : keys) nearCache.invalidate(new ByteArrayKey(keyBytes));
+      }
+   }
+
    public PingOperation.PingResult ping(Transport transport) {
       return operationsFactory.newPingOperation(transport).execute();
    }
@@ -418,6 +675,15 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       }
    }
 
+   private Map<byte[], byte[]> entries2bytes(Map<? extends K, ? extends V> map) {
+      // byte arrays hash by identity, which is what OperationsFactory expects
+      Map<byte[], byte[]> entries = new LinkedHashMap<byte[], byte[]>();
+      for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+         entries.put(obj2bytes(entry.getKey(), true), obj2bytes(entry.getValue(), false));
+      }
+      return entries;
+   }
+
    private Object bytes2obj(byte[] bytes) {
       if (bytes == null) return null;
       try {
@@ -438,6 +704,51 @@ public class RemoteCacheImpl<K, V> extends RemoteCacheSupport<K, V> {
       return (int) timeUnit.toSeconds(duration);
    }
 
+   /**
+    * Completes a future with the converted result of an asynchronously executed operation. Runs in the thread that
+    * received the response, so conversions should be cheap.
+    */
+   private abstract static class ResponseConverter<T> implements FutureListener<Object> {
+      final ResponseFuture<T> result = new ResponseFuture<T>();
+
+      @Override
+      public void futureDone(Future<Object> future) {
+         try {
+            result.complete(convert(future.get()));
+         } catch (ExecutionException e) {
+            result.fail(e.getCause());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.fail(e);
+         } catch (RuntimeException e) {
+            result.fail(e);
+         }
+      }
+
+      protected abstract T convert(Object response);
+   }
+
+   private class ValueResponseConverter extends ResponseConverter<V> {
+      @Override
+      protected V convert(Object response) {
+         return (V) bytes2obj((byte[]) response);
+      }
+   }
+
+   private static class VersionedResponseConverter extends ResponseConverter<Boolean> {
+      @Override
+      protected Boolean convert(Object response) {
+         return ((VersionedOperationResponse) response).getCode().isUpdated();
+      }
+   }
+
+   private static class VoidResponseConverter extends ResponseConverter<Void> {
+      @Override
+      protected Void convert(Object response) {
+         return null;
+      }
+   }
+
    private void assertRemoteCacheManagerIsStarted() {
       if (!remoteCacheManager.isStarted()) {
          String message = "Cannot perform operations on a cache associated with an unstarted RemoteCacheManager. Use RemoteCacheManager.start before using the remote cache.";
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.async;
+
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Notifying future that is completed explicitly, by whoever receives the outcome of an asynchronous call, rather than
+ * by a thread blocked on the call. Listeners are invoked by the completing thread, or straight away if they are
+ * attached to a future that is already done.
+ *
+ * @since 5.0
+ */
+public class ResponseFuture<T> implements NotifyingFuture<T> {
+
+   private static final Log log = LogFactory.getLog(ResponseFuture.class, Log.class);
+
+   private final CountDownLatch done = new CountDownLatch(1);
+   private List<FutureListener<T>> listeners = new LinkedList<FutureListener<T>>();
+   private T value;
+   private Throwable failure;
+   private boolean cancelled;
+
+   /**
+    * @return true if the future was completed by this call, false if it had already been done
+    */
+   public boolean complete(T value) {
+      List<FutureListener<T>> toNotify;
+      synchronized (this) {
+         if (listeners == null) return false;
+         this.value = value;
+         toNotify = markDone();
+      }
+      notifyListeners(toNotify);
+      return true;
+   }
+
+   /**
+    * @return true if the future was completed by this call, false if it had already been done
+    */
+   public boolean fail(Throwable failure) {
+      List<FutureListener<T>> toNotify;
+      synchronized (this) {
+         if (listeners == null) return false;
+         this.failure = failure;
+         toNotify = markDone();
+      }
+      notifyListeners(toNotify);
+      return true;
+   }
+
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      List<FutureListener<T>> toNotify;
+      synchronized (this) {
+         if (listeners == null) return false;
+         cancelled = true;
+         toNotify = markDone();
+      }
+      notifyListeners(toNotify);
+      return true;
+   }
+
+   @Override
+   public NotifyingFuture<T> attachListener(FutureListener<T> listener) {
+      synchronized (this) {
+         if (listeners != null) {
+            listeners.add(listener);
+            return this;
+         }
+      }
+      listener.futureDone(this);
+      return this;
+   }
+
+   @Override
+   public synchronized boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return done.getCount() == 0;
+   }
+
+   @Override
+   public T get() throws InterruptedException, ExecutionException {
+      done.await();
+      return outcome();
+   }
+
+   @Override
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!done.await(timeout, unit))
+         throw new TimeoutException();
+      return outcome();
+   }
+
+   private synchronized T outcome() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (failure != null) throw new ExecutionException(failure);
+      return value;
+   }
+
+   private List<FutureListener<T>> markDone() {
+      List<FutureListener<T>> toNotify = listeners;
+      listeners = null;
+      done.countDown();
+      return toNotify;
+   }
+
+   private void notifyListeners(List<FutureListener<T>> toNotify) {
+      for (FutureListener<T> listener : toNotify) {
+         try {
+            listener.futureDone(this);
+         } catch (RuntimeException e) {
+            log.errorNotifyingFutureListener(listener, e);
+         }
+      }
+   }
+}
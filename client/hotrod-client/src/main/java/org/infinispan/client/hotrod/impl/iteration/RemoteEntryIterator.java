@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.iteration;
+
+import org.infinispan.client.hotrod.CloseableIterator;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.operations.IterationNextOperation;
+import org.infinispan.client.hotrod.impl.operations.OperationsFactory;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Iterates over the entries of a remote cache, pulling them in batches from one server at a time, so that neither the
+ * servers nor the client ever hold the whole data set.
+ * <p/>
+ * When the client knows the consistent hash, every server only returns the entries it is the primary owner of. If the
+ * topology changes, or a server fails, while iterating, the iterator falls back to a pass over all the entries of all
+ * the current servers. In that pass each key is returned once, although it is found on all of its owners; an entry
+ * survives as long as one of its owners does. The keys returned are only tracked from the start of that pass, so that
+ * a stable iteration does not hold every key it has returned: entries returned before it may be returned again.
+ * <p/>
+ * Not thread safe.
+ *
+ * @since 5.0
+ */
+public abstract class RemoteEntryIterator<E> implements CloseableIterator<E> {
+
+   private static final Log log = LogFactory.getLog(RemoteEntryIterator.class, Log.class);
+
+   private final OperationsFactory operationsFactory;
+   private final TransportFactory transportFactory;
+   private final int batchSize;
+   private final boolean includeCacheStore;
+   private final Queue<E> batch = new LinkedList<E>();
+   private Set<ByteArrayKey> returnedKeys;
+
+   private Iterator<InetSocketAddress> pendingServers;
+   private boolean primaryOwnedOnly;
+   private int passTopologyId;
+   private InetSocketAddress server;
+   private String iterationId;
+   private boolean exhausted;
+
+   public RemoteEntryIterator(OperationsFactory operationsFactory, int batchSize, boolean includeCacheStore) {
+      if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+      this.operationsFactory = operationsFactory;
+      this.transportFactory = operationsFactory.getTransportFactory();
+      this.batchSize = batchSize;
+      this.includeCacheStore = includeCacheStore;
+      startPass(transportFactory.getConsistentHash() != null);
+   }
+
+   /**
+    * Converts an entry received from the server to the element returned to the user.
+    */
+   protected abstract E toEntry(byte[] key, byte[] value);
+
+   @Override
+   public boolean hasNext() {
+      while (batch.isEmpty() && !exhausted) {
+         fetch();
+      }
+      return !batch.isEmpty();
+   }
+
+   @Override
+   public E next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return batch.poll();
+   }
+
+   @Override
+   public void remove() {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void close() {
+      endIteration();
+      exhausted = true;
+      batch.clear();
+   }
+
+   private void startPass(boolean primaryOwnedOnly) {
+      this.primaryOwnedOnly = primaryOwnedOnly;
+      // primary owners return disjoint sets of keys, whereas a pass over all the entries finds each key on every owner
+      if (!primaryOwnedOnly && returnedKeys == null) returnedKeys = new HashSet<ByteArrayKey>();
+      this.passTopologyId = operationsFactory.getTopologyId().get();
+      this.pendingServers = new ArrayList<InetSocketAddress>(transportFactory.getServers()).iterator();
+   }
+
+   private void fetch() {
+      if (iterationId == null) {
+         if (!pendingServers.hasNext()) {
+            exhausted = true;
+            return;
+         }
+         server = pendingServers.next();
+      }
+      Transport transport = null;
+      try {
+         transport = transportFactory.getTransport(server);
+         if (iterationId == null) {
+            iterationId = operationsFactory.newIterationStartOperation(transport, primaryOwnedOnly, includeCacheStore).execute();
+         }
+         IterationNextOperation.Batch next = operationsFactory.newIterationNextOperation(transport, iterationId, batchSize).execute();
+         if (next == null) {
+            // e.g. the iteration was idle for too long and the server discarded it
+            iterationId = null;
+            fallBack("iteration lost");
+            return;
+         }
+         if (next.isFinished()) iterationId = null;
+         addToBatch(next.getKeys(), next.getValues());
+      } catch (TransportException te) {
+         iterationId = null;
+         fallBack(te.getMessage());
+         return;
+      } finally {
+         if (transport != null) transportFactory.releaseTransport(transport);
+      }
+      if (primaryOwnedOnly && operationsFactory.getTopologyId().get() != passTopologyId) {
+         endIteration();
+         fallBack("topology changed");
+      }
+   }
+
+   private void addToBatch(List<byte[]> keys, List<byte[]> values) {
+      for (int i = 0; i < keys.size(); i++) {
+         byte[] key = keys.get(i);
+         if (returnedKeys == null || returnedKeys.add(new ByteArrayKey(key))) {
+            batch.add(toEntry(key, values.get(i)));
+         }
+      }
+   }
+
+   private void fallBack(String reason) {
+      if (primaryOwnedOnly) {
+         if (log.isDebugEnabled()) {
+            log.debugf("Iterating over all the entries of all the servers after %s on %s", reason, server);
+         }
+         startPass(false);
+      } else if (log.isDebugEnabled()) {
+         // the entries of this server are also found on the other owners, which this pass visits as well
+         log.debugf("Skipping server %s after %s", server, reason);
+      }
+   }
+
+   private void endIteration() {
+      if (iterationId == null) return;
+      String id = iterationId;
+      iterationId = null;
+      Transport transport = null;
+      try {
+         transport = transportFactory.getTransport(server);
+         operationsFactory.newIterationEndOperation(transport, id).execute();
+      } catch (TransportException te) {
+         // the server discards idle iterations anyway
+         if (log.isDebugEnabled()) {
+            log.debugf("Could not end iteration %s on %s: %s", id, server, te.getMessage());
+         }
+      } finally {
+         if (transport != null) transportFactory.releaseTransport(transport);
+      }
+   }
+}
@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.nearcache;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.operations.AddNearCacheListenerOperation;
+import org.infinispan.client.hotrod.impl.operations.OperationsFactory;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+import org.infinispan.client.hotrod.impl.transport.tcp.TcpTransport;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Receives the invalidations of a cache from every server and applies them to a {@link NearCache}. Each server pushes
+ * its invalidations over a dedicated connection, read by a thread of its own, which connects and registers again
+ * whenever the connection fails. A supervising thread follows the servers the transport factory knows about and
+ * activates the near cache once all of them have registered the connections.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class InvalidationListener {
+
+   private static final Log log = LogFactory.getLog(InvalidationListener.class, Log.class);
+
+   /**
+    * Milliseconds between checks for added or removed servers, and between attempts to reconnect to a server.
+    */
+   static final long RETRY_INTERVAL = 1000;
+
+   private final NearCache nearCache;
+   private final OperationsFactory operationsFactory;
+   private final TransportFactory transportFactory;
+   private final String cacheName;
+   private final Map<InetSocketAddress, ServerListener> listeners = new HashMap<InetSocketAddress, ServerListener>();
+   private final Thread supervisor;
+   private volatile boolean running;
+
+   public InvalidationListener(NearCache nearCache, OperationsFactory operationsFactory, String cacheName) {
+      this.nearCache = nearCache;
+      this.operationsFactory = operationsFactory;
+      this.transportFactory = operationsFactory.getTransportFactory();
+      this.cacheName = cacheName;
+      this.supervisor = new Thread(new Runnable() {
+         @Override
+         public void run() {
+            supervise();
+         }
+      }, "NearCacheListener-" + cacheName);
+      supervisor.setDaemon(true);
+   }
+
+   public void start() {
+      running = true;
+      supervisor.start();
+   }
+
+   public void stop() {
+      running = false;
+      supervisor.interrupt();
+      synchronized (this) {
+         for (ServerListener listener : listeners.values()) listener.close();
+         listeners.clear();
+      }
+   }
+
+   private void supervise() {
+      while (running) {
+         synchronized (this) {
+            updateServers();
+            try {
+               wait(RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+               return;
+            }
+         }
+      }
+   }
+
+   private void updateServers() {
+      Set<InetSocketAddress> servers = new HashSet<InetSocketAddress>(transportFactory.getServers());
+      for (Iterator<Map.Entry<InetSocketAddress, ServerListener>> it = listeners.entrySet().iterator(); it.hasNext();) {
+         Map.Entry<InetSocketAddress, ServerListener> entry = it.next();
+         if (!servers.contains(entry.getKey())) {
+            entry.getValue().close();
+            it.remove();
+         }
+      }
+      for (InetSocketAddress server : servers) {
+         if (!listeners.containsKey(server)) {
+            // Invalidations this server sent since it joined have been missed
+            nearCache.deactivate();
+            ServerListener listener = new ServerListener(server);
+            listeners.put(server, listener);
+            listener.start();
+         }
+      }
+      boolean allRegistered = !listeners.isEmpty();
+      for (ServerListener listener : listeners.values()) allRegistered &= listener.registered;
+      if (allRegistered && !nearCache.isActive()) nearCache.activate();
+   }
+
+   private synchronized void listenerRegistered() {
+      notifyAll();
+   }
+
+   private synchronized void listenerFailed(ServerListener listener, Exception e) {
+      listener.registered = false;
+      if (nearCache.isActive()) log.nearCacheListenerFailed(cacheName, listener.server, e);
+      nearCache.deactivate();
+   }
+
+   private class ServerListener extends Thread {
+      final InetSocketAddress server;
+      volatile boolean registered;
+      private volatile boolean closed;
+      private volatile TcpTransport transport;
+
+      ServerListener(InetSocketAddress server) {
+         super("NearCacheListener-" + cacheName + "-" + server);
+         setDaemon(true);
+         this.server = server;
+      }
+
+      @Override
+      public void run() {
+         while (running && !closed) {
+            try {
+               transport = new TcpTransport(server, transportFactory);
+               if (closed) {
+                  destroyTransport();
+                  return;
+               }
+               AddNearCacheListenerOperation op = operationsFactory.newAddNearCacheListenerOperation(transport);
+               long messageId = op.execute();
+               registered = true;
+               listenerRegistered();
+               while (true) {
+                  try {
+                     nearCache.invalidate(new ByteArrayKey(op.readInvalidatedKey(messageId)));
+                  } catch (TransportException e) {
+                     // An idle connection is not a failed one
+                     if (!(e.getCause() instanceof SocketTimeoutException) || closed) throw e;
+                  }
+               }
+            } catch (Exception e) {
+               if (!running || closed) return;
+               listenerFailed(this, e);
+               destroyTransport();
+               try {
+                  Thread.sleep(RETRY_INTERVAL);
+               } catch (InterruptedException ie) {
+                  return;
+               }
+            }
+         }
+      }
+
+      void close() {
+         closed = true;
+         destroyTransport();
+      }
+
+      private void destroyTransport() {
+         TcpTransport t = transport;
+         if (t != null) t.destroy();
+      }
+   }
+}
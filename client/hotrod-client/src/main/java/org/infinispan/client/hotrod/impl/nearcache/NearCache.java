@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.nearcache;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.impl.operations.OperationsFactory;
+import org.infinispan.util.ByteArrayKey;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded, least recently used, client side copy of the values read from a remote cache, keyed by the marshalled keys.
+ * The copy is kept coherent by the invalidations the servers push to an {@link InvalidationListener}, and the near
+ * cache is only used while the listener is registered with every server: whenever invalidations may have been lost it
+ * is cleared and bypassed until the listener has registered again.
+ * <p/>
+ * A value read from a server is only cached if no invalidation of its key arrived while it was being read, as the
+ * value could predate the modification the invalidation was sent for. Entries are read from the server again once
+ * older than the maximum age, since the servers do not send invalidations for entries that expire.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class NearCache {
+
+   private final BoundedConcurrentHashMap<ByteArrayKey, Entry> entries;
+   private final ConcurrentMap<ByteArrayKey, Read> pendingReads = new ConcurrentHashMap<ByteArrayKey, Read>();
+   private final long maxAge;
+   private volatile InvalidationListener listener;
+   private volatile boolean active;
+   private volatile int epoch;
+
+   public NearCache(int maxEntries, long maxAge) {
+      this.entries = new BoundedConcurrentHashMap<ByteArrayKey, Entry>(maxEntries);
+      this.maxAge = maxAge;
+   }
+
+   public void start(OperationsFactory operationsFactory, String cacheName) {
+      listener = new InvalidationListener(this, operationsFactory, cacheName);
+      listener.start();
+   }
+
+   public void stop() {
+      if (listener != null) listener.stop();
+      deactivate();
+   }
+
+   /**
+    * @return the value of the key, or null if it is not cached or the near cache can not be used at the moment
+    */
+   public byte[] get(ByteArrayKey key) {
+      if (!active) return null;
+      Entry entry = entries.get(key);
+      if (entry == null) return null;
+      if (System.currentTimeMillis() - entry.created > maxAge) {
+         entries.remove(key, entry);
+         return null;
+      }
+      return entry.value;
+   }
+
+   /**
+    * Called before reading the key from the server.
+    *
+    * @return the token to pass to {@link #endRead(ByteArrayKey, Object, byte[])}, or null if the value read must not
+    *         be cached
+    */
+   public Object startRead(ByteArrayKey key) {
+      if (!active) return null;
+      Read read = new Read(epoch);
+      pendingReads.put(key, read);
+      return read;
+   }
+
+   /**
+    * Caches the value read from the server, unless the key was invalidated or the near cache deactivated meanwhile.
+    * Must be called, with a null value, if the read failed.
+    */
+   public void endRead(ByteArrayKey key, Object token, byte[] value) {
+      if (token == null) return;
+      Read read = (Read) token;
+      if (value == null) {
+         pendingReads.remove(key, read);
+         return;
+      }
+      Entry entry = new Entry(value);
+      entries.put(key, entry);
+      // Checked after caching so that a concurrent invalidate() or deactivate() either fails this check or removes
+      // the entry itself
+      if (!pendingReads.remove(key, read) || read.epoch != epoch || !active)
+         entries.remove(key, entry);
+   }
+
+   public void invalidate(ByteArrayKey key) {
+      pendingReads.remove(key);
+      entries.remove(key);
+   }
+
+   void activate() {
+      active = true;
+   }
+
+   synchronized void deactivate() {
+      active = false;
+      clear();
+   }
+
+   /**
+    * Drops all entries, including the values being read at the moment.
+    */
+   public synchronized void clear() {
+      epoch++;
+      pendingReads.clear();
+      entries.clear();
+   }
+
+   public boolean isActive() {
+      return active;
+   }
+
+   public int size() {
+      return entries.size();
+   }
+
+   private static class Entry {
+      final byte[] value;
+      final long created = System.currentTimeMillis();
+
+      Entry(byte[] value) {
+         this.value = value;
+      }
+   }
+
+   private static class Read {
+      final int epoch;
+
+      Read(int epoch) {
+         this.epoch = epoch;
+      }
+   }
+}
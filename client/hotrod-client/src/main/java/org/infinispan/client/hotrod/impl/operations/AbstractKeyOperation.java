@@ -60,14 +60,11 @@ public abstract class AbstractKeyOperation extends RetryOnFailureOperation {
       }
    }
 
-   protected short sendKeyOperation(byte[] key, Transport transport, byte opCode, byte opRespCode) {
-      // 1) write [header][key length][key]
+   protected long writeKeyRequest(Transport transport, byte opCode) {
+      // [header][key length][key]
       long messageId = writeHeader(transport, opCode);
       transport.writeArray(key);
-      transport.flush();
-
-      // 2) now read the header
-      return readHeaderAndValidate(transport, messageId, opRespCode);
+      return messageId;
    }
 
    protected byte[] returnPossiblePrevValue(Transport transport) {
@@ -90,7 +87,6 @@ public abstract class AbstractKeyOperation extends RetryOnFailureOperation {
    }
 
    protected VersionedOperationResponse returnVersionedOperationResponse(Transport transport, long messageId, byte response) {
-      //3) ...
       short respStatus = readHeaderAndValidate(transport, messageId, response);
 
       //4 ...
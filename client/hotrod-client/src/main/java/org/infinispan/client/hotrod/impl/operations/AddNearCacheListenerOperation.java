@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers a connection for the invalidations of a cache. Once registered, the server pushes an event with the key of
+ * every entry modified or removed on it, tagged with the message id of the registration, until the connection is
+ * closed. The connection can not be used for other operations afterwards.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class AddNearCacheListenerOperation extends HotRodOperation {
+
+   private final Transport transport;
+
+   public AddNearCacheListenerOperation(AtomicInteger topologyId, byte[] cacheName, Transport transport) {
+      super(null, cacheName, topologyId);
+      this.transport = transport;
+   }
+
+   /**
+    * @return the message id the invalidation events will be tagged with
+    */
+   @Override
+   public Long execute() {
+      long messageId = writeHeader(transport, ADD_NEAR_CACHE_LISTENER_REQUEST);
+      return (Long) sendAndReadResponse(transport, messageId);
+   }
+
+   @Override
+   public Long readResponse(Transport transport, long messageId) {
+      readHeaderAndValidate(transport, messageId, ADD_NEAR_CACHE_LISTENER_RESPONSE);
+      return messageId;
+   }
+
+   /**
+    * Blocks until the next invalidation event arrives.
+    *
+    * @return the key, as marshalled by the client that wrote it
+    */
+   public byte[] readInvalidatedKey(long messageId) {
+      readHeaderAndValidate(transport, messageId, INVALIDATION_EVENT);
+      return transport.readArray();
+   }
+}
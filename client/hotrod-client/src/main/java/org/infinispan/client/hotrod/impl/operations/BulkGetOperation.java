@@ -50,10 +50,14 @@ public class BulkGetOperation extends RetryOnFailureOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
       long messageId = writeHeader(transport, BULK_GET_REQUEST);
       transport.writeVInt(entryCount);
-      transport.flush();
+      return messageId;
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
       readHeaderAndValidate(transport, messageId, BULK_GET_RESPONSE);
       HashMap result = new HashMap();
       while ( transport.readByte() == 1) { //there's more!
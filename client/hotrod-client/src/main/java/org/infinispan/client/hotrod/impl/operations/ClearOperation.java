@@ -48,8 +48,12 @@ public class ClearOperation extends RetryOnFailureOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
-      long messageId = writeHeader(transport, CLEAR_REQUEST);
+   protected long writeRequest(Transport transport) {
+      return writeHeader(transport, CLEAR_REQUEST);
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
       readHeaderAndValidate(transport, messageId, CLEAR_RESPONSE);
       return null;
    }
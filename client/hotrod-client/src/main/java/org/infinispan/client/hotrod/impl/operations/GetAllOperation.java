@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the values of several keys in one request. Only the keys that exist are present in the response.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class GetAllOperation extends AbstractMultiKeyOperation {
+
+   public GetAllOperation(TransportFactory transportFactory, List<byte[]> keys, byte[] cacheName, AtomicInteger topologyId, Flag[] flags) {
+      super(transportFactory, keys, cacheName, topologyId, flags);
+   }
+
+   @Override
+   protected long writeRequest(Transport transport) {
+      return writeKeysRequest(transport, GET_ALL_REQUEST);
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
+      readHeaderAndValidate(transport, messageId, GET_ALL_RESPONSE);
+      Map<byte[], byte[]> result = new HashMap<byte[], byte[]>();
+      while (transport.readByte() == 1) { //there's more!
+         result.put(transport.readArray(), transport.readArray());
+      }
+      return result;
+   }
+}
@@ -43,9 +43,14 @@ public class GetOperation extends AbstractKeyOperation {
    }
 
    @Override
-   public Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
+      return writeKeyRequest(transport, GET_REQUEST);
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
       byte[] result = null;
-      short status = sendKeyOperation(key, transport, GET_REQUEST, GET_RESPONSE);
+      short status = readHeaderAndValidate(transport, messageId, GET_RESPONSE);
       if (status == KEY_DOES_NOT_EXIST_STATUS) {
          result = null;
       } else {
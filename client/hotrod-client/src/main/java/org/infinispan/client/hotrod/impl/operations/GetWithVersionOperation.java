@@ -50,8 +50,13 @@ public class GetWithVersionOperation extends AbstractKeyOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
-      short status = sendKeyOperation(key, transport, GET_WITH_VERSION, GET_WITH_VERSION_RESPONSE);
+   protected long writeRequest(Transport transport) {
+      return writeKeyRequest(transport, GET_WITH_VERSION);
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
+      short status = readHeaderAndValidate(transport, messageId, GET_WITH_VERSION_RESPONSE);
       Object result = null;
       if (status == KEY_DOES_NOT_EXIST_STATUS) {
          result = null;
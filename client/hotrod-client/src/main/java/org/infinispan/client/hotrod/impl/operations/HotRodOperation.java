@@ -27,12 +27,16 @@ import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.HotRodClientException;
 import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.impl.transport.AsyncTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseReader;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.net.InetSocketAddress;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -45,7 +49,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * @since 4.1
  */
 @Immutable
-public abstract class HotRodOperation implements HotRodConstants {
+public abstract class HotRodOperation implements HotRodConstants, ResponseReader {
 
    static final AtomicLong MSG_ID = new AtomicLong();
 
@@ -69,6 +73,35 @@ public abstract class HotRodOperation implements HotRodConstants {
 
    public abstract Object execute();
 
+   /**
+    * Sends the request written to the given transport and reads its response. Used by operations bound to a transport
+    * rather than retrying on other ones.
+    */
+   protected final Object sendAndReadResponse(Transport transport, long messageId) {
+      if (transport instanceof AsyncTransport) {
+         return awaitResponse(((AsyncTransport) transport).send(messageId, this));
+      }
+      transport.flush();
+      return readResponse(transport, messageId);
+   }
+
+   /**
+    * Blocks until the response to a request sent through an {@link org.infinispan.client.hotrod.impl.transport.AsyncTransport}
+    * is available, rethrowing whatever exception the response was failed with.
+    */
+   protected final Object awaitResponse(Future<Object> response) {
+      try {
+         return response.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new HotRodClientException(e);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+         throw new HotRodClientException(cause);
+      }
+   }
+
    protected final long writeHeader(Transport transport, short operationCode) {
       transport.writeByte(HotRodConstants.REQUEST_MAGIC);
       long messageId = MSG_ID.incrementAndGet();
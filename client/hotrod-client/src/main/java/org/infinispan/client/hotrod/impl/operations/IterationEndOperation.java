@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Discards an iteration that has not been pulled until its end, releasing its resources on the server.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class IterationEndOperation extends HotRodOperation {
+
+   private final Transport transport;
+   private final String iterationId;
+
+   public IterationEndOperation(AtomicInteger topologyId, byte[] cacheName, Flag[] flags, Transport transport, String iterationId) {
+      super(flags, cacheName, topologyId);
+      this.transport = transport;
+      this.iterationId = iterationId;
+   }
+
+   /**
+    * @return true if the server still knew the iteration
+    */
+   @Override
+   public Boolean execute() {
+      long messageId = writeHeader(transport, ITERATION_END_REQUEST);
+      transport.writeString(iterationId);
+      return (Boolean) sendAndReadResponse(transport, messageId);
+   }
+
+   @Override
+   public Boolean readResponse(Transport transport, long messageId) {
+      short status = readHeaderAndValidate(transport, messageId, ITERATION_END_RESPONSE);
+      return status == NO_ERROR_STATUS;
+   }
+}
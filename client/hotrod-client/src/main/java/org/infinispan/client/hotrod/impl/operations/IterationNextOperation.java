@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pulls the next batch of entries of an iteration opened with {@link IterationStartOperation}. Must be sent to the
+ * server the iteration was opened on.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class IterationNextOperation extends HotRodOperation {
+
+   private final Transport transport;
+   private final String iterationId;
+   private final int batchSize;
+
+   public IterationNextOperation(AtomicInteger topologyId, byte[] cacheName, Flag[] flags, Transport transport,
+                                 String iterationId, int batchSize) {
+      super(flags, cacheName, topologyId);
+      this.transport = transport;
+      this.iterationId = iterationId;
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * @return the next batch, or null if the server does not know the iteration, e.g. because it timed out
+    */
+   @Override
+   public Batch execute() {
+      //[header][iteration id][batch size]
+      long messageId = writeHeader(transport, ITERATION_NEXT_REQUEST);
+      transport.writeString(iterationId);
+      transport.writeVInt(batchSize);
+      return (Batch) sendAndReadResponse(transport, messageId);
+   }
+
+   @Override
+   public Batch readResponse(Transport transport, long messageId) {
+      short status = readHeaderAndValidate(transport, messageId, ITERATION_NEXT_RESPONSE);
+      if (status == KEY_DOES_NOT_EXIST_STATUS) {
+         return null;
+      }
+      //[entry count][key length][key][value length][value]...[finished]
+      int count = transport.readVInt();
+      List<byte[]> keys = new ArrayList<byte[]>(count);
+      List<byte[]> values = new ArrayList<byte[]>(count);
+      for (int i = 0; i < count; i++) {
+         keys.add(transport.readArray());
+         values.add(transport.readArray());
+      }
+      boolean finished = transport.readByte() == 1;
+      return new Batch(keys, values, finished);
+   }
+
+   @Immutable
+   public static class Batch {
+      private final List<byte[]> keys;
+      private final List<byte[]> values;
+      private final boolean finished;
+
+      Batch(List<byte[]> keys, List<byte[]> values, boolean finished) {
+         this.keys = keys;
+         this.values = values;
+         this.finished = finished;
+      }
+
+      public List<byte[]> getKeys() {
+         return keys;
+      }
+
+      public List<byte[]> getValues() {
+         return values;
+      }
+
+      /**
+       * @return true if there are no more entries to pull, in which case the server has already discarded the iteration
+       */
+      public boolean isFinished() {
+         return finished;
+      }
+   }
+}
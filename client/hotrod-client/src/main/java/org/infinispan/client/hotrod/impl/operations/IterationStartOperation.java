@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens an entry iteration on the server the transport is connected to. The iteration is identified by the returned
+ * id, and its entries are pulled with {@link IterationNextOperation}.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class IterationStartOperation extends HotRodOperation {
+
+   private final Transport transport;
+   private final boolean primaryOwnedOnly;
+   private final boolean includeCacheStore;
+
+   public IterationStartOperation(AtomicInteger topologyId, byte[] cacheName, Flag[] flags, Transport transport,
+                                  boolean primaryOwnedOnly, boolean includeCacheStore) {
+      super(flags, cacheName, topologyId);
+      this.transport = transport;
+      this.primaryOwnedOnly = primaryOwnedOnly;
+      this.includeCacheStore = includeCacheStore;
+   }
+
+   @Override
+   public String execute() {
+      //[header][iteration flags]
+      long messageId = writeHeader(transport, ITERATION_START_REQUEST);
+      int iterationFlags = 0;
+      if (primaryOwnedOnly) iterationFlags |= ITERATION_PRIMARY_OWNED_ONLY;
+      if (includeCacheStore) iterationFlags |= ITERATION_INCLUDE_CACHE_STORE;
+      transport.writeByte((short) iterationFlags);
+      return (String) sendAndReadResponse(transport, messageId);
+   }
+
+   @Override
+   public String readResponse(Transport transport, long messageId) {
+      readHeaderAndValidate(transport, messageId, ITERATION_START_RESPONSE);
+      return transport.readString();
+   }
+}
@@ -24,11 +24,20 @@ package org.infinispan.client.hotrod.impl.operations;
 
 import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
 import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.impl.transport.AsyncTransportFactory;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 import org.infinispan.manager.CacheContainer;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -107,10 +116,107 @@ public class OperationsFactory implements HotRodConstants {
       return new BulkGetOperation(transportFactory, cacheNameBytes, topologyId, flags(), size);
    }
 
+   /**
+    * Builds one operation per server owning some of the keys, so that each key is read from one of its owners.
+    */
+   public List<GetAllOperation> newGetAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<GetAllOperation> ops = new ArrayList<GetAllOperation>();
+      for (List<byte[]> serverKeys : groupKeysByServer(keys)) {
+         ops.add(new GetAllOperation(transportFactory, serverKeys, cacheNameBytes, topologyId, flags));
+      }
+      return ops;
+   }
+
+   /**
+    * Builds one operation per server owning some of the keys. The entries map is looked up by key identity.
+    */
+   public List<PutAllOperation> newPutAllOperations(Map<byte[], byte[]> entries, int lifespanSecs, int maxIdleSecs) {
+      Flag[] flags = flags();
+      List<PutAllOperation> ops = new ArrayList<PutAllOperation>();
+      for (List<byte[]> serverKeys : groupKeysByServer(entries.keySet())) {
+         List<byte[]> values = new ArrayList<byte[]>(serverKeys.size());
+         for (byte[] key : serverKeys) {
+            values.add(entries.get(key));
+         }
+         ops.add(new PutAllOperation(transportFactory, serverKeys, values, cacheNameBytes, topologyId, flags, lifespanSecs, maxIdleSecs));
+      }
+      return ops;
+   }
+
+   /**
+    * Builds one operation per server owning some of the keys.
+    */
+   public List<RemoveAllOperation> newRemoveAllOperations(Collection<byte[]> keys) {
+      Flag[] flags = flags();
+      List<RemoveAllOperation> ops = new ArrayList<RemoveAllOperation>();
+      for (List<byte[]> serverKeys : groupKeysByServer(keys)) {
+         ops.add(new RemoveAllOperation(transportFactory, serverKeys, cacheNameBytes, topologyId, flags));
+      }
+      return ops;
+   }
+
    public PingOperation newPingOperation(Transport transport) {
       return new PingOperation(topologyId, transport, cacheNameBytes);
    }
 
+   public IterationStartOperation newIterationStartOperation(Transport transport, boolean primaryOwnedOnly, boolean includeCacheStore) {
+      return new IterationStartOperation(topologyId, cacheNameBytes, null, transport, primaryOwnedOnly, includeCacheStore);
+   }
+
+   public IterationNextOperation newIterationNextOperation(Transport transport, String iterationId, int batchSize) {
+      return new IterationNextOperation(topologyId, cacheNameBytes, null, transport, iterationId, batchSize);
+   }
+
+   public IterationEndOperation newIterationEndOperation(Transport transport, String iterationId) {
+      return new IterationEndOperation(topologyId, cacheNameBytes, null, transport, iterationId);
+   }
+
+   public AddNearCacheListenerOperation newAddNearCacheListenerOperation(Transport transport) {
+      return new AddNearCacheListenerOperation(topologyId, cacheNameBytes, transport);
+   }
+
+   public TransportFactory getTransportFactory() {
+      return transportFactory;
+   }
+
+   /**
+    * @return the id of the cluster topology last sent by the servers, updated as responses are read
+    */
+   public AtomicInteger getTopologyId() {
+      return topologyId;
+   }
+
+   /**
+    * @return true if the operations can be sent without blocking the calling thread until the response arrives, see
+    *         {@link RetryOnFailureOperation#executeAsync()}
+    */
+   public boolean supportsAsyncOperations() {
+      return transportFactory instanceof AsyncTransportFactory;
+   }
+
+   private Collection<List<byte[]>> groupKeysByServer(Collection<byte[]> keys) {
+      if (keys.isEmpty()) {
+         return Collections.emptyList();
+      }
+      ConsistentHash consistentHash = transportFactory.getConsistentHash();
+      if (consistentHash == null) {
+         // no hash distribution information, so any server is as good as another
+         return Collections.singletonList((List<byte[]>) new ArrayList<byte[]>(keys));
+      }
+      Map<InetSocketAddress, List<byte[]>> keysByServer = new HashMap<InetSocketAddress, List<byte[]>>();
+      for (byte[] key : keys) {
+         InetSocketAddress server = consistentHash.getServer(key);
+         List<byte[]> serverKeys = keysByServer.get(server);
+         if (serverKeys == null) {
+            serverKeys = new ArrayList<byte[]>();
+            keysByServer.put(server, serverKeys);
+         }
+         serverKeys.add(key);
+      }
+      return keysByServer.values();
+   }
+
    private Flag[] flags() {
       Flag[] flags = this.flagsMap.get();
       this.flagsMap.remove();
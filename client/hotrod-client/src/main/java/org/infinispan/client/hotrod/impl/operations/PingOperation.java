@@ -58,16 +58,7 @@ public class PingOperation extends HotRodOperation {
    public PingResult execute() {
       try {
          long messageId = writeHeader(transport, HotRodConstants.PING_REQUEST);
-         short respStatus = readHeaderAndValidate(transport, messageId, HotRodConstants.PING_RESPONSE);
-         if (respStatus == HotRodConstants.NO_ERROR_STATUS) {
-            if (log.isTraceEnabled())
-               log.tracef("Successfully validated transport: %s", transport);
-            return PingResult.SUCCESS;
-         } else {
-            if (log.isTraceEnabled())
-               log.tracef("Unknown response status: %s", respStatus);
-            return PingResult.FAIL;
-         }
+         return (PingResult) sendAndReadResponse(transport, messageId);
       } catch (HotRodClientException e) {
          if (e.getMessage().contains("CacheNotFoundException"))
             return PingResult.CACHE_DOES_NOT_EXIST;
@@ -80,6 +71,20 @@ public class PingOperation extends HotRodOperation {
       }
    }
 
+   @Override
+   public PingResult readResponse(Transport transport, long messageId) {
+      short respStatus = readHeaderAndValidate(transport, messageId, HotRodConstants.PING_RESPONSE);
+      if (respStatus == HotRodConstants.NO_ERROR_STATUS) {
+         if (log.isTraceEnabled())
+            log.tracef("Successfully validated transport: %s", transport);
+         return PingResult.SUCCESS;
+      } else {
+         if (log.isTraceEnabled())
+            log.tracef("Unknown response status: %s", respStatus);
+         return PingResult.FAIL;
+      }
+   }
+
    public static enum PingResult {
       // Success if the ping request was responded correctly
       SUCCESS,
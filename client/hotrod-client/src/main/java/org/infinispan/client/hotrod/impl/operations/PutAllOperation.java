@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.operations;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.client.hotrod.Flag;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.TransportFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores several entries in one request, all of them with the same lifespan and max idle time. Previous values are
+ * not returned.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class PutAllOperation extends AbstractMultiKeyOperation {
+
+   private final List<byte[]> values;
+   private final int lifespan;
+   private final int maxIdle;
+
+   public PutAllOperation(TransportFactory transportFactory, List<byte[]> keys, List<byte[]> values, byte[] cacheName,
+                          AtomicInteger topologyId, Flag[] flags, int lifespan, int maxIdle) {
+      super(transportFactory, keys, cacheName, topologyId, flags);
+      this.values = values;
+      this.lifespan = lifespan;
+      this.maxIdle = maxIdle;
+   }
+
+   //[header][lifespan][max idle][entry count][key length][key][value length][value]...
+   @Override
+   protected long writeRequest(Transport transport) {
+      long messageId = writeHeader(transport, PUT_ALL_REQUEST);
+      transport.writeVInt(lifespan);
+      transport.writeVInt(maxIdle);
+      transport.writeVInt(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+         transport.writeArray(keys.get(i));
+         transport.writeArray(values.get(i));
+      }
+      return messageId;
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
+      readHeaderAndValidate(transport, messageId, PUT_ALL_RESPONSE);
+      return null;
+   }
+}
@@ -45,8 +45,14 @@ public class PutOperation extends AbstractKeyValueOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
-      short status = sendPutOperation(transport, PUT_REQUEST, PUT_RESPONSE);
+   protected long writeRequest(Transport transport) {
+      return writePutRequest(transport, PUT_REQUEST);
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
+      //return status (not error status for sure)
+      short status = readHeaderAndValidate(transport, messageId, PUT_RESPONSE);
       if (status != NO_ERROR_STATUS) {
          throw new InvalidResponseException("Unexpected response status: " + Integer.toHexString(status));
       }
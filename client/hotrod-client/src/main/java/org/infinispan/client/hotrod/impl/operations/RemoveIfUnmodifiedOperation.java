@@ -47,14 +47,18 @@ public class RemoveIfUnmodifiedOperation extends AbstractKeyOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
       // 1) write header
       long messageId = writeHeader(transport, REMOVE_IF_UNMODIFIED_REQUEST);
 
       //2) write message body
       transport.writeArray(key);
       transport.writeLong(version);
+      return messageId;
+   }
 
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
       //process response and return
       return returnVersionedOperationResponse(transport, messageId, REMOVE_IF_UNMODIFIED_RESPONSE);
    }
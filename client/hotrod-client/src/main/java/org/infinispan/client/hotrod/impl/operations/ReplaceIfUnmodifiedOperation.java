@@ -47,7 +47,7 @@ public class ReplaceIfUnmodifiedOperation extends AbstractKeyValueOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
+   protected long writeRequest(Transport transport) {
       // 1) write header
       long messageId = writeHeader(transport, REPLACE_IF_UNMODIFIED_REQUEST);
 
@@ -57,6 +57,11 @@ public class ReplaceIfUnmodifiedOperation extends AbstractKeyValueOperation {
       transport.writeVInt(maxIdle);
       transport.writeLong(version);
       transport.writeArray(value);
+      return messageId;
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
       return returnVersionedOperationResponse(transport, messageId, REPLACE_IF_UNMODIFIED_RESPONSE);
    }
 }
@@ -25,11 +25,21 @@ package org.infinispan.client.hotrod.impl.operations;
 import net.jcip.annotations.Immutable;
 import org.infinispan.client.hotrod.Flag;
 import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.transport.AsyncTransport;
+import org.infinispan.client.hotrod.impl.transport.AsyncTransportFactory;
 import org.infinispan.client.hotrod.impl.transport.Transport;
 import org.infinispan.client.hotrod.impl.transport.TransportFactory;
 import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -53,6 +63,9 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
 
    @Override
    public Object execute() {
+      if (transportFactory instanceof AsyncTransportFactory) {
+         return awaitResponse(executeAsync());
+      }
       int retryCount = 0;
       while (shouldRetry(retryCount)) {
          Transport transport = getTransport(retryCount);
@@ -69,6 +82,137 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
       throw new IllegalStateException("We should not reach here!");
    }
 
+   /**
+    * Sends the request without waiting for the response. Only supported if the transport factory is an
+    * {@link AsyncTransportFactory}. Connection failures are retried on other transports, following the same policy as
+    * {@link #execute()}.
+    *
+    * @return a future that is completed with the result of the operation
+    */
+   public NotifyingFuture<Object> executeAsync() {
+      ResponseFuture<Object> result = new ResponseFuture<Object>();
+      sendAsync(0, result);
+      return result;
+   }
+
+   private void sendAsync(final int retryCount, final ResponseFuture<Object> result) {
+      NotifyingFuture<Object> response;
+      AsyncTransport transport = null;
+      try {
+         transport = (AsyncTransport) getTransport(retryCount);
+         long messageId = writeRequest(transport);
+         response = transport.send(messageId, this);
+      } catch (TransportException te) {
+         retryOrFail(retryCount, te, result);
+         return;
+      } catch (RuntimeException e) {
+         result.fail(e);
+         return;
+      } finally {
+         releaseTransport(transport);
+      }
+      response.attachListener(new FutureListener<Object>() {
+         @Override
+         public void futureDone(Future<Object> future) {
+            try {
+               result.complete(future.get());
+            } catch (ExecutionException e) {
+               if (e.getCause() instanceof TransportException)
+                  retryOrFail(retryCount, (TransportException) e.getCause(), result);
+               else
+                  result.fail(e.getCause());
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               result.fail(e);
+            }
+         }
+      });
+   }
+
+   private void retryOrFail(int retryCount, TransportException te, ResponseFuture<Object> result) {
+      try {
+         logErrorAndThrowExceptionIfNeeded(retryCount, te);
+      } catch (TransportException e) {
+         result.fail(e);
+         return;
+      }
+      sendAsync(retryCount + 1, result);
+   }
+
+   /**
+    * Executes several operations, e.g. the per server slices of a multi-key operation, so that the servers process
+    * them in parallel. With a blocking transport every request is written before any response is read, so no extra
+    * threads are needed. Operations failing on their first transport are re-executed with the usual retry policy.
+    *
+    * @return the results of the operations, in the same order as the operations
+    */
+   public static List<Object> executeInParallel(List<? extends RetryOnFailureOperation> ops) {
+      int count = ops.size();
+      if (count == 1) {
+         return Collections.singletonList(ops.get(0).execute());
+      }
+      List<Object> results = new ArrayList<Object>(count);
+      if (count == 0) {
+         return results;
+      }
+      if (ops.get(0).transportFactory instanceof AsyncTransportFactory) {
+         List<NotifyingFuture<Object>> futures = new ArrayList<NotifyingFuture<Object>>(count);
+         for (RetryOnFailureOperation op : ops) {
+            futures.add(op.executeAsync());
+         }
+         for (int i = 0; i < count; i++) {
+            results.add(ops.get(i).awaitResponse(futures.get(i)));
+         }
+         return results;
+      }
+
+      Transport[] transports = new Transport[count];
+      long[] messageIds = new long[count];
+      try {
+         for (int i = 0; i < count; i++) {
+            RetryOnFailureOperation op = ops.get(i);
+            try {
+               transports[i] = op.getTransport(0);
+               messageIds[i] = op.writeRequest(transports[i]);
+               transports[i].flush();
+            } catch (TransportException te) {
+               log.tracef(te, "Could not send request of %s, it will be retried", op);
+               op.releaseTransport(transports[i]);
+               transports[i] = null;
+            }
+         }
+         // every response has to be consumed, even after a failure, for the transports to be reusable
+         RuntimeException failure = null;
+         for (int i = 0; i < count; i++) {
+            RetryOnFailureOperation op = ops.get(i);
+            Object result = null;
+            try {
+               if (transports[i] != null) {
+                  try {
+                     result = op.readResponse(transports[i], messageIds[i]);
+                  } catch (TransportException te) {
+                     log.tracef(te, "Could not read response of %s, it will be retried", op);
+                     op.releaseTransport(transports[i]);
+                     transports[i] = null;
+                     result = op.execute();
+                  }
+               } else if (failure == null) {
+                  result = op.execute();
+               }
+            } catch (RuntimeException e) {
+               if (failure == null) failure = e;
+            }
+            results.add(result);
+         }
+         if (failure != null) throw failure;
+         return results;
+      } finally {
+         for (int i = 0; i < count; i++) {
+            if (transports[i] != null) ops.get(i).releaseTransport(transports[i]);
+         }
+      }
+   }
+
    protected boolean shouldRetry(int retryCount) {
       return retryCount < transportFactory.getTransportCount();
    }
@@ -90,5 +234,16 @@ public abstract class RetryOnFailureOperation extends HotRodOperation {
 
    protected abstract Transport getTransport(int retryCount);
 
-   protected abstract Object executeOperation(Transport transport);
+   protected Object executeOperation(Transport transport) {
+      long messageId = writeRequest(transport);
+      transport.flush();
+      return readResponse(transport, messageId);
+   }
+
+   /**
+    * Writes the request to the transport.
+    *
+    * @return the message id of the request
+    */
+   protected abstract long writeRequest(Transport transport);
 }
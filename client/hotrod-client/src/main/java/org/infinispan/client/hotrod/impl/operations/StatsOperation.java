@@ -50,10 +50,14 @@ public class StatsOperation extends RetryOnFailureOperation {
    }
 
    @Override
-   protected Object executeOperation(Transport transport) {
-      Map<String, String> result;
+   protected long writeRequest(Transport transport) {
       // 1) write header
-      long messageId = writeHeader(transport, STATS_REQUEST);
+      return writeHeader(transport, STATS_REQUEST);
+   }
+
+   @Override
+   public Object readResponse(Transport transport, long messageId) {
+      Map<String, String> result;
       readHeaderAndValidate(transport, messageId, STATS_RESPONSE);
       int nrOfStats = transport.readVInt();
 
@@ -51,6 +51,13 @@ public interface HotRodConstants {
    static final byte STATS_REQUEST = 0x15;
    static final byte PING_REQUEST = 0x17;
    static final byte BULK_GET_REQUEST = 0x19;
+   static final byte GET_ALL_REQUEST = 0x1B;
+   static final byte PUT_ALL_REQUEST = 0x1D;
+   static final byte REMOVE_ALL_REQUEST = 0x1F;
+   static final byte ITERATION_START_REQUEST = 0x21;
+   static final byte ITERATION_NEXT_REQUEST = 0x23;
+   static final byte ITERATION_END_REQUEST = 0x25;
+   static final byte ADD_NEAR_CACHE_LISTENER_REQUEST = 0x27;
 
 
    //responses
@@ -67,8 +74,18 @@ public interface HotRodConstants {
    static final byte STATS_RESPONSE = 0x16;
    static final byte PING_RESPONSE = 0x18;
    static final byte BULK_GET_RESPONSE = 0x1A;
+   static final byte GET_ALL_RESPONSE = 0x1C;
+   static final byte PUT_ALL_RESPONSE = 0x1E;
+   static final byte REMOVE_ALL_RESPONSE = 0x20;
+   static final byte ITERATION_START_RESPONSE = 0x22;
+   static final byte ITERATION_NEXT_RESPONSE = 0x24;
+   static final byte ITERATION_END_RESPONSE = 0x26;
+   static final byte ADD_NEAR_CACHE_LISTENER_RESPONSE = 0x28;
    static final byte ERROR_RESPONSE = 0x50;
 
+   //events, pushed by the server with the message id of the request that registered for them
+   static final byte INVALIDATION_EVENT = 0x60;
+
    //response status
    static final byte NO_ERROR_STATUS = 0x00;
    static final int INVALID_MAGIC_OR_MESSAGE_ID_STATUS = 0x81;
@@ -81,6 +98,10 @@ public interface HotRodConstants {
    static final int COMMAND_TIMEOUT_STATUS = 0x86;
 
 
+   //iteration start flags
+   static final byte ITERATION_PRIMARY_OWNED_ONLY = 0x01;
+   static final byte ITERATION_INCLUDE_CACHE_STORE = 0x02;
+
    static final byte CLIENT_INTELLIGENCE_BASIC = 0x01;
    static final byte CLIENT_INTELLIGENCE_TOPOLOGY_AWARE = 0x02;
    static final byte CLIENT_INTELLIGENCE_HASH_DISTRIBUTION_AWARE = 0x03;
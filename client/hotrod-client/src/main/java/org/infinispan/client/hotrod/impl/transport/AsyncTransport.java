@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport;
+
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+/**
+ * A transport which does not block the caller while waiting for a response. Requests are written to the transport as
+ * usual and then handed over with {@link #send(long, ResponseReader)}; the response is read later on, by the thread
+ * that receives it. Such transports are not pooled: each one is used for a single request.
+ *
+ * @since 5.0
+ */
+public interface AsyncTransport extends Transport {
+
+   /**
+    * Sends everything written to this transport so far as a single request.
+    *
+    * @param messageId the message id written in the request's header, used for matching the response
+    * @param reader    reads the response once it has been received
+    * @return a future that is completed with the value returned by the reader. It fails with a
+    *         {@link org.infinispan.client.hotrod.exceptions.TransportException} if the connection to the server is
+    *         lost before the response is read.
+    */
+   NotifyingFuture<Object> send(long messageId, ResponseReader reader);
+}
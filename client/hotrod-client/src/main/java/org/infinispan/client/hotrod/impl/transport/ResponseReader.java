@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport;
+
+/**
+ * Reads the response to a request from a {@link Transport}. Implemented by the operations, so that an
+ * {@link AsyncTransport} can decode a response once it has been received.
+ *
+ * @since 5.0
+ */
+public interface ResponseReader {
+
+   /**
+    * Reads the response to the request with the given message id.
+    * <p/>
+    * When invoked by an {@link AsyncTransport}, the transport might not hold the entire response yet, in which case one
+    * of the read methods of the transport throws a {@link java.nio.BufferUnderflowException} and this method will be
+    * invoked again, from the beginning of the response, once more data is available. Implementations must therefore not
+    * catch that exception and must not have side effects other than the ones that are safe to repeat.
+    *
+    * @return the result of the operation
+    */
+   Object readResponse(Transport transport, long messageId);
+}
@@ -23,6 +23,7 @@
 package org.infinispan.client.hotrod.impl.transport;
 
 import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
 
 import java.net.InetSocketAddress;
 import java.util.Collection;
@@ -51,6 +52,19 @@ public interface TransportFactory {
 
    Transport getTransport(byte[] key);
 
+   /**
+    * Returns a transport to the given server, e.g. for operations that hold state on a particular server.
+    */
+   Transport getTransport(InetSocketAddress server);
+
+   Collection<InetSocketAddress> getServers();
+
+   /**
+    * @return the consistent hash used by {@link #getTransport(byte[])} to pick the server owning a key, or null if the
+    *         servers have not sent one
+    */
+   ConsistentHash getConsistentHash();
+
    boolean isTcpNoDelay();
 
    int getTransportCount();
@@ -0,0 +1,276 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.HotRodTimeoutException;
+import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.protocol.HotRodConstants;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A non-blocking connection to a Hot Rod server, shared by any number of outstanding requests. Requests are queued by
+ * the calling threads and written by the {@link NioEventLoop}, which also reads the responses and hands each one to the
+ * request with the same message id. Responses may therefore arrive in any order.
+ * <p/>
+ * Apart from {@link #send(NioTransport, ByteBuffer)}, {@link #close(TransportException)} and {@link #isOpen()}, all
+ * methods are only invoked by the event loop thread.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class NioConnection {
+
+   private static final Log log = LogFactory.getLog(NioConnection.class, Log.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final int INITIAL_RECEIVE_BUFFER_SIZE = 8 * 1024;
+
+   private final InetSocketAddress serverAddress;
+   private final NioEventLoop eventLoop;
+   private final SocketChannel channel;
+   private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+   private final ConcurrentMap<Long, NioTransport> pending = new ConcurrentHashMap<Long, NioTransport>();
+   private final AtomicBoolean closed = new AtomicBoolean(false);
+   private volatile boolean open = true;
+
+   // only accessed by the event loop thread
+   private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<ByteBuffer>();
+   private ByteBuffer inbound = ByteBuffer.allocate(INITIAL_RECEIVE_BUFFER_SIZE);
+   private SelectionKey key;
+
+   public NioConnection(InetSocketAddress serverAddress, NioEventLoop eventLoop, boolean tcpNoDelay) {
+      this.serverAddress = serverAddress;
+      this.eventLoop = eventLoop;
+      try {
+         channel = SocketChannel.open();
+         channel.configureBlocking(false);
+         channel.socket().setTcpNoDelay(tcpNoDelay);
+         channel.connect(serverAddress);
+      } catch (IOException e) {
+         log.couldNotConnectToServer(serverAddress, e);
+         throw new TransportException("Could not connect to server: " + serverAddress, e);
+      }
+      eventLoop.register(this);
+   }
+
+   /**
+    * Queues a request for sending. The transport is notified of the response, or of the connection failing.
+    */
+   void send(NioTransport transport, ByteBuffer request) {
+      Long messageId = transport.getMessageId();
+      pending.put(messageId, transport);
+      if (!open && pending.remove(messageId) != null) {
+         throw new TransportException("Connection to " + serverAddress + " is closed");
+      }
+      outbound.add(request);
+      eventLoop.scheduleWrite(this);
+   }
+
+   public boolean isOpen() {
+      return open;
+   }
+
+   public InetSocketAddress getServerAddress() {
+      return serverAddress;
+   }
+
+   public int getPendingRequestCount() {
+      return pending.size();
+   }
+
+   void register(Selector selector) throws IOException {
+      key = channel.register(selector, channel.isConnected() ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+      if (closed.get()) key.cancel();
+   }
+
+   void finishConnect() throws IOException {
+      if (channel.finishConnect()) {
+         if (trace) log.tracef("Connected to %s", serverAddress);
+         key.interestOps(SelectionKey.OP_READ);
+         write();
+      }
+   }
+
+   /**
+    * Writes as many of the queued requests as the socket accepts, with a single gathering write.
+    */
+   void write() throws IOException {
+      if (!channel.isConnected()) return;
+      ByteBuffer request;
+      while ((request = outbound.poll()) != null) writing.add(request);
+      while (!writing.isEmpty()) {
+         channel.write(writing.toArray(new ByteBuffer[writing.size()]));
+         while (!writing.isEmpty() && !writing.peek().hasRemaining()) writing.poll();
+         if (!writing.isEmpty()) {
+            // socket buffer is full, carry on once it is writable again
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            return;
+         }
+         while ((request = outbound.poll()) != null) writing.add(request);
+      }
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+   }
+
+   void read() throws IOException {
+      int read = channel.read(inbound);
+      if (read < 0) {
+         close(new TransportException("End of stream reached!"));
+         return;
+      }
+      inbound.flip();
+      try {
+         while (inbound.hasRemaining() && readResponse()) {
+            // keep on reading responses
+         }
+      } finally {
+         inbound.compact();
+      }
+      if (!inbound.hasRemaining()) {
+         // the response being read does not fit in the buffer
+         ByteBuffer larger = ByteBuffer.allocate(inbound.capacity() * 2);
+         inbound.flip();
+         larger.put(inbound);
+         inbound = larger;
+      }
+      if (!open && pending.isEmpty()) close(null);
+   }
+
+   /**
+    * @return false if the buffer does not hold an entire response
+    */
+   private boolean readResponse() {
+      int start = inbound.position();
+      long messageId;
+      try {
+         short magic = (short) (inbound.get() & 0xFF);
+         if (magic != HotRodConstants.RESPONSE_MAGIC) {
+            close(new TransportException(new InvalidResponseException(String.format(
+                  "Invalid magic number. Expected %#x and received %#x", HotRodConstants.RESPONSE_MAGIC, magic))));
+            return false;
+         }
+         messageId = UnsignedNumeric.readUnsignedLong(inbound);
+      } catch (BufferUnderflowException e) {
+         inbound.position(start);
+         return false;
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+      inbound.position(start);
+
+      NioTransport transport = pending.get(messageId);
+      if (transport == null) {
+         close(new TransportException("Received response for unknown message id " + messageId));
+         return false;
+      }
+      try {
+         if (!transport.readResponse(inbound)) {
+            inbound.position(start);
+            return false;
+         }
+      } catch (InvalidResponseException e) {
+         pending.remove(messageId);
+         close(new TransportException(e));
+         return false;
+      }
+      pending.remove(messageId);
+      if (trace) log.tracef("Read response for message %d from %s", messageId, serverAddress);
+      return open || !pending.isEmpty();
+   }
+
+   /**
+    * Fails the requests that have been waiting for longer than the socket timeout. Their responses are still read and
+    * discarded when they arrive, as there is no other way of skipping them.
+    */
+   void expireRequests(long now) {
+      boolean allDone = true;
+      for (NioTransport transport : pending.values()) {
+         if (!transport.isDone() && transport.isExpired(now)) {
+            transport.fail(new HotRodTimeoutException("Timed out waiting for the response to message "
+                  + transport.getMessageId() + " from " + serverAddress));
+         }
+         allDone &= transport.isDone();
+      }
+      if (!open && allDone) close(new TransportException("Connection to " + serverAddress + " is closed"));
+   }
+
+   /**
+    * Stops accepting requests, closing the connection once the responses to the pending ones have been received.
+    */
+   void shutdown() {
+      open = false;
+      if (pending.isEmpty()) close(null);
+   }
+
+   /**
+    * Closes the connection straight away, failing the pending requests with the given exception.
+    */
+   void close(TransportException cause) {
+      open = false;
+      if (!closed.compareAndSet(false, true)) return;
+      if (trace) log.tracef(cause, "Closing connection to %s", serverAddress);
+      try {
+         channel.close();
+      } catch (IOException e) {
+         log.errorClosingConnection(serverAddress, e);
+      }
+      if (cause == null) cause = new TransportException("Connection to " + serverAddress + " is closed");
+      for (Iterator<NioTransport> it = pending.values().iterator(); it.hasNext();) {
+         NioTransport transport = it.next();
+         it.remove();
+         transport.fail(cause);
+      }
+      eventLoop.deregister(this);
+   }
+
+   boolean isClosed() {
+      return closed.get();
+   }
+
+   @Override
+   public String toString() {
+      return "NioConnection{" +
+            "serverAddress=" + serverAddress +
+            ", pending=" + pending.size() +
+            ", open=" + open +
+            "}";
+   }
+}
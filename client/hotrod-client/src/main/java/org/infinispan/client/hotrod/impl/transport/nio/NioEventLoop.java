@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single thread driving all the {@link NioConnection}s of a {@link NioTransportFactory}: it connects them, writes the
+ * queued requests, reads the responses and expires the requests that time out. Other threads only ever queue work for
+ * it and wake it up.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class NioEventLoop implements Runnable {
+
+   private static final Log log = LogFactory.getLog(NioEventLoop.class, Log.class);
+
+   private final Selector selector;
+   private final Thread thread;
+   private final long expirationInterval;
+   private final Queue<NioConnection> registrations = new ConcurrentLinkedQueue<NioConnection>();
+   private final Queue<NioConnection> deregistrations = new ConcurrentLinkedQueue<NioConnection>();
+   private final Queue<NioConnection> writes = new ConcurrentLinkedQueue<NioConnection>();
+   private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+   private volatile boolean running = true;
+
+   // only accessed by the event loop thread
+   private final Set<NioConnection> connections = new HashSet<NioConnection>();
+   private long nextExpiration;
+
+   /**
+    * @param requestTimeout the time after which requests are failed if no response was received, in millis
+    */
+   public NioEventLoop(String name, long requestTimeout) {
+      try {
+         selector = Selector.open();
+      } catch (IOException e) {
+         throw new TransportException("Could not open selector", e);
+      }
+      expirationInterval = Math.max(10, Math.min(1000, requestTimeout / 10));
+      thread = new Thread(this, name);
+      thread.setDaemon(true);
+   }
+
+   public void start() {
+      thread.start();
+   }
+
+   public void stop() {
+      running = false;
+      selector.wakeup();
+      try {
+         thread.join(expirationInterval * 10);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   void register(NioConnection connection) {
+      registrations.add(connection);
+      wakeup();
+   }
+
+   void deregister(NioConnection connection) {
+      deregistrations.add(connection);
+      wakeup();
+   }
+
+   void scheduleWrite(NioConnection connection) {
+      writes.add(connection);
+      wakeup();
+   }
+
+   private void wakeup() {
+      if (Thread.currentThread() != thread && wakeupPending.compareAndSet(false, true))
+         selector.wakeup();
+   }
+
+   @Override
+   public void run() {
+      try {
+         while (running) {
+            try {
+               selector.select(expirationInterval);
+               wakeupPending.set(false);
+               processQueues();
+               processSelectedKeys();
+               long now = System.currentTimeMillis();
+               if (now >= nextExpiration) {
+                  for (NioConnection connection : connections.toArray(new NioConnection[connections.size()]))
+                     connection.expireRequests(now);
+                  nextExpiration = now + expirationInterval;
+               }
+            } catch (ClosedSelectorException e) {
+               break;
+            } catch (RuntimeException e) {
+               log.errorInEventLoop(e);
+            }
+         }
+      } finally {
+         for (NioConnection connection : connections.toArray(new NioConnection[connections.size()]))
+            connection.close(new TransportException("Transport factory stopped"));
+         try {
+            selector.close();
+         } catch (IOException e) {
+            log.errorInEventLoop(e);
+         }
+      }
+   }
+
+   private void processQueues() {
+      NioConnection connection;
+      while ((connection = registrations.poll()) != null) {
+         try {
+            connection.register(selector);
+            connections.add(connection);
+         } catch (IOException e) {
+            failed(connection, e);
+         }
+      }
+      while ((connection = deregistrations.poll()) != null) {
+         connections.remove(connection);
+      }
+      while ((connection = writes.poll()) != null) {
+         if (connection.isClosed()) continue;
+         try {
+            connection.write();
+         } catch (IOException e) {
+            failed(connection, e);
+         } catch (CancelledKeyException e) {
+            // closed concurrently
+         }
+      }
+   }
+
+   private void processSelectedKeys() {
+      for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+         SelectionKey key = it.next();
+         it.remove();
+         NioConnection connection = (NioConnection) key.attachment();
+         try {
+            if (key.isValid() && key.isConnectable()) connection.finishConnect();
+            if (key.isValid() && key.isWritable()) connection.write();
+            if (key.isValid() && key.isReadable()) connection.read();
+         } catch (IOException e) {
+            failed(connection, e);
+         } catch (CancelledKeyException e) {
+            // closed concurrently
+         }
+      }
+   }
+
+   private void failed(NioConnection connection, IOException e) {
+      if (connection.isClosed()) return;
+      log.connectionFailed(connection.getServerAddress(), e);
+      connection.close(new TransportException(e));
+   }
+}
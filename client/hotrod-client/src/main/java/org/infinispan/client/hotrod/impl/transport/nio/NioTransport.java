@@ -0,0 +1,202 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.infinispan.client.hotrod.exceptions.InvalidResponseException;
+import org.infinispan.client.hotrod.exceptions.TransportException;
+import org.infinispan.client.hotrod.impl.async.ResponseFuture;
+import org.infinispan.client.hotrod.impl.transport.AbstractTransport;
+import org.infinispan.client.hotrod.impl.transport.AsyncTransport;
+import org.infinispan.client.hotrod.impl.transport.ResponseReader;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.infinispan.io.UnsignedNumeric.*;
+
+/**
+ * A single request multiplexed over a {@link NioConnection}. The request is buffered in memory until it is
+ * {@link #send(long, ResponseReader) sent}; its response is then read from the connection's receive buffer by the event
+ * loop thread.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+public class NioTransport extends AbstractTransport implements AsyncTransport {
+
+   private final NioConnection connection;
+   private final ResponseFuture<Object> response = new ResponseFuture<Object>();
+   private ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream(128);
+   private ByteBuffer in;
+   private long messageId;
+   private ResponseReader reader;
+   private long deadline;
+
+   public NioTransport(NioConnection connection, NioTransportFactory transportFactory) {
+      super(transportFactory);
+      this.connection = connection;
+   }
+
+   @Override
+   public NotifyingFuture<Object> send(long messageId, ResponseReader reader) {
+      if (out == null) throw new IllegalStateException("Request already sent");
+      this.messageId = messageId;
+      this.reader = reader;
+      this.deadline = System.currentTimeMillis() + getTransportFactory().getSoTimeout();
+      ByteBuffer request = ByteBuffer.wrap(out.getRawBuffer(), 0, out.size());
+      out = null;
+      connection.send(this, request);
+      return response;
+   }
+
+   /**
+    * Reads the response from the given buffer, positioned at the start of the response.
+    *
+    * @return false if the buffer does not hold the entire response yet
+    * @throws InvalidResponseException if the response is malformed, in which case the rest of the stream cannot be
+    *                                  trusted either
+    */
+   boolean readResponse(ByteBuffer buffer) {
+      in = buffer;
+      try {
+         response.complete(reader.readResponse(this, messageId));
+         return true;
+      } catch (BufferUnderflowException e) {
+         return false;
+      } catch (InvalidResponseException e) {
+         response.fail(e);
+         throw e;
+      } catch (RuntimeException e) {
+         // errors reported by the server are complete responses
+         response.fail(e);
+         return true;
+      } finally {
+         in = null;
+      }
+   }
+
+   void fail(Exception e) {
+      response.fail(e);
+   }
+
+   boolean isExpired(long now) {
+      return now > deadline;
+   }
+
+   boolean isDone() {
+      return response.isDone();
+   }
+
+   long getMessageId() {
+      return messageId;
+   }
+
+   public NioConnection getConnection() {
+      return connection;
+   }
+
+   @Override
+   protected void writeBytes(byte[] toAppend) {
+      out.write(toAppend, 0, toAppend.length);
+   }
+
+   @Override
+   public void writeByte(short toWrite) {
+      out.write(toWrite);
+   }
+
+   @Override
+   public void writeVInt(int vint) {
+      try {
+         writeUnsignedInt(out, vint);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public void writeVLong(long l) {
+      try {
+         writeUnsignedLong(out, l);
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public void flush() {
+      // requests are handed over to the connection by send()
+   }
+
+   @Override
+   public long readVLong() {
+      try {
+         return readUnsignedLong(input());
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public int readVInt() {
+      try {
+         return readUnsignedInt(input());
+      } catch (IOException e) {
+         throw new TransportException(e);
+      }
+   }
+
+   @Override
+   public short readByte() {
+      return (short) (input().get() & 0xFF);
+   }
+
+   @Override
+   public byte[] readByteArray(int size) {
+      byte[] result = new byte[size];
+      input().get(result);
+      return result;
+   }
+
+   @Override
+   public void release() {
+      // the connection is shared with other requests
+   }
+
+   private ByteBuffer input() {
+      if (in == null) throw new IllegalStateException("Responses are read by the event loop once received");
+      return in;
+   }
+
+   @Override
+   public String toString() {
+      return "NioTransport{" +
+            "connection=" + connection +
+            ", messageId=" + messageId +
+            "}";
+   }
+}
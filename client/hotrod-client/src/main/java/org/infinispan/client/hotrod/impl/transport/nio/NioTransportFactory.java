@@ -0,0 +1,247 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod.impl.transport.nio;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHash;
+import org.infinispan.client.hotrod.impl.consistenthash.ConsistentHashFactory;
+import org.infinispan.client.hotrod.impl.operations.PingOperation;
+import org.infinispan.client.hotrod.impl.transport.AsyncTransportFactory;
+import org.infinispan.client.hotrod.impl.transport.Transport;
+import org.infinispan.client.hotrod.impl.transport.tcp.RequestBalancingStrategy;
+import org.infinispan.client.hotrod.logging.Log;
+import org.infinispan.util.Util;
+import org.infinispan.util.logging.LogFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Transport factory multiplexing all requests to a server over a fixed number of non-blocking connections, driven by
+ * a single {@link NioEventLoop} thread. Responses are matched with their requests by message id, so no thread waits
+ * for a response unless the caller chooses to.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class NioTransportFactory implements AsyncTransportFactory {
+
+   private static final Log log = LogFactory.getLog(NioTransportFactory.class, Log.class);
+
+   private final ConcurrentMap<InetSocketAddress, AtomicReferenceArray<NioConnection>> connections =
+         new ConcurrentHashMap<InetSocketAddress, AtomicReferenceArray<NioConnection>>();
+   private final AtomicInteger connectionIndex = new AtomicInteger();
+   private final ConsistentHashFactory hashFactory = new ConsistentHashFactory();
+   private final Collection<InetSocketAddress> servers = new CopyOnWriteArraySet<InetSocketAddress>();
+
+   /**
+    * Volatile as the thread that calls start() is likely different from the ones using the factory.
+    */
+   private volatile NioEventLoop eventLoop;
+   private volatile RequestBalancingStrategy balancer;
+   private volatile ConsistentHash consistentHash;
+   private volatile boolean tcpNoDelay;
+   private volatile int soTimeout;
+   private volatile int connectionsPerServer;
+
+   @Override
+   public void start(ConfigurationProperties cfg, Collection<InetSocketAddress> staticConfiguredServers, AtomicInteger topologyId) {
+      hashFactory.init(cfg);
+      tcpNoDelay = cfg.getTcpNoDelay();
+      soTimeout = cfg.getSoTimeout();
+      connectionsPerServer = Math.max(1, cfg.getNioConnectionsPerServer());
+      servers.addAll(staticConfiguredServers);
+      balancer = (RequestBalancingStrategy) Util.getInstance(cfg.getRequestBalancingStrategy());
+      balancer.setServers(servers);
+      eventLoop = new NioEventLoop("HotRodClient-NioEventLoop", soTimeout);
+      eventLoop.start();
+      if (cfg.getPingOnStartup()) {
+         log.trace("Executing first ping!");
+         try {
+            new PingOperation(topologyId, getTransport()).execute();
+         } catch (Exception e) {
+            log.tracef("Ignoring ping request failure during ping on startup: %s", e.getMessage());
+         }
+      }
+   }
+
+   @Override
+   public void destroy() {
+      for (AtomicReferenceArray<NioConnection> serverConnections : connections.values()) {
+         for (int i = 0; i < serverConnections.length(); i++) {
+            NioConnection connection = serverConnections.get(i);
+            if (connection != null) connection.shutdown();
+         }
+      }
+      connections.clear();
+      eventLoop.stop();
+   }
+
+   @Override
+   public Transport getTransport() {
+      return newTransport(balancer.nextServer());
+   }
+
+   @Override
+   public Transport getTransport(byte[] key) {
+      InetSocketAddress server;
+      if (consistentHash != null) {
+         server = consistentHash.getServer(key);
+         if (log.isTraceEnabled()) {
+            log.tracef("Using consistent hash for determining the server: %s", server);
+         }
+      } else {
+         server = balancer.nextServer();
+         if (log.isTraceEnabled()) {
+            log.tracef("Using the balancer for determining the server: %s", server);
+         }
+      }
+      return newTransport(server);
+   }
+
+   @Override
+   public Transport getTransport(InetSocketAddress server) {
+      return newTransport(server);
+   }
+
+   @Override
+   public void releaseTransport(Transport transport) {
+      // transports are not pooled, only their connections are shared
+   }
+
+   private Transport newTransport(InetSocketAddress server) {
+      AtomicReferenceArray<NioConnection> serverConnections = connections.get(server);
+      if (serverConnections == null) {
+         serverConnections = new AtomicReferenceArray<NioConnection>(connectionsPerServer);
+         AtomicReferenceArray<NioConnection> existing = connections.putIfAbsent(server, serverConnections);
+         if (existing != null) serverConnections = existing;
+      }
+      int index = (connectionIndex.getAndIncrement() & Integer.MAX_VALUE) % serverConnections.length();
+      NioConnection connection = serverConnections.get(index);
+      while (connection == null || !connection.isOpen()) {
+         // (re)connect lazily: only one of the racing threads gets its connection installed
+         NioConnection newConnection = new NioConnection(server, eventLoop, tcpNoDelay);
+         if (serverConnections.compareAndSet(index, connection, newConnection)) {
+            if (log.isTraceEnabled()) log.tracef("Opened connection %s", newConnection);
+            connection = newConnection;
+         } else {
+            newConnection.close(null);
+            connection = serverConnections.get(index);
+         }
+      }
+      return new NioTransport(connection, this);
+   }
+
+   @Override
+   public void updateServers(Collection<InetSocketAddress> newServers) {
+      synchronized (this) {//only one updateServers at a time.
+         Set<InetSocketAddress> addedServers = new HashSet<InetSocketAddress>(newServers);
+         addedServers.removeAll(servers);
+         Set<InetSocketAddress> failedServers = new HashSet<InetSocketAddress>(servers);
+         failedServers.removeAll(newServers);
+         if (addedServers.isEmpty() && failedServers.isEmpty()) {
+            // topology responses might be read more than once, see ResponseReader
+            log.debug("Same list of servers, not changing the connections");
+            return;
+         }
+         if (log.isTraceEnabled()) {
+            log.tracef("Current list: %s", servers);
+            log.tracef("New list: %s", newServers);
+            log.tracef("Added servers: %s", addedServers);
+            log.tracef("Removed servers: %s", failedServers);
+         }
+
+         // connections to new servers are opened on first use
+         for (InetSocketAddress server : addedServers) log.newServerAdded(server);
+         servers.addAll(addedServers);
+         balancer.setServers(newServers);
+
+         // connections to removed servers are closed once their outstanding requests have been answered
+         for (InetSocketAddress server : failedServers) {
+            log.removingServer(server);
+            servers.remove(server);
+            AtomicReferenceArray<NioConnection> serverConnections = connections.remove(server);
+            if (serverConnections == null) continue;
+            for (int i = 0; i < serverConnections.length(); i++) {
+               NioConnection connection = serverConnections.get(i);
+               if (connection != null) connection.shutdown();
+            }
+         }
+      }
+   }
+
+   @Override
+   public void updateHashFunction(LinkedHashMap<InetSocketAddress, Integer> servers2HashCode, int numKeyOwners, short hashFunctionVersion, int hashSpace) {
+      ConsistentHash hash = hashFactory.newConsistentHash(hashFunctionVersion);
+      if (hash == null) {
+         log.noHasHFunctionConfigured(hashFunctionVersion);
+      } else {
+         hash.init(servers2HashCode, numKeyOwners, hashSpace);
+      }
+      consistentHash = hash;
+   }
+
+   @Override
+   public Collection<InetSocketAddress> getServers() {
+      return servers;
+   }
+
+   @Override
+   public ConsistentHash getConsistentHash() {
+      return consistentHash;
+   }
+
+   @Override
+   public boolean isTcpNoDelay() {
+      return tcpNoDelay;
+   }
+
+   /**
+    * Used as the number of attempts for an operation, so that a failure of every connection can be recovered from.
+    */
+   @Override
+   public int getTransportCount() {
+      if (Thread.currentThread().isInterrupted()) {
+         return -1;
+      }
+      return connectionsPerServer * servers.size();
+   }
+
+   @Override
+   public int getSoTimeout() {
+      return soTimeout;
+   }
+
+   public RequestBalancingStrategy getBalancer() {
+      return balancer;
+   }
+}
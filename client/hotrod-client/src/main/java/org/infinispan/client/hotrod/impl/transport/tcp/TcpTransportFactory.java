@@ -131,6 +131,11 @@ public class TcpTransportFactory implements TransportFactory {
       return borrowTransportFromPool(server);
    }
 
+   @Override
+   public Transport getTransport(InetSocketAddress server) {
+      return borrowTransportFromPool(server);
+   }
+
    @Override
    public void releaseTransport(Transport transport) {
       TcpTransport tcpTransport = (TcpTransport) transport;
@@ -199,6 +204,7 @@ public class TcpTransportFactory implements TransportFactory {
       }
    }
 
+   @Override
    public Collection<InetSocketAddress> getServers() {
       return servers;
    }
@@ -221,6 +227,7 @@ public class TcpTransportFactory implements TransportFactory {
       }
    }
 
+   @Override
    public ConsistentHash getConsistentHash() {
       return consistentHash;
    }
@@ -113,4 +113,24 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "Could not fetch transport", id = 4017)
    void couldNotFetchTransport(@Cause Exception e);
 
+   @LogMessage(level = WARN)
+   @Message(value = "Listener %s of an asynchronous operation threw an exception", id = 4018)
+   void errorNotifyingFutureListener(Object listener, @Cause RuntimeException e);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Connection to server %s failed", id = 4019)
+   void connectionFailed(InetSocketAddress server, @Cause Exception e);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Issues closing connection to server %s", id = 4020)
+   void errorClosingConnection(InetSocketAddress server, @Cause IOException e);
+
+   @LogMessage(level = ERROR)
+   @Message(value = "Unexpected error in the Hot Rod client event loop", id = 4021)
+   void errorInEventLoop(@Cause Throwable t);
+
+   @LogMessage(level = WARN)
+   @Message(value = "Lost near cache invalidations of cache '%s' from server %s, clearing the near cache", id = 4022)
+   void nearCacheListenerFailed(String cacheName, InetSocketAddress server, @Cause Exception e);
+
 }
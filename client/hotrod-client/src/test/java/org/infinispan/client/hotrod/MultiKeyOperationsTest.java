@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Tests the operations sending several keys per request against a distributed cluster, where the keys of one
+ * invocation are owned by different servers.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "client.hotrod.MultiKeyOperationsTest")
+public class MultiKeyOperationsTest extends MultipleCacheManagersTest {
+
+   private HotRodServer[] hotRodServers = new HotRodServer[3];
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, String> remoteCache;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.setNumOwners(1);
+      for (int i = 0; i < hotRodServers.length; i++) {
+         addClusterEnabledCacheManager(config);
+      }
+      for (int i = 0; i < hotRodServers.length; i++) {
+         hotRodServers[i] = TestHelper.startHotRodServer(manager(i));
+      }
+      waitForClusterToForm();
+
+      Properties props = new Properties();
+      props.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotRodServers[0].getPort());
+      remoteCacheManager = new RemoteCacheManager(props);
+      remoteCache = remoteCacheManager.getCache();
+   }
+
+   @AfterClass
+   @Override
+   protected void destroy() {
+      super.destroy();
+      remoteCacheManager.stop();
+      for (HotRodServer server : hotRodServers) server.stop();
+   }
+
+   public void testPutAllAndGetAll() {
+      // a single put so that the client learns the topology and the hash
+      remoteCache.put("first", "value");
+
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < 100; i++) data.put("k" + i, "v" + i);
+      remoteCache.putAll(data);
+
+      for (int i = 0; i < 100; i++) assert ("v" + i).equals(remoteCache.get("k" + i));
+
+      Set<String> keys = new HashSet<String>(data.keySet());
+      keys.add("missing");
+      Map<String, String> result = remoteCache.getAll(keys);
+      assert result.equals(data) : "Obtained " + result;
+   }
+
+   public void testRemoveAll() {
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < 50; i++) data.put("r" + i, "v" + i);
+      remoteCache.putAll(data);
+
+      Set<String> toRemove = new HashSet<String>();
+      for (int i = 0; i < 25; i++) toRemove.add("r" + i);
+      remoteCache.removeAll(toRemove);
+
+      for (int i = 0; i < 50; i++) {
+         if (i < 25) assert remoteCache.get("r" + i) == null;
+         else assert ("v" + i).equals(remoteCache.get("r" + i));
+      }
+   }
+
+   public void testEmptyKeySet() {
+      assert remoteCache.getAll(new HashSet<String>()).isEmpty();
+      remoteCache.removeAll(new HashSet<String>());
+      remoteCache.putAll(new HashMap<String, String>());
+   }
+
+   public void testPutAllAsync() throws Exception {
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < 50; i++) data.put("a" + i, "v" + i);
+      assert remoteCache.putAllAsync(data).get() == null;
+      assert remoteCache.getAll(data.keySet()).equals(data);
+   }
+}
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.impl.ConfigurationProperties;
+import org.infinispan.client.hotrod.impl.RemoteCacheImpl;
+import org.infinispan.client.hotrod.impl.nearcache.NearCache;
+import org.infinispan.config.Configuration;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+
+/**
+ * Tests that a near cache is kept coherent by the invalidations pushed by a cluster of servers, each of them owning
+ * part of the keys.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "client.hotrod.NearCacheTest")
+public class NearCacheTest extends MultipleCacheManagersTest {
+
+   private HotRodServer[] hotRodServers = new HotRodServer[2];
+   private RemoteCacheManager nearCacheManager;
+   private RemoteCacheManager otherCacheManager;
+   private RemoteCache<String, String> nearCached;
+   private RemoteCache<String, String> other;
+   private NearCache nearCache;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.setNumOwners(1);
+      for (int i = 0; i < hotRodServers.length; i++) {
+         addClusterEnabledCacheManager(config);
+      }
+      for (int i = 0; i < hotRodServers.length; i++) {
+         hotRodServers[i] = TestHelper.startHotRodServer(manager(i));
+      }
+      waitForClusterToForm();
+
+      Properties props = new Properties();
+      props.put(ConfigurationProperties.SERVER_LIST, TestHelper.getServersString(hotRodServers));
+      props.put(ConfigurationProperties.NEAR_CACHE_MAX_ENTRIES, "100");
+      nearCacheManager = new RemoteCacheManager(props);
+      nearCached = nearCacheManager.getCache();
+      nearCache = ((RemoteCacheImpl) nearCached).getNearCache();
+      otherCacheManager = new RemoteCacheManager(TestHelper.getServersString(hotRodServers));
+      other = otherCacheManager.getCache();
+   }
+
+   @AfterClass
+   @Override
+   protected void destroy() {
+      super.destroy();
+      nearCacheManager.stop();
+      otherCacheManager.stop();
+      for (HotRodServer server : hotRodServers) server.stop();
+   }
+
+   @BeforeMethod
+   public void waitForNearCache() {
+      other.clear();
+      eventually(new Condition() {
+         public boolean isSatisfied() throws Exception {
+            return nearCache.isActive() && nearCache.size() == 0;
+         }
+      });
+   }
+
+   public void testDisabledByDefault() {
+      assert ((RemoteCacheImpl) other).getNearCache() == null;
+   }
+
+   public void testReadsAreCached() {
+      other.put("k", "v");
+      assert "v".equals(nearCached.get("k"));
+      assert nearCache.size() == 1;
+      assert "v".equals(nearCached.get("k"));
+      assert nearCached.get("missing") == null;
+      assert nearCache.size() == 1 : "Missing keys should not be cached";
+   }
+
+   public void testRemoteModificationsInvalidate() {
+      for (int i = 0; i < 10; i++) other.put("k" + i, "v" + i);
+      for (int i = 0; i < 10; i++) assert ("v" + i).equals(nearCached.get("k" + i));
+      assert nearCache.size() == 10;
+
+      // Keys are spread over both servers, so invalidations come from both
+      for (int i = 0; i < 5; i++) other.put("k" + i, "updated" + i);
+      for (int i = 5; i < 10; i++) other.remove("k" + i);
+      eventually(new Condition() {
+         public boolean isSatisfied() throws Exception {
+            return nearCache.size() == 0;
+         }
+      });
+      for (int i = 0; i < 5; i++) assert ("updated" + i).equals(nearCached.get("k" + i));
+      for (int i = 5; i < 10; i++) assert nearCached.get("k" + i) == null;
+   }
+
+   public void testRemoteClearInvalidates() {
+      other.put("k", "v");
+      assert "v".equals(nearCached.get("k"));
+      other.clear();
+      eventually(new Condition() {
+         public boolean isSatisfied() throws Exception {
+            return nearCached.get("k") == null;
+         }
+      });
+   }
+
+   public void testOwnWritesAreVisibleImmediately() {
+      nearCached.put("k", "v1");
+      assert "v1".equals(nearCached.get("k"));
+      nearCached.put("k", "v2");
+      assert "v2".equals(nearCached.get("k"));
+      nearCached.replace("k", "v3");
+      assert "v3".equals(nearCached.get("k"));
+      nearCached.remove("k");
+      assert nearCached.get("k") == null;
+   }
+}
@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.client.hotrod.impl.transport.nio.NioTransportFactory;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs the async API tests against the non-blocking transport, plus many requests in flight on the same connection.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "client.hotrod.NioRemoteAsyncAPITest")
+public class NioRemoteAsyncAPITest extends RemoteAsyncAPITest {
+
+   @Override
+   protected void configureClient(Properties props) {
+      props.put("infinispan.client.hotrod.transport_factory", NioTransportFactory.class.getName());
+   }
+
+   public void testManyRequestsInFlight() throws Exception {
+      RemoteCache<String, String> c = remoteCache();
+      int count = 1000;
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < count; i++) data.put("key" + i, "value" + i);
+      assert c.putAllAsync(data).get() == null;
+
+      List<NotifyingFuture<String>> gets = new ArrayList<NotifyingFuture<String>>(count);
+      for (int i = 0; i < count; i++) gets.add(c.getAsync("key" + i));
+      for (int i = 0; i < count; i++) {
+         assert ("value" + i).equals(gets.get(i).get()) : "Obtained " + gets.get(i).get();
+      }
+
+      List<NotifyingFuture<String>> removes = new ArrayList<NotifyingFuture<String>>(count);
+      for (int i = 0; i < count; i++) removes.add(c.removeAsync("key" + i));
+      for (int i = 0; i < count; i++) {
+         assert ("value" + i).equals(removes.get(i).get());
+      }
+      assert c.isEmpty();
+   }
+}
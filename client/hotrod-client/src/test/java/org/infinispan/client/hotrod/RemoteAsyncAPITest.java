@@ -55,11 +55,19 @@ public class RemoteAsyncAPITest extends SingleCacheManagerTest {
       props.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotrodServer.getPort());
       props.put("infinispan.client.hotrod.force_return_values","true");
       props.put("testOnBorrow", "false");
+      configureClient(props);
       rcm = new RemoteCacheManager(props);
       c = rcm.getCache(true);
       return cm;
    }
 
+   protected void configureClient(Properties props) {
+   }
+
+   protected RemoteCache<String, String> remoteCache() {
+      return c;
+   }
+
    @AfterClass
    @Override
    protected void destroyAfterClass() {
@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.client.hotrod;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.server.hotrod.HotRodServer;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+
+/**
+ * Tests the paged entry iteration against a distributed cluster where every entry is owned by two servers.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "client.hotrod.RemoteIterationTest")
+public class RemoteIterationTest extends MultipleCacheManagersTest {
+
+   private HotRodServer[] hotRodServers = new HotRodServer[3];
+   private RemoteCacheManager remoteCacheManager;
+   private RemoteCache<String, String> remoteCache;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.setNumOwners(2);
+      for (int i = 0; i < hotRodServers.length; i++) {
+         addClusterEnabledCacheManager(config);
+      }
+      for (int i = 0; i < hotRodServers.length; i++) {
+         hotRodServers[i] = TestHelper.startHotRodServer(manager(i));
+      }
+      waitForClusterToForm();
+
+      Properties props = new Properties();
+      props.put("infinispan.client.hotrod.server_list", "127.0.0.1:" + hotRodServers[0].getPort());
+      remoteCacheManager = new RemoteCacheManager(props);
+      remoteCache = remoteCacheManager.getCache();
+   }
+
+   @AfterClass
+   @Override
+   protected void destroy() {
+      super.destroy();
+      remoteCacheManager.stop();
+      for (HotRodServer server : hotRodServers) server.stop();
+   }
+
+   public void testIterateInBatches() {
+      remoteCache.clear();
+      Map<String, String> data = new HashMap<String, String>();
+      for (int i = 0; i < 200; i++) data.put("k" + i, "v" + i);
+      remoteCache.putAll(data);
+
+      Map<String, String> iterated = new HashMap<String, String>();
+      CloseableIterator<Map.Entry<String, String>> it = remoteCache.retrieveEntries(7);
+      while (it.hasNext()) {
+         Map.Entry<String, String> entry = it.next();
+         assert iterated.put(entry.getKey(), entry.getValue()) == null : "Returned twice: " + entry.getKey();
+      }
+      assert iterated.equals(data) : "Obtained " + iterated;
+      try {
+         it.next();
+         assert false : "Expected NoSuchElementException";
+      } catch (NoSuchElementException e) {
+         // expected
+      }
+   }
+
+   public void testEmptyCache() {
+      remoteCache.clear();
+      assert !remoteCache.retrieveEntries(10).hasNext();
+   }
+
+   public void testClose() {
+      remoteCache.clear();
+      for (int i = 0; i < 50; i++) remoteCache.put("c" + i, "v" + i);
+      CloseableIterator<Map.Entry<String, String>> it = remoteCache.retrieveEntries(5);
+      assert it.hasNext();
+      it.next();
+      it.close();
+      assert !it.hasNext();
+   }
+}
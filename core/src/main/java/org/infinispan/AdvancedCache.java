@@ -36,6 +36,8 @@ import org.infinispan.stats.Stats;
 import javax.transaction.TransactionManager;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * An advanced interface that exposes additional methods not available on {@link Cache}.
@@ -144,6 +146,18 @@ public interface AdvancedCache<K, V> extends Cache<K, V> {
     */
    boolean lock(Collection<? extends K> keys);
 
+   /**
+    * Retrieves the values mapped to several keys in a single invocation.  This is equivalent to calling
+    * {@link #get(Object)} for each key, except that the keys travel through the interceptor chain together: in
+    * distributed mode the keys which are neither local nor in L1 are fetched with a single remote call per owner, and
+    * these calls are made in parallel.
+    *
+    * @param keys keys to retrieve
+    * @return a map of the keys that are mapped in the cache to their values.  Keys with no mapping are not present in
+    *         the returned map.
+    */
+   Map<K, V> getAll(Set<? extends K> keys);
+
    RpcManager getRpcManager();
 
    BatchContainer getBatchContainer();
@@ -26,6 +26,7 @@ import org.infinispan.batch.BatchContainer;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -219,6 +220,17 @@ public class CacheDelegate<K, V> extends CacheSupport<K,V> implements AdvancedCa
       return (V) invoker.invoke(ctx, command);
    }
 
+   @SuppressWarnings("unchecked")
+   public final Map<K, V> getAll(Set<? extends K> keys) {
+      if (keys == null) {
+         throw new NullPointerException("Expected set cannot be null");
+      }
+      for (Object key : keys) assertKeyNotNull(key);
+      InvocationContext ctx = getInvocationContext(false);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(keys, ctx.getFlags());
+      return (Map<K, V>) invoker.invoke(ctx, command);
+   }
+
    @SuppressWarnings("unchecked")
    public final V remove(Object key) {
       assertKeyNotNull(key);
@@ -75,10 +75,56 @@ public class AtomicMapLookup {
             value = AtomicHashMap.newInstance(cache, key);
          else return null;
       }
+      if (value instanceof FineGrainedAtomicHashMap)
+         return new FineGrainedAtomicHashMapProxy<K, V>(cache, key);
       AtomicHashMap<K, V> castValue = (AtomicHashMap<K, V>) value;
       return castValue.getProxy(cache, key, cache.getAdvancedCache().getBatchContainer(), cache.getAdvancedCache().getInvocationContextContainer());
    }
 
+   /**
+    * Retrieves a fine-grained atomic map from a given cache, stored under a given key.  If a fine-grained atomic map
+    * did not exist, one is created and registered in an atomic fashion.  Unlike the maps returned by {@link
+    * #getAtomicMap(Cache, Object)}, fine-grained atomic maps lock each sub-key being written rather than the whole map,
+    * see {@link FineGrainedAtomicHashMap}.
+    * <p/>
+    * The sub-key locks are held until the transaction completes, so the cache must be transactional or have invocation
+    * batching enabled.  Writes made outside a transaction or batch run in an implicit one, and writes to a cache
+    * without a transaction manager throw an {@link IllegalStateException}.
+    *
+    * @param cache underlying cache
+    * @param key key under which the atomic map exists
+    * @param <MK> key param of the cache
+    * @param <K> key param of the AtomicMap
+    * @param <V> value param of the AtomicMap
+    * @return an AtomicMap
+    */
+   public static <MK, K, V> AtomicMap<K, V> getFineGrainedAtomicMap(Cache<MK, ?> cache, MK key) {
+      return getFineGrainedAtomicMap(cache, key, true);
+   }
+
+   /**
+    * Retrieves a fine-grained atomic map from a given cache, stored under a given key.
+    *
+    * @param cache underlying cache
+    * @param key key under which the atomic map exists
+    * @param createIfAbsent if true, a new atomic map is created if one doesn't exist; otherwise null is returned if the map didn't exist.
+    * @param <MK> key param of the cache
+    * @param <K> key param of the AtomicMap
+    * @param <V> value param of the AtomicMap
+    * @return an AtomicMap, or null if one did not exist.
+    */
+   public static <MK, K, V> AtomicMap<K, V> getFineGrainedAtomicMap(Cache<MK, ?> cache, MK key, boolean createIfAbsent) {
+      Object value = cache.get(key);
+      if (value == null) {
+         if (createIfAbsent)
+            value = FineGrainedAtomicHashMap.newInstance(cache, key);
+         else return null;
+      }
+      if (value instanceof AtomicHashMap)
+         throw new IllegalStateException("Key " + key + " already holds an atomic map that is not fine-grained");
+      return new FineGrainedAtomicHashMapProxy<K, V>(cache, key);
+   }
+
    /**
     * Retrieves an atomic map from a given cache, stored under a given key, for reading only.  The atomic map returned
     * will not support updates, and if the map did not in fact exist, an empty map is returned.
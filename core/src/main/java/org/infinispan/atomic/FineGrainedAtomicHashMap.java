@@ -0,0 +1,330 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.atomic;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.Cache;
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link AtomicMap} whose sub-keys are locked and updated independently, so that transactions writing different
+ * sub-keys of the same map do not serialize on the map's cache key.  Callers should obtain references to such maps via
+ * {@link AtomicMapLookup#getFineGrainedAtomicMap(Cache, Object)}.
+ * <p/>
+ * The committed contents live in a concurrent map which readers access directly, without copying.  A transaction
+ * writing to the map does not modify it though: each write is put in the cache as a
+ * {@link FineGrainedAtomicHashMapDelta} holding only the touched sub-entries, which merges into a transaction-private
+ * view of the map.  The changes recorded
+ * in that view are applied to the committed contents when the transaction's entry commits, while the locks on the
+ * touched sub-keys are still held.
+ * <p/>
+ * Reads of sub-keys not written by the current transaction see the latest committed values, i.e. they have
+ * {@link org.infinispan.util.concurrent.IsolationLevel#READ_COMMITTED} semantics regardless of the cache's isolation
+ * level.  Null values are not supported.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see AtomicMapLookup
+ * @since 5.0
+ */
+@ThreadSafe
+public class FineGrainedAtomicHashMap<K, V> implements AtomicMap<K, V>, DeltaAware {
+   private static final Object REMOVED = new Object();
+
+   final ConcurrentMap<K, V> delegate;
+   private final FineGrainedAtomicHashMap<K, V> committed;
+   // changes made by the transaction owning this view, both null for the committed instance
+   private final List<Operation<K, V>> operations;
+   private final Map<K, Object> changes;
+
+   public FineGrainedAtomicHashMap() {
+      this(new ConcurrentHashMap<K, V>());
+   }
+
+   private FineGrainedAtomicHashMap(ConcurrentMap<K, V> delegate) {
+      this.delegate = delegate;
+      this.committed = this;
+      this.operations = null;
+      this.changes = null;
+   }
+
+   private FineGrainedAtomicHashMap(FineGrainedAtomicHashMap<K, V> committed) {
+      this.delegate = committed.delegate;
+      this.committed = committed;
+      this.operations = new LinkedList<Operation<K, V>>();
+      this.changes = new HashMap<K, Object>();
+   }
+
+   /**
+    * Construction only allowed through this factory method.  User code should use {@link
+    * AtomicMapLookup#getFineGrainedAtomicMap(Cache, Object)}.
+    */
+   @SuppressWarnings("unchecked")
+   static <K, V> FineGrainedAtomicHashMap<K, V> newInstance(Cache cache, Object cacheKey) {
+      FineGrainedAtomicHashMap<K, V> value = new FineGrainedAtomicHashMap<K, V>();
+      Object oldValue = cache.putIfAbsent(cacheKey, value);
+      if (oldValue != null) value = (FineGrainedAtomicHashMap<K, V>) oldValue;
+      return value;
+   }
+
+   /**
+    * Records the given operations in the view of the transaction merging them, creating that view if this is the
+    * committed instance.
+    */
+   FineGrainedAtomicHashMap<K, V> merge(List<Operation<K, V>> ops) {
+      FineGrainedAtomicHashMap<K, V> view = committed == this ? new FineGrainedAtomicHashMap<K, V>(this) : this;
+      if (ops != null) {
+         Map<K, V> recorder = view.new ChangeRecorder();
+         for (Operation<K, V> op : ops) {
+            op.replay(recorder);
+            view.operations.add(op);
+         }
+      }
+      return view;
+   }
+
+   /**
+    * Applies the changes recorded in this view to the committed contents of the map.  Called when the entry holding
+    * this view is committed.
+    *
+    * @return the committed instance, to be stored in the data container
+    */
+   public FineGrainedAtomicHashMap<K, V> applyChanges() {
+      if (committed != this) {
+         for (Operation<K, V> op : operations) op.replay(delegate);
+      }
+      return committed;
+   }
+
+   @SuppressWarnings("unchecked")
+   public V get(Object key) {
+      if (changes != null && changes.containsKey(key)) {
+         Object value = changes.get(key);
+         return value == REMOVED ? null : (V) value;
+      }
+      return delegate.get(key);
+   }
+
+   public boolean containsKey(Object key) {
+      if (changes != null && changes.containsKey(key))
+         return changes.get(key) != REMOVED;
+      return delegate.containsKey(key);
+   }
+
+   public int size() {
+      return read().size();
+   }
+
+   public boolean isEmpty() {
+      return read().isEmpty();
+   }
+
+   public boolean containsValue(Object value) {
+      return read().containsValue(value);
+   }
+
+   public Set<K> keySet() {
+      return Collections.unmodifiableSet(read().keySet());
+   }
+
+   public Collection<V> values() {
+      return Collections.unmodifiableCollection(read().values());
+   }
+
+   public Set<Entry<K, V>> entrySet() {
+      return Collections.unmodifiableMap(read()).entrySet();
+   }
+
+   /**
+    * @return the committed contents if this view carries no change, or a snapshot including the changes otherwise
+    */
+   @SuppressWarnings("unchecked")
+   private Map<K, V> read() {
+      if (changes == null || changes.isEmpty())
+         return delegate;
+      Map<K, V> snapshot = new HashMap<K, V>(delegate);
+      for (Entry<K, Object> e : changes.entrySet()) {
+         if (e.getValue() == REMOVED)
+            snapshot.remove(e.getKey());
+         else
+            snapshot.put(e.getKey(), (V) e.getValue());
+      }
+      return snapshot;
+   }
+
+   // writes are only possible through the proxy, as they need to lock their sub-keys
+
+   public V put(K key, V value) {
+      throw new UnsupportedOperationException("Fine-grained atomic maps can only be written through AtomicMapLookup");
+   }
+
+   public V remove(Object key) {
+      throw new UnsupportedOperationException("Fine-grained atomic maps can only be written through AtomicMapLookup");
+   }
+
+   public void putAll(Map<? extends K, ? extends V> m) {
+      throw new UnsupportedOperationException("Fine-grained atomic maps can only be written through AtomicMapLookup");
+   }
+
+   public void clear() {
+      throw new UnsupportedOperationException("Fine-grained atomic maps can only be written through AtomicMapLookup");
+   }
+
+   public Delta delta() {
+      FineGrainedAtomicHashMapDelta delta = new FineGrainedAtomicHashMapDelta();
+      if (operations != null) {
+         for (Operation<K, V> op : operations) delta.addOperation(op);
+      }
+      return delta;
+   }
+
+   public void commit() {
+      // changes are tracked per transaction by the views, and applied through applyChanges()
+   }
+
+   @Override
+   public String toString() {
+      return "FineGrainedAtomicHashMap{" +
+            "delegate=" + delegate +
+            (changes == null ? "" : ", changes=" + changes) +
+            '}';
+   }
+
+   /**
+    * Records the replayed operations in the changes of this view.
+    */
+   private class ChangeRecorder extends AbstractMap<K, V> {
+      @Override
+      public V put(K key, V value) {
+         changes.put(key, value);
+         return null;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public V remove(Object key) {
+         changes.put((K) key, REMOVED);
+         return null;
+      }
+
+      @Override
+      public Set<Entry<K, V>> entrySet() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   /**
+    * Key locked on behalf of a sub-key of a fine-grained atomic map, so that writers of different sub-keys do not
+    * contend for the same lock.
+    */
+   public static final class SubKey {
+      final Object mapKey;
+      final Object key;
+
+      SubKey(Object mapKey, Object key) {
+         this.mapKey = mapKey;
+         this.key = key;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof SubKey)) return false;
+         SubKey other = (SubKey) o;
+         return mapKey.equals(other.mapKey) && (key == null ? other.key == null : key.equals(other.key));
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * mapKey.hashCode() + (key == null ? 0 : key.hashCode());
+      }
+
+      @Override
+      public String toString() {
+         return "SubKey{" + mapKey + "/" + key + '}';
+      }
+
+      public static class Externalizer extends AbstractExternalizer<SubKey> {
+         @Override
+         public void writeObject(ObjectOutput output, SubKey subKey) throws IOException {
+            output.writeObject(subKey.mapKey);
+            output.writeObject(subKey.key);
+         }
+
+         @Override
+         public SubKey readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            return new SubKey(input.readObject(), input.readObject());
+         }
+
+         @Override
+         public Integer getId() {
+            return Ids.FINE_GRAINED_ATOMIC_MAP_SUB_KEY;
+         }
+
+         @Override
+         public Set<Class<? extends SubKey>> getTypeClasses() {
+            return Util.<Class<? extends SubKey>>asSet(SubKey.class);
+         }
+      }
+   }
+
+   public static class Externalizer extends AbstractExternalizer<FineGrainedAtomicHashMap> {
+      @Override
+      public void writeObject(ObjectOutput output, FineGrainedAtomicHashMap map) throws IOException {
+         output.writeObject(new HashMap(map.read()));
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public FineGrainedAtomicHashMap readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+         Map contents = (Map) input.readObject();
+         return new FineGrainedAtomicHashMap(new ConcurrentHashMap(contents));
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.FINE_GRAINED_ATOMIC_HASH_MAP;
+      }
+
+      @Override
+      public Set<Class<? extends FineGrainedAtomicHashMap>> getTypeClasses() {
+         return Util.<Class<? extends FineGrainedAtomicHashMap>>asSet(FineGrainedAtomicHashMap.class);
+      }
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.atomic;
+
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Changes that have occurred on a {@link FineGrainedAtomicHashMap}.  Kept apart from {@link AtomicHashMapDelta} so
+ * that the wire format of regular atomic map deltas is unchanged.
+ *
+ * @since 5.0
+ */
+public class FineGrainedAtomicHashMapDelta implements Delta {
+   private List<Operation> changeLog;
+
+   @SuppressWarnings("unchecked")
+   public DeltaAware merge(DeltaAware d) {
+      FineGrainedAtomicHashMap other;
+      if (d instanceof FineGrainedAtomicHashMap)
+         other = (FineGrainedAtomicHashMap) d;
+      else
+         other = new FineGrainedAtomicHashMap();
+      return other.merge(changeLog);
+   }
+
+   public void addOperation(Operation o) {
+      if (changeLog == null) {
+         // lazy init
+         changeLog = new LinkedList<Operation>();
+      }
+      changeLog.add(o);
+   }
+
+   public int getChangeLogSize() {
+      return changeLog == null ? 0 : changeLog.size();
+   }
+
+   @Override
+   public String toString() {
+      return "FineGrainedAtomicHashMapDelta{" +
+            "changeLog=" + changeLog +
+            '}';
+   }
+
+   public static class Externalizer extends AbstractExternalizer<FineGrainedAtomicHashMapDelta> {
+      @Override
+      public void writeObject(ObjectOutput output, FineGrainedAtomicHashMapDelta delta) throws IOException {
+         output.writeObject(delta.changeLog);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public FineGrainedAtomicHashMapDelta readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+         FineGrainedAtomicHashMapDelta delta = new FineGrainedAtomicHashMapDelta();
+         delta.changeLog = (List<Operation>) input.readObject();
+         return delta;
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.FINE_GRAINED_ATOMIC_HASH_MAP_DELTA;
+      }
+
+      @Override
+      public Set<Class<? extends FineGrainedAtomicHashMapDelta>> getTypeClasses() {
+         return Util.<Class<? extends FineGrainedAtomicHashMapDelta>>asSet(FineGrainedAtomicHashMapDelta.class);
+      }
+   }
+}
@@ -0,0 +1,217 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.atomic;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.batch.AutoBatchSupport;
+import org.infinispan.context.Flag;
+import org.infinispan.marshall.MarshalledValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A layer of indirection around a {@link FineGrainedAtomicHashMap} that locks the sub-keys being written rather than
+ * the whole map.  Each write locks its sub-keys eagerly, for the remainder of the transaction or batch, and records
+ * the change as a {@link FineGrainedAtomicHashMapDelta} put under the map's key without locking that key.  Writes
+ * made outside a transaction run in an implicit one, which requires the cache to have a transaction manager.
+ * <p/>
+ * Proxies are created by {@link AtomicMapLookup#getFineGrainedAtomicMap(Cache, Object)}, and would not be created
+ * by end-user code directly.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see FineGrainedAtomicHashMap
+ * @since 5.0
+ */
+public class FineGrainedAtomicHashMapProxy<K, V> extends AutoBatchSupport implements AtomicMap<K, V> {
+   final Object deltaMapKey;
+   final AdvancedCache<Object, Object> cache;
+
+   @SuppressWarnings("unchecked")
+   FineGrainedAtomicHashMapProxy(Cache<?, ?> cache, Object deltaMapKey) {
+      this.cache = (AdvancedCache<Object, Object>) cache.getAdvancedCache();
+      this.deltaMapKey = deltaMapKey;
+      this.batchContainer = this.cache.getBatchContainer();
+   }
+
+   @SuppressWarnings("unchecked")
+   private FineGrainedAtomicHashMap<K, V> getDeltaMapForRead() {
+      Object object = cache.get(deltaMapKey);
+      Object map = (object instanceof MarshalledValue) ? ((MarshalledValue) object).get() : object;
+      return (FineGrainedAtomicHashMap<K, V>) map;
+   }
+
+   private FineGrainedAtomicHashMap<K, V> getDeltaMapForWrite(Collection<?> keys) {
+      List<FineGrainedAtomicHashMap.SubKey> subKeys = new ArrayList<FineGrainedAtomicHashMap.SubKey>(keys.size());
+      for (Object key : keys) subKeys.add(new FineGrainedAtomicHashMap.SubKey(deltaMapKey, key));
+      cache.lock(subKeys);
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      // creating the map locks its key, which only happens once
+      return map == null ? FineGrainedAtomicHashMap.<K, V>newInstance(cache, deltaMapKey) : map;
+   }
+
+   /**
+    * Sub-key locks are only released when a transaction completes, so every write runs in the caller's transaction or
+    * batch, or in an implicit one started here.  Without a transaction manager neither is possible.
+    */
+   @Override
+   protected void startAtomic() {
+      if (cache.getTransactionManager() == null)
+         throw new IllegalStateException("Fine-grained atomic maps can only be written in a transactional cache or " +
+               "one with invocation batching enabled, which cache " + cache.getName() + " is not");
+      super.startAtomic();
+   }
+
+   private void write(FineGrainedAtomicHashMapDelta delta) {
+      cache.withFlags(Flag.SKIP_LOCKING, Flag.SKIP_REMOTE_LOOKUP).put(deltaMapKey, delta);
+   }
+
+   // readers
+
+   public Set<K> keySet() {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map == null ? Collections.<K>emptySet() : map.keySet();
+   }
+
+   public Collection<V> values() {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map == null ? Collections.<V>emptySet() : map.values();
+   }
+
+   public Set<Entry<K, V>> entrySet() {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map == null ? Collections.<Entry<K, V>>emptySet() : map.entrySet();
+   }
+
+   public int size() {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map == null ? 0 : map.size();
+   }
+
+   public boolean isEmpty() {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map == null || map.isEmpty();
+   }
+
+   public boolean containsKey(Object key) {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map != null && map.containsKey(key);
+   }
+
+   public boolean containsValue(Object value) {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map != null && map.containsValue(value);
+   }
+
+   public V get(Object key) {
+      FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+      return map == null ? null : map.get(key);
+   }
+
+   // writers
+
+   public V put(K key, V value) {
+      if (value == null) throw new NullPointerException("Fine-grained atomic maps do not support null values");
+      try {
+         startAtomic();
+         V oldValue = getDeltaMapForWrite(Collections.singleton(key)).get(key);
+         FineGrainedAtomicHashMapDelta delta = new FineGrainedAtomicHashMapDelta();
+         delta.addOperation(new PutOperation<K, V>(key, oldValue, value));
+         write(delta);
+         return oldValue;
+      }
+      finally {
+         endAtomic();
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   public V remove(Object key) {
+      try {
+         startAtomic();
+         FineGrainedAtomicHashMap<K, V> map = getDeltaMapForWrite(Collections.singleton(key));
+         if (!map.containsKey(key)) return null;
+         V oldValue = map.get(key);
+         FineGrainedAtomicHashMapDelta delta = new FineGrainedAtomicHashMapDelta();
+         delta.addOperation(new RemoveOperation<K, V>((K) key, oldValue));
+         write(delta);
+         return oldValue;
+      }
+      finally {
+         endAtomic();
+      }
+   }
+
+   public void putAll(Map<? extends K, ? extends V> m) {
+      if (m.isEmpty()) return;
+      if (m.containsValue(null)) throw new NullPointerException("Fine-grained atomic maps do not support null values");
+      try {
+         startAtomic();
+         FineGrainedAtomicHashMap<K, V> map = getDeltaMapForWrite(m.keySet());
+         FineGrainedAtomicHashMapDelta delta = new FineGrainedAtomicHashMapDelta();
+         for (Entry<? extends K, ? extends V> e : m.entrySet())
+            delta.addOperation(new PutOperation<K, V>(e.getKey(), map.get(e.getKey()), e.getValue()));
+         write(delta);
+      }
+      finally {
+         endAtomic();
+      }
+   }
+
+   /**
+    * Removes the sub-keys present when the call is made, locking each of them.  Sub-keys added concurrently by other
+    * transactions are not affected.
+    */
+   public void clear() {
+      try {
+         startAtomic();
+         FineGrainedAtomicHashMap<K, V> map = getDeltaMapForRead();
+         if (map == null || map.isEmpty()) return;
+         Set<K> keys = new HashSet<K>(map.keySet());
+         map = getDeltaMapForWrite(keys);
+         FineGrainedAtomicHashMapDelta delta = new FineGrainedAtomicHashMapDelta();
+         for (K key : keys) {
+            if (map.containsKey(key))
+               delta.addOperation(new RemoveOperation<K, V>(key, map.get(key)));
+         }
+         write(delta);
+      }
+      finally {
+         endAtomic();
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "FineGrainedAtomicHashMapProxy{" +
+            "deltaMapKey=" + deltaMapKey +
+            '}';
+   }
+}
@@ -27,11 +27,15 @@ import org.infinispan.commands.control.RehashControlCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -145,6 +149,13 @@ public interface CommandsFactory {
     */
    GetKeyValueCommand buildGetKeyValueCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a GetAllCommand
+    * @param keys keys to get
+    * @return a GetAllCommand
+    */
+   GetAllCommand buildGetAllCommand(Set<?> keys, Set<Flag> flags);
+
    /**
     * Builds a KeySetCommand
     * @return a KeySetCommand
@@ -249,6 +260,13 @@ public interface CommandsFactory {
     */
    ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags);
 
+   /**
+    * Builds a ClusteredGetAllCommand, which is a remote lookup command for several keys owned by the same node
+    * @param keys keys to look up
+    * @return a ClusteredGetAllCommand
+    */
+   ClusteredGetAllCommand buildClusteredGetAllCommand(Set<Object> keys, Set<Flag> flags);
+
    /**
     * Builds a LockControlCommand to control explicit remote locking
     * @param keys keys to lock
@@ -326,15 +344,37 @@ public interface CommandsFactory {
    <T>DistributedExecuteCommand<T> buildDistributedExecuteCommand(Callable<T> callable, Address sender, Collection keys);
    
    /**
-    * Builds a MapReduceCommand used for migration and execution of MapReduce tasks.
+    * Builds a MapReduceCommand used for migration and execution of the map phase of MapReduce tasks.
     * 
+    * @param taskId id of the MapReduceTask
     * @param m Mapper for MapReduceTask
-    * @param r Reducer for MapReduceTask
+    * @param combiner Reducer combining the values mapped on each node, or null
     * @param sender sender's Address
     * @param keys keys used in MapReduceTask
+    * @param ch consistent hash used by all the nodes to locate input and intermediate keys for the whole task
     * @return a MapReduceCommand
     */
-   MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys);
+   MapReduceCommand buildMapReduceCommand(String taskId, Mapper m, Reducer combiner, Address sender, Collection keys,
+                                          ConsistentHash ch);
+
+   /**
+    * Builds an IntermediateResultsCommand used to send intermediate values of a MapReduce task to the owner of their
+    * keys.
+    *
+    * @param taskId id of the MapReduceTask
+    * @param values intermediate values, grouped by intermediate key
+    * @return an IntermediateResultsCommand
+    */
+   IntermediateResultsCommand buildIntermediateResultsCommand(String taskId, Map<Object, List<Object>> values);
+
+   /**
+    * Builds a ReduceCommand used for migration and execution of the reduce phase of MapReduce tasks.
+    *
+    * @param taskId id of the MapReduceTask
+    * @param r Reducer for MapReduceTask, or null to discard the intermediate values
+    * @return a ReduceCommand
+    */
+   ReduceCommand buildReduceCommand(String taskId, Reducer r);
 
    /**
     * @see GetInDoubtTxInfoCommand
@@ -29,11 +29,15 @@ import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.module.ModuleCommandInitializer;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -58,6 +62,7 @@ import org.infinispan.container.DataContainer;
 import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distexec.mapreduce.IntermediateResultsStore;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.distribution.DistributionManager;
@@ -68,7 +73,9 @@ import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.marshall.Ids;
+import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
 import org.infinispan.transaction.xa.GlobalTransaction;
@@ -84,6 +91,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import static org.infinispan.commands.control.RehashControlCommand.Type.LEAVE_DRAIN_TX;
 import static org.infinispan.commands.control.RehashControlCommand.Type.LEAVE_DRAIN_TX_PREPARES;
@@ -116,6 +124,8 @@ public class CommandsFactoryImpl implements CommandsFactory {
    private TransactionTable txTable;
    private Configuration configuration;
    private RecoveryManager recoveryManager;
+   private IntermediateResultsStore intermediateResults;
+   private ExecutorService mapReduceExecutor;
 
    private Map<Byte, ModuleCommandInitializer> moduleCommandInitializers;
 
@@ -124,7 +134,8 @@ public class CommandsFactoryImpl implements CommandsFactory {
                                  InterceptorChain interceptorChain, DistributionManager distributionManager,
                                  InvocationContextContainer icc, TransactionTable txTable, Configuration configuration,
                                  @ComponentName(KnownComponentNames.MODULE_COMMAND_INITIALIZERS) Map<Byte, ModuleCommandInitializer> moduleCommandInitializers,
-                                 RecoveryManager recoveryManager) {
+                                 RecoveryManager recoveryManager, IntermediateResultsStore intermediateResults,
+                                 @ComponentName(KnownComponentNames.MAP_REDUCE_EXECUTOR) ExecutorService mapReduceExecutor) {
       this.dataContainer = container;
       this.notifier = notifier;
       this.cache = cache;
@@ -135,6 +146,8 @@ public class CommandsFactoryImpl implements CommandsFactory {
       this.configuration = configuration;
       this.moduleCommandInitializers = moduleCommandInitializers;
       this.recoveryManager = recoveryManager;
+      this.intermediateResults = intermediateResults;
+      this.mapReduceExecutor = mapReduceExecutor;
    }
 
    @Start(priority = 1)
@@ -199,6 +212,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new GetKeyValueCommand(key, notifier, flags);
    }
 
+   public GetAllCommand buildGetAllCommand(Set<?> keys, Set<Flag> flags) {
+      return new GetAllCommand(keys, notifier, flags);
+   }
+
    public PutMapCommand buildPutMapCommand(Map map, long lifespan, long maxIdleTimeMillis, Set<Flag> flags) {
       return new PutMapCommand(map, notifier, lifespan, maxIdleTimeMillis, flags);
    }
@@ -245,6 +262,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
       return new ClusteredGetCommand(key, cacheName, flags);
    }
 
+   public ClusteredGetAllCommand buildClusteredGetAllCommand(Set<Object> keys, Set<Flag> flags) {
+      return new ClusteredGetAllCommand(keys, cacheName, flags);
+   }
+
    /**
     * @param isRemote true if the command is deserialized and is executed remote.
     */
@@ -315,6 +336,10 @@ public class CommandsFactoryImpl implements CommandsFactory {
             ClusteredGetCommand clusteredGetCommand = (ClusteredGetCommand) c;
             clusteredGetCommand.initialize(icc, this, interceptorChain, distributionManager);
             break;
+         case ClusteredGetAllCommand.COMMAND_ID:
+            ClusteredGetAllCommand clusteredGetAllCommand = (ClusteredGetAllCommand) c;
+            clusteredGetAllCommand.initialize(icc, this, interceptorChain, distributionManager);
+            break;
          case LockControlCommand.COMMAND_ID:
             LockControlCommand lcc = (LockControlCommand) c;
             lcc.init(interceptorChain, icc, txTable);
@@ -349,7 +374,19 @@ public class CommandsFactoryImpl implements CommandsFactory {
             break;
          case MapReduceCommand.COMMAND_ID:
             MapReduceCommand mrc = (MapReduceCommand)c;
-            mrc.init(this, interceptorChain, icc, distributionManager,cache.getAdvancedCache().getRpcManager().getAddress());
+            RpcManager rpcManager = cache.getAdvancedCache().getRpcManager();
+            StreamingMarshaller marshaller = cache.getAdvancedCache().getComponentRegistry()
+                     .getGlobalComponentRegistry().getComponent(StreamingMarshaller.class);
+            mrc.init(this, interceptorChain, icc, distributionManager, rpcManager, marshaller, intermediateResults,
+                     mapReduceExecutor, rpcManager.getAddress());
+            break;
+         case IntermediateResultsCommand.COMMAND_ID:
+            IntermediateResultsCommand irc = (IntermediateResultsCommand) c;
+            irc.init(intermediateResults);
+            break;
+         case ReduceCommand.COMMAND_ID:
+            ReduceCommand rc = (ReduceCommand) c;
+            rc.init(intermediateResults);
             break;
          case DistributedExecuteCommand.COMMAND_ID:
             DistributedExecuteCommand dec = (DistributedExecuteCommand)c;
@@ -415,8 +452,19 @@ public class CommandsFactoryImpl implements CommandsFactory {
    }
 
    @Override
-   public MapReduceCommand buildMapReduceCommand(Mapper m, Reducer r, Address sender, Collection keys) {
-      return new MapReduceCommand(m, r, cacheName, keys);
+   public MapReduceCommand buildMapReduceCommand(String taskId, Mapper m, Reducer combiner, Address sender, Collection keys,
+                                                 ConsistentHash ch) {
+      return new MapReduceCommand(taskId, m, combiner, cacheName, keys, ch);
+   }
+
+   @Override
+   public IntermediateResultsCommand buildIntermediateResultsCommand(String taskId, Map<Object, List<Object>> values) {
+      return new IntermediateResultsCommand(cacheName, taskId, values);
+   }
+
+   @Override
+   public ReduceCommand buildReduceCommand(String taskId, Reducer r) {
+      return new ReduceCommand(cacheName, taskId, r);
    }
 
    @Override
@@ -25,6 +25,7 @@ package org.infinispan.commands;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -70,6 +71,8 @@ public interface Visitor {
 
    Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable;
 
+   Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable;
+
    Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable;
 
    Object visitValuesCommand(InvocationContext ctx, ValuesCommand command) throws Throwable;
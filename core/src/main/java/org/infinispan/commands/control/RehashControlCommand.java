@@ -255,6 +255,10 @@ public class RehashControlCommand extends BaseRpcCommand {
       List<Address> oldList = oldCH.locate(k, numCopies);
       boolean localToThisNode = oldList.indexOf(self) >= 0;
       boolean senderIsNewOwner = newCH.isKeyLocalToAddress(sender, k, numCopies);
+      // consistent hashes that rebalance on a leave may also move keys the leavers did not own
+      if (senderIsNewOwner && localToThisNode && !oldList.contains(sender)) {
+         return true;
+      }
       for (Address leftNodeAddress : nodesLeft) {
          boolean localToLeftNode = oldList.indexOf(leftNodeAddress) >= 0;
          if (localToLeftNode && senderIsNewOwner && localToThisNode) {
@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.Visitor;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements functionality defined by {@link org.infinispan.AdvancedCache#getAll(java.util.Set)}.  Looks up all keys in
+ * a single pass through the interceptor chain, so that interceptors can handle them in bulk: most notably the
+ * {@link org.infinispan.interceptors.DistributionInterceptor} fetches all keys owned by the same remote node in one
+ * RPC.
+ *
+ * @since 5.0
+ */
+public class GetAllCommand extends AbstractLocalCommand implements VisitableCommand, FlagAffectedCommand {
+   private static final Log log = LogFactory.getLog(GetAllCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private Set<?> keys;
+   private final CacheNotifier notifier;
+   private Set<Flag> flags;
+   private boolean returnCacheEntries;
+
+   public GetAllCommand(Set<?> keys, CacheNotifier notifier, Set<Flag> flags) {
+      this.keys = keys;
+      this.notifier = notifier;
+      this.flags = flags;
+   }
+
+   @Override
+   public Object acceptVisitor(InvocationContext ctx, Visitor visitor) throws Throwable {
+      return visitor.visitGetAllCommand(ctx, this);
+   }
+
+   public Set<?> getKeys() {
+      return keys;
+   }
+
+   public void setKeys(Set<?> keys) {
+      this.keys = keys;
+   }
+
+   /**
+    * Will make this command return {@link CacheEntry} instances instead of the values associated with the keys.
+    */
+   public void setReturnCacheEntries(boolean returnCacheEntries) {
+      this.returnCacheEntries = returnCacheEntries;
+   }
+
+   public boolean isReturnCacheEntries() {
+      return returnCacheEntries;
+   }
+
+   /**
+    * @return a map of the keys found to their values, or to their {@link CacheEntry} if so requested.  Keys which
+    *         aren't mapped are not present in the map.
+    */
+   @Override
+   public Map<Object, Object> perform(InvocationContext ctx) throws Throwable {
+      Map<Object, Object> result = new HashMap<Object, Object>(keys.size());
+      for (Object key : keys) {
+         CacheEntry entry = ctx.lookupEntry(key);
+         if (entry == null || entry.isNull() || entry.isRemoved()) {
+            if (trace) log.tracef("Entry for key %s not found", key);
+            continue;
+         }
+         Object value = entry.getValue();
+         notifier.notifyCacheEntryVisited(key, value, true, ctx);
+         result.put(key, returnCacheEntries ? entry : value);
+         notifier.notifyCacheEntryVisited(key, value, false, ctx);
+      }
+      return result;
+   }
+
+   @Override
+   public Set<Flag> getFlags() {
+      return flags;
+   }
+
+   @Override
+   public void setFlags(Set<Flag> flags) {
+      this.flags = flags;
+   }
+
+   @Override
+   public String toString() {
+      return "GetAllCommand{" +
+            "keys=" + keys +
+            ", flags=" + flags +
+            '}';
+   }
+}
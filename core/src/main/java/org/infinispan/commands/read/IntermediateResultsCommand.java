@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import java.util.List;
+import java.util.Map;
+
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distexec.mapreduce.IntermediateResultsStore;
+
+/**
+ * IntermediateResultsCommand carries the intermediate key/value pairs emitted by the map phase of a MapReduceTask on
+ * a node to the node owning the intermediate keys, where they are kept until {@link ReduceCommand} reduces them.
+ *
+ * @since 5.0
+ */
+public class IntermediateResultsCommand extends BaseRpcCommand {
+   public static final byte COMMAND_ID = 23;
+
+   private String taskId;
+   private Map<Object, List<Object>> values;
+
+   private IntermediateResultsStore intermediateResults;
+
+   public IntermediateResultsCommand() {
+   }
+
+   public IntermediateResultsCommand(String cacheName, String taskId, Map<Object, List<Object>> values) {
+      super(cacheName);
+      this.taskId = taskId;
+      this.values = values;
+   }
+
+   public void init(IntermediateResultsStore intermediateResults) {
+      this.intermediateResults = intermediateResults;
+   }
+
+   @Override
+   public Object perform(InvocationContext context) throws Throwable {
+      intermediateResults.merge(taskId, values);
+      return null;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[] { cacheName, taskId, values };
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args) {
+      if (commandId != COMMAND_ID)
+         throw new IllegalStateException("Invalid method id");
+      int i = 0;
+      cacheName = (String) args[i++];
+      taskId = (String) args[i++];
+      values = (Map<Object, List<Object>>) args[i++];
+   }
+
+   @Override
+   public String toString() {
+      return "IntermediateResultsCommand(taskId=" + taskId + ", keys=" + (values == null ? null : values.keySet()) + ")";
+   }
+}
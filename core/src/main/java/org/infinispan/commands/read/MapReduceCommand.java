@@ -25,6 +25,7 @@ package org.infinispan.commands.read;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -32,24 +33,40 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.InvocationContextContainer;
 import org.infinispan.distexec.mapreduce.Collector;
+import org.infinispan.distexec.mapreduce.IntermediateResultsStore;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.infinispan.distexec.mapreduce.Reducer;
 import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 /**
- * MapReduceCommand is used to migrate {@link Mapper} and {@link Reducer} to remote JVM where they
- * will get invoked.
+ * MapReduceCommand is used to migrate {@link Mapper} and the optional combiner {@link Reducer} to remote JVM where
+ * they will get invoked. It executes the map phase of a MapReduceTask on the node: the keys are mapped in parallel,
+ * the values emitted for each intermediate key are combined, and the intermediate key/value pairs are sent to the
+ * nodes owning the intermediate keys, where {@link ReduceCommand} reduces them.
+ * <p>
+ * Input and intermediate keys are located with the consistent hash the task started with, shipped along with the
+ * command, rather than with each node's current one. Every node of a task thus sends the values emitted for an
+ * intermediate key to the same node, even if the cluster view changes while the task runs.
  * 
  * @author Vladimir Blagojevic
  * @since 5.0
@@ -57,57 +74,70 @@ import org.infinispan.util.logging.LogFactory;
 public class MapReduceCommand extends BaseRpcCommand {
    public static final int COMMAND_ID = 20;
    private static final Log log = LogFactory.getLog(MapReduceCommand.class);
+
+   /**
+    * Below this number of keys per thread, the map phase is not worth parallelizing
+    */
+   private static final int MIN_KEYS_PER_THREAD = 256;
+
    protected Set<Object> keys;
+   private String taskId;
    private Mapper  mapper;
-   private Reducer  reducer;
+   private Reducer  combiner;
+   private ConsistentHash consistentHash;
    
    private InterceptorChain invoker;
    private CommandsFactory commandsFactory;
    protected InvocationContextContainer icc;
    protected DistributionManager dm;
+   private RpcManager rpcManager;
+   private StreamingMarshaller marshaller;
+   private IntermediateResultsStore intermediateResults;
+   private ExecutorService mapExecutor;
    protected Address localAddress;
 
    public MapReduceCommand() {
    }
 
-   public MapReduceCommand( Mapper m, Reducer r, String cacheName, Object... inputKeys) {
-      super(cacheName);
-      if (inputKeys == null || inputKeys.length == 0) {
-         this.keys = new HashSet<Object>();
-      } else {
-         this.keys = new HashSet<Object>();
-         this.keys.addAll(Arrays.asList(inputKeys));
-      }
-      this.mapper = m;
-      this.reducer = r;
+   public MapReduceCommand(String taskId, Mapper m, Reducer combiner, String cacheName, ConsistentHash ch,
+            Object... inputKeys) {
+      this(taskId, m, combiner, cacheName, inputKeys == null ? null : Arrays.asList(inputKeys), ch);
    }
 
-   public MapReduceCommand( Mapper m, Reducer r, String cacheName, Collection<Object> inputKeys) {
+   public MapReduceCommand(String taskId, Mapper m, Reducer combiner, String cacheName, Collection<Object> inputKeys,
+            ConsistentHash ch) {
       super(cacheName);
       if (inputKeys == null || inputKeys.isEmpty())
          this.keys = new HashSet<Object>();
       else
          this.keys = new HashSet<Object>(inputKeys);
-     
+      this.taskId = taskId;
       this.mapper = m;
-      this.reducer = r;
+      this.combiner = combiner;
+      this.consistentHash = ch;
    }
    
-   public void init(CommandsFactory factory, InterceptorChain invoker,
-            InvocationContextContainer icc, DistributionManager dm, Address localAddress) {
+   public void init(CommandsFactory factory, InterceptorChain invoker, InvocationContextContainer icc,
+            DistributionManager dm, RpcManager rpcManager, StreamingMarshaller marshaller,
+            IntermediateResultsStore intermediateResults, ExecutorService mapExecutor, Address localAddress) {
       this.commandsFactory = factory;
       this.invoker = invoker;
       this.icc = icc;
-      this.dm = dm;      
+      this.dm = dm;
+      this.rpcManager = rpcManager;
+      this.marshaller = marshaller;
+      this.intermediateResults = intermediateResults;
+      this.mapExecutor = mapExecutor;
       this.localAddress = localAddress;
    }
 
    /**
-    * Performs invocation of mapping phase and local reduce phase before returning result to master node
+    * Performs invocation of mapping phase and local combine phase, and sends the intermediate results to the nodes
+    * owning the intermediate keys
     * 
     * @param context
     *           invocation context
-    * @return Map of intermediate key value pairs
+    * @return the number of intermediate keys emitted by this node
     */
    @Override
    public Object perform(InvocationContext context) throws Throwable {
@@ -119,35 +149,115 @@ public class MapReduceCommand extends BaseRpcCommand {
          Set<Object> nodeLocalKeys = (Set<Object>) invoker.invoke(ctx, keySetCommand);
          List<Object> selectedKeys = new ArrayList<Object>();
          for (Object key : nodeLocalKeys) {
-            List<Address> locations = dm.locate(key);
-            log.tracef("For key %s at %s owners are %s", key, localAddress, locations);
-            if(locations != null && !locations.isEmpty() && locations.get(0).equals(localAddress)){
+            Address primaryOwner = primaryOwner(key);
+            log.tracef("For key %s at %s primary owner is %s", key, localAddress, primaryOwner);
+            if (primaryOwner.equals(localAddress)) {
                selectedKeys.add(key);               
             }
          }
          keys.addAll(selectedKeys);
       }
       log.tracef("For %s at %s invoking mapper on keys %s", this, localAddress, keys);
-      DefaultCollector<Object,Object> collector = new DefaultCollector<Object, Object>();
+      Map<Object, List<Object>> collectedValues = map(ctx, new ArrayList<Object>(keys));
+      if (combiner != null) {
+         for (Entry<Object, List<Object>> e : collectedValues.entrySet()) {
+            List<Object> list = e.getValue();
+            if (list.size() > 1) {
+               e.setValue(Collections.singletonList(combiner.reduce(e.getKey(), list.iterator())));
+            }
+         }
+      }
+      log.tracef("%s executed at %s emitted %s", this, localAddress, collectedValues);
+      shuffle(collectedValues);
+      return collectedValues.size();
+   }
+
+   /**
+    * Splits the keys among several threads, each of them mapping its share of the keys with its own copy of the
+    * Mapper, so that Mapper implementations do not need to be thread safe. The threads come from the cache's
+    * shared MapReduce executor, which bounds the number of threads mapping at the same time across all tasks.
+    */
+   private Map<Object, List<Object>> map(InvocationContext ctx, List<Object> keys) throws Throwable {
+      final Set<Flag> flags = ctx.getFlags();
+      int threads = Math.min(Runtime.getRuntime().availableProcessors(), keys.size() / MIN_KEYS_PER_THREAD);
+      if (threads <= 1) {
+         return map(ctx, keys, mapper, flags);
+      }
+      List<Future<Map<Object, List<Object>>>> futures = new ArrayList<Future<Map<Object, List<Object>>>>(threads);
+      try {
+         int chunkSize = (keys.size() + threads - 1) / threads;
+         for (int i = 0; i < keys.size(); i += chunkSize) {
+            final List<Object> chunk = keys.subList(i, Math.min(i + chunkSize, keys.size()));
+            final Mapper chunkMapper = Util.cloneWithMarshaller(marshaller, mapper);
+            futures.add(mapExecutor.submit(new Callable<Map<Object, List<Object>>>() {
+               @Override
+               public Map<Object, List<Object>> call() throws Exception {
+                  return map(icc.createRemoteInvocationContext(localAddress), chunk, chunkMapper, flags);
+               }
+            }));
+         }
+         Map<Object, List<Object>> collectedValues = new HashMap<Object, List<Object>>();
+         for (Future<Map<Object, List<Object>>> future : futures) {
+            for (Entry<Object, List<Object>> e : future.get().entrySet()) {
+               List<Object> list = collectedValues.get(e.getKey());
+               if (list == null)
+                  collectedValues.put(e.getKey(), e.getValue());
+               else
+                  list.addAll(e.getValue());
+            }
+         }
+         return collectedValues;
+      } catch (ExecutionException e) {
+         throw e.getCause();
+      } finally {
+         // stop mapping the remaining chunks if one of them failed
+         for (Future<Map<Object, List<Object>>> future : futures) future.cancel(true);
+      }
+   }
+
+   private Map<Object, List<Object>> map(InvocationContext ctx, List<Object> keys, Mapper mapper, Set<Flag> flags) {
+      DefaultCollector<Object, Object> collector = new DefaultCollector<Object, Object>();
       for (Object key : keys) {
-         GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, ctx.getFlags());
+         GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, flags);
          command.setReturnCacheEntry(false);
          Object value = invoker.invoke(ctx, command);
-         mapper.map(key, value,collector);
+         mapper.map(key, value, collector);
       }
-      Map<Object, List<Object>> collectedValues = collector.collectedValues();
-      Map<Object,Object> reducedMap = new HashMap<Object, Object>();
+      return collector.collectedValues();
+   }
+
+   /**
+    * Sends the intermediate values to the nodes owning their keys, in parallel
+    */
+   private void shuffle(Map<Object, List<Object>> collectedValues) throws Exception {
+      Map<Address, Map<Object, List<Object>>> valuesByOwner = new HashMap<Address, Map<Object, List<Object>>>();
       for (Entry<Object, List<Object>> e : collectedValues.entrySet()) {
-         List<Object> list = e.getValue();
-         if(list.size()>1){
-            Object reduced = reducer.reduce(e.getKey(),list.iterator());
-            reducedMap.put(e.getKey(), reduced);
+         Address owner = primaryOwner(e.getKey());
+         Map<Object, List<Object>> ownerValues = valuesByOwner.get(owner);
+         if (ownerValues == null) {
+            ownerValues = new HashMap<Object, List<Object>>();
+            valuesByOwner.put(owner, ownerValues);
+         }
+         ownerValues.put(e.getKey(), e.getValue());
+      }
+      List<NotifyingFutureImpl> futures = new ArrayList<NotifyingFutureImpl>(valuesByOwner.size());
+      for (Entry<Address, Map<Object, List<Object>>> e : valuesByOwner.entrySet()) {
+         if (e.getKey().equals(localAddress)) {
+            intermediateResults.merge(taskId, e.getValue());
          } else {
-            reducedMap.put(e.getKey(),list.get(0));
+            IntermediateResultsCommand command = commandsFactory.buildIntermediateResultsCommand(taskId, e.getValue());
+            NotifyingFutureImpl future = new NotifyingFutureImpl(null);
+            rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), command, future);
+            futures.add(future);
          }
-      }                 
-      log.tracef("%s executed at %s was reduced to %s", this, localAddress, reducedMap);
-      return reducedMap;
+      }
+      for (NotifyingFutureImpl future : futures) {
+         future.get();
+      }
+   }
+
+   private Address primaryOwner(Object key) {
+      return consistentHash.locate(key, 1).get(0);
    }
 
    @Override
@@ -157,8 +267,7 @@ public class MapReduceCommand extends BaseRpcCommand {
 
    @Override
    public Object[] getParameters() {
-      
-      return new Object[] { cacheName, keys, mapper, reducer};
+      return new Object[] { cacheName, taskId, keys, mapper, combiner, consistentHash };
    }
 
    @Override
@@ -167,9 +276,11 @@ public class MapReduceCommand extends BaseRpcCommand {
          throw new IllegalStateException("Invalid method id");
       int i = 0;
       cacheName = (String) args[i++];
+      taskId = (String) args[i++];
       keys = (Set<Object>) args[i++];
-      mapper = (Mapper)args[i++];
-      reducer = (Reducer) args[i++];
+      mapper = (Mapper) args[i++];
+      combiner = (Reducer) args[i++];
+      consistentHash = (ConsistentHash) args[i++];
    }
 
    @Override
@@ -184,12 +295,14 @@ public class MapReduceCommand extends BaseRpcCommand {
          return false;
       }
       MapReduceCommand that = (MapReduceCommand) o;
+      if (taskId != null ? !taskId.equals(that.taskId) : that.taskId != null) {
+         return false;
+      }
       if (keys.equals(that.keys)) {
          return false;
       }
-      if (mapper != null && reducer != null && that.mapper != null && that.reducer != null) {
-         return mapper.getClass().equals(that.mapper.getClass())
-                  && reducer.getClass().equals(that.reducer.getClass());
+      if (mapper != null && that.mapper != null) {
+         return mapper.getClass().equals(that.mapper.getClass());
       }
       return false;
    }
@@ -197,15 +310,15 @@ public class MapReduceCommand extends BaseRpcCommand {
    @Override
    public int hashCode() {
       int result = super.hashCode();
+      result = 31 * result + (taskId != null ? taskId.hashCode() : 0);
       result = 31 * result + (keys != null ? keys.hashCode() : 0);
       result = 31 * result + (mapper != null ? mapper.getClass().hashCode() : 0);
-      result = 31 * result + (reducer != null ? reducer.getClass().hashCode() : 0);
       return result;
    }
    
    @Override
    public String toString() {
-      return "MapReduceCommand(keys=" + keys+")";
+      return "MapReduceCommand(taskId=" + taskId + ", keys=" + keys + ")";
    }
    
    private InvocationContext getInvocationContext(InvocationContext ctx) {
@@ -217,7 +330,7 @@ public class MapReduceCommand extends BaseRpcCommand {
     */
    private static class DefaultCollector<KOut, VOut> implements Collector<KOut, VOut> {
 
-      private final Map<KOut, List<VOut>> store = new ConcurrentHashMap<KOut, List<VOut>>();
+      private final Map<KOut, List<VOut>> store = new HashMap<KOut, List<VOut>>();
 
       @Override
       public void emit(KOut key, VOut value) {
@@ -233,4 +346,4 @@ public class MapReduceCommand extends BaseRpcCommand {
          return store;
       }
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.infinispan.commands.remote.BaseRpcCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distexec.mapreduce.IntermediateResultsStore;
+import org.infinispan.distexec.mapreduce.Reducer;
+
+/**
+ * ReduceCommand executes the reduce phase of a MapReduceTask on a node, reducing the intermediate values the node
+ * received for the keys it owns. Only the reduced values are returned to the node that started the task.
+ *
+ * @since 5.0
+ */
+public class ReduceCommand extends BaseRpcCommand {
+   public static final byte COMMAND_ID = 22;
+
+   private String taskId;
+   private Reducer reducer;
+
+   private IntermediateResultsStore intermediateResults;
+
+   public ReduceCommand() {
+   }
+
+   /**
+    * @param reducer the Reducer, or null to just discard the intermediate values, e.g. when the map phase failed
+    */
+   public ReduceCommand(String cacheName, String taskId, Reducer reducer) {
+      super(cacheName);
+      this.taskId = taskId;
+      this.reducer = reducer;
+   }
+
+   public void init(IntermediateResultsStore intermediateResults) {
+      this.intermediateResults = intermediateResults;
+   }
+
+   /**
+    * @return Map of the reduced values of the intermediate keys owned by this node
+    */
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object perform(InvocationContext context) throws Throwable {
+      Map<Object, List<Object>> values = intermediateResults.remove(taskId);
+      Map<Object, Object> reduced = new HashMap<Object, Object>();
+      if (values != null && reducer != null) {
+         for (Entry<Object, List<Object>> e : values.entrySet()) {
+            reduced.put(e.getKey(), reducer.reduce(e.getKey(), e.getValue().iterator()));
+         }
+      }
+      return reduced;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[] { cacheName, taskId, reducer };
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] args) {
+      if (commandId != COMMAND_ID)
+         throw new IllegalStateException("Invalid method id");
+      int i = 0;
+      cacheName = (String) args[i++];
+      taskId = (String) args[i++];
+      reducer = (Reducer) args[i++];
+   }
+
+   @Override
+   public String toString() {
+      return "ReduceCommand(taskId=" + taskId + ")";
+   }
+}
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.read.GetAllCommand;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Issues a remote get call for several keys at once, returning the values of those found.  Like
+ * {@link ClusteredGetCommand}, this is not a {@link org.infinispan.commands.VisitableCommand}; on the receiving node it
+ * passes a {@link GetAllCommand} up the {@link org.infinispan.interceptors.base.CommandInterceptor} chain.
+ *
+ * @since 5.0
+ */
+public class ClusteredGetAllCommand extends BaseRpcCommand implements FlagAffectedCommand {
+
+   public static final byte COMMAND_ID = 21;
+   private static final Log log = LogFactory.getLog(ClusteredGetAllCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private Set<Object> keys;
+   private Set<Flag> flags;
+
+   private InvocationContextContainer icc;
+   private CommandsFactory commandsFactory;
+   private InterceptorChain invoker;
+   private DistributionManager distributionManager;
+
+   public ClusteredGetAllCommand() {
+   }
+
+   public ClusteredGetAllCommand(Set<Object> keys, String cacheName, Set<Flag> flags) {
+      super(cacheName);
+      this.keys = keys;
+      this.flags = flags;
+   }
+
+   public void initialize(InvocationContextContainer icc, CommandsFactory commandsFactory,
+                          InterceptorChain interceptorChain, DistributionManager distributionManager) {
+      this.distributionManager = distributionManager;
+      this.icc = icc;
+      this.commandsFactory = commandsFactory;
+      this.invoker = interceptorChain;
+   }
+
+   /**
+    * Invokes a logical "getAll(keys)" on a remote cache and returns results.  Keys affected by an ongoing rehash are
+    * skipped and left out of the result, so the caller can retry them elsewhere.  Keys that were looked up but do not
+    * exist map to null.
+    *
+    * @param context invocation context, ignored.
+    * @return a map of the keys looked up to their {@link InternalCacheValue}, or null if not found
+    */
+   @SuppressWarnings("unchecked")
+   public Map<Object, InternalCacheValue> perform(InvocationContext context) throws Throwable {
+      Set<Object> keysToGet = keys;
+      if (distributionManager != null) {
+         keysToGet = new HashSet<Object>(keys.size());
+         for (Object key : keys) {
+            if (!distributionManager.isAffectedByRehash(key)) keysToGet.add(key);
+         }
+      }
+      Map<Object, InternalCacheValue> result = new HashMap<Object, InternalCacheValue>(keysToGet.size());
+      if (keysToGet.isEmpty()) return result;
+
+      GetAllCommand command = commandsFactory.buildGetAllCommand(keysToGet, flags);
+      command.setReturnCacheEntries(true);
+      InvocationContext invocationContext = icc.createRemoteInvocationContextForCommand(command, getOrigin());
+      Map<Object, CacheEntry> entries = (Map<Object, CacheEntry>) invoker.invoke(invocationContext, command);
+      for (Map.Entry<Object, CacheEntry> e : entries.entrySet()) {
+         CacheEntry cacheEntry = e.getValue();
+         //this might happen if the value was fetched from a cache loader
+         if (cacheEntry instanceof MVCCEntry) {
+            MVCCEntry mvccEntry = (MVCCEntry) cacheEntry;
+            result.put(e.getKey(), InternalEntryFactory.createValue(mvccEntry.getValue(), -1, mvccEntry.getLifespan(), -1, mvccEntry.getMaxIdle()));
+         } else {
+            result.put(e.getKey(), ((InternalCacheEntry) cacheEntry).toInternalCacheValue());
+         }
+      }
+      // keys that were looked up but not found map to null, so that the caller can tell them apart from skipped keys
+      for (Object key : keysToGet) {
+         if (!result.containsKey(key)) result.put(key, null);
+      }
+      if (trace) log.tracef("Found %s of %s requested keys", entries.size(), keys.size());
+      return result;
+   }
+
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   public Object[] getParameters() {
+      return new Object[]{keys, cacheName, flags};
+   }
+
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args) {
+      keys = (Set<Object>) args[0];
+      cacheName = (String) args[1];
+      flags = (Set<Flag>) args[2];
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      ClusteredGetAllCommand that = (ClusteredGetAllCommand) o;
+
+      return !(keys != null ? !keys.equals(that.keys) : that.keys != null);
+   }
+
+   @Override
+   public int hashCode() {
+      return keys != null ? keys.hashCode() : 0;
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder()
+         .append("ClusteredGetAllCommand{keys=")
+         .append(keys)
+         .append(", flags=").append(flags)
+         .append("}")
+         .toString();
+   }
+
+   public Set<Object> getKeys() {
+      return keys;
+   }
+
+   @Override
+   public Set<Flag> getFlags() {
+      return flags;
+   }
+
+   @Override
+   public void setFlags(Set<Flag> flags) {
+      this.flags = flags;
+   }
+}
@@ -28,6 +28,8 @@ import org.infinispan.container.DefaultDataContainer;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
+import org.infinispan.eviction.DefaultEntrySizeEstimator;
+import org.infinispan.eviction.EntrySizeEstimator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.ComponentRegistry;
@@ -610,6 +612,20 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       this.eviction.setMaxEntries(evictionMaxEntries);
    }
 
+   /**
+    * Maximum estimated memory footprint, in bytes, of the entries in a cache instance. -1 means no limit.
+    */
+   public long getEvictionMaxMemory() {
+      return eviction.maxMemory;
+   }
+
+   /**
+    * Fully qualified class name of the {@link EntrySizeEstimator} used when eviction is bounded by memory.
+    */
+   public String getEvictionSizeEstimatorClass() {
+      return eviction.sizeEstimatorClass;
+   }
+
    /**
     * Expiration lifespan, in milliseconds
     */
@@ -2499,6 +2515,15 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setEvictionThreadPolicy")
       protected EvictionThreadPolicy threadPolicy = EvictionThreadPolicy.DEFAULT;
 
+      @ConfigurationDoc(desc = "Maximum estimated memory footprint, in bytes, of the entries in a cache instance. " +
+            "Entries are evicted using the configured strategy as soon as either this or maxEntries is exceeded. " +
+            "If maxEntries is not set, the number of entries is bounded by this footprint only. -1 means no limit.")
+      protected Long maxMemory = -1L;
+
+      @ConfigurationDoc(desc = "Fully qualified class name of the EntrySizeEstimator used to estimate the memory " +
+            "footprint of entries when maxMemory is set.")
+      protected String sizeEstimatorClass = DefaultEntrySizeEstimator.class.getName();
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitEvictionType(this);
       }
@@ -2583,6 +2608,38 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          return this;
       }
 
+      @XmlAttribute
+      public Long getMaxMemory() {
+         return maxMemory;
+      }
+
+      public void setMaxMemory(Long maxMemory) {
+         testImmutability("maxMemory");
+         this.maxMemory = maxMemory;
+      }
+
+      @Override
+      public EvictionConfig maxMemory(Long maxMemory) {
+         setMaxMemory(maxMemory);
+         return this;
+      }
+
+      @XmlAttribute
+      public String getSizeEstimatorClass() {
+         return sizeEstimatorClass;
+      }
+
+      public void setSizeEstimatorClass(String sizeEstimatorClass) {
+         testImmutability("sizeEstimatorClass");
+         this.sizeEstimatorClass = sizeEstimatorClass;
+      }
+
+      @Override
+      public EvictionConfig sizeEstimatorClass(Class<? extends EntrySizeEstimator> sizeEstimatorClass) {
+         setSizeEstimatorClass(sizeEstimatorClass.getName());
+         return this;
+      }
+
       @Override
       protected EvictionType setConfiguration(Configuration config) {
          super.setConfiguration(config);
@@ -2597,6 +2654,9 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          EvictionType that = (EvictionType) o;
 
          if (maxEntries != null ? !maxEntries.equals(that.maxEntries) : that.maxEntries != null) return false;
+         if (maxMemory != null ? !maxMemory.equals(that.maxMemory) : that.maxMemory != null) return false;
+         if (sizeEstimatorClass != null ? !sizeEstimatorClass.equals(that.sizeEstimatorClass) : that.sizeEstimatorClass != null)
+            return false;
          if (strategy != that.strategy) return false;
          if (threadPolicy != that.threadPolicy) return false;
          if (wakeUpInterval != null ? !wakeUpInterval.equals(that.wakeUpInterval) : that.wakeUpInterval != null)
@@ -2611,6 +2671,8 @@ public class Configuration extends AbstractNamedCacheConfigurationBean {
          result = 31 * result + (strategy != null ? strategy.hashCode() : 0);
          result = 31 * result + (threadPolicy != null ? threadPolicy.hashCode() : 0);
          result = 31 * result + (maxEntries != null ? maxEntries.hashCode() : 0);
+         result = 31 * result + (maxMemory != null ? maxMemory.hashCode() : 0);
+         result = 31 * result + (sizeEstimatorClass != null ? sizeEstimatorClass.hashCode() : 0);
          return result;
       }
    }
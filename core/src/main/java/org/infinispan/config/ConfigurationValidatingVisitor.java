@@ -60,7 +60,11 @@ public class ConfigurationValidatingVisitor extends AbstractConfigurationBeanVis
    }
    
    public void visitEvictionType(EvictionType et) {
-      if (et.strategy.isEnabled() && et.maxEntries <= 0)
-         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled");
+      if (et.strategy.isEnabled() && et.maxEntries <= 0 && et.maxMemory <= 0)
+         throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled, unless maxMemory is set");
+      if (et.maxMemory != -1 && et.maxMemory <= 0)
+         throw new ConfigurationException("Eviction maxMemory value has to be either -1 or greater than zero");
+      if (et.maxMemory > 0 && !et.strategy.isEnabled())
+         throw new ConfigurationException("Eviction maxMemory requires an eviction strategy to be enabled");
    }
 }
@@ -25,6 +25,7 @@ package org.infinispan.config;
 
 import org.infinispan.container.DataContainer;
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.eviction.EntrySizeEstimator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.interceptors.base.CommandInterceptor;
@@ -331,6 +332,24 @@ public class FluentConfiguration extends AbstractFluentConfigurationBean {
        * @param maxEntries
        */
       EvictionConfig maxEntries(Integer maxEntries);
+
+      /**
+       * Maximum estimated memory footprint, in bytes, of the entries in a cache instance. Entries are
+       * evicted using the configured strategy as soon as either this or maxEntries is exceeded. If
+       * maxEntries is not set, the number of entries is bounded by this footprint only. -1 means no
+       * limit.
+       *
+       * @param maxMemory
+       */
+      EvictionConfig maxMemory(Long maxMemory);
+
+      /**
+       * Estimator used to compute the memory footprint of entries when maxMemory is set. Defaults to
+       * {@link org.infinispan.eviction.DefaultEntrySizeEstimator}.
+       *
+       * @param sizeEstimatorClass
+       */
+      EvictionConfig sizeEstimatorClass(Class<? extends EntrySizeEstimator> sizeEstimatorClass);
    }
 
    /**
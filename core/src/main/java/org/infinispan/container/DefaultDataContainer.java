@@ -31,22 +31,37 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jcip.annotations.ThreadSafe;
 
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.eviction.EntrySizeEstimator;
 import org.infinispan.eviction.EvictionManager;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
 import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.SizeEstimator;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
 
 /**
  * DefaultDataContainer is both eviction and non-eviction based data container.
+ * <p/>
+ * Entries that can expire are tracked in an {@link ExpirationIndex}, so {@link #purgeExpired()} only visits entries
+ * whose deadline has passed rather than the whole container.
  *
  *
  * @author Manik Surtani
@@ -57,13 +72,21 @@ import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
  * @since 4.0
  */
 @ThreadSafe
+@MBean(objectName = "DataContainer", description = "Container holding the cache's entries in memory")
 public class DefaultDataContainer implements DataContainer {
 
    final ConcurrentMap<Object, InternalCacheEntry> entries;
    final InternalEntryFactory entryFactory;
    final DefaultEvictionListener evictionListener;
+   final ExpirationIndex expirationIndex = new ExpirationIndex();
    private EvictionManager evictionManager;
 
+   private final AtomicLong purges = new AtomicLong(0);
+   private final AtomicLong purgedEntries = new AtomicLong(0);
+   private final AtomicLong purgeTime = new AtomicLong(0);
+   private volatile long lastPurgeTime;
+   private volatile int lastPurgedEntries;
+
    protected DefaultDataContainer(int concurrencyLevel) {
       entries = new ConcurrentHashMap<Object, InternalCacheEntry>(128, 0.75f,concurrencyLevel);
       entryFactory = new InternalEntryFactory();
@@ -71,6 +94,11 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    protected DefaultDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, maxEntries, -1, strategy, policy, null);
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, int maxEntries, long maxMemory, EvictionStrategy strategy,
+            EvictionThreadPolicy policy, EntrySizeEstimator sizeEstimator) {
 
       // translate eviction policy and strategy
       switch (policy) {
@@ -95,7 +123,14 @@ public class DefaultDataContainer implements DataContainer {
          default:
             throw new IllegalArgumentException("No such eviction strategy " + strategy);
       }
-      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction, evictionListener);
+      SizeEstimator<Object, InternalCacheEntry> estimator = null;
+      if (maxMemory > -1) {
+         if (sizeEstimator == null)
+            throw new IllegalArgumentException("A size estimator is needed to bound the container by memory");
+         estimator = new EntrySizeEstimatorAdapter(sizeEstimator);
+      }
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(maxEntries, concurrencyLevel, eviction,
+               evictionListener, maxMemory, estimator);
       entryFactory = new InternalEntryFactory();
    }
 
@@ -109,6 +144,11 @@ public class DefaultDataContainer implements DataContainer {
       return new DefaultDataContainer(concurrencyLevel, maxEntries, strategy, policy);
    }
 
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries, long maxMemory,
+            EvictionStrategy strategy, EvictionThreadPolicy policy, EntrySizeEstimator sizeEstimator) {
+      return new DefaultDataContainer(concurrencyLevel, maxEntries, maxMemory, strategy, policy, sizeEstimator);
+   }
+
    public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
       return new DefaultDataContainer(concurrencyLevel);
    }
@@ -123,6 +163,7 @@ public class DefaultDataContainer implements DataContainer {
       if (e != null) {
          if (e.isExpired()) {
             entries.remove(k);
+            expirationIndex.unschedule(k);
             e = null;
          } else {
             e.touch();
@@ -146,12 +187,17 @@ public class DefaultDataContainer implements DataContainer {
          e = entryFactory.createNewEntry(k, v, lifespan, maxIdle);
       }
       entries.put(k, e);
+      if (e.canExpire()) {
+         long expiryTime = e.getExpiryTime();
+         if (expiryTime > -1) expirationIndex.schedule(k, expiryTime);
+      }
    }
 
    public boolean containsKey(Object k) {
       InternalCacheEntry ice = peek(k);
       if (ice != null && ice.isExpired()) {
          entries.remove(k);
+         expirationIndex.unschedule(k);
          ice = null;
       }
       return ice != null;
@@ -159,6 +205,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public InternalCacheEntry remove(Object k) {
       InternalCacheEntry e = entries.remove(k);
+      if (e != null && e.canExpire()) expirationIndex.unschedule(k);
       return e == null || e.isExpired() ? null : e;
    }
 
@@ -168,6 +215,7 @@ public class DefaultDataContainer implements DataContainer {
 
    public void clear() {
       entries.clear();
+      expirationIndex.clear();
    }
 
    public Set<Object> keySet() {
@@ -183,25 +231,100 @@ public class DefaultDataContainer implements DataContainer {
    }
 
    public void purgeExpired() {
-      for (Iterator<InternalCacheEntry> purgeCandidates = entries.values().iterator(); purgeCandidates.hasNext();) {
-         InternalCacheEntry e = purgeCandidates.next();
-         if (e.isExpired()) {
-            purgeCandidates.remove();
-         }
-      }
+      long start = System.nanoTime();
+      int purged = expirationIndex.purge(entries);
+      long duration = System.nanoTime() - start;
+      lastPurgeTime = duration;
+      lastPurgedEntries = purged;
+      purgeTime.addAndGet(duration);
+      purgedEntries.addAndGet(purged);
+      purges.incrementAndGet();
    }
 
    public Iterator<InternalCacheEntry> iterator() {
       return new EntryIterator(entries.values().iterator());
    }
 
+   /**
+    * @return the estimated memory footprint in bytes of the entries in this container, or 0 if the container is not
+    *         bounded by memory
+    */
+   public long estimatedMemorySize() {
+      if (entries instanceof BoundedConcurrentHashMap)
+         return ((BoundedConcurrentHashMap<Object, InternalCacheEntry>) entries).estimatedMemorySize();
+      return 0;
+   }
+
+   @ManagedAttribute(description = "Number of times expired entries have been purged from the container")
+   @Metric(displayName = "Number of expiration purges", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getPurges() {
+      return purges.get();
+   }
+
+   @ManagedAttribute(description = "Total number of expired entries purged from the container")
+   @Metric(displayName = "Number of purged entries", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getPurgedEntries() {
+      return purgedEntries.get();
+   }
+
+   @ManagedAttribute(description = "Number of expired entries removed by the last purge")
+   @Metric(displayName = "Entries purged by the last purge")
+   public int getLastPurgedEntries() {
+      return lastPurgedEntries;
+   }
+
+   @ManagedAttribute(description = "Duration of the last purge of expired entries, in milliseconds")
+   @Metric(displayName = "Duration of the last purge", units = Units.MILLISECONDS)
+   public long getLastPurgeTime() {
+      return TimeUnit.NANOSECONDS.toMillis(lastPurgeTime);
+   }
+
+   @ManagedAttribute(description = "Average duration of a purge of expired entries, in milliseconds")
+   @Metric(displayName = "Average purge duration", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public long getAveragePurgeTime() {
+      long count = purges.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(purgeTime.get() / count);
+   }
+
+   @ManagedAttribute(description = "Number of keys tracked for expiration")
+   @Metric(displayName = "Number of keys tracked for expiration")
+   public int getScheduledExpirations() {
+      return expirationIndex.size();
+   }
+
+   @ManagedOperation(description = "Resets the purge statistics gathered by this component")
+   @Operation(displayName = "Reset Statistics (DataContainer)")
+   public void resetStatistics() {
+      purges.set(0);
+      purgedEntries.set(0);
+      purgeTime.set(0);
+      lastPurgeTime = 0;
+      lastPurgedEntries = 0;
+   }
+
    private class DefaultEvictionListener implements EvictionListener<Object, InternalCacheEntry> {
       @Override
       public void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
+         for (Map.Entry<Object, InternalCacheEntry> e : evicted.entrySet()) {
+            if (e.getValue().canExpire()) expirationIndex.unschedule(e.getKey());
+         }
          evictionManager.onEntryEviction(evicted);
       }
    }
 
+   private static class EntrySizeEstimatorAdapter implements SizeEstimator<Object, InternalCacheEntry> {
+      private final EntrySizeEstimator estimator;
+
+      EntrySizeEstimatorAdapter(EntrySizeEstimator estimator) {
+         this.estimator = estimator;
+      }
+
+      @Override
+      public long estimateSize(Object key, InternalCacheEntry entry) {
+         return estimator.estimateSize(key, entry.getValue());
+      }
+   }
+
    private static class ImmutableEntryIterator extends EntryIterator {
       ImmutableEntryIterator(Iterator<InternalCacheEntry> it){
          super(it);
@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+/**
+ * Index of the keys of entries that can expire, grouped in buckets by expiry time, so that purging only visits the
+ * keys whose deadline has passed instead of every entry in the container.
+ * <p/>
+ * Touching a transient entry does not move its key. When the bucket a key is filed under becomes due, the entry
+ * currently mapped to the key is checked; it is removed if it has expired, rescheduled at its current expiry time if it
+ * has not, and the key is simply dropped from the index if the entry is gone or can no longer expire. Keys of entries
+ * that are removed or evicted are {@link #unschedule(Object) unscheduled} straight away, so the index does not keep
+ * them until their bucket becomes due.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class ExpirationIndex {
+
+   /**
+    * Width of a bucket, in milliseconds. A bucket becomes due as soon as its earliest possible expiry time has been
+    * reached, so its entries are checked no later than a regular scan would; the ones that turn out to be alive are
+    * rescheduled for a later purge.
+    */
+   static final long RESOLUTION = 1000;
+
+   private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<Long, Bucket>();
+
+   /**
+    * The earliest bucket each key is filed under. A key may sit in later buckets as well; those copies are ignored
+    * when they become due, as they no longer match this mapping.
+    */
+   private final ConcurrentMap<Object, Long> scheduled = new ConcurrentHashMap<Object, Long>();
+
+   /**
+    * Files the key under the bucket covering the given expiry time, unless it is already filed under an earlier or
+    * identical bucket.
+    */
+   void schedule(Object key, long expiryTime) {
+      Long deadline = bucketFor(expiryTime);
+      while (true) {
+         Long current = scheduled.putIfAbsent(key, deadline);
+         if (current != null) {
+            if (current <= deadline) return;
+            if (!scheduled.replace(key, current, deadline)) continue;
+         }
+         break;
+      }
+      while (true) {
+         Bucket bucket = buckets.get(deadline);
+         if (bucket == null) {
+            Bucket newBucket = new Bucket();
+            bucket = buckets.putIfAbsent(deadline, newBucket);
+            if (bucket == null) bucket = newBucket;
+         }
+         bucket.keys.add(key);
+         // a purge that closed the bucket may already have drained it, so file the key under a fresh bucket
+         if (!bucket.closed) return;
+         buckets.remove(deadline, bucket);
+      }
+   }
+
+   /**
+    * Drops the key from the index, once its entry has been removed from the container. Buckets left empty stay in
+    * place until they become due, as a key may be filed under them concurrently.
+    */
+   void unschedule(Object key) {
+      Long deadline = scheduled.remove(key);
+      if (deadline == null) return;
+      Bucket bucket = buckets.get(deadline);
+      if (bucket != null) bucket.keys.remove(key);
+   }
+
+   /**
+    * Removes from the given map the expired entries whose bucket is due, rescheduling the ones that are still alive.
+    *
+    * @return the number of entries removed
+    */
+   int purge(ConcurrentMap<Object, InternalCacheEntry> entries) {
+      long now = System.currentTimeMillis();
+      // detach the due buckets first, so that keys rescheduled into the current bucket wait for the next purge
+      List<Map.Entry<Long, Bucket>> due = new ArrayList<Map.Entry<Long, Bucket>>();
+      Map.Entry<Long, Bucket> first;
+      while ((first = buckets.firstEntry()) != null && first.getKey() <= now) {
+         first.getValue().closed = true;
+         buckets.remove(first.getKey(), first.getValue());
+         due.add(first);
+      }
+
+      int purged = 0;
+      for (Map.Entry<Long, Bucket> bucket : due) {
+         Long deadline = bucket.getKey();
+         for (Iterator<Object> it = bucket.getValue().keys.iterator(); it.hasNext();) {
+            Object key = it.next();
+            it.remove();
+            if (!scheduled.remove(key, deadline)) continue;
+            InternalCacheEntry e = entries.get(key);
+            if (e == null || !e.canExpire()) continue;
+            if (e.isExpired()) {
+               if (entries.remove(key, e)) purged++;
+            } else {
+               schedule(key, e.getExpiryTime());
+            }
+         }
+      }
+      return purged;
+   }
+
+   /**
+    * @return the number of keys currently filed in the index
+    */
+   int size() {
+      return scheduled.size();
+   }
+
+   void clear() {
+      scheduled.clear();
+      buckets.clear();
+   }
+
+   private static Long bucketFor(long expiryTime) {
+      return expiryTime - expiryTime % RESOLUTION;
+   }
+
+   private static class Bucket {
+      final Set<Object> keys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+      volatile boolean closed;
+   }
+}
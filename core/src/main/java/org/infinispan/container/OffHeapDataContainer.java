@@ -0,0 +1,882 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.infinispan.CacheException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.Immutables;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * A {@link DataContainer} that keeps its entries outside of the Java heap.
+ * <p/>
+ * Keys, values and expiry metadata are marshalled with the cache's {@link StreamingMarshaller} and written into direct
+ * memory blocks owned by a fixed number of segments. Every segment maintains its own chained hash index built on
+ * primitive arrays, so the heap footprint of an entry is a handful of array slots regardless of its size, and
+ * entries are only unmarshalled when they are read.
+ * <p/>
+ * As a consequence, the {@link InternalCacheEntry} instances handed out by this container are detached copies.
+ * Modifying them has no effect on the container; changes have to be written back through
+ * {@link #put(Object, Object, long, long)}.
+ * <p/>
+ * When bounded, each segment evicts its least recently used entries as soon as it holds more than its share of
+ * <tt>maxEntries</tt>, and passes them on to the {@link EvictionManager}. Both the LRU and LIRS strategies are served
+ * by this recency order, since keeping LIRS' inter-reference recency state would require per entry heap objects.
+ * <p/>
+ * Memory left behind by removed or overwritten entries is reclaimed by compacting a segment once more than half of
+ * the memory it has written to is garbage. Iterating the container copies one segment at a time back onto the heap.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class OffHeapDataContainer implements DataContainer {
+
+   private static final Log log = LogFactory.getLog(OffHeapDataContainer.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   static final int DEFAULT_CONCURRENCY_LEVEL = 32;
+   static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+   static final int MAX_SEGMENTS = 1 << 16;
+
+   // Record layout: key length, value length, created, last used, lifespan, max idle, key bytes, value bytes
+   private static final int KEY_LENGTH_OFFSET = 0;
+   private static final int VALUE_LENGTH_OFFSET = 4;
+   private static final int CREATED_OFFSET = 8;
+   private static final int LAST_USED_OFFSET = 16;
+   private static final int LIFESPAN_OFFSET = 24;
+   private static final int MAX_IDLE_OFFSET = 32;
+   private static final int HEADER_SIZE = 40;
+
+   private static final int NONE = -1;
+
+   final Segment[] segments;
+   final int segmentShift;
+   final int segmentMask;
+   private volatile int blockSize = DEFAULT_BLOCK_SIZE;
+   private StreamingMarshaller marshaller;
+   private EvictionManager evictionManager;
+
+   public OffHeapDataContainer() {
+      this(DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   protected OffHeapDataContainer(int concurrencyLevel) {
+      this(concurrencyLevel, -1);
+   }
+
+   protected OffHeapDataContainer(int concurrencyLevel, int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      this(concurrencyLevel, checkEviction(maxEntries, strategy, policy));
+   }
+
+   private OffHeapDataContainer(int concurrencyLevel, int maxEntries) {
+      if (concurrencyLevel <= 0)
+         throw new IllegalArgumentException("Concurrency level must be positive, was " + concurrencyLevel);
+      if (concurrencyLevel > MAX_SEGMENTS) concurrencyLevel = MAX_SEGMENTS;
+
+      int sshift = 0;
+      int ssize = 1;
+      while (ssize < concurrencyLevel) {
+         ++sshift;
+         ssize <<= 1;
+      }
+      segmentShift = 32 - sshift;
+      segmentMask = ssize - 1;
+
+      int perSegment = -1;
+      if (maxEntries > 0) {
+         perSegment = maxEntries / ssize;
+         if (perSegment * ssize < maxEntries) ++perSegment;
+      }
+      segments = new Segment[ssize];
+      for (int i = 0; i < ssize; i++) segments[i] = new Segment(perSegment);
+   }
+
+   private static int checkEviction(int maxEntries, EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      switch (policy) {
+         case PIGGYBACK:
+         case DEFAULT:
+            break;
+         default:
+            throw new IllegalArgumentException("No such eviction thread policy " + policy);
+      }
+
+      switch (strategy) {
+         case FIFO:
+         case UNORDERED:
+         case LRU:
+            break;
+         case LIRS:
+            log.debug("LIRS eviction is approximated by LRU in the off-heap data container");
+            break;
+         default:
+            throw new IllegalArgumentException("No such eviction strategy " + strategy);
+      }
+
+      if (maxEntries <= 0)
+         throw new IllegalArgumentException("Maximum number of entries must be positive, was " + maxEntries);
+      return maxEntries;
+   }
+
+   @Inject
+   public void initialize(EvictionManager evictionManager, StreamingMarshaller marshaller) {
+      this.evictionManager = evictionManager;
+      this.marshaller = marshaller;
+   }
+
+   public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEntries,
+            EvictionStrategy strategy, EvictionThreadPolicy policy) {
+      return new OffHeapDataContainer(concurrencyLevel, maxEntries, strategy, policy);
+   }
+
+   public static DataContainer unBoundedDataContainer(int concurrencyLevel) {
+      return new OffHeapDataContainer(concurrencyLevel);
+   }
+
+   /**
+    * Sets the size in bytes of the direct memory blocks segments allocate. Entries larger than a block get a block of
+    * their own. Only affects blocks allocated after the call.
+    */
+   public void setBlockSize(int blockSize) {
+      if (blockSize <= HEADER_SIZE)
+         throw new IllegalArgumentException("Block size must be larger than " + HEADER_SIZE + " bytes, was " + blockSize);
+      this.blockSize = blockSize;
+   }
+
+   public int getBlockSize() {
+      return blockSize;
+   }
+
+   public InternalCacheEntry peek(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(k.hashCode());
+      Record r = segmentFor(hash).get(k, hash, keyBytes, false);
+      return r == null ? null : toEntry(k, r);
+   }
+
+   public InternalCacheEntry get(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(k.hashCode());
+      Record r = segmentFor(hash).get(k, hash, keyBytes, true);
+      return r == null ? null : toEntry(k, r);
+   }
+
+   public void put(Object k, Object v, long lifespan, long maxIdle) {
+      byte[] keyBytes = marshall(k);
+      byte[] valueBytes = marshall(v);
+      int hash = hash(k.hashCode());
+      List<Record> evicted = segmentFor(hash).put(k, hash, keyBytes, valueBytes, lifespan, maxIdle);
+      if (evicted != null && !evicted.isEmpty()) {
+         Map<Object, InternalCacheEntry> evictedEntries = new HashMap<Object, InternalCacheEntry>(evicted.size());
+         for (Record r : evicted) {
+            InternalCacheEntry ice = toEntry(null, r);
+            evictedEntries.put(ice.getKey(), ice);
+         }
+         evictionManager.onEntryEviction(evictedEntries);
+      }
+   }
+
+   public boolean containsKey(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(k.hashCode());
+      return segmentFor(hash).containsKey(k, hash, keyBytes);
+   }
+
+   public InternalCacheEntry remove(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(k.hashCode());
+      Record r = segmentFor(hash).remove(k, hash, keyBytes);
+      return r == null || r.isExpired(System.currentTimeMillis()) ? null : toEntry(k, r);
+   }
+
+   public int size() {
+      int size = 0;
+      for (Segment s : segments) size += s.count;
+      return size;
+   }
+
+   public void clear() {
+      for (Segment s : segments) s.clear();
+   }
+
+   public Set<Object> keySet() {
+      return new KeySet();
+   }
+
+   public Collection<Object> values() {
+      return new Values();
+   }
+
+   public Set<InternalCacheEntry> entrySet() {
+      return new EntrySet();
+   }
+
+   public void purgeExpired() {
+      long now = System.currentTimeMillis();
+      for (Segment s : segments) s.purgeExpired(now);
+   }
+
+   public Iterator<InternalCacheEntry> iterator() {
+      return new EntryIterator(true);
+   }
+
+   /**
+    * @return the number of bytes of direct memory currently allocated by this container
+    */
+   public long getAllocatedBytes() {
+      long allocated = 0;
+      for (Segment s : segments) allocated += s.allocatedBytes;
+      return allocated;
+   }
+
+   final Segment segmentFor(int hash) {
+      return segments[(hash >>> segmentShift) & segmentMask];
+   }
+
+   private static int hash(int h) {
+      // Spread bits to regularize both segment and index locations,
+      // using variant of single-word Wang/Jenkins hash.
+      h += h <<  15 ^ 0xffffcd7d;
+      h ^= h >>> 10;
+      h += h <<   3;
+      h ^= h >>>  6;
+      h += (h <<   2) + (h << 14);
+      return h ^ h >>> 16;
+   }
+
+   private InternalCacheEntry toEntry(Object key, Record r) {
+      Object k = key == null ? unmarshall(r.key) : key;
+      Object v = r.value == null ? null : unmarshall(r.value);
+      return InternalEntryFactory.create(k, v, r.created, r.lifespan, r.lastUsed, r.maxIdle);
+   }
+
+   private byte[] marshall(Object o) {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (IOException e) {
+         throw new CacheException("Unable to marshall " + o, e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while marshalling " + o, e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) {
+      try {
+         return marshaller.objectFromByteBuffer(bytes);
+      } catch (IOException e) {
+         throw new CacheException("Unable to unmarshall off-heap entry", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheException("Unable to unmarshall off-heap entry", e);
+      }
+   }
+
+   private static boolean isExpired(long created, long lifespan, long lastUsed, long maxIdle, long now) {
+      return (lifespan > -1 && created > -1 && now > created + lifespan)
+            || (maxIdle > -1 && lastUsed > -1 && now > maxIdle + lastUsed);
+   }
+
+   /**
+    * An on-heap copy of a record, taken while holding the segment lock and unmarshalled after releasing it.
+    */
+   static final class Record {
+      final byte[] key;
+      final byte[] value;
+      final long created;
+      final long lastUsed;
+      final long lifespan;
+      final long maxIdle;
+
+      Record(byte[] key, byte[] value, long created, long lastUsed, long lifespan, long maxIdle) {
+         this.key = key;
+         this.value = value;
+         this.created = created;
+         this.lastUsed = lastUsed;
+         this.lifespan = lifespan;
+         this.maxIdle = maxIdle;
+      }
+
+      boolean isExpired(long now) {
+         return OffHeapDataContainer.isExpired(created, lifespan, lastUsed, maxIdle, now);
+      }
+   }
+
+   /**
+    * A segment owns a set of direct memory blocks, records are appended to the current block and addressed by block
+    * index (high 32 bits) and offset (low 32 bits). Index slots are kept in parallel arrays: <tt>hashes</tt>,
+    * <tt>addresses</tt> and <tt>next</tt> form the hash chains hanging off <tt>table</tt>, and <tt>lruPrev</tt> and
+    * <tt>lruNext</tt> link all live slots from least to most recently used.
+    */
+   final class Segment extends ReentrantLock {
+
+      private static final long serialVersionUID = -5069337587232155587L;
+
+      private static final int INITIAL_CAPACITY = 16;
+
+      final int maxEntries;
+
+      volatile int count;
+      volatile long allocatedBytes;
+
+      private ByteBuffer[] blocks;
+      private int blockCount;
+      private int currentBlock;
+      private long writtenBytes;
+      private long liveBytes;
+
+      private int[] table;
+      private int[] hashes;
+      private long[] addresses;
+      private int[] next;
+      private int[] lruPrev;
+      private int[] lruNext;
+      private int lruHead;
+      private int lruTail;
+      private int freeSlot;
+      private int usedSlots;
+
+      Segment(int maxEntries) {
+         this.maxEntries = maxEntries;
+         reset();
+      }
+
+      Record get(Object key, int hash, byte[] keyBytes, boolean touch) {
+         lock();
+         try {
+            int slot = find(key, hash, keyBytes);
+            if (slot == NONE) return null;
+            long address = addresses[slot];
+            if (touch) {
+               long now = System.currentTimeMillis();
+               if (isExpired(address, now)) {
+                  removeSlot(slot);
+                  compactIfNeeded();
+                  return null;
+               }
+               buffer(address).putLong(offset(address) + LAST_USED_OFFSET, now);
+               moveToTail(slot);
+            }
+            return read(address, false, true);
+         } finally {
+            unlock();
+         }
+      }
+
+      List<Record> put(Object key, int hash, byte[] keyBytes, byte[] valueBytes, long lifespan, long maxIdle) {
+         long now = System.currentTimeMillis();
+         lock();
+         try {
+            int slot = find(key, hash, keyBytes);
+            long address = write(keyBytes, valueBytes, now, now, lifespan, maxIdle);
+            if (slot == NONE) {
+               addSlot(hash, address);
+            } else {
+               liveBytes -= recordSize(addresses[slot]);
+               addresses[slot] = address;
+               moveToTail(slot);
+            }
+            List<Record> evicted = evictIfNeeded();
+            compactIfNeeded();
+            return evicted;
+         } finally {
+            unlock();
+         }
+      }
+
+      boolean containsKey(Object key, int hash, byte[] keyBytes) {
+         lock();
+         try {
+            int slot = find(key, hash, keyBytes);
+            if (slot == NONE) return false;
+            if (isExpired(addresses[slot], System.currentTimeMillis())) {
+               removeSlot(slot);
+               compactIfNeeded();
+               return false;
+            }
+            return true;
+         } finally {
+            unlock();
+         }
+      }
+
+      Record remove(Object key, int hash, byte[] keyBytes) {
+         lock();
+         try {
+            int slot = find(key, hash, keyBytes);
+            if (slot == NONE) return null;
+            Record r = read(addresses[slot], false, true);
+            removeSlot(slot);
+            compactIfNeeded();
+            return r;
+         } finally {
+            unlock();
+         }
+      }
+
+      void purgeExpired(long now) {
+         lock();
+         try {
+            int slot = lruHead;
+            while (slot != NONE) {
+               int nextSlot = lruNext[slot];
+               if (isExpired(addresses[slot], now)) removeSlot(slot);
+               slot = nextSlot;
+            }
+            compactIfNeeded();
+         } finally {
+            unlock();
+         }
+      }
+
+      void clear() {
+         lock();
+         try {
+            reset();
+         } finally {
+            unlock();
+         }
+      }
+
+      /**
+       * Copies all live records of this segment onto the heap, in LRU order.
+       */
+      List<Record> snapshot(boolean withValues) {
+         lock();
+         try {
+            List<Record> records = new ArrayList<Record>(count);
+            for (int slot = lruHead; slot != NONE; slot = lruNext[slot])
+               records.add(read(addresses[slot], true, withValues));
+            return records;
+         } finally {
+            unlock();
+         }
+      }
+
+      private void reset() {
+         blocks = new ByteBuffer[4];
+         blockCount = 0;
+         currentBlock = NONE;
+         writtenBytes = 0;
+         liveBytes = 0;
+         allocatedBytes = 0;
+
+         table = new int[INITIAL_CAPACITY];
+         Arrays.fill(table, NONE);
+         hashes = new int[INITIAL_CAPACITY];
+         addresses = new long[INITIAL_CAPACITY];
+         next = new int[INITIAL_CAPACITY];
+         lruPrev = new int[INITIAL_CAPACITY];
+         lruNext = new int[INITIAL_CAPACITY];
+         lruHead = NONE;
+         lruTail = NONE;
+         freeSlot = NONE;
+         usedSlots = 0;
+         count = 0;
+      }
+
+      private int find(Object key, int hash, byte[] keyBytes) {
+         for (int slot = table[hash & (table.length - 1)]; slot != NONE; slot = next[slot]) {
+            if (hashes[slot] == hash && keyEquals(addresses[slot], key, keyBytes)) return slot;
+         }
+         return NONE;
+      }
+
+      private boolean keyEquals(long address, Object key, byte[] keyBytes) {
+         ByteBuffer b = buffer(address);
+         int o = offset(address);
+         int length = b.getInt(o + KEY_LENGTH_OFFSET);
+         if (length == keyBytes.length) {
+            int base = o + HEADER_SIZE;
+            int i = 0;
+            while (i < length && b.get(base + i) == keyBytes[i]) i++;
+            if (i == length) return true;
+         }
+         // Equal keys do not necessarily marshall to identical bytes, so fall back on equals()
+         return key.equals(unmarshall(copy(b, o + HEADER_SIZE, length)));
+      }
+
+      private void addSlot(int hash, long address) {
+         int slot;
+         if (freeSlot != NONE) {
+            slot = freeSlot;
+            freeSlot = next[slot];
+         } else {
+            if (usedSlots == hashes.length) growSlots();
+            slot = usedSlots++;
+         }
+         hashes[slot] = hash;
+         addresses[slot] = address;
+         int bucket = hash & (table.length - 1);
+         next[slot] = table[bucket];
+         table[bucket] = slot;
+         linkLast(slot);
+         count++;
+         if (count > (table.length >>> 1) + (table.length >>> 2)) rehash();
+      }
+
+      private void removeSlot(int slot) {
+         int bucket = hashes[slot] & (table.length - 1);
+         if (table[bucket] == slot) {
+            table[bucket] = next[slot];
+         } else {
+            int previous = table[bucket];
+            while (next[previous] != slot) previous = next[previous];
+            next[previous] = next[slot];
+         }
+         unlink(slot);
+         liveBytes -= recordSize(addresses[slot]);
+         addresses[slot] = NONE;
+         next[slot] = freeSlot;
+         freeSlot = slot;
+         count--;
+      }
+
+      private void growSlots() {
+         int capacity = hashes.length << 1;
+         hashes = Arrays.copyOf(hashes, capacity);
+         addresses = Arrays.copyOf(addresses, capacity);
+         next = Arrays.copyOf(next, capacity);
+         lruPrev = Arrays.copyOf(lruPrev, capacity);
+         lruNext = Arrays.copyOf(lruNext, capacity);
+      }
+
+      private void rehash() {
+         table = new int[table.length << 1];
+         Arrays.fill(table, NONE);
+         for (int slot = lruHead; slot != NONE; slot = lruNext[slot]) {
+            int bucket = hashes[slot] & (table.length - 1);
+            next[slot] = table[bucket];
+            table[bucket] = slot;
+         }
+      }
+
+      private void linkLast(int slot) {
+         lruPrev[slot] = lruTail;
+         lruNext[slot] = NONE;
+         if (lruTail != NONE) lruNext[lruTail] = slot;
+         else lruHead = slot;
+         lruTail = slot;
+      }
+
+      private void unlink(int slot) {
+         int p = lruPrev[slot];
+         int n = lruNext[slot];
+         if (p != NONE) lruNext[p] = n;
+         else lruHead = n;
+         if (n != NONE) lruPrev[n] = p;
+         else lruTail = p;
+      }
+
+      private void moveToTail(int slot) {
+         if (lruTail != slot) {
+            unlink(slot);
+            linkLast(slot);
+         }
+      }
+
+      private List<Record> evictIfNeeded() {
+         if (maxEntries < 0 || count <= maxEntries) return null;
+         List<Record> evicted = new ArrayList<Record>(count - maxEntries);
+         while (count > maxEntries) {
+            int victim = lruHead;
+            evicted.add(read(addresses[victim], true, true));
+            removeSlot(victim);
+         }
+         return evicted;
+      }
+
+      private long write(byte[] keyBytes, byte[] valueBytes, long created, long lastUsed, long lifespan, long maxIdle) {
+         int size = HEADER_SIZE + keyBytes.length + valueBytes.length;
+         long address = allocate(size);
+         ByteBuffer b = buffer(address);
+         int o = offset(address);
+         b.putInt(o + KEY_LENGTH_OFFSET, keyBytes.length);
+         b.putInt(o + VALUE_LENGTH_OFFSET, valueBytes.length);
+         b.putLong(o + CREATED_OFFSET, created);
+         b.putLong(o + LAST_USED_OFFSET, lastUsed);
+         b.putLong(o + LIFESPAN_OFFSET, lifespan);
+         b.putLong(o + MAX_IDLE_OFFSET, maxIdle);
+         ByteBuffer dup = b.duplicate();
+         dup.position(o + HEADER_SIZE);
+         dup.put(keyBytes);
+         dup.put(valueBytes);
+         liveBytes += size;
+         return address;
+      }
+
+      private Record read(long address, boolean withKey, boolean withValue) {
+         ByteBuffer b = buffer(address);
+         int o = offset(address);
+         int keyLength = b.getInt(o + KEY_LENGTH_OFFSET);
+         int valueLength = b.getInt(o + VALUE_LENGTH_OFFSET);
+         byte[] key = withKey ? copy(b, o + HEADER_SIZE, keyLength) : null;
+         byte[] value = withValue ? copy(b, o + HEADER_SIZE + keyLength, valueLength) : null;
+         return new Record(key, value, b.getLong(o + CREATED_OFFSET), b.getLong(o + LAST_USED_OFFSET),
+                           b.getLong(o + LIFESPAN_OFFSET), b.getLong(o + MAX_IDLE_OFFSET));
+      }
+
+      private boolean isExpired(long address, long now) {
+         ByteBuffer b = buffer(address);
+         int o = offset(address);
+         return OffHeapDataContainer.isExpired(b.getLong(o + CREATED_OFFSET), b.getLong(o + LIFESPAN_OFFSET),
+                                               b.getLong(o + LAST_USED_OFFSET), b.getLong(o + MAX_IDLE_OFFSET), now);
+      }
+
+      private int recordSize(long address) {
+         ByteBuffer b = buffer(address);
+         int o = offset(address);
+         return HEADER_SIZE + b.getInt(o + KEY_LENGTH_OFFSET) + b.getInt(o + VALUE_LENGTH_OFFSET);
+      }
+
+      private ByteBuffer buffer(long address) {
+         return blocks[(int) (address >>> 32)];
+      }
+
+      private int offset(long address) {
+         return (int) address;
+      }
+
+      /**
+       * Reserves <tt>size</tt> bytes, using the buffer's position as the allocation pointer of a block.
+       */
+      private long allocate(int size) {
+         int bs = blockSize;
+         if (size > bs) return addressOf(addBlock(size), 0, size);
+
+         if (currentBlock != NONE) {
+            ByteBuffer current = blocks[currentBlock];
+            int position = current.position();
+            if (current.capacity() - position >= size) return addressOf(currentBlock, position, size);
+         }
+         currentBlock = addBlock(bs);
+         return addressOf(currentBlock, 0, size);
+      }
+
+      private long addressOf(int block, int position, int size) {
+         blocks[block].position(position + size);
+         writtenBytes += size;
+         return ((long) block << 32) | position;
+      }
+
+      private int addBlock(int capacity) {
+         if (blockCount == blocks.length) blocks = Arrays.copyOf(blocks, blockCount << 1);
+         blocks[blockCount] = ByteBuffer.allocateDirect(capacity);
+         allocatedBytes += capacity;
+         return blockCount++;
+      }
+
+      /**
+       * Rewrites all live records into fresh blocks once more than half of the written memory is garbage. The old
+       * blocks are released to the garbage collector, which frees their direct memory.
+       */
+      private void compactIfNeeded() {
+         long garbage = writtenBytes - liveBytes;
+         if (garbage <= blockSize || garbage <= liveBytes) return;
+
+         ByteBuffer[] oldBlocks = blocks;
+         blocks = new ByteBuffer[4];
+         blockCount = 0;
+         currentBlock = NONE;
+         writtenBytes = 0;
+         allocatedBytes = 0;
+         for (int slot = lruHead; slot != NONE; slot = lruNext[slot]) {
+            long oldAddress = addresses[slot];
+            ByteBuffer source = oldBlocks[(int) (oldAddress >>> 32)].duplicate();
+            int o = offset(oldAddress);
+            int size = HEADER_SIZE + source.getInt(o + KEY_LENGTH_OFFSET) + source.getInt(o + VALUE_LENGTH_OFFSET);
+            long address = allocate(size);
+            source.limit(o + size).position(o);
+            ByteBuffer target = buffer(address).duplicate();
+            target.position(offset(address));
+            target.put(source);
+            addresses[slot] = address;
+         }
+         if (trace) log.tracef("Compacted off-heap segment, reclaimed %s bytes, %s bytes live", garbage, liveBytes);
+      }
+
+      private byte[] copy(ByteBuffer b, int position, int length) {
+         byte[] bytes = new byte[length];
+         ByteBuffer dup = b.duplicate();
+         dup.position(position);
+         dup.get(bytes);
+         return bytes;
+      }
+   }
+
+   private class EntryIterator implements Iterator<InternalCacheEntry> {
+      private final boolean withValues;
+      private int nextSegment;
+      private Iterator<Record> current = Collections.<Record>emptyList().iterator();
+
+      EntryIterator(boolean withValues) {
+         this.withValues = withValues;
+      }
+
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (nextSegment >= segments.length) return false;
+            current = segments[nextSegment++].snapshot(withValues).iterator();
+         }
+         return true;
+      }
+
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         return toEntry(null, current.next());
+      }
+
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private class ImmutableEntryIterator extends EntryIterator {
+      ImmutableEntryIterator() {
+         super(true);
+      }
+
+      @Override
+      public InternalCacheEntry next() {
+         return Immutables.immutableInternalCacheEntry(super.next());
+      }
+   }
+
+   /**
+    * Minimal implementation needed for unmodifiable Set
+    *
+    */
+   private class KeySet extends AbstractSet<Object> {
+      @Override
+      public boolean contains(Object o) {
+         return peek(o) != null;
+      }
+
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator(false);
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getKey();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   /**
+    * Minimal implementation needed for unmodifiable Set
+    *
+    */
+   private class EntrySet extends AbstractSet<InternalCacheEntry> {
+
+      @Override
+      public boolean contains(Object o) {
+         if (!(o instanceof Map.Entry)) {
+            return false;
+         }
+
+         @SuppressWarnings("rawtypes")
+         Map.Entry e = (Map.Entry) o;
+         InternalCacheEntry ice = peek(e.getKey());
+         if (ice == null) {
+            return false;
+         }
+         return ice.getValue().equals(e.getValue());
+      }
+
+      @Override
+      public Iterator<InternalCacheEntry> iterator() {
+         return new ImmutableEntryIterator();
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+
+   /**
+    * Minimal implementation needed for unmodifiable Collection
+    *
+    */
+   private class Values extends AbstractCollection<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator(true);
+         return new Iterator<Object>() {
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            public Object next() {
+               return it.next().getValue();
+            }
+
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return OffHeapDataContainer.this.size();
+      }
+   }
+}
@@ -23,6 +23,7 @@
 package org.infinispan.container.entries;
 
 import org.infinispan.atomic.AtomicHashMap;
+import org.infinispan.atomic.FineGrainedAtomicHashMap;
 import org.infinispan.container.DataContainer;
 import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
@@ -165,6 +166,7 @@ public class ReadCommittedEntry implements MVCCEntry {
 
          // Ugh!
          if (value instanceof AtomicHashMap) ((AtomicHashMap) value).commit();
+         else if (value instanceof FineGrainedAtomicHashMap) value = ((FineGrainedAtomicHashMap) value).applyChanges();
 
          if (isRemoved()) {
             container.remove(key);
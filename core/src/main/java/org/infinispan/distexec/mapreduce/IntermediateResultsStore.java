@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distexec.mapreduce;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds, on the node owning them, the intermediate key/value pairs of running {@link MapReduceTask}s, as sent by the
+ * nodes executing the map phase. They are kept until the reduce phase of the task consumes them.
+ *
+ * @since 5.0
+ */
+public class IntermediateResultsStore {
+
+   private final ConcurrentMap<String, Map<Object, List<Object>>> tasks = new ConcurrentHashMap<String, Map<Object, List<Object>>>();
+
+   /**
+    * Adds intermediate values emitted by a node to the ones already received for the given task
+    */
+   public void merge(String taskId, Map<Object, List<Object>> values) {
+      Map<Object, List<Object>> taskValues = tasks.get(taskId);
+      if (taskValues == null) {
+         taskValues = new HashMap<Object, List<Object>>();
+         Map<Object, List<Object>> existing = tasks.putIfAbsent(taskId, taskValues);
+         if (existing != null) taskValues = existing;
+      }
+      synchronized (taskValues) {
+         for (Entry<Object, List<Object>> e : values.entrySet()) {
+            List<Object> list = taskValues.get(e.getKey());
+            if (list == null) {
+               list = new LinkedList<Object>();
+               taskValues.put(e.getKey(), list);
+            }
+            list.addAll(e.getValue());
+         }
+      }
+   }
+
+   /**
+    * Removes and returns all the intermediate values received for the given task, or null if there are none
+    */
+   public Map<Object, List<Object>> remove(String taskId) {
+      return tasks.remove(taskId);
+   }
+}
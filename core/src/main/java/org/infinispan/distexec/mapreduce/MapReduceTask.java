@@ -30,6 +30,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -40,12 +41,11 @@ import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
 import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.read.MapReduceCommand;
-import org.infinispan.context.InvocationContextContainer;
-import org.infinispan.distribution.DistributionManager;
-import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.commands.read.ReduceCommand;
+import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.factories.GlobalComponentRegistry;
-import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.lifecycle.ComponentStatus;
 import org.infinispan.marshall.Marshaller;
 import org.infinispan.marshall.StreamingMarshaller;
@@ -136,6 +136,7 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
 
    private Mapper<KIn, VIn, KOut, VOut> mapper;
    private Reducer<KOut, VOut> reducer;
+   private Reducer<KOut, VOut> combiner;
 
    private final Collection<KIn> keys;
    private final AdvancedCache<KIn, VIn> cache;
@@ -213,8 +214,34 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       return this;
    }
 
+   /**
+    * Specifies a Reducer combining, on each node, the values emitted by the Mapper for the same intermediate key
+    * before they are sent over the network to be reduced. Specifying a combiner can considerably reduce the amount
+    * of data sent for reduction, but requires the combined values to be valid input for a later reduction, which
+    * is the case for associative and commutative reductions such as sums or counts. Often, the Reducer itself can
+    * be used as combiner.
+    * 
+    * <p>
+    * Note that combiner {@link Reducer} should not be specified as inner class, for the same reasons as for
+    * {@link #reducedWith(Reducer)}.
+    * 
+    * @param combiner
+    * @return this task
+    */
+   public MapReduceTask<KIn, VIn, KOut, VOut> combinedWith(Reducer<KOut, VOut> combiner) {
+      if (combiner == null)
+         throw new NullPointerException("A valid reference of Reducer is needed " + combiner);
+      this.combiner = combiner;
+      return this;
+   }
+
    /**
     * Executes this task across Infinispan cluster nodes.
+    * <p>
+    * Each node maps the input keys it is the primary owner of, in parallel, and combines the values emitted for each
+    * intermediate key if a combiner was specified. The intermediate values are then sent to the nodes owning the
+    * intermediate keys according to the consistent hash, where they get reduced. Only the reduced values are
+    * returned to this node.
     * 
     * @return a Map where each key is an output key and value is reduced value for that output key
     */
@@ -226,102 +253,153 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       if (reducer == null)
          throw new NullPointerException("A valid reference of Reducer is not set " + reducer);
             
-      ComponentRegistry registry = cache.getComponentRegistry();
+      String taskId = UUID.randomUUID().toString();
+      // all the nodes route the keys of this task with the same hash, whatever view changes happen meanwhile
+      ConsistentHash ch = cache.getDistributionManager().getConsistentHash();
+      boolean mapped = false;
+      try {
+         executeMapPhase(taskId, ch);
+         mapped = true;
+      } finally {
+         if (!mapped) discardIntermediateResults(taskId);
+      }
+      return executeReducePhase(taskId, reducer);
+   }
+
+   /**
+    * Drops the intermediate values other nodes received for a task whose map phase failed. Only called once all the
+    * map commands have completed, so that no intermediate values arrive afterwards.
+    */
+   private void discardIntermediateResults(String taskId) {
+      try {
+         executeReducePhase(taskId, null);
+      } catch (Throwable t) {
+         // do not hide the failure of the map phase
+         log.debugf("Could not discard the intermediate results of MapReduce task %s: %s", taskId, t);
+      }
+   }
+
+   /**
+    * Waits for all the map commands to complete, even when some of them fail, and then throws the first failure.
+    */
+   @SuppressWarnings("unchecked")
+   private void executeMapPhase(String taskId, ConsistentHash ch) throws CacheException {
       RpcManager rpc = cache.getRpcManager();
-      InvocationContextContainer icc = cache.getInvocationContextContainer();
-      DistributionManager dm = cache.getDistributionManager();
-      InterceptorChain invoker = registry.getComponent(InterceptorChain.class);
-      CommandsFactory factory = registry.getComponent(CommandsFactory.class);
-      
-      MapReduceCommand cmd = null;
+      CommandsFactory factory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
+
       MapReduceCommand selfCmd = null;
-      Map<Address, Response> results = new HashMap<Address, Response>();
-      if (inputTaskKeysEmpty()) {
-         cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys);
-         selfCmd = cmd;
-         try {
-            log.debugf("Invoking %s across entire cluster ", cmd);
-            Map<Address, Response> map = rpc.invokeRemotely(null, cmd, true, false);
-            log.debugf("Invoked %s across entire cluster, results are %s", cmd, map);
-            results.putAll(map);
-         } catch (Throwable e) {
-            throw new CacheException("Could not invoke MapReduce task on remote nodes ", e);
-         }
-      } else {
-         Map<Address, List<KIn>> keysToNodes = mapKeysToNodes();
-         log.debugf("Keys to nodes mapping is " + keysToNodes);
-         List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>();
-         for (Entry<Address, List<KIn>> e : keysToNodes.entrySet()) {
-            Address address = e.getKey();
-            List<KIn> keys = e.getValue();
-            if (address.equals(rpc.getAddress())) {
-               selfCmd = factory.buildMapReduceCommand(clone(mapper), clone(reducer), rpc.getAddress(), keys);
-            } else {
-               cmd = factory.buildMapReduceCommand(mapper, reducer, rpc.getAddress(), keys);
-               try {
-                  log.debugf("Invoking %s on %s", cmd, address);
-                  MapReduceFuture future = new MapReduceFuture();
-                  futures.add(future);
-                  rpc.invokeRemotelyInFuture(Collections.singleton(address), cmd, future);                  
-                  log.debugf("Invoked %s on %s ", cmd, address);
-               } catch (Exception ex) {
-                  throw new CacheException("Could not invoke MapReduceTask on remote node " + address, ex);
+      List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>();
+      CacheException failure = null;
+      try {
+         if (inputTaskKeysEmpty()) {
+            MapReduceCommand cmd = factory.buildMapReduceCommand(taskId, mapper, combiner, rpc.getAddress(), keys, ch);
+            selfCmd = factory.buildMapReduceCommand(taskId, clone(mapper), clone(combiner), rpc.getAddress(), keys, ch);
+            invokeRemotely(rpc, null, cmd, futures);
+         } else {
+            Map<Address, List<KIn>> keysToNodes = mapKeysToNodes(ch);
+            log.debugf("Keys to nodes mapping is " + keysToNodes);
+            for (Entry<Address, List<KIn>> e : keysToNodes.entrySet()) {
+               Address address = e.getKey();
+               List<KIn> keys = e.getValue();
+               if (address.equals(rpc.getAddress())) {
+                  selfCmd = factory.buildMapReduceCommand(taskId, clone(mapper), clone(combiner), rpc.getAddress(), keys, ch);
+               } else {
+                  MapReduceCommand cmd = factory.buildMapReduceCommand(taskId, mapper, combiner, rpc.getAddress(), keys, ch);
+                  invokeRemotely(rpc, Collections.singleton(address), cmd, futures);
                }
             }
          }
-         for (MapReduceFuture future : futures) {
-            Map<Address, Response> result;
-            try {
-               result = (Map<Address, Response>) future.get();               
-               results.putAll(result);
-               log.debugf("Received result from future %s", result);
-            } catch (Exception e1) {
-               throw new CacheException("Could not retrieve MapReduceTask result from remote node", e1);
-            }            
-         }
+      } catch (CacheException e) {
+         // the commands already sent must still be waited for
+         failure = e;
+         selfCmd = null;
       }
-      boolean selfInvoke = selfCmd != null;
-      Object localCommandResult = null;
-      if (selfInvoke) {
-         log.debugf("Invoking %s locally", cmd);
-         selfCmd.init(factory, invoker, icc, dm, rpc.getAddress());
+      // map the local keys while the other nodes map theirs
+      if (selfCmd != null) {
+         log.debugf("Invoking %s locally", selfCmd);
+         factory.initializeReplicableCommand(selfCmd, false);
          try {
-            localCommandResult = selfCmd.perform(null);
-            log.debugf("Invoked %s locally", cmd);
+            selfCmd.perform(null);
+            log.debugf("Invoked %s locally", selfCmd);
          } catch (Throwable e1) {
-            throw new CacheException("Could not invoke MapReduce task locally ", e1);
+            failure = new CacheException("Could not invoke MapReduce task locally ", e1);
          }
       }
-
-      // we have results from all nodes now, group intermediate keys for final reduction
-      Map<KOut, List<VOut>> reduceMap = new HashMap<KOut, List<VOut>>();
-      for (Entry<Address, Response> e : results.entrySet()) {
-         Response rsp = e.getValue();
-         if (rsp.isSuccessful() && rsp.isValid()) {            
-            Map<KOut, VOut> reducedResponse = (Map<KOut, VOut>) ((SuccessfulResponse) rsp).getResponseValue();
-            groupKeys(reduceMap, reducedResponse);
-         } else if (rsp instanceof ExceptionResponse) {
-            throw new CacheException("MapReduce task on remote node " + e.getKey()
-                     + " threw Exception", ((ExceptionResponse) rsp).getException());
-         } else {
-            throw new CacheException("MapReduce task on remote node " + e.getKey() + " failed ");
+      for (MapReduceFuture future : futures) {
+         CacheException remoteFailure = null;
+         try {
+            checkResponses((Map<Address, Response>) future.get());
+         } catch (CacheException e) {
+            remoteFailure = e;
+         } catch (Exception e1) {
+            remoteFailure = new CacheException("Could not retrieve MapReduceTask result from remote node", e1);
+         }
+         if (remoteFailure != null) {
+            if (failure == null) failure = remoteFailure;
+            else log.debugf("MapReduce task %s failed on several nodes: %s", taskId, remoteFailure);
          }
       }
+      if (failure != null) throw failure;
+   }
 
-      if (selfInvoke) {
-         groupKeys(reduceMap, (Map<KOut, VOut>) localCommandResult);
-      }
+   private Map<KOut, VOut> executeReducePhase(String taskId, Reducer<KOut, VOut> reducer) throws CacheException {
+      RpcManager rpc = cache.getRpcManager();
+      CommandsFactory factory = cache.getComponentRegistry().getComponent(CommandsFactory.class);
+
+      // every node may own intermediate keys, regardless of the nodes that took part in the map phase
+      ReduceCommand cmd = factory.buildReduceCommand(taskId, reducer);
+      List<MapReduceFuture> futures = new ArrayList<MapReduceFuture>();
+      invokeRemotely(rpc, null, cmd, futures);
 
-      // final reduce
-      //TODO parallelize into Executor
       Map<KOut, VOut> result = new HashMap<KOut, VOut>();
-      for (Entry<KOut, List<VOut>> entry : reduceMap.entrySet()) {
-         VOut reduced = reducer.reduce(entry.getKey(), (entry.getValue()).iterator());
-         result.put(entry.getKey(), reduced);
+      ReduceCommand selfCmd = factory.buildReduceCommand(taskId, reducer == null ? null : clone(reducer));
+      factory.initializeReplicableCommand(selfCmd, false);
+      try {
+         result.putAll((Map<KOut, VOut>) selfCmd.perform(null));
+      } catch (Throwable e1) {
+         throw new CacheException("Could not invoke MapReduce task locally ", e1);
+      }
+      for (MapReduceFuture future : futures) {
+         Map<Address, Response> responses;
+         try {
+            responses = (Map<Address, Response>) future.get();
+         } catch (Exception e1) {
+            throw new CacheException("Could not retrieve MapReduceTask result from remote node", e1);
+         }
+         for (Response rsp : checkResponses(responses).values()) {
+            // each node reduces the intermediate keys it owns, so the results do not overlap
+            result.putAll((Map<KOut, VOut>) ((SuccessfulResponse) rsp).getResponseValue());
+         }
       }
       return result;
    }
 
+   private void invokeRemotely(RpcManager rpc, Collection<Address> recipients, ReplicableCommand cmd,
+            List<MapReduceFuture> futures) throws CacheException {
+      try {
+         log.debugf("Invoking %s on %s", cmd, recipients == null ? "entire cluster" : recipients);
+         MapReduceFuture future = new MapReduceFuture();
+         rpc.invokeRemotelyInFuture(recipients, cmd, future);
+         futures.add(future);
+      } catch (Exception ex) {
+         throw new CacheException("Could not invoke MapReduceTask on remote nodes " + recipients, ex);
+      }
+   }
+
+   private Map<Address, Response> checkResponses(Map<Address, Response> responses) throws CacheException {
+      log.debugf("Received results %s", responses);
+      for (Entry<Address, Response> e : responses.entrySet()) {
+         Response rsp = e.getValue();
+         if (rsp instanceof ExceptionResponse) {
+            throw new CacheException("MapReduce task on remote node " + e.getKey()
+                     + " threw Exception", ((ExceptionResponse) rsp).getException());
+         } else if (!rsp.isSuccessful() || !rsp.isValid()) {
+            throw new CacheException("MapReduce task on remote node " + e.getKey() + " failed ");
+         }
+      }
+      return responses;
+   }
+
    /**
     * Executes this task across Infinispan cluster nodes asynchronously.
     * 
@@ -393,25 +471,10 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
       };
    }
 
-   protected void groupKeys(Map<KOut, List<VOut>> finalReduced, Map<KOut, VOut> mapReceived) {
-      for (Entry<KOut, VOut> entry : mapReceived.entrySet()) {
-         List<VOut> l = null;
-         if (!finalReduced.containsKey(entry.getKey())) {
-            l = new LinkedList<VOut>();
-            finalReduced.put(entry.getKey(), l);
-         } else {
-            l = finalReduced.get(entry.getKey());
-         }
-         l.add(entry.getValue());
-      }
-   }
-
-   protected Map<Address, List<KIn>> mapKeysToNodes() {
-      DistributionManager dm = cache.getDistributionManager();
+   protected Map<Address, List<KIn>> mapKeysToNodes(ConsistentHash ch) {
       Map<Address, List<KIn>> addressToKey = new HashMap<Address, List<KIn>>();
       for (KIn key : keys) {
-         List<Address> nodesForKey = dm.locate(key);
-         Address ownerOfKey = nodesForKey.get(0);
+         Address ownerOfKey = ch.locate(key, 1).get(0);
          List<KIn> keysAtNode = addressToKey.get(ownerOfKey);
          if (keysAtNode == null) {
             keysAtNode = new ArrayList<KIn>();
@@ -427,7 +490,7 @@ public class MapReduceTask<KIn, VIn, KOut, VOut> {
    }
    
    protected Reducer<KOut, VOut> clone(Reducer<KOut, VOut> reducer){      
-      return Util.cloneWithMarshaller(marshaller, reducer);
+      return reducer == null ? null : Util.cloneWithMarshaller(marshaller, reducer);
    }
    
    private void ensureProperCacheState(AdvancedCache<KIn, VIn> cache) throws NullPointerException,
@@ -116,6 +116,19 @@ public interface DistributionManager {
     */
    InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx) throws Exception;
 
+   /**
+    * Retrieves several cache entries from remote sources.  Keys are grouped by the node they map to, and a single
+    * {@link org.infinispan.commands.remote.ClusteredGetAllCommand} is sent to each such node, all in parallel.  Keys an
+    * owner refuses to serve because they are affected by a rehash are looked up individually using
+    * {@link #retrieveFromRemoteSource(Object, org.infinispan.context.InvocationContext)}.
+    *
+    * @param keys keys to look up
+    * @param ctx
+    * @return a map of the keys that could be located to their internal cache entries
+    * @throws Exception if something bad happens
+    */
+   Map<Object, InternalCacheEntry> retrieveFromRemoteSource(Collection<Object> keys, InvocationContext ctx) throws Exception;
+
    /**
     * Retrieves the consistent hash instance currently in use, which may be an instance of the configured ConsistentHash
     * instance (which defaults to {@link org.infinispan.distribution.ch.DefaultConsistentHash}, or an instance of
@@ -24,6 +24,7 @@ package org.infinispan.distribution;
 
 import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -39,6 +40,7 @@ import org.infinispan.context.InvocationContextContainer;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
 import org.infinispan.distribution.ch.NodeTopologyInfo;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.distribution.ch.TopologyInfo;
 import org.infinispan.distribution.ch.UnionConsistentHash;
 import org.infinispan.factories.annotations.Inject;
@@ -66,6 +68,7 @@ import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.DeferredReturnFuture;
 import org.infinispan.util.concurrent.ReclosableLatch;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -339,6 +342,11 @@ public class DistributionManagerImpl implements DistributionManager {
    }
 
    List<Address> holdersOfLeaversState(Address leaver) {
+      if (oldConsistentHash instanceof SegmentedConsistentHash) {
+         List<Address> result = oldConsistentHash.getStateProvidersOnLeave(leaver, getReplCount());
+         if (trace) log.tracef("Nodes that may provide state are: %s", result);
+         return result;
+      }
       List<Address> result = new ArrayList<Address>();
       for (Address addr : oldConsistentHash.getCaches()) {
          List<Address> backups = oldConsistentHash.getBackupsForNode(addr, getReplCount());
@@ -359,6 +367,14 @@ public class DistributionManagerImpl implements DistributionManager {
    }
 
    List<Address> receiversOfLeaverState(List<Address> stateProviders) {
+      ConsistentHash newCH = consistentHash instanceof UnionConsistentHash ?
+            ((UnionConsistentHash) consistentHash).getNewConsistentHash() : consistentHash;
+      if (newCH instanceof SegmentedConsistentHash && oldConsistentHash instanceof SegmentedConsistentHash) {
+         List<Address> result = ((SegmentedConsistentHash) newCH).getStateReceivers(
+               (SegmentedConsistentHash) oldConsistentHash, getReplCount());
+         if (trace) log.tracef("Nodes that receive state are: %s", result);
+         return result;
+      }
       List<Address> result = new ArrayList<Address>();
       for (Address addr : stateProviders) {
          List<Address> addressList = consistentHash.getBackupsForNode(addr, getReplCount());
@@ -442,6 +458,69 @@ public class DistributionManagerImpl implements DistributionManager {
       return null;
    }
 
+   @SuppressWarnings("unchecked")
+   public Map<Object, InternalCacheEntry> retrieveFromRemoteSource(Collection<Object> keys, InvocationContext ctx) throws Exception {
+      Map<Object, InternalCacheEntry> result = new HashMap<Object, InternalCacheEntry>(keys.size());
+      if (keys.isEmpty()) return result;
+
+      // group the keys by the first owner that is not this node
+      Map<Address, Set<Object>> keysByOwner = new HashMap<Address, Set<Object>>();
+      for (Map.Entry<Object, List<Address>> e : locateAll(keys).entrySet()) {
+         Address target = null;
+         for (Address a : e.getValue()) {
+            if (!a.equals(self)) {
+               target = a;
+               break;
+            }
+         }
+         if (target == null) continue;
+         Set<Object> ownerKeys = keysByOwner.get(target);
+         if (ownerKeys == null) {
+            ownerKeys = new HashSet<Object>();
+            keysByOwner.put(target, ownerKeys);
+         }
+         ownerKeys.add(e.getKey());
+      }
+
+      Map<Address, DeferredReturnFuture> futures = new HashMap<Address, DeferredReturnFuture>(keysByOwner.size());
+      for (Map.Entry<Address, Set<Object>> e : keysByOwner.entrySet()) {
+         ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(e.getValue(), ctx.getFlags());
+         DeferredReturnFuture future = new DeferredReturnFuture();
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), get, false, future, configuration.getSyncReplTimeout());
+         futures.put(e.getKey(), future);
+      }
+      if (trace) log.tracef("Retrieving %s keys from %s owners", keys.size(), futures.size());
+
+      Set<Object> retry = new HashSet<Object>();
+      for (Map.Entry<Address, DeferredReturnFuture> e : futures.entrySet()) {
+         Map<Object, InternalCacheValue> values = null;
+         try {
+            Map<Address, Response> responses = (Map<Address, Response>) e.getValue().get();
+            Response r = responses == null ? null : responses.get(e.getKey());
+            if (r instanceof SuccessfulResponse)
+               values = (Map<Object, InternalCacheValue>) ((SuccessfulResponse) r).getResponseValue();
+         } catch (ExecutionException ee) {
+            // e.g. the owner was suspected or timed out: ask all owners of its keys, one key at a time
+            if (trace) log.tracef("Failed retrieving keys from %s, retrying them individually: %s", e.getKey(), ee.getCause());
+         }
+         for (Object key : keysByOwner.get(e.getKey())) {
+            if (values == null || !values.containsKey(key)) {
+               // the owner did not answer for this key, most likely because of a rehash or a failure
+               retry.add(key);
+            } else {
+               InternalCacheValue value = values.get(key);
+               if (value != null) result.put(key, value.toInternalCacheEntry(key));
+            }
+         }
+      }
+
+      for (Object key : retry) {
+         InternalCacheEntry ice = retrieveFromRemoteSource(key, ctx);
+         if (ice != null) result.put(key, ice);
+      }
+      return result;
+   }
+
    public ConsistentHash getConsistentHash() {
       return consistentHash;
    }
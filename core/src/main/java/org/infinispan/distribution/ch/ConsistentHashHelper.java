@@ -70,6 +70,10 @@ public class ConsistentHashHelper {
          AbstractWheelConsistentHash wch = (AbstractWheelConsistentHash) ch;
          wch.setHashFunction(h);
          wch.setNumVirtualNodes(c.getNumVirtualNodes());
+      } else if (ch instanceof SegmentedConsistentHash) {
+         SegmentedConsistentHash sch = (SegmentedConsistentHash) ch;
+         sch.setHashFunction((Hash) Util.getInstance(c.getHashFunctionClass()));
+         sch.setNumOwners(c.getNumOwners());
       }
       return ch;
    }
@@ -165,6 +169,13 @@ public class ConsistentHashHelper {
          numVirtualNodes = wTemplate.numVirtualNodes;
       }
       ConsistentHash ch = constructConsistentHashInstance(template.getClass(), hf, numVirtualNodes);
+      if (template instanceof SegmentedConsistentHash) {
+         SegmentedConsistentHash sTemplate = (SegmentedConsistentHash) template;
+         SegmentedConsistentHash sch = (SegmentedConsistentHash) ch;
+         sch.setHashFunction(sTemplate.getHashFunction());
+         sch.setNumSegments(sTemplate.getNumSegments());
+         sch.setNumOwners(sTemplate.getNumOwners());
+      }
       if (addresses != null && !addresses.isEmpty())  ch.setCaches(toSet(addresses));
       ch.setTopologyInfo(topologyInfo);
       return ch;
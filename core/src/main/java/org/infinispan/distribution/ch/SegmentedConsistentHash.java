@@ -0,0 +1,452 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+import org.infinispan.util.hash.Hash;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.Math.min;
+
+/**
+ * A consistent hash that divides the hash space into a fixed number of segments and assigns an ordered list of owners
+ * to each segment up front.  Locating a key is then a hash followed by an array lookup, instead of a walk of the hash
+ * wheel as in {@link DefaultConsistentHash}, and a membership change moves whole segments between nodes.
+ * <p />
+ * The owner table is computed deterministically from the set of members, so every node builds the same table
+ * independently.  Each owner slot of each segment goes to the member with the highest hash score for that segment
+ * which does not already own the segment and still has capacity in that slot.  This keeps the number of primary
+ * segments, and of segments in each backup slot, per node within one of each other, while the hash score keeps most
+ * segments with their owners when members join or leave.
+ * <p />
+ * Owners are precomputed for {@link #setNumOwners(int) numOwners} copies.  Lookups for more copies than that append
+ * members in table order after the last precomputed owner.  Hash ids are not supported, so {@link
+ * #getHashId(org.infinispan.remoting.transport.Address)} returns -1 and {@link #getHashSpace()} returns 0, in which
+ * case Hot Rod servers only send topology information to hash-distribution-aware clients.
+ *
+ * @since 5.0
+ */
+public class SegmentedConsistentHash extends AbstractConsistentHash {
+
+   private static final Log log = LogFactory.getLog(SegmentedConsistentHash.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   public static final int DEFAULT_NUM_SEGMENTS = 1024;
+   public static final int DEFAULT_NUM_OWNERS = 2;
+
+   private Hash hashFunction;
+   private int numSegments = DEFAULT_NUM_SEGMENTS;
+   private int numOwners = DEFAULT_NUM_OWNERS;
+
+   private Address[] members;
+   private Map<Address, Integer> memberIndexes;
+   private int[][] owners;
+
+   public SegmentedConsistentHash() {
+   }
+
+   public SegmentedConsistentHash(Hash hash) {
+      setHashFunction(hash);
+   }
+
+   public void setHashFunction(Hash h) {
+      hashFunction = h;
+   }
+
+   public Hash getHashFunction() {
+      return hashFunction;
+   }
+
+   /**
+    * Sets the number of segments the hash space is divided into.  Must be called before {@link #setCaches(java.util.Set)}
+    * and should be substantially larger than the expected number of nodes, otherwise some nodes own no segments.
+    */
+   public void setNumSegments(int numSegments) {
+      if (numSegments < 1) throw new IllegalArgumentException("Number of segments must be positive, was " + numSegments);
+      this.numSegments = numSegments;
+   }
+
+   public int getNumSegments() {
+      return numSegments;
+   }
+
+   /**
+    * Sets the number of owners precomputed for each segment.  Must be called before {@link
+    * #setCaches(java.util.Set)}.
+    */
+   public void setNumOwners(int numOwners) {
+      if (numOwners < 1) throw new IllegalArgumentException("Number of owners must be positive, was " + numOwners);
+      this.numOwners = numOwners;
+   }
+
+   public int getNumOwners() {
+      return numOwners;
+   }
+
+   @Override
+   public void setCaches(Set<Address> newCaches) {
+      members = newCaches.toArray(new Address[newCaches.size()]);
+      final int[] memberHashes = new int[members.length];
+      final Map<Address, Integer> hashes = new HashMap<Address, Integer>(members.length);
+      for (Address a : members) hashes.put(a, hashFunction.hash(a));
+      // every node must see the members in the same order, whatever the iteration order of the set passed in
+      Arrays.sort(members, new Comparator<Address>() {
+         @Override
+         public int compare(Address a1, Address a2) {
+            int h1 = hashes.get(a1), h2 = hashes.get(a2);
+            if (h1 != h2) return h1 < h2 ? -1 : 1;
+            return a1.toString().compareTo(a2.toString());
+         }
+      });
+
+      memberIndexes = new HashMap<Address, Integer>(members.length);
+      for (int i = 0; i < members.length; i++) {
+         memberIndexes.put(members[i], i);
+         memberHashes[i] = hashes.get(members[i]);
+      }
+      caches = Collections.unmodifiableSet(new LinkedHashSet<Address>(Arrays.asList(members)));
+      owners = balance(memberHashes);
+      if (trace) log.tracef("Assigned %s segments to %s nodes with %s owners each", numSegments, members.length, numOwners);
+   }
+
+   /**
+    * Fills the owner table one slot at a time, primary owners first.  Every member may take {@code numSegments /
+    * numMembers} segments of each slot, and {@code numSegments % numMembers} members may take one more.
+    */
+   private int[][] balance(int[] memberHashes) {
+      int numMembers = memberHashes.length;
+      int width = min(numOwners, numMembers);
+      int[][] table = new int[numSegments][width];
+      if (numMembers == 0) return table;
+
+      for (int slot = 0; slot < width; slot++) {
+         SlotLoad load = new SlotLoad(numMembers);
+         for (int segment = 0; segment < numSegments; segment++) {
+            int owner = pickOwner(memberHashes, table, segment, slot, load);
+            if (owner < 0) owner = freeOwner(table, segment, slot, load);
+            if (owner < 0) owner = leastLoaded(table, segment, slot, load);
+            table[segment][slot] = owner;
+            load.add(owner);
+         }
+      }
+      return table;
+   }
+
+   /**
+    * Picks the member with the highest hash score for the segment among those with spare capacity.
+    */
+   private int pickOwner(int[] memberHashes, int[][] table, int segment, int slot, SlotLoad load) {
+      int best = -1;
+      int bestScore = 0;
+      for (int i = 0; i < memberHashes.length; i++) {
+         if (!load.canTake(i) || isOwner(table[segment], slot, i)) continue;
+         int score = hashFunction.hash(31 * memberHashes[i] + segment);
+         if (best < 0 || score > bestScore) {
+            best = i;
+            bestScore = score;
+         }
+      }
+      return best;
+   }
+
+   /**
+    * Called when all members with spare capacity already own the segment in an earlier slot.  Hands an already
+    * assigned segment over to such a member and returns the member it was taken from, which can own this segment
+    * instead without going over capacity.
+    */
+   private int freeOwner(int[][] table, int segment, int slot, SlotLoad load) {
+      for (int candidate = 0; candidate < load.loads.length; candidate++) {
+         if (!load.canTake(candidate)) continue;
+         for (int other = segment - 1; other >= 0; other--) {
+            int previous = table[other][slot];
+            if (isOwner(table[other], slot, candidate) || isOwner(table[segment], slot, previous)) continue;
+            table[other][slot] = candidate;
+            load.add(candidate);
+            load.remove(previous);
+            return previous;
+         }
+      }
+      return -1;
+   }
+
+   private int leastLoaded(int[][] table, int segment, int slot, SlotLoad load) {
+      int best = -1;
+      for (int i = 0; i < load.loads.length; i++) {
+         if (isOwner(table[segment], slot, i)) continue;
+         if (best < 0 || load.loads[i] < load.loads[best]) best = i;
+      }
+      return best;
+   }
+
+   private static boolean isOwner(int[] segmentOwners, int numAssigned, int member) {
+      for (int i = 0; i < numAssigned; i++) {
+         if (segmentOwners[i] == member) return true;
+      }
+      return false;
+   }
+
+   /**
+    * Returns the segment a key maps to.
+    */
+   public int getSegment(Object key) {
+      return (hashFunction.hash(key) & Integer.MAX_VALUE) % numSegments;
+   }
+
+   /**
+    * Returns the precomputed owners of a segment, primary owner first.
+    */
+   public List<Address> getSegmentOwners(int segment) {
+      int[] segmentOwners = owners[segment];
+      List<Address> result = new ArrayList<Address>(segmentOwners.length);
+      for (int owner : segmentOwners) result.add(members[owner]);
+      return result;
+   }
+
+   /**
+    * Returns the segments an address is one of the first {@code replCount} owners of, in ascending order.
+    */
+   public List<Integer> getOwnedSegments(Address a, int replCount) {
+      List<Integer> result = new ArrayList<Integer>();
+      Integer member = memberIndexes.get(a);
+      if (member == null) return result;
+      int numCopies = min(replCount, owners[0].length);
+      for (int segment = 0; segment < numSegments; segment++) {
+         if (isOwner(owners[segment], numCopies, member)) result.add(segment);
+      }
+      return result;
+   }
+
+   @Override
+   public List<Address> locate(Object key, int replCount) {
+      int[] segmentOwners = owners[getSegment(key)];
+      int numCopies = min(replCount, members.length);
+      List<Address> result = new ArrayList<Address>(numCopies);
+      int precomputed = min(numCopies, segmentOwners.length);
+      for (int i = 0; i < precomputed; i++) result.add(members[segmentOwners[i]]);
+      if (numCopies > precomputed) {
+         int next = segmentOwners[segmentOwners.length - 1];
+         while (result.size() < numCopies) {
+            next = (next + 1) % members.length;
+            if (!isOwner(segmentOwners, segmentOwners.length, next)) result.add(members[next]);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public boolean isKeyLocalToAddress(Address a, Object key, int replCount) {
+      int[] segmentOwners = owners[getSegment(key)];
+      int numCopies = min(replCount, members.length);
+      int precomputed = min(numCopies, segmentOwners.length);
+      for (int i = 0; i < precomputed; i++) {
+         if (members[segmentOwners[i]].equals(a)) return true;
+      }
+      return numCopies > precomputed && locate(key, replCount).contains(a);
+   }
+
+   @Override
+   public int getHashId(Address a) {
+      return -1;
+   }
+
+   @Override
+   public int getHashSpace() {
+      return 0;
+   }
+
+   /**
+    * Rebalancing after a leave may also move segments the leaver never owned between the remaining members, so, as
+    * on a join, every other member may send state.  Each of them only sends the entries whose segments the new owner
+    * table hands to the receiver.
+    *
+    * @see #getStateReceivers(SegmentedConsistentHash, int)
+    */
+   @Override
+   public List<Address> getStateProvidersOnLeave(Address leaver, int replCount) {
+      List<Address> providers = new ArrayList<Address>(members.length);
+      for (Address a : members) {
+         if (!a.equals(leaver)) providers.add(a);
+      }
+      if (trace) log.tracef("State providers for leaver %s are %s", leaver, providers);
+      return providers;
+   }
+
+   /**
+    * The segments a joiner takes over may come from any node after rebalancing, so every other member may send
+    * state.  Each of them only sends the entries that the new owner table maps to the joiner.
+    */
+   @Override
+   public List<Address> getStateProvidersOnJoin(Address joiner, int replCount) {
+      List<Address> providers = new ArrayList<Address>(members.length);
+      for (Address a : members) {
+         if (!a.equals(joiner)) providers.add(a);
+      }
+      return providers;
+   }
+
+   /**
+    * Returns the members of this table that own, among the first {@code replCount} owners, at least one segment they
+    * did not own in {@code previous}, and therefore need state after the membership change from {@code previous}.
+    */
+   public List<Address> getStateReceivers(SegmentedConsistentHash previous, int replCount) {
+      List<Address> receivers = new ArrayList<Address>();
+      boolean sameSegments = previous.numSegments == numSegments;
+      for (Address a : members) {
+         if (!sameSegments || !previous.getOwnedSegments(a, replCount).containsAll(getOwnedSegments(a, replCount)))
+            receivers.add(a);
+      }
+      if (trace) log.tracef("State receivers after rebalancing are %s", receivers);
+      return receivers;
+   }
+
+   /**
+    * Returns the node followed by the other owners of the segments it is the primary owner of.
+    */
+   @Override
+   public List<Address> getBackupsForNode(Address node, int replCount) {
+      Set<Address> backups = new LinkedHashSet<Address>();
+      backups.add(node);
+      Integer nodeIndex = memberIndexes.get(node);
+      if (nodeIndex == null) return new ArrayList<Address>(backups);
+      int numCopies = min(replCount, owners[0].length);
+      for (int[] segmentOwners : owners) {
+         if (segmentOwners[0] != nodeIndex) continue;
+         for (int i = 1; i < numCopies; i++) backups.add(members[segmentOwners[i]]);
+      }
+      return new ArrayList<Address>(backups);
+   }
+
+   /**
+    * Number of segments each member owns in the slot being filled.
+    */
+   private final class SlotLoad {
+      final int[] loads;
+      final int floor;
+      final int extra;
+      int membersAboveFloor;
+
+      SlotLoad(int numMembers) {
+         loads = new int[numMembers];
+         floor = numSegments / numMembers;
+         extra = numSegments % numMembers;
+      }
+
+      boolean canTake(int member) {
+         return loads[member] < floor || (loads[member] == floor && membersAboveFloor < extra);
+      }
+
+      void add(int member) {
+         if (loads[member]++ == floor) membersAboveFloor++;
+      }
+
+      void remove(int member) {
+         if (--loads[member] == floor) membersAboveFloor--;
+      }
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SegmentedConsistentHash that = (SegmentedConsistentHash) o;
+
+      if (numSegments != that.numSegments) return false;
+      if (numOwners != that.numOwners) return false;
+      if (caches != null ? !caches.equals(that.caches) : that.caches != null) return false;
+
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = caches != null ? caches.hashCode() : 0;
+      result = 31 * result + numSegments;
+      result = 31 * result + numOwners;
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "SegmentedConsistentHash{" +
+            "caches=" + caches +
+            ", numSegments=" + numSegments +
+            ", numOwners=" + numOwners +
+            '}';
+   }
+
+   /**
+    * Only the members and the table parameters are written; the owner table is rebuilt on the receiving side, which
+    * yields the same table as the algorithm is deterministic.
+    */
+   public static class Externalizer extends AbstractExternalizer<SegmentedConsistentHash> {
+      @Override
+      public void writeObject(ObjectOutput output, SegmentedConsistentHash ch) throws IOException {
+         output.writeObject(ch.hashFunction.getClass().getName());
+         output.writeInt(ch.numSegments);
+         output.writeInt(ch.numOwners);
+         output.writeInt(ch.members.length);
+         for (Address a : ch.members) output.writeObject(a);
+      }
+
+      @Override
+      public SegmentedConsistentHash readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+         SegmentedConsistentHash ch = new SegmentedConsistentHash();
+         ch.setHashFunction((Hash) Util.getInstance((String) input.readObject()));
+         ch.setNumSegments(input.readInt());
+         ch.setNumOwners(input.readInt());
+         int numMembers = input.readInt();
+         Set<Address> members = new LinkedHashSet<Address>(numMembers);
+         for (int i = 0; i < numMembers; i++) members.add((Address) input.readObject());
+         ch.setCaches(members);
+         return ch;
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.SEGMENTED_CONSISTENT_HASH;
+      }
+
+      @Override
+      public Set<Class<? extends SegmentedConsistentHash>> getTypeClasses() {
+         return Util.<Class<? extends SegmentedConsistentHash>>asSet(SegmentedConsistentHash.class);
+      }
+   }
+}
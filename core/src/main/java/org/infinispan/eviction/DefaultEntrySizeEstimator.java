@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.util.ByteArrayKey;
+
+/**
+ * Default {@link EntrySizeEstimator}. Sizes of <tt>byte[]</tt>, {@link ByteArrayKey}, serialized
+ * {@link MarshalledValue} instances and Strings are computed from their contents, other objects are assumed to take
+ * {@link #DEFAULT_OBJECT_SIZE} bytes. Subclasses can override {@link #sizeOf(Object)} to account for their own value
+ * types.
+ * <p/>
+ * Sizes assume a 64-bit VM with compressed references, which is the most common server setup.
+ *
+ * @since 5.0
+ */
+public class DefaultEntrySizeEstimator implements EntrySizeEstimator {
+
+   protected static final int OBJECT_HEADER = 12;
+   protected static final int ARRAY_HEADER = 16;
+   protected static final int REFERENCE = 4;
+
+   /**
+    * Footprint of the data container's hash entry plus the internal cache entry holding the value and its expiry
+    * metadata.
+    */
+   protected static final int ENTRY_OVERHEAD = 96;
+
+   /**
+    * Size assumed for objects whose footprint cannot be computed cheaply.
+    */
+   protected static final int DEFAULT_OBJECT_SIZE = 128;
+
+   public long estimateSize(Object key, Object value) {
+      return ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+   }
+
+   /**
+    * Estimates the shallow size of the given object plus the size of any arrays it wraps.
+    */
+   protected long sizeOf(Object o) {
+      if (o == null)
+         return 0;
+      if (o instanceof byte[])
+         return byteArraySize(((byte[]) o).length);
+      if (o instanceof ByteArrayKey)
+         return align(OBJECT_HEADER + REFERENCE + 4) + byteArraySize(((ByteArrayKey) o).getData().length);
+      if (o instanceof MarshalledValue) {
+         byte[] raw = ((MarshalledValue) o).peekRaw();
+         long size = align(OBJECT_HEADER + 3 * REFERENCE + 4 + 1);
+         return size + (raw == null ? DEFAULT_OBJECT_SIZE : byteArraySize(raw.length));
+      }
+      if (o instanceof String)
+         return align(OBJECT_HEADER + REFERENCE + 3 * 4) + align(ARRAY_HEADER + 2L * ((String) o).length());
+      if (o instanceof Number || o instanceof Boolean || o instanceof Character)
+         return align(OBJECT_HEADER + 8);
+      return DEFAULT_OBJECT_SIZE;
+   }
+
+   protected static long byteArraySize(int length) {
+      return align(ARRAY_HEADER + length);
+   }
+
+   protected static long align(long size) {
+      return (size + 7) & ~7L;
+   }
+}
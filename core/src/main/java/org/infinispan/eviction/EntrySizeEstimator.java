@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+
+/**
+ * Estimates the memory footprint of cache entries, used when eviction is bounded by memory rather than only by the
+ * number of entries. Implementations are invoked on every write while holding a lock on a data container segment,
+ * so they must be cheap and thread safe.
+ *
+ * @see DefaultEntrySizeEstimator
+ * @since 5.0
+ */
+public interface EntrySizeEstimator extends BoundedConcurrentHashMap.SizeEstimator<Object, Object> {
+
+   /**
+    * Estimates the number of bytes taken in memory by an entry with the given key and value, including the
+    * container's own bookkeeping for the entry.
+    *
+    * @param key   key of the entry
+    * @param value value of the entry, as stored in the cache
+    * @return estimated size in bytes, never negative
+    */
+   long estimateSize(Object key, Object value);
+}
@@ -26,6 +26,8 @@ import org.infinispan.config.ConfigurationException;
 import org.infinispan.config.parsing.XmlConfigHelper;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.OffHeapDataContainer;
+import org.infinispan.eviction.EntrySizeEstimator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
@@ -58,16 +60,35 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
             case FIFO:
             case LIRS:
                int maxEntries = configuration.getEvictionMaxEntries();
+               long maxMemory = configuration.getEvictionMaxMemory();
                //handle case when < 0 value signifies unbounded container 
-               if(maxEntries < 0) {
+               if(maxEntries < 0 && maxMemory <= 0) {
                    return (T) DefaultDataContainer.unBoundedDataContainer(level);
                }
                EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
+               if (maxMemory > 0) {
+                  // a container without maxEntries is bounded by memory only
+                  EntrySizeEstimator estimator = (EntrySizeEstimator) Util.getInstance(configuration.getEvictionSizeEstimatorClass());
+                  return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, maxMemory, st, policy, estimator);
+               }
                return (T) DefaultDataContainer.boundedDataContainer(level, maxEntries, st, policy);
             default:
                throw new ConfigurationException("Unknown eviction strategy "
                         + configuration.getEvictionStrategy());
          }
+      } else if (OffHeapDataContainer.class.getName().equals(configuration.getDataContainerClass())) {
+         EvictionStrategy st = configuration.getEvictionStrategy();
+         int level = configuration.getConcurrencyLevel();
+         int maxEntries = configuration.getEvictionMaxEntries();
+         DataContainer dataContainer;
+         if (st == EvictionStrategy.NONE || maxEntries < 0) {
+            dataContainer = OffHeapDataContainer.unBoundedDataContainer(level);
+         } else {
+            EvictionThreadPolicy policy = configuration.getEvictionThreadPolicy();
+            dataContainer = OffHeapDataContainer.boundedDataContainer(level, maxEntries, st, policy);
+         }
+         XmlConfigHelper.setValues(dataContainer, configuration.getDataContainerProperties(), false, true);
+         return (T) dataContainer;
       } else {
          DataContainer dataContainer = DataContainer.class.cast(Util.getInstance(configuration.getDataContainerClass()));
          XmlConfigHelper.setValues(dataContainer, configuration.getDataContainerProperties(), false, true);
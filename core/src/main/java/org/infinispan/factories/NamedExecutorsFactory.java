@@ -23,6 +23,7 @@
 package org.infinispan.factories;
 
 import org.infinispan.config.ConfigurationException;
+import org.infinispan.executors.DefaultExecutorFactory;
 import org.infinispan.executors.ExecutorFactory;
 import org.infinispan.executors.ScheduledExecutorFactory;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
@@ -48,6 +49,7 @@ public class NamedExecutorsFactory extends NamedComponentFactory implements Auto
    private ExecutorService asyncTransportExecutor;
    private ScheduledExecutorService evictionExecutor;
    private ScheduledExecutorService asyncReplicationExecutor;
+   private ExecutorService mapReduceExecutor;
 
    @SuppressWarnings("unchecked")
    public <T> T construct(Class<T> componentType, String componentName) {
@@ -90,6 +92,14 @@ public class NamedExecutorsFactory extends NamedComponentFactory implements Auto
                }
             }
             return (T) asyncReplicationExecutor;
+         } else if (componentName.equals(MAP_REDUCE_EXECUTOR)) {
+            synchronized (this) {
+               if (mapReduceExecutor == null) {
+                  mapReduceExecutor = buildAndConfigureExecutorService(
+                        DefaultExecutorFactory.class.getName(), null, componentName);
+               }
+            }
+            return (T) mapReduceExecutor;
          } else {
             throw new ConfigurationException("Unknown named executor " + componentName);
          }
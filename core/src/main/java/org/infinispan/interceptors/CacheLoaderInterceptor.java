@@ -22,8 +22,13 @@
  */
 package org.infinispan.interceptors;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -44,7 +49,9 @@ import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.loaders.CacheLoader;
 import org.infinispan.loaders.CacheLoaderManager;
+import org.infinispan.loaders.MultiKeyCacheLoader;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
+import org.infinispan.stats.LatencyStatistics;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
@@ -59,10 +66,13 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
    protected CacheLoader loader;
    private DataContainer dataContainer;
    private EntryFactory entryFactory;
+   private LatencyStatistics latencyStatistics;
 
    @Inject
-   protected void injectDependencies(CacheLoaderManager clm, DataContainer dataContainer, EntryFactory entryFactory, CacheNotifier notifier) {
+   protected void injectDependencies(CacheLoaderManager clm, DataContainer dataContainer, EntryFactory entryFactory, CacheNotifier notifier,
+                                     LatencyStatistics latencyStatistics) {
       this.clm = clm;
+      this.latencyStatistics = latencyStatistics;
       this.dataContainer = dataContainer;
       this.notifier = notifier;
       this.entryFactory = entryFactory;
@@ -92,6 +102,18 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       return invokeNextInterceptor(ctx, command);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      if (loader instanceof MultiKeyCacheLoader) {
+         loadAllIfNeeded(ctx, command.getKeys());
+      } else {
+         for (Object key : command.getKeys()) {
+            loadIfNeededAndUpdateStats(ctx, key);
+         }
+      }
+      return invokeNextInterceptor(ctx, command);
+   }
+
    @Override
    public Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable {
       Object[] keys;
@@ -146,7 +168,14 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
          }
 
          // we *may* need to load this.
-         InternalCacheEntry loaded = loader.load(key);
+         InternalCacheEntry loaded;
+         if (latencyStatistics.isEnabled()) {
+            long start = System.nanoTime();
+            loaded = loader.load(key);
+            latencyStatistics.record(LatencyStatistics.Operation.STORE_LOAD, System.nanoTime() - start);
+         } else {
+            loaded = loader.load(key);
+         }
          if (loaded == null) {
             if (log.isTraceEnabled()) {
                log.trace("No need to load.  Key doesn't exist in the loader.");
@@ -166,6 +195,72 @@ public class CacheLoaderInterceptor extends JmxStatsCommandInterceptor {
       }
    }
 
+   /**
+    * Multi-key counterpart of {@link #loadIfNeeded(InvocationContext, Object)}: every key that is neither in the
+    * context nor in the data container is fetched from the loader in a single
+    * {@link MultiKeyCacheLoader#loadAll(java.util.Collection)} call.
+    */
+   private void loadAllIfNeeded(InvocationContext ctx, Collection<?> keys) throws Throwable {
+      if (ctx.hasFlag(Flag.SKIP_CACHE_STORE) || ctx.hasFlag(Flag.SKIP_CACHE_LOAD)) {
+         return; //skip operation
+      }
+      // key -> whether a temporary lock was acquired for it
+      Map<Object, Boolean> missing = new HashMap<Object, Boolean>();
+      for (Object key : keys) {
+         CacheEntry e = entryFactory.wrapEntryForReading(ctx, key);
+         if (e != null && !e.isNull()) continue;
+
+         // Obtain a temporary lock to verify the key is not being concurrently added
+         boolean keyLocked = entryFactory.acquireLock(ctx, key);
+         if (dataContainer.containsKey(key)) {
+            log.trace("No need to load.  Key exists in the data container.");
+            if (keyLocked) {
+               entryFactory.releaseLock(key);
+            }
+         } else {
+            missing.put(key, keyLocked);
+         }
+      }
+      if (missing.isEmpty()) return;
+
+      Set<InternalCacheEntry> loaded;
+      try {
+         if (latencyStatistics.isEnabled()) {
+            long start = System.nanoTime();
+            loaded = ((MultiKeyCacheLoader) loader).loadAll(missing.keySet());
+            latencyStatistics.record(LatencyStatistics.Operation.STORE_LOAD, System.nanoTime() - start);
+         } else {
+            loaded = ((MultiKeyCacheLoader) loader).loadAll(missing.keySet());
+         }
+      } catch (Throwable t) {
+         for (Map.Entry<Object, Boolean> m : missing.entrySet()) {
+            if (m.getValue()) entryFactory.releaseLock(m.getKey());
+         }
+         throw t;
+      }
+
+      Map<Object, InternalCacheEntry> byKey = new HashMap<Object, InternalCacheEntry>(loaded.size());
+      for (InternalCacheEntry ice : loaded) byKey.put(ice.getKey(), ice);
+
+      for (Map.Entry<Object, Boolean> m : missing.entrySet()) {
+         Object key = m.getKey();
+         boolean keyLocked = m.getValue();
+         InternalCacheEntry ice = byKey.get(key);
+         if (ice == null) {
+            if (keyLocked) {
+               entryFactory.releaseLock(key);
+            }
+            if (getStatisticsEnabled()) {
+               cacheMisses.incrementAndGet();
+            }
+         } else {
+            // Reuse the lock and create a new entry for loading
+            MVCCEntry n = entryFactory.wrapEntryForWriting(ctx, key, true, false, keyLocked, false, true);
+            recordLoadedEntry(ctx, key, n, ice);
+         }
+      }
+   }
+
    /**
     * This method records a loaded entry, performing the following steps:
     * <ol>
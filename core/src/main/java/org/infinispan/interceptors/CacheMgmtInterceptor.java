@@ -22,24 +22,31 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.base.JmxStatsCommandInterceptor;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.stats.LatencyHistogram;
+import org.infinispan.stats.LatencyStatistics;
+import org.rhq.helpers.pluginAnnotations.agent.DataType;
 import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Parameter;
 import org.rhq.helpers.pluginAnnotations.agent.Units;
 
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -52,11 +59,8 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 @MBean(objectName = "Statistics", description = "General statistics such as timings, hit/miss ratio, etc.")
 public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
-   private AtomicLong hitTimes = new AtomicLong(0);
-   private AtomicLong missTimes = new AtomicLong(0);
-   private AtomicLong storeTimes = new AtomicLong(0);
-   private AtomicLong hits = new AtomicLong(0);
-   private AtomicLong misses = new AtomicLong(0);
+   private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
    private AtomicLong stores = new AtomicLong(0);
    private AtomicLong evictions = new AtomicLong(0);
    private AtomicLong start = new AtomicLong(System.currentTimeMillis());
@@ -65,10 +69,12 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    private AtomicLong removeMisses = new AtomicLong(0);
 
    private DataContainer dataContainer;
+   private LatencyStatistics latencyStatistics;
 
    @Inject
-   public void setDependencies(DataContainer dataContainer) {
+   public void setDependencies(DataContainer dataContainer, LatencyStatistics latencyStatistics) {
       this.dataContainer = dataContainer;
+      this.latencyStatistics = latencyStatistics;
    }
 
    @Override
@@ -80,15 +86,25 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
 
    @Override
    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
-      if (retval == null) {
-         missTimes.getAndAdd(t2 - t1);
-         misses.incrementAndGet();
-      } else {
-         hitTimes.getAndAdd(t2 - t1);
-         hits.incrementAndGet();
+      long t2 = System.nanoTime();
+      latencyStatistics.record(retval == null ? LatencyStatistics.Operation.GET_MISS : LatencyStatistics.Operation.GET_HIT, t2 - t1);
+      return retval;
+   }
+
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      long t1 = System.nanoTime();
+      Map<?, ?> retval = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      int requests = command.getKeys().size();
+      if (requests > 0) {
+         int found = retval.size();
+         // split the time spent evenly across the keys looked up
+         long timePerKey = (t2 - t1) / requests;
+         latencyStatistics.record(LatencyStatistics.Operation.GET_HIT, timePerKey, found);
+         latencyStatistics.record(LatencyStatistics.Operation.GET_MISS, timePerKey, requests - found);
       }
       return retval;
    }
@@ -96,12 +112,12 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
       Map data = command.getMap();
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
+      long t2 = System.nanoTime();
 
       if (data != null && !data.isEmpty()) {
-         storeTimes.getAndAdd(t2 - t1);
+         latencyStatistics.record(LatencyStatistics.Operation.PUT_MAP, t2 - t1);
          stores.getAndAdd(data.size());
       }
       return retval;
@@ -110,17 +126,20 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @Override
    //Map.put(key,value) :: oldValue
    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
-      long t1 = System.currentTimeMillis();
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
-      long t2 = System.currentTimeMillis();
-      storeTimes.getAndAdd(t2 - t1);
+      long t2 = System.nanoTime();
+      latencyStatistics.record(LatencyStatistics.Operation.PUT, t2 - t1);
       stores.incrementAndGet();
       return retval;
    }
 
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+      long t1 = System.nanoTime();
       Object retval = invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      latencyStatistics.record(LatencyStatistics.Operation.REMOVE, t2 - t1);
       if (retval == null) {
          removeMisses.incrementAndGet();
       } else {
@@ -132,13 +151,13 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedAttribute(description = "Number of cache attribute hits")
    @Metric(displayName = "Number of cache hits", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getHits() {
-      return hits.get();
+      return latencyStatistics.getCount(LatencyStatistics.Operation.GET_HIT);
    }
 
    @ManagedAttribute(description = "Number of cache attribute misses")
    @Metric(displayName = "Number of cache misses", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getMisses() {
-      return misses.get();
+      return latencyStatistics.getCount(LatencyStatistics.Operation.GET_MISS);
    }
 
    @ManagedAttribute(description = "Number of cache removal hits")
@@ -168,10 +187,11 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedAttribute(description = "Percentage hit/(hit+miss) ratio for the cache")
    @Metric(displayName = "Hit ratio", units = Units.PERCENTAGE, displayType = DisplayType.SUMMARY)
    public double getHitRatio() {
-      double total = hits.get() + misses.get();
+      long hits = getHits();
+      double total = hits + getMisses();
       if (total == 0)
          return 0;
-      return (hits.get() / total);
+      return (hits / total);
    }
 
    @ManagedAttribute(description = "read/writes ratio for the cache")
@@ -179,16 +199,17 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    public double getReadWriteRatio() {
       if (stores.get() == 0)
          return 0;
-      return (((double) (hits.get() + misses.get()) / (double) stores.get()));
+      return (((double) (getHits() + getMisses()) / (double) stores.get()));
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a read operation on the cache")
    @Metric(displayName = "Average read time", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
    public long getAverageReadTime() {
-      long total = hits.get() + misses.get();
+      long total = getHits() + getMisses();
       if (total == 0)
          return 0;
-      return (hitTimes.get() + missTimes.get()) / total;
+      long readTimes = latencyStatistics.getTotal(LatencyStatistics.Operation.GET_HIT) + latencyStatistics.getTotal(LatencyStatistics.Operation.GET_MISS);
+      return TimeUnit.NANOSECONDS.toMillis(readTimes / total);
    }
 
    @ManagedAttribute(description = "Average number of milliseconds for a write operation in the cache")
@@ -196,7 +217,60 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    public long getAverageWriteTime() {
       if (stores.get() == 0)
          return 0;
-      return (storeTimes.get()) / stores.get();
+      long storeTimes = latencyStatistics.getTotal(LatencyStatistics.Operation.PUT) + latencyStatistics.getTotal(LatencyStatistics.Operation.PUT_MAP);
+      return TimeUnit.NANOSECONDS.toMillis(storeTimes / stores.get());
+   }
+
+   @ManagedAttribute(description = "99th percentile, in milliseconds, of the read operations of the last minute")
+   @Metric(displayName = "Read time 99th percentile", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public double getRecentReadTimeP99() {
+      LatencyHistogram.Snapshot reads = latencyStatistics.getRecentSnapshot(LatencyStatistics.Operation.GET_HIT)
+            .merge(latencyStatistics.getRecentSnapshot(LatencyStatistics.Operation.GET_MISS));
+      return toMillis(reads.getPercentile(99));
+   }
+
+   @ManagedAttribute(description = "99th percentile, in milliseconds, of the put operations of the last minute")
+   @Metric(displayName = "Write time 99th percentile", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public double getRecentWriteTimeP99() {
+      return toMillis(latencyStatistics.getRecentSnapshot(LatencyStatistics.Operation.PUT).getPercentile(99));
+   }
+
+   @ManagedAttribute(description = "Count, 50th, 99th and 99.9th percentiles and maximum time in milliseconds of each operation during the last minute")
+   @Metric(displayName = "Recent operation latencies", displayType = DisplayType.DETAIL, dataType = DataType.TRAIT)
+   public String getRecentLatencySummary() {
+      StringBuilder sb = new StringBuilder();
+      for (LatencyStatistics.Operation operation : LatencyStatistics.Operation.values()) {
+         LatencyHistogram.Snapshot snapshot = latencyStatistics.getRecentSnapshot(operation);
+         if (sb.length() > 0) sb.append(", ");
+         sb.append(operation).append("{count=").append(snapshot.getCount())
+               .append(", p50=").append(toMillis(snapshot.getPercentile(50)))
+               .append(", p99=").append(toMillis(snapshot.getPercentile(99)))
+               .append(", p99.9=").append(toMillis(snapshot.getPercentile(99.9)))
+               .append(", max=").append(toMillis(snapshot.getMax())).append('}');
+      }
+      return sb.toString();
+   }
+
+   @ManagedOperation(description = "Returns the given percentile, in milliseconds, of the latency of an operation since the statistics were last reset")
+   @Operation(displayName = "Latency percentile of an operation")
+   public double getLatencyPercentile(@Parameter(name = "operation", description = "One of GET_HIT, GET_MISS, PUT, REMOVE, PUT_MAP, REMOTE_GET or STORE_LOAD") String operation,
+                                      @Parameter(name = "percentile", description = "Percentile between 0 and 100, e.g. 99.9") double percentile) {
+      return toMillis(latencyStatistics.getSnapshot(toOperation(operation)).getPercentile(percentile));
+   }
+
+   @ManagedOperation(description = "Returns the given percentile, in milliseconds, of the latency of an operation during the last minute")
+   @Operation(displayName = "Recent latency percentile of an operation")
+   public double getRecentLatencyPercentile(@Parameter(name = "operation", description = "One of GET_HIT, GET_MISS, PUT, REMOVE, PUT_MAP, REMOTE_GET or STORE_LOAD") String operation,
+                                            @Parameter(name = "percentile", description = "Percentile between 0 and 100, e.g. 99.9") double percentile) {
+      return toMillis(latencyStatistics.getRecentSnapshot(toOperation(operation)).getPercentile(percentile));
+   }
+
+   private static LatencyStatistics.Operation toOperation(String operation) {
+      return LatencyStatistics.Operation.valueOf(operation.trim().toUpperCase(Locale.ENGLISH));
+   }
+
+   private static double toMillis(long nanos) {
+      return nanos / NANOS_PER_MILLI;
    }
 
    @ManagedAttribute(description = "Number of entries currently in the cache")
@@ -205,6 +279,14 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
       return dataContainer.size();
    }
 
+   @ManagedAttribute(description = "Estimated memory footprint in bytes of the entries currently in the cache, only tracked when eviction is bounded by memory")
+   @Metric(displayName = "Estimated memory footprint of current cache entries", displayType = DisplayType.SUMMARY)
+   public long getEstimatedMemorySize() {
+      if (dataContainer instanceof DefaultDataContainer)
+         return ((DefaultDataContainer) dataContainer).estimatedMemorySize();
+      return 0;
+   }
+
    @ManagedAttribute(description = "Number of seconds since cache started")
    @Metric(displayName = "Seconds since cache started", units = Units.SECONDS, measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
    public long getElapsedTime() {
@@ -220,16 +302,11 @@ public class CacheMgmtInterceptor extends JmxStatsCommandInterceptor {
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset Statistics (Statistics)")
    public void resetStatistics() {
-      hits.set(0);
-      misses.set(0);
       stores.set(0);
       evictions.set(0);
-      hitTimes.set(0);
-      missTimes.set(0);
-      storeTimes.set(0);
       removeHits.set(0);
       removeMisses.set(0);
+      latencyStatistics.reset();
       reset.set(System.currentTimeMillis());
    }
 }
-
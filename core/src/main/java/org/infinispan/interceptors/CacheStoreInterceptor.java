@@ -48,15 +48,19 @@ import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.loaders.CacheStore;
+import org.infinispan.loaders.decorators.AbstractDelegatingStore;
+import org.infinispan.loaders.decorators.AsyncStore;
 import org.infinispan.loaders.modifications.Clear;
 import org.infinispan.loaders.modifications.Modification;
 import org.infinispan.loaders.modifications.Remove;
 import org.infinispan.loaders.modifications.Store;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
 import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -341,6 +345,8 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
    @Operation(displayName = "Reset statistics")
    public void resetStatistics() {
       cacheStores.set(0);
+      AsyncStore asyncStore = getAsyncStore();
+      if (asyncStore != null) asyncStore.resetStatistics();
    }
 
    @ManagedAttribute(description = "number of cache loader stores")
@@ -349,6 +355,39 @@ public class CacheStoreInterceptor extends JmxStatsCommandInterceptor {
       return cacheStores.get();
    }
 
+   @ManagedAttribute(description = "Number of modifications waiting to be handed over to the asynchronous store, or -1 if the store is not asynchronous")
+   @Metric(displayName = "Async store queue depth", displayType = DisplayType.SUMMARY)
+   public int getAsyncStoreQueueDepth() {
+      AsyncStore asyncStore = getAsyncStore();
+      return asyncStore == null ? -1 : asyncStore.getQueueDepth();
+   }
+
+   @ManagedAttribute(description = "Fraction of modifications coalesced away by the asynchronous store before reaching the cache store")
+   @Metric(displayName = "Async store coalescing ratio", units = Units.PERCENTAGE)
+   public double getAsyncStoreCoalescingRatio() {
+      AsyncStore asyncStore = getAsyncStore();
+      return asyncStore == null ? 0 : asyncStore.getCoalescingRatio();
+   }
+
+   @ManagedAttribute(description = "Average time taken by the asynchronous store to flush modifications to the cache store")
+   @Metric(displayName = "Async store average flush latency", units = Units.MILLISECONDS)
+   public long getAsyncStoreAverageFlushLatency() {
+      AsyncStore asyncStore = getAsyncStore();
+      return asyncStore == null ? 0 : asyncStore.getAverageFlushLatency();
+   }
+
+   /**
+    * @return the {@link AsyncStore} somewhere in the chain of decorators around the configured store, or null
+    */
+   private AsyncStore getAsyncStore() {
+      CacheStore cs = store;
+      while (cs instanceof AbstractDelegatingStore) {
+         if (cs instanceof AsyncStore) return (AsyncStore) cs;
+         cs = ((AbstractDelegatingStore) cs).getDelegate();
+      }
+      return null;
+   }
+
    InternalCacheEntry getStoredEntry(Object key, InvocationContext ctx) {
       CacheEntry entry = ctx.lookupEntry(key);
       if (entry instanceof InternalCacheEntry) {
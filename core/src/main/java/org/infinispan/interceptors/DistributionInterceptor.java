@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -51,12 +52,14 @@ import org.infinispan.interceptors.base.BaseRpcInterceptor;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.SuccessfulResponse;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.stats.LatencyStatistics;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -78,6 +81,7 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
    boolean isL1CacheEnabled, needReliableReturnValues;
    EntryFactory entryFactory;
    L1Manager l1Manager;
+   LatencyStatistics latencyStatistics;
 
    static final RecipientGenerator CLEAR_COMMAND_GENERATOR = new RecipientGenerator() {
       public List<Address> generateRecipients() {
@@ -90,8 +94,10 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
    };
 
    @Inject
-   public void injectDependencies(DistributionManager distributionManager, CommandsFactory cf, DataContainer dataContainer, EntryFactory entryFactory, L1Manager l1Manager) {
+   public void injectDependencies(DistributionManager distributionManager, CommandsFactory cf, DataContainer dataContainer, EntryFactory entryFactory, L1Manager l1Manager,
+                                  LatencyStatistics latencyStatistics) {
       this.dm = distributionManager;
+      this.latencyStatistics = latencyStatistics;
       this.cf = cf;
       this.dataContainer = dataContainer;
       this.entryFactory = entryFactory;
@@ -132,6 +138,49 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       return returnValue;
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      boolean isRehashInProgress = !dm.isJoinComplete() || dm.isRehashInProgress();
+      Map<Object, Object> returnValue = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+
+      if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+         for (Object key : returnValue.keySet()) l1Manager.addRequestor(key, ctx.getOrigin());
+      }
+
+      List<Object> missingKeys = new LinkedList<Object>();
+      for (Object key : command.getKeys()) {
+         if (needsRemoteGet(ctx, key, !returnValue.containsKey(key))) missingKeys.add(key);
+      }
+      if (missingKeys.isEmpty()) return returnValue;
+
+      if (isRehashInProgress || !ctx.isOriginLocal()) {
+         // ownership is in flux, so let each key work out where to look on its own
+         for (Object key : missingKeys) {
+            InternalCacheEntry ice = remoteGetEntryAndStoreInL1(ctx, key, isRehashInProgress, false);
+            // a remote getAll, issued by a ClusteredGetAllCommand, expects cache entries rather than values
+            if (ice != null) returnValue.put(key, command.isReturnCacheEntries() ? ice : ice.getValue());
+         }
+         return returnValue;
+      }
+
+      List<Object> remoteKeys = new LinkedList<Object>();
+      for (Object key : missingKeys) {
+         if (!dm.getLocality(key).isLocal() && isNotInL1(key)) remoteKeys.add(key);
+      }
+      if (remoteKeys.isEmpty()) return returnValue;
+
+      if (trace) log.tracef("Doing a remote get for keys %s", remoteKeys);
+      boolean timed = latencyStatistics.isEnabled();
+      long start = timed ? System.nanoTime() : 0;
+      Map<Object, InternalCacheEntry> entries = dm.retrieveFromRemoteSource(remoteKeys, ctx);
+      if (timed) latencyStatistics.record(LatencyStatistics.Operation.REMOTE_GET, System.nanoTime() - start);
+      for (Map.Entry<Object, InternalCacheEntry> e : entries.entrySet()) {
+         returnValue.put(e.getKey(), storeRemoteEntry(ctx, e.getKey(), e.getValue(), true, false));
+      }
+      return returnValue;
+   }
+
    private boolean needsRemoteGet(InvocationContext ctx, Object key, boolean retvalCheck) {
       CacheEntry entry;
       return retvalCheck && !ctx.hasFlag(Flag.SKIP_REMOTE_LOOKUP) && ((entry = ctx.lookupEntry(key)) == null || entry.isNull() || entry.isLockPlaceholder());
@@ -151,6 +200,15 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
     * @throws Throwable if there are problems
     */
    private Object remoteGetAndStoreInL1(InvocationContext ctx, Object key, boolean dmWasRehashingDuringLocalLookup, boolean isWrite) throws Throwable {
+      InternalCacheEntry ice = remoteGetEntryAndStoreInL1(ctx, key, dmWasRehashingDuringLocalLookup, isWrite);
+      return ice == null ? null : ice.getValue();
+   }
+
+   /**
+    * Same as {@link #remoteGetAndStoreInL1(InvocationContext, Object, boolean, boolean)}, but returns the entry
+    * retrieved rather than its value.
+    */
+   private InternalCacheEntry remoteGetEntryAndStoreInL1(InvocationContext ctx, Object key, boolean dmWasRehashingDuringLocalLookup, boolean isWrite) throws Throwable {
       DataLocality locality = dm.getLocality(key);
       boolean isMappedToLocalNode = locality.isLocal();
 
@@ -171,38 +229,48 @@ public class DistributionInterceptor extends BaseRpcInterceptor {
       return null;
    }
 
-   private Object realRemoteGet(InvocationContext ctx, Object key, boolean storeInL1, boolean isWrite) throws Throwable {
+   private InternalCacheEntry realRemoteGet(InvocationContext ctx, Object key, boolean storeInL1, boolean isWrite) throws Throwable {
       if (trace) log.tracef("Doing a remote get for key %s", key);
       // attempt a remote lookup
+      boolean timed = latencyStatistics.isEnabled();
+      long start = timed ? System.nanoTime() : 0;
       InternalCacheEntry ice = dm.retrieveFromRemoteSource(key, ctx);
+      if (timed) latencyStatistics.record(LatencyStatistics.Operation.REMOTE_GET, System.nanoTime() - start);
+      if (ice != null) storeRemoteEntry(ctx, key, ice, storeInL1, isWrite);
+      return ice;
+   }
 
-      if (ice != null) {
-         if (storeInL1) {
-            if (isL1CacheEnabled) {
-               if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
-               long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
-               PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
-               entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
-               invokeNextInterceptor(ctx, put);
-            } else {
-               CacheEntry ce = ctx.lookupEntry(key);
-               if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
-                  if (ce != null && ce.isChanged()) {
-                     ce.setValue(ice.getValue());
-                  } else {
-                     if (isWrite)
-                        entryFactory.wrapEntryForWriting(ctx, ice, true, false, ctx.hasLockedKey(key), false, false);
-                     else
-                        ctx.putLookedUpEntry(key, ice);
-                  }
+   /**
+    * Stores an entry retrieved from a remote cache in L1 (if L1 is enabled and storeInL1 is true) or in the invocation
+    * context otherwise.
+    *
+    * @return the value of the entry
+    */
+   private Object storeRemoteEntry(InvocationContext ctx, Object key, InternalCacheEntry ice, boolean storeInL1, boolean isWrite) throws Throwable {
+      if (storeInL1) {
+         if (isL1CacheEnabled) {
+            if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
+            long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
+            PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
+            entryFactory.wrapEntryForWriting(ctx, key, true, false, ctx.hasLockedKey(key), false, false);
+            invokeNextInterceptor(ctx, put);
+         } else {
+            CacheEntry ce = ctx.lookupEntry(key);
+            if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
+               if (ce != null && ce.isChanged()) {
+                  ce.setValue(ice.getValue());
+               } else {
+                  if (isWrite)
+                     entryFactory.wrapEntryForWriting(ctx, ice, true, false, ctx.hasLockedKey(key), false, false);
+                  else
+                     ctx.putLookedUpEntry(key, ice);
                }
             }
-         } else {
-            if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
          }
-         return ice.getValue();
+      } else {
+         if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
       }
-      return null;
+      return ice.getValue();
    }
 
    /**
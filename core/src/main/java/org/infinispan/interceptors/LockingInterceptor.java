@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.CacheException;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.AbstractTransactionBoundaryCommand;
 import org.infinispan.commands.tx.CommitCommand;
@@ -59,6 +60,7 @@ import org.infinispan.util.concurrent.locks.LockManager;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -150,6 +152,16 @@ public class LockingInterceptor extends CommandInterceptor {
       }
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         for (Object key : command.getKeys()) entryFactory.wrapEntryForReading(ctx, key);
+         return invokeNextInterceptor(ctx, command);
+      } finally {
+         doAfterCall(ctx);
+      }
+   }
+
    @Override
    public Object visitLockControlCommand(TxInvocationContext ctx, LockControlCommand c) throws Throwable {
       boolean localTxScope = ctx.isOriginLocal() && ctx.isInTxScope();
@@ -357,20 +369,30 @@ public class LockingInterceptor extends CommandInterceptor {
          ReversibleOrderedSet<Map.Entry<Object, CacheEntry>> entries = ctx.getLookedUpEntries().entrySet();
          Iterator<Map.Entry<Object, CacheEntry>> it = entries.reverseIterator();
          if (trace) log.tracef("Number of entries in context: %s", entries.size());
+         // commit all the entries before releasing any lock, as the changes to one entry may be guarded by the lock
+         // on another key, e.g. the sub-keys of a fine-grained atomic map.  The keys to unlock are collected up front
+         // so that all of them are released even if committing an entry fails.
+         List<Object> toUnlock = new ArrayList<Object>(entries.size());
+         List<CacheEntry> toCommit = new ArrayList<CacheEntry>(entries.size());
+         boolean skipLocking = ctx.hasFlag(Flag.SKIP_LOCKING);
          while (it.hasNext()) {
             Map.Entry<Object, CacheEntry> e = it.next();
             CacheEntry entry = e.getValue();
             Object key = e.getKey();
-            boolean needToUnlock = lockManager.possiblyLocked(entry);
+            if (lockManager.possiblyLocked(entry) && !skipLocking) toUnlock.add(key);
             // could be null with read-committed
             if (entry != null && entry.isChanged()) {
-               commitEntry(entry);
+               toCommit.add(entry);
             } else {
                if (trace) log.tracef("Entry for key %s is null, not calling commitUpdate", key);
             }
+         }
 
+         try {
+            for (CacheEntry entry : toCommit) commitEntry(entry);
+         } finally {
             // and then unlock
-            if (needToUnlock && !ctx.hasFlag(Flag.SKIP_LOCKING)) {
+            for (Object key : toUnlock) {
                if (trace) log.tracef("Releasing lock on [%s] for owner %s", key, owner);
                lockManager.unlock(key);
             }
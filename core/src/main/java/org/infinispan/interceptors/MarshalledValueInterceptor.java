@@ -24,6 +24,7 @@ package org.infinispan.interceptors;
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -171,6 +172,29 @@ public class MarshalledValueInterceptor extends CommandInterceptor {
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      Map<Object, Object> marshalledKeyToKeyMapping = new HashMap<Object, Object>(command.getKeys().size());
+      for (Object key : command.getKeys()) {
+         if (isTypeExcluded(key.getClass())) {
+            marshalledKeyToKeyMapping.put(key, key);
+         } else {
+            MarshalledValue mv = createMarshalledValue(key, ctx);
+            compact(mv);
+            marshalledKeyToKeyMapping.put(mv, key);
+         }
+      }
+      command.setKeys(marshalledKeyToKeyMapping.keySet());
+      Map<Object, Object> retVal = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      Map<Object, Object> copy = new HashMap<Object, Object>(retVal.size());
+      for (Map.Entry<Object, Object> e : retVal.entrySet()) {
+         Object key = marshalledKeyToKeyMapping.get(e.getKey());
+         copy.put(key == null ? e.getKey() : key, processRetVal(e.getValue(), ctx));
+      }
+      return copy;
+   }
+
    @Override
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
       Set keys = (Set) invokeNextInterceptor(ctx, command);
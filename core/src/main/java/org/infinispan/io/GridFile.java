@@ -35,7 +35,9 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Set;
 
 import static org.infinispan.context.Flag.FORCE_SYNCHRONOUS;
@@ -49,6 +51,8 @@ public class GridFile extends File {
    private static final long serialVersionUID = -6729548421029004260L;
    private static final char SEPARATOR_CHAR = '/';
    private static final String SEPARATOR = "" + SEPARATOR_CHAR;
+   private static final String INDEX_SEPARATOR = SEPARATOR + SEPARATOR + "#";
+   private static final int INDEX_BUCKETS = 16;
    private final AdvancedCache<String, Metadata> metadataCache;
    private final GridFilesystem fs;
    private final String name;
@@ -136,6 +140,7 @@ public class GridFile extends File {
       if (!checkParentDirs(getPath(), false))
          return false;
       metadataCache.withFlags(FORCE_SYNCHRONOUS).put(getPath(), new Metadata(0, System.currentTimeMillis(), chunk_size, Metadata.FILE));
+      updateParentIndex(getPath(), true);
       return true;
    }
 
@@ -149,6 +154,7 @@ public class GridFile extends File {
          return false;
       if (isFile()) {
          fs.remove(getPath(), synchronous);    // removes all the chunks belonging to the file
+         updateParentIndex(getPath(), false);
          if (synchronous)
             metadataCache.withFlags(FORCE_SYNCHRONOUS).remove(getPath()); // removes the metadata information
          else
@@ -160,6 +166,7 @@ public class GridFile extends File {
          if (files != null && files.length > 0)
             return false;
          fs.remove(getPath(), synchronous);    // removes all the chunks belonging to the file
+         updateParentIndex(getPath(), false);
          if (synchronous)
             metadataCache.withFlags(FORCE_SYNCHRONOUS).remove(getPath()); // removes the metadata information
          else
@@ -174,8 +181,7 @@ public class GridFile extends File {
          boolean parents_exist = checkParentDirs(getPath(), false);
          if (!parents_exist)
             return false;
-         metadataCache.withFlags(FORCE_SYNCHRONOUS).put(getPath(), new Metadata(0, System.currentTimeMillis(), chunk_size, Metadata.DIR));
-         return true;
+         return createDir(getPath());
       }
       catch (IOException e) {
          e.printStackTrace();
@@ -189,8 +195,7 @@ public class GridFile extends File {
          boolean parents_exist = checkParentDirs(getPath(), true);
          if (!parents_exist)
             return false;
-         metadataCache.withFlags(FORCE_SYNCHRONOUS).put(getPath(), new Metadata(0, System.currentTimeMillis(), chunk_size, Metadata.DIR));
-         return true;
+         return createDir(getPath());
       }
       catch (IOException e) {
          return false;
@@ -255,18 +260,21 @@ public class GridFile extends File {
 
 
    protected String[] _list(Object filter) {
-      Set<String> keys = metadataCache.keySet();
-      if (keys == null)
-         return null;
-      Collection<String> list = new ArrayList<String>(keys.size());
-      for (String str : keys) {
-         if (isChildOf(getPath(), str)) {
-            if (filter instanceof FilenameFilter && !((FilenameFilter) filter).accept(new File(name), filename(str)))
-               continue;
-            else if (filter instanceof FileFilter && !((FileFilter) filter).accept(new File(str)))
-               continue;
-            list.add(str);
-         }
+      String path = getPath();
+      if (path.length() == 0) // getPath() strips the separator of the root directory
+         path = SEPARATOR;
+      Metadata metadata = metadataCache.get(path);
+      if (metadata == null || !metadata.isDirectory())
+         return new String[0];
+      Collection<String> children = metadata.isIndexed() ? indexedChildren(path) : scannedChildren();
+      Collection<String> list = new ArrayList<String>(children.size());
+      for (String child : children) {
+         String str = childPath(path, child);
+         if (filter instanceof FilenameFilter && !((FilenameFilter) filter).accept(new File(name), child))
+            continue;
+         else if (filter instanceof FileFilter && !((FileFilter) filter).accept(new File(str)))
+            continue;
+         list.add(str);
       }
       String[] retval = new String[list.size()];
       int index = 0;
@@ -275,6 +283,33 @@ public class GridFile extends File {
       return retval;
    }
 
+   /**
+    * Collects the names of the children of an indexed directory from its index buckets
+    */
+   private Collection<String> indexedChildren(String path) {
+      Collection<String> children = new ArrayList<String>();
+      for (int i = 0; i < INDEX_BUCKETS; i++) {
+         Metadata bucket = metadataCache.get(indexKey(path, i));
+         if (bucket != null)
+            children.addAll(bucket.getChildren());
+      }
+      return children;
+   }
+
+   /**
+    * Collects the names of the children of a directory created before directories were indexed, by scanning the keys
+    * of the whole metadata cache
+    */
+   private Collection<String> scannedChildren() {
+      Set<String> keys = metadataCache.keySet();
+      Collection<String> children = new ArrayList<String>();
+      for (String str : keys) {
+         if (!isIndexKey(str) && isChildOf(getPath(), str))
+            children.add(filename(str));
+      }
+      return children;
+   }
+
    /**
     * Verifies whether child is a child (dir or file) of parent
     *
@@ -334,15 +369,106 @@ public class GridFile extends File {
             if (isFile(comp))
                throw new IOException("cannot create " + path + " as component " + comp + " is a file");
          } else {
-            if (create_if_absent)
-               metadataCache.put(comp, new Metadata(0, System.currentTimeMillis(), chunk_size, Metadata.DIR));
-            else
+            if (create_if_absent) {
+               if (!createDir(comp))
+                  throw new IOException("cannot create " + path + " as component " + comp + " is a file");
+            } else
                return false;
          }
       }
       return true;
    }
 
+   /**
+    * Creates the metadata of a directory unless it already exists, and registers it with its parent.
+    *
+    * @return True if the path now denotes a directory, false if it denotes a file
+    */
+   private boolean createDir(String path) {
+      Metadata dir = new Metadata(0, System.currentTimeMillis(), chunk_size, (byte) (Metadata.DIR | Metadata.INDEXED));
+      Metadata prev = metadataCache.withFlags(FORCE_SYNCHRONOUS).putIfAbsent(path, dir);
+      if (prev != null)
+         return prev.isDirectory();
+      updateParentIndex(path, true);
+      return true;
+   }
+
+   /**
+    * Adds the name of a file or directory to (or removes it from) the index of its parent directory, so that listing
+    * a directory costs its number of children rather than a scan of the whole metadata cache. The names are spread
+    * over {@link #INDEX_BUCKETS} keys of the metadata cache, chosen by the hash of the name, so an update copies and
+    * contends on a fraction of the children only. It is a compare-and-swap on the bucket, retried until it applies;
+    * a bucket left empty is removed.
+    *
+    * @param path path of the child
+    * @param add  true to add the child, false to remove it
+    */
+   private void updateParentIndex(String path, boolean add) {
+      String parent = parentPath(path);
+      if (parent == null)
+         return;
+      Metadata metadata = metadataCache.get(parent);
+      if (metadata == null || !metadata.isIndexed())
+         return; // children of directories created before indexing are found by scanning the cache
+      String child = path.substring(path.lastIndexOf(SEPARATOR_CHAR) + 1);
+      String key = indexKey(parent, (child.hashCode() & Integer.MAX_VALUE) % INDEX_BUCKETS);
+      while (true) {
+         Metadata bucket = metadataCache.get(key);
+         if (bucket == null) {
+            if (!add || metadataCache.withFlags(FORCE_SYNCHRONOUS).putIfAbsent(key, Metadata.index(child)) == null)
+               return;
+            continue;
+         }
+         Metadata updated = add ? bucket.withChild(child) : bucket.withoutChild(child);
+         if (updated == bucket)
+            return;
+         boolean applied = updated.getChildren().isEmpty()
+               ? metadataCache.withFlags(FORCE_SYNCHRONOUS).remove(key, bucket)
+               : metadataCache.withFlags(FORCE_SYNCHRONOUS).replace(key, bucket, updated);
+         if (applied)
+            return;
+      }
+   }
+
+   /**
+    * Returns the key of an index bucket of a directory. File paths never contain two consecutive separators, so the
+    * key cannot clash with the metadata of a file or directory.
+    */
+   private static String indexKey(String dir, int bucket) {
+      return dir + INDEX_SEPARATOR + bucket;
+   }
+
+   private static boolean isIndexKey(String key) {
+      return key.contains(INDEX_SEPARATOR);
+   }
+
+   /**
+    * Returns the path of the directory containing the given path, built the same way as the components checked by
+    * {@link #checkParentDirs(String, boolean)}, or null if the path has no parent directory, e.g. "data.txt"
+    */
+   protected static String parentPath(String path) {
+      String[] components = Util.components(path, SEPARATOR);
+      if (components == null || components.length == 1)
+         return null;
+      StringBuilder sb = new StringBuilder();
+      boolean first = true;
+      for (int i = 0; i < components.length - 1; i++) {
+         String tmp = components[i];
+         if (!tmp.equals(SEPARATOR)) {
+            if (first)
+               first = false;
+            else
+               sb.append(SEPARATOR);
+         }
+         sb.append(tmp);
+      }
+      return sb.toString();
+   }
+
+   protected static String childPath(String parent, String child) {
+      return parent.endsWith(SEPARATOR) ? parent + child : parent + SEPARATOR + child;
+   }
+
 
    protected static String trim(String str) {
       if (str == null) return null;
@@ -366,11 +492,16 @@ public class GridFile extends File {
    public static class Metadata implements Externalizable {
       public static final byte FILE = 1 << 0;
       public static final byte DIR = 1 << 1;
+      /** Set on directories whose children are recorded in index buckets */
+      static final byte INDEXED = 1 << 2;
+      /** Set on the index buckets themselves, whose serialized form is followed by the names of the children */
+      static final byte INDEX = 1 << 3;
 
       private int length = 0;
       private long modification_time = 0;
       private int chunk_size = 0;
       private byte flags = 0;
+      private Set<String> children;
 
 
       public Metadata() {
@@ -383,6 +514,17 @@ public class GridFile extends File {
          this.flags = flags;
       }
 
+      private Metadata(Set<String> children) {
+         this(0, System.currentTimeMillis(), 0, INDEX);
+         this.children = children;
+      }
+
+      static Metadata index(String child) {
+         Set<String> children = new HashSet<String>();
+         children.add(child);
+         return new Metadata(children);
+      }
+
       public int getLength() {
          return length;
       }
@@ -411,12 +553,61 @@ public class GridFile extends File {
          return Util.isFlagSet(flags, DIR);
       }
 
+      boolean isIndexed() {
+         return Util.isFlagSet(flags, INDEXED);
+      }
+
+      /**
+       * @return the names of the children recorded in this index bucket, or an empty set if this is not a bucket
+       */
+      Set<String> getChildren() {
+         return children == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(children);
+      }
+
+      Metadata withChild(String child) {
+         if (children.contains(child))
+            return this;
+         Set<String> copy = new HashSet<String>(children);
+         copy.add(child);
+         return new Metadata(copy);
+      }
+
+      Metadata withoutChild(String child) {
+         if (!children.contains(child))
+            return this;
+         Set<String> copy = new HashSet<String>(children);
+         copy.remove(child);
+         return new Metadata(copy);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof Metadata)) return false;
+         Metadata other = (Metadata) o;
+         return length == other.length && modification_time == other.modification_time
+               && chunk_size == other.chunk_size && flags == other.flags
+               && (children == null ? other.children == null : children.equals(other.children));
+      }
+
+      @Override
+      public int hashCode() {
+         int result = length;
+         result = 31 * result + (int) (modification_time ^ (modification_time >>> 32));
+         result = 31 * result + chunk_size;
+         result = 31 * result + flags;
+         result = 31 * result + (children != null ? children.hashCode() : 0);
+         return result;
+      }
+
       public String toString() {
          boolean is_file = Util.isFlagSet(flags, FILE);
          StringBuilder sb = new StringBuilder();
          sb.append(getType());
          if (is_file)
             sb.append(", len=" + Util.printBytes(length) + ", chunk_size=" + chunk_size);
+         else if (children != null)
+            sb.append(", children=" + children.size());
          sb.append(", mod_time=" + new Date(modification_time));
          return sb.toString();
       }
@@ -426,6 +617,8 @@ public class GridFile extends File {
             return "file";
          if (Util.isFlagSet(flags, DIR))
             return "dir";
+         if (Util.isFlagSet(flags, INDEX))
+            return "index";
          return "n/a";
       }
 
@@ -435,6 +628,11 @@ public class GridFile extends File {
          out.writeLong(modification_time);
          out.writeInt(chunk_size);
          out.writeByte(flags);
+         if (Util.isFlagSet(flags, INDEX)) {
+            out.writeInt(children.size());
+            for (String child : children)
+               out.writeUTF(child);
+         }
       }
 
       @Override
@@ -443,6 +641,12 @@ public class GridFile extends File {
          modification_time = in.readLong();
          chunk_size = in.readInt();
          flags = in.readByte();
+         if (Util.isFlagSet(flags, INDEX)) {
+            int size = in.readInt();
+            children = new HashSet<String>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++)
+               children.add(in.readUTF());
+         }
       }
    }
 }
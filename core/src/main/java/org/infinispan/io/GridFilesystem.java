@@ -28,17 +28,30 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Entry point for GridFile and GridInputStream / GridOutputStream
+ * <p/>
+ * Streams keep several chunks in flight to hide the latency of the data cache: an input stream fetches the next
+ * <tt>read_ahead</tt> chunks asynchronously while the current one is consumed, and an output stream lets up to
+ * <tt>write_behind</tt> chunk writes proceed asynchronously, waiting for them on {@link OutputStream#flush()} and
+ * {@link OutputStream#close()}. A value of 0 moves one chunk at a time, synchronously.
  *
  * @author Bela Ban
  */
 public class GridFilesystem {
+   public static final int DEFAULT_READ_AHEAD = 4;
+   public static final int DEFAULT_WRITE_BEHIND = 4;
+
    protected final Cache<String, byte[]> data;
    protected final Cache<String, GridFile.Metadata> metadata;
    protected final int default_chunk_size;
+   protected final int read_ahead;
+   protected final int write_behind;
 
    /**
     * Creates an instance. The data and metadata caches should already have been setup and started
@@ -46,12 +59,21 @@ public class GridFilesystem {
     * @param data
     * @param metadata
     * @param default_chunk_size
+    * @param read_ahead number of chunks fetched ahead of the one being read
+    * @param write_behind maximum number of chunk writes in flight
     */
    public GridFilesystem(Cache<String, byte[]> data, Cache<String, GridFile.Metadata> metadata,
-                         int default_chunk_size) {
+                         int default_chunk_size, int read_ahead, int write_behind) {
       this.data = data;
       this.metadata = metadata;
       this.default_chunk_size = default_chunk_size;
+      this.read_ahead = read_ahead;
+      this.write_behind = write_behind;
+   }
+
+   public GridFilesystem(Cache<String, byte[]> data, Cache<String, GridFile.Metadata> metadata,
+                         int default_chunk_size) {
+      this(data, metadata, default_chunk_size, DEFAULT_READ_AHEAD, DEFAULT_WRITE_BEHIND);
    }
 
    public GridFilesystem(Cache<String, byte[]> data, Cache<String, GridFile.Metadata> metadata) {
@@ -95,13 +117,13 @@ public class GridFilesystem {
       if (!file.createNewFile())
          throw new IOException("creation of " + pathname + " failed");
 
-      return new GridOutputStream(file, append, data, chunk_size);
+      return new GridOutputStream(file, append, data, chunk_size, write_behind);
    }
 
    public OutputStream getOutput(GridFile file) throws IOException {
       if (!file.createNewFile())
          throw new IOException("creation of " + file + " failed");
-      return new GridOutputStream(file, false, data, default_chunk_size);
+      return new GridOutputStream(file, false, data, default_chunk_size, write_behind);
    }
 
 
@@ -109,13 +131,23 @@ public class GridFilesystem {
       GridFile file = (GridFile) getFile(pathname);
       if (!file.exists())
          throw new FileNotFoundException(pathname);
-      return new GridInputStream(file, data, default_chunk_size);
+      return new GridInputStream(file, data, default_chunk_size, read_ahead);
    }
 
    public InputStream getInput(File pathname) throws FileNotFoundException {
       return pathname != null ? getInput(pathname.getPath()) : null;
    }
 
+   /**
+    * Opens a channel supporting positional reads, whose chunks are fetched in parallel
+    */
+   public ReadableGridFileChannel getReadableChannel(String pathname) throws FileNotFoundException {
+      GridFile file = (GridFile) getFile(pathname);
+      if (!file.exists())
+         throw new FileNotFoundException(pathname);
+      return new ReadableGridFileChannel(file, data, Math.max(1, read_ahead));
+   }
+
 
    public void remove(String path, boolean synchronous) {
       if (path == null)
@@ -125,6 +157,24 @@ public class GridFilesystem {
          return;
       int num_chunks = md.getLength() / md.getChunkSize() + 1;
       for (int i = 0; i < num_chunks; i++)
-         data.remove(path + ".#" + i, synchronous);
+         data.remove(getChunkKey(path, i), synchronous);
+   }
+
+   static String getChunkKey(String path, int chunk_number) {
+      return path + ".#" + chunk_number;
+   }
+
+   /**
+    * Waits for an asynchronous chunk read or write, translating its failure into an IOException
+    */
+   static <T> T await(Future<T> future) throws IOException {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("interrupted while waiting for a chunk");
+      } catch (ExecutionException e) {
+         throw new IOException("chunk transfer failed", e.getCause());
+      }
    }
 }
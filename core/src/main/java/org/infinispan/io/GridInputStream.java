@@ -29,6 +29,9 @@ import org.jgroups.logging.LogFactory;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Future;
 
 /**
  * @author Bela Ban
@@ -42,13 +45,19 @@ public class GridInputStream extends InputStream {
    int local_index = 0;
    byte[] current_buffer = null;
    boolean end_reached = false;
+   final int read_ahead;
+   final int last_chunk;         // last chunk of the file when the stream was opened, no chunk past it is prefetched
+   final Queue<Future<byte[]>> prefetched = new ArrayDeque<Future<byte[]>>();
+   int next_prefetch = 0;        // number of the chunk following the last one prefetched
    final static Log log = LogFactory.getLog(GridInputStream.class);
 
-   GridInputStream(GridFile file, Cache<String, byte[]> cache, int chunk_size) throws FileNotFoundException {
+   GridInputStream(GridFile file, Cache<String, byte[]> cache, int chunk_size, int read_ahead) throws FileNotFoundException {
       this.file = file;
       this.name = file.getPath();
       this.cache = cache;
       this.chunk_size = chunk_size;
+      this.read_ahead = read_ahead;
+      this.last_chunk = (int) (file.length() / chunk_size);
    }
 
    public int read() throws IOException {
@@ -117,6 +126,7 @@ public class GridInputStream extends InputStream {
    public void close() throws IOException {
       local_index = index = 0;
       end_reached = false;
+      prefetched.clear();
    }
 
    private int getBytesRemainingInChunk() {
@@ -124,10 +134,22 @@ public class GridInputStream extends InputStream {
       return current_buffer == null ? 0 : current_buffer.length - local_index;
    }
 
-   private byte[] fetchNextChunk() {
+   private byte[] fetchNextChunk() throws IOException {
       int chunk_number = getChunkNumber();
-      String key = name + ".#" + chunk_number;
-      byte[] val = cache.get(key);
+      String key = GridFilesystem.getChunkKey(name, chunk_number);
+      byte[] val;
+      if (read_ahead <= 0) {
+         val = cache.get(key);
+      } else {
+         // the head of the queue is the chunk asked for, unless the stream was reset in the meantime
+         if (next_prefetch - prefetched.size() != chunk_number) {
+            prefetched.clear();
+            next_prefetch = chunk_number;
+         }
+         while (next_prefetch == chunk_number || (next_prefetch <= chunk_number + read_ahead && next_prefetch <= last_chunk))
+            prefetched.add(cache.getAsync(GridFilesystem.getChunkKey(name, next_prefetch++)));
+         val = GridFilesystem.await(prefetched.poll());
+      }
       if (log.isTraceEnabled())
          log.trace("fetching index=" + index + ", key=" + key + ": " + (val != null ? val.length + " bytes" : "null"));
       return val;
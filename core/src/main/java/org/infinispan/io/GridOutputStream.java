@@ -29,6 +29,9 @@ import org.jgroups.logging.LogFactory;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Future;
 
 /**
  * @author Bela Ban
@@ -41,22 +44,25 @@ public class GridOutputStream extends OutputStream {
    protected final GridFile file; // file representing this output stream
    int index = 0;                // index into the file for writing
    int local_index = 0;
-   final byte[] current_buffer;
+   byte[] current_buffer;
+   final int write_behind;
+   final Queue<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>(); // chunk writes in flight
    static final Log log = LogFactory.getLog(GridOutputStream.class);
 
 
-   GridOutputStream(GridFile file, boolean append, Cache<String, byte[]> cache, int chunk_size) throws FileNotFoundException {
+   GridOutputStream(GridFile file, boolean append, Cache<String, byte[]> cache, int chunk_size, int write_behind) throws FileNotFoundException {
       this.file = file;
       this.name = file.getPath();
       this.cache = cache;
       this.chunk_size = chunk_size;
+      this.write_behind = write_behind;
       current_buffer = new byte[chunk_size];
    }
 
    public void write(int b) throws IOException {
       int remaining = getBytesRemainingInChunk();
       if (remaining == 0) {
-         flush();
+         writeFullChunk();
          local_index = 0;
          remaining = chunk_size;
       }
@@ -76,7 +82,7 @@ public class GridOutputStream extends OutputStream {
       while (len > 0) {
          int remaining = getBytesRemainingInChunk();
          if (remaining == 0) {
-            flush();
+            writeFullChunk();
             local_index = 0;
             remaining = chunk_size;
          }
@@ -98,15 +104,35 @@ public class GridOutputStream extends OutputStream {
    @Override
    public void flush() throws IOException {
       int chunk_number = getChunkNumber();
-      String key = name + ".#" + chunk_number;
+      String key = GridFilesystem.getChunkKey(name, chunk_number);
       byte[] val = new byte[local_index];
       System.arraycopy(current_buffer, 0, val, 0, local_index);
       cache.put(key, val);
       if (log.isTraceEnabled())
          log.trace("put(): index=" + index + ", key=" + key + ": " + val.length + " bytes");
+      while (!pending.isEmpty())
+         GridFilesystem.await(pending.poll());
       file.setLength(index);
    }
 
+   /**
+    * Writes the full current chunk without waiting for the write to complete, as long as no more than
+    * <tt>write_behind</tt> writes are in flight. The buffer is handed over to the cache, so a new one is allocated.
+    */
+   private void writeFullChunk() throws IOException {
+      if (write_behind <= 0) {
+         flush();
+         return;
+      }
+      String key = GridFilesystem.getChunkKey(name, getChunkNumber());
+      pending.add(cache.putAsync(key, current_buffer));
+      if (log.isTraceEnabled())
+         log.trace("putAsync(): index=" + index + ", key=" + key + ": " + current_buffer.length + " bytes");
+      current_buffer = new byte[chunk_size];
+      while (pending.size() > write_behind)
+         GridFilesystem.await(pending.poll());
+   }
+
    private int getBytesRemainingInChunk() {
       return chunk_size - local_index;
    }
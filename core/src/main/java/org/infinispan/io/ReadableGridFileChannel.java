@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.io;
+
+import org.infinispan.Cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Future;
+
+/**
+ * Channel reading a grid file at arbitrary positions, in the manner of {@link java.nio.channels.FileChannel}. The
+ * chunks covering a read are fetched in parallel, keeping up to <tt>read_ahead</tt> of them in flight.
+ *
+ * @since 5.0
+ */
+public class ReadableGridFileChannel implements ReadableByteChannel {
+   private final GridFile file;
+   private final Cache<String, byte[]> cache;
+   private final String name;
+   private final int chunk_size;
+   private final int read_ahead;
+   private long position = 0;
+   private volatile boolean open = true;
+
+   ReadableGridFileChannel(GridFile file, Cache<String, byte[]> cache, int read_ahead) {
+      this.file = file;
+      this.cache = cache;
+      this.name = file.getPath();
+      this.chunk_size = file.getChunkSize();
+      this.read_ahead = read_ahead;
+   }
+
+   /**
+    * Reads bytes from the current position, which is then advanced by the number of bytes read
+    */
+   @Override
+   public synchronized int read(ByteBuffer dst) throws IOException {
+      int read = read(dst, position);
+      if (read > 0)
+         position += read;
+      return read;
+   }
+
+   /**
+    * Reads bytes starting at the given position, without changing the position of this channel
+    *
+    * @return the number of bytes read, or -1 if the position is at or past the end of the file
+    */
+   public int read(ByteBuffer dst, long position) throws IOException {
+      checkOpen();
+      if (position < 0)
+         throw new IllegalArgumentException("negative position " + position);
+      long size = size();
+      if (position >= size)
+         return -1;
+      int len = (int) Math.min(dst.remaining(), size - position);
+      if (len == 0)
+         return 0;
+
+      int first_chunk = (int) (position / chunk_size);
+      int last_chunk = (int) ((position + len - 1) / chunk_size);
+      Queue<Future<byte[]>> chunks = new ArrayDeque<Future<byte[]>>();
+      int next_fetch = first_chunk;
+      int bytes_read = 0;
+      for (int chunk_number = first_chunk; chunk_number <= last_chunk; chunk_number++) {
+         while (next_fetch <= last_chunk && next_fetch <= chunk_number + read_ahead)
+            chunks.add(cache.getAsync(GridFilesystem.getChunkKey(name, next_fetch++)));
+         byte[] chunk = GridFilesystem.await(chunks.poll());
+         int offset = chunk_number == first_chunk ? (int) (position % chunk_size) : 0;
+         if (chunk == null || chunk.length <= offset)
+            break;
+         int bytes_to_read = Math.min(chunk.length - offset, len - bytes_read);
+         dst.put(chunk, offset, bytes_to_read);
+         bytes_read += bytes_to_read;
+         if (chunk.length < chunk_size)
+            break;
+      }
+      return bytes_read > 0 ? bytes_read : -1;
+   }
+
+   public synchronized long position() throws IOException {
+      checkOpen();
+      return position;
+   }
+
+   public synchronized ReadableGridFileChannel position(long newPosition) throws IOException {
+      checkOpen();
+      if (newPosition < 0)
+         throw new IllegalArgumentException("negative position " + newPosition);
+      position = newPosition;
+      return this;
+   }
+
+   public long size() throws IOException {
+      checkOpen();
+      return file.length();
+   }
+
+   @Override
+   public boolean isOpen() {
+      return open;
+   }
+
+   @Override
+   public void close() throws IOException {
+      open = false;
+   }
+
+   private void checkOpen() throws ClosedChannelException {
+      if (!open)
+         throw new ClosedChannelException();
+   }
+}
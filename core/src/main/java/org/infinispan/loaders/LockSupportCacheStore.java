@@ -31,6 +31,7 @@ import org.infinispan.util.logging.LogFactory;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -87,6 +88,28 @@ public abstract class LockSupportCacheStore extends AbstractCacheStore {
       locks.acquireLock(key, true);
    }
 
+   /**
+    * Acquires write locks on all the given keys, in an order which is safe against concurrent multi-key lockers.
+    */
+   protected final void lockAllForWriting(Collection<String> keys) throws CacheLoaderException {
+      locks.acquireAllLocks(keys, true);
+   }
+
+   /**
+    * Acquires read locks on all the given keys.
+    */
+   protected final void lockAllForReading(Collection<String> keys) throws CacheLoaderException {
+      locks.acquireAllLocks(keys, false);
+   }
+
+   /**
+    * Releases the locks acquired through {@link #lockAllForWriting(java.util.Collection)} or {@link
+    * #lockAllForReading(java.util.Collection)}.
+    */
+   protected final void unlockAll(Collection<String> keys) {
+      locks.releaseAllLocks(keys);
+   }
+
    /**
     * Acquires read lock on the given key.
     */
@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A {@link CacheLoader} that can load several keys in a single round trip to the underlying store.  Cache loaders
+ * that do not implement this interface are consulted one key at a time when multiple keys are requested, e.g. via
+ * {@link org.infinispan.AdvancedCache#getAll(java.util.Set)}.
+ *
+ * @since 5.0
+ */
+public interface MultiKeyCacheLoader extends CacheLoader {
+
+   /**
+    * Loads the entries mapped to the given keys.  Keys that are not stored, or whose entries have expired, are
+    * simply absent from the returned set.
+    *
+    * @param keys keys to load
+    * @return the entries found, never null
+    * @throws CacheLoaderException in the event of problems reading from the source
+    */
+   Set<InternalCacheEntry> loadAll(Collection<?> keys) throws CacheLoaderException;
+}
@@ -40,6 +40,7 @@ import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockCont
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +55,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -76,6 +79,14 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * <p/>
  * Write operations affecting same key are now coalesced so that only the final state is actually stored.
  * <p/>
+ * Both the queue of incoming modifications and the map of coalesced modifications waiting to be applied are bounded by
+ * {@link AsyncStoreConfig#getModificationQueueSize()}; writers block while they are full, so a slow cache store pushes
+ * back on writers instead of letting them grow without limit.
+ * Coalesced modifications are written to the underlying store in one-phase
+ * {@link CacheStore#prepare(java.util.List, org.infinispan.transaction.xa.GlobalTransaction, boolean)} batches of up to
+ * {@link AsyncStoreConfig#getBatchSize()} modifications, and can be held back for
+ * {@link AsyncStoreConfig#getFlushDelay()} milliseconds to coalesce more of them.
+ * <p/>
  *
  * @author Manik Surtani
  * @author Galder Zamarreño
@@ -104,18 +115,28 @@ public class AsyncStore extends AbstractDelegatingStore {
    private final Lock clearAllReadLock = clearAllLock.readLock();
    private final Lock clearAllWriteLock = clearAllLock.writeLock();
    private final Lock stateMapLock = new ReentrantLock();
+   /**
+    * Signalled whenever an AsyncProcessor takes over the content of the state map.
+    */
+   private final Condition stateMapSwapped = stateMapLock.newCondition();
    
    ExecutorService executor;
    private int concurrencyLevel;
    @GuardedBy("stateMapLock")
    protected ConcurrentMap<Object, Modification> state;
    private ReleaseAllLockContainer lockContainer;
-   private final LinkedBlockingQueue<Modification> changesDeque = new LinkedBlockingQueue<Modification>();
+   private final LinkedBlockingQueue<Modification> changesDeque;
    public volatile boolean lastAsyncProcessorShutsDownExecutor = false;
 
+   private final AtomicLong receivedModifications = new AtomicLong(0);
+   private final AtomicLong appliedModifications = new AtomicLong(0);
+   private final AtomicLong flushes = new AtomicLong(0);
+   private final AtomicLong flushTimeNanos = new AtomicLong(0);
+
    public AsyncStore(CacheStore delegate, AsyncStoreConfig asyncStoreConfig) {
       super(delegate);
       this.asyncStoreConfig = asyncStoreConfig;
+      this.changesDeque = new LinkedBlockingQueue<Modification>(asyncStoreConfig.getModificationQueueSize());
    }
 
    @Override
@@ -218,20 +239,68 @@ public class AsyncStore extends AbstractDelegatingStore {
    }
 
    protected void applyModificationsSync(ConcurrentMap<Object, Modification> mods) throws CacheLoaderException {
-      Set<Map.Entry<Object, Modification>> entries = mods.entrySet();
-      for (Map.Entry<Object, Modification> entry : entries) {
-         Modification mod = entry.getValue();
+      long start = System.nanoTime();
+      int batchSize = asyncStoreConfig.getBatchSize();
+      List<Modification> batch = new ArrayList<Modification>(Math.min(mods.size(), batchSize));
+      for (Modification mod : mods.values()) {
          switch (mod.getType()) {
             case STORE:
-               super.store(((Store) mod).getStoredEntry());
-               break;
             case REMOVE:
-               super.remove(entry.getKey());
+               batch.add(mod);
                break;
             default:
                throw new IllegalArgumentException("Unexpected modification type " + mod.getType());
          }
+         if (batch.size() >= batchSize) {
+            applyBatch(batch);
+            batch = new ArrayList<Modification>(batchSize);
+         }
       }
+      if (!batch.isEmpty()) applyBatch(batch);
+      flushes.incrementAndGet();
+      flushTimeNanos.addAndGet(System.nanoTime() - start);
+   }
+
+   /**
+    * Writes the batch through a one-phase prepare, so that stores which support it apply it in a single transaction.
+    */
+   private void applyBatch(List<Modification> batch) throws CacheLoaderException {
+      if (trace) log.tracef("Applying batch of %s modifications", batch.size());
+      super.prepare(batch, null, true);
+      appliedModifications.addAndGet(batch.size());
+   }
+
+   /**
+    * @return the number of modifications waiting to be handed over to the write-behind threads
+    */
+   public int getQueueDepth() {
+      return changesDeque.size();
+   }
+
+   /**
+    * @return the fraction of modifications received which were superseded by a later modification to the same key
+    * before being written to the underlying store
+    */
+   public double getCoalescingRatio() {
+      long received = receivedModifications.get();
+      if (received == 0) return 0;
+      return Math.max(0, 1 - (double) appliedModifications.get() / received);
+   }
+
+   /**
+    * @return the average time, in milliseconds, taken to write a set of coalesced modifications to the underlying store
+    */
+   public long getAverageFlushLatency() {
+      long count = flushes.get();
+      if (count == 0) return 0;
+      return TimeUnit.NANOSECONDS.toMillis(flushTimeNanos.get() / count);
+   }
+
+   public void resetStatistics() {
+      receivedModifications.set(0);
+      appliedModifications.set(0);
+      flushes.set(0);
+      flushTimeNanos.set(0);
    }
    
    protected boolean applyClear() {
@@ -256,7 +325,10 @@ public class AsyncStore extends AbstractDelegatingStore {
       try {
          checkNotStopped();
          if (trace) log.tracef("Enqueuing modification %s", mod);
-         changesDeque.add(mod);
+         changesDeque.put(mod);
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while waiting to enqueue asynchronous task", ie);
       } catch (Exception e) {
          throw new CacheException("Unable to enqueue asynchronous task", e);
       }
@@ -313,6 +385,7 @@ public class AsyncStore extends AbstractDelegatingStore {
             try {
                swap = state;
                state = newStateMap();
+               stateMapSwapped.signalAll();
 
                // This needs to be done within the stateMapLock section, because if a key is in use,
                // we need to put it back in the state
@@ -411,12 +484,20 @@ public class AsyncStore extends AbstractDelegatingStore {
    
    private class AsyncStoreCoordinator implements Runnable {
 
+      /**
+       * Time by which pending modifications have to be flushed, or -1 if none are held back.
+       */
+      private long flushDeadline = -1;
+
       @Override
       public void run() {
          while (true) {
             try {
-               Modification take = changesDeque.take();
-               if (take == QUIT_SIGNAL) {
+               Modification take = flushDeadline < 0 ? changesDeque.take() :
+                     changesDeque.poll(flushDeadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+               if (take == null) {
+                  flush();
+               } else if (take == QUIT_SIGNAL) {
                   lastAsyncProcessorShutsDownExecutor = true;
                   ensureMoreWorkIsHandled();
                   return;
@@ -447,16 +528,12 @@ public class AsyncStore extends AbstractDelegatingStore {
          switch (mod.getType()) {
             case STORE:
                Store store = (Store) mod;
-               stateMapLock.lock();
-               state.put(store.getStoredEntry().getKey(), store);
-               stateMapLock.unlock();
+               putInStateMap(store.getStoredEntry().getKey(), store);
                asyncProcessorNeeded = true;
                break;
             case REMOVE:
                Remove remove = (Remove) mod;
-               stateMapLock.lock();
-               state.put(remove.getKey(), remove);
-               stateMapLock.unlock();
+               putInStateMap(remove.getKey(), remove);
                asyncProcessorNeeded = true;
                break;
             case CLEAR:
@@ -475,10 +552,49 @@ public class AsyncStore extends AbstractDelegatingStore {
          if (asyncProcessorNeeded && !nested) {
             // we know when it's possible for some work to be done, starting short-lived
             // AsyncProcessor(s) simplifies shutdown process.
-             ensureMoreWorkIsHandled();
+            scheduleFlush();
          }
       }
 
+      /**
+       * Adds the modification to the state map, replacing any pending modification for the same key.  If that would
+       * grow the map beyond the configured size, waits for an AsyncProcessor to take over its content first.
+       */
+      private void putInStateMap(Object key, Modification mod) {
+         int maxSize = asyncStoreConfig.getModificationQueueSize();
+         stateMapLock.lock();
+         try {
+            try {
+               while (state.size() >= maxSize && !state.containsKey(key)) {
+                  if (trace) log.trace("State map is full, waiting for modifications to be applied");
+                  flush();
+                  stateMapSwapped.await(100, TimeUnit.MILLISECONDS);
+               }
+            } catch (InterruptedException e) {
+               // don't drop the modification, just stop waiting
+               Thread.currentThread().interrupt();
+            }
+            state.put(key, mod);
+         } finally {
+            stateMapLock.unlock();
+         }
+         receivedModifications.incrementAndGet();
+      }
+
+      private void scheduleFlush() {
+         long flushDelay = asyncStoreConfig.getFlushDelay();
+         if (flushDelay <= 0 || state.size() >= asyncStoreConfig.getBatchSize()) {
+            flush();
+         } else if (flushDeadline < 0) {
+            flushDeadline = System.currentTimeMillis() + flushDelay;
+         }
+      }
+
+      private void flush() {
+         flushDeadline = -1;
+         ensureMoreWorkIsHandled();
+      }
+
       private void applyModificationsList(ModificationsList mod) {
          for (Modification m : mod.getList()) {
             handle(m, true);
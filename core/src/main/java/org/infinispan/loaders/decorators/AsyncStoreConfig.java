@@ -66,6 +66,16 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
    @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setShutdownTimeout")
    protected Long shutdownTimeout = 7200L;
 
+   @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setModificationQueueSize")
+   protected Integer modificationQueueSize = 1024;
+
+   @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setBatchSize")
+   protected Integer batchSize = 100;
+
+   @Dynamic
+   @ConfigurationDocRef(bean=AsyncStoreConfig.class,targetElement="setFlushDelay")
+   protected Long flushDelay = 0L;
+
    @XmlAttribute
    public Boolean isEnabled() {
       return enabled;
@@ -174,6 +184,104 @@ public class AsyncStoreConfig extends AbstractDecoratorConfigurationBean {
       return this;
    }
 
+   @XmlAttribute
+   public Integer getModificationQueueSize() {
+      return modificationQueueSize;
+   }
+
+   /**
+    * Maximum number of modifications waiting to be handed over to the write-behind threads. Once the queue is full,
+    * threads writing to the cache block until there is room again, so that a slow cache store pushes back on writers
+    * instead of letting the queue grow without limit.
+    * 
+    * @param modificationQueueSize
+    * @deprecated The visibility of this method will be reduced. Use {@link #modificationQueueSize(Integer)} instead.
+    */
+   @Deprecated
+   public void setModificationQueueSize(Integer modificationQueueSize) {
+      testImmutability("modificationQueueSize");
+      this.modificationQueueSize = modificationQueueSize;
+   }
+
+   /**
+    * Maximum number of modifications waiting to be handed over to the write-behind threads. Once the queue is full,
+    * threads writing to the cache block until there is room again, so that a slow cache store pushes back on writers
+    * instead of letting the queue grow without limit.
+    * 
+    * @param modificationQueueSize
+    */
+   public AsyncStoreConfig modificationQueueSize(Integer modificationQueueSize) {
+      testImmutability("modificationQueueSize");
+      this.modificationQueueSize = modificationQueueSize;
+      return this;
+   }
+
+   @XmlAttribute
+   public Integer getBatchSize() {
+      return batchSize;
+   }
+
+   /**
+    * Maximum number of coalesced modifications written to the underlying cache store in a single one-phase
+    * {@link org.infinispan.loaders.CacheStore#prepare(java.util.List, org.infinispan.transaction.xa.GlobalTransaction, boolean)}
+    * call, which transactional stores apply in one transaction. When a flush delay is configured, reaching this many
+    * pending modifications also triggers a flush before the delay has elapsed.
+    * 
+    * @param batchSize
+    * @deprecated The visibility of this method will be reduced. Use {@link #batchSize(Integer)} instead.
+    */
+   @Deprecated
+   public void setBatchSize(Integer batchSize) {
+      testImmutability("batchSize");
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Maximum number of coalesced modifications written to the underlying cache store in a single one-phase
+    * {@link org.infinispan.loaders.CacheStore#prepare(java.util.List, org.infinispan.transaction.xa.GlobalTransaction, boolean)}
+    * call, which transactional stores apply in one transaction. When a flush delay is configured, reaching this many
+    * pending modifications also triggers a flush before the delay has elapsed.
+    * 
+    * @param batchSize
+    */
+   public AsyncStoreConfig batchSize(Integer batchSize) {
+      testImmutability("batchSize");
+      this.batchSize = batchSize;
+      return this;
+   }
+
+   @XmlAttribute
+   public Long getFlushDelay() {
+      return flushDelay;
+   }
+
+   /**
+    * Time, in milliseconds, to hold back modifications before flushing them to the cache store, so that repeated
+    * writes to the same key within that window are coalesced into one. A flush happens earlier if the number of
+    * pending modifications reaches the batch size. Defaults to 0, which flushes as soon as modifications arrive.
+    * 
+    * @param flushDelay
+    * @deprecated The visibility of this method will be reduced. Use {@link #flushDelay(Long)} instead.
+    */
+   @Deprecated
+   public void setFlushDelay(Long flushDelay) {
+      testImmutability("flushDelay");
+      this.flushDelay = flushDelay;
+   }
+
+   /**
+    * Time, in milliseconds, to hold back modifications before flushing them to the cache store, so that repeated
+    * writes to the same key within that window are coalesced into one. A flush happens earlier if the number of
+    * pending modifications reaches the batch size. Defaults to 0, which flushes as soon as modifications arrive.
+    * 
+    * @param flushDelay
+    */
+   public AsyncStoreConfig flushDelay(Long flushDelay) {
+      testImmutability("flushDelay");
+      this.flushDelay = flushDelay;
+      return this;
+   }
+
    @Override
    public AsyncStoreConfig clone() {
       return (AsyncStoreConfig) super.clone();
@@ -0,0 +1,599 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import org.infinispan.Cache;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.loaders.AbstractCacheStore;
+import org.infinispan.loaders.CacheLoaderConfig;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheLoaderMetadata;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A filesystem-based {@link org.infinispan.loaders.CacheStore} which never rewrites data in place.  Every store or
+ * remove appends a single record to the current log file, and an in-memory index maps each key to the location of its
+ * most recent record, so a load is a single positional read rather than the deserialization of a whole bucket.
+ * <p/>
+ * Each record consists of a fixed size header (key length, value length and expiry time) followed by the marshalled
+ * key and the marshalled {@link InternalCacheValue}.  Removals are recorded as tombstones, i.e. records without a
+ * value, so the index can be rebuilt at startup by scanning the headers and keys of all log files in order without
+ * unmarshalling any values.
+ * <p/>
+ * Once the current log file grows beyond {@link LogFileCacheStoreConfig#getMaxLogFileSize()} a new one is started.
+ * Log files which are no longer appended to and in which the fraction of superseded records exceeds
+ * {@link LogFileCacheStoreConfig#getCompactionThreshold()} are compacted in the background: their live records are
+ * copied to the current log file and the old file is deleted.
+ *
+ * @see LogFileCacheStoreConfig
+ * @since 5.0
+ */
+@CacheLoaderMetadata(configurationClass = LogFileCacheStoreConfig.class)
+public class LogFileCacheStore extends AbstractCacheStore {
+
+   private static final Log log = LogFactory.getLog(LogFileCacheStore.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   static final String LOG_FILE_SUFFIX = ".log";
+   /**
+    * key length (int) + value length (int) + expiry time (long)
+    */
+   static final int HEADER_SIZE = 16;
+   private static final int TOMBSTONE = -1;
+
+   private static final FilenameFilter LOG_FILE_FILTER = new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+         return name.endsWith(LOG_FILE_SUFFIX);
+      }
+   };
+
+   private LogFileCacheStoreConfig config;
+   private File root;
+
+   private final ConcurrentMap<Object, EntryPosition> index = new ConcurrentHashMap<Object, EntryPosition>();
+   private final ConcurrentMap<Integer, LogFile> logFiles = new ConcurrentHashMap<Integer, LogFile>();
+   private final Set<Integer> compacting = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+   /**
+    * Guards appends, the current log file and the garbage counters of all log files.
+    */
+   private final Object appendLock = new Object();
+   /**
+    * Held for reading while reading a record, and for writing while closing and deleting log files.
+    */
+   private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+   private LogFile current;
+   private int nextFileId;
+   private ExecutorService compactor;
+
+   @Override
+   public void init(CacheLoaderConfig config, Cache<?, ?> cache, StreamingMarshaller m) throws CacheLoaderException {
+      super.init(config, cache, m);
+      this.config = (LogFileCacheStoreConfig) config;
+   }
+
+   @Override
+   public void start() throws CacheLoaderException {
+      super.start();
+      String location = config.getLocation();
+      if (location == null || location.trim().length() == 0)
+         location = "Infinispan-LogFileCacheStore"; // use relative path!
+      location += File.separator + cache.getName();
+      root = new File(location);
+      if (!root.exists()) {
+         if (!root.mkdirs()) {
+            log.problemsCreatingDirectory(root);
+         }
+      }
+      if (!root.exists()) {
+         throw new ConfigurationException("Directory " + root.getAbsolutePath() + " does not exist and cannot be created!");
+      }
+
+      final String threadName = (cache.getName() == null ? "" : cache.getName() + '-') + getClass().getSimpleName() + "-compactor";
+      compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+         }
+      });
+
+      try {
+         rebuildIndex();
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to rebuild the index from log files in " + root, e);
+      }
+   }
+
+   @Override
+   public void stop() throws CacheLoaderException {
+      super.stop();
+      compactor.shutdownNow();
+      fileLock.writeLock().lock();
+      try {
+         for (LogFile f : logFiles.values()) f.close();
+         logFiles.clear();
+         index.clear();
+         current = null;
+      } finally {
+         fileLock.writeLock().unlock();
+      }
+   }
+
+   public Class<? extends CacheLoaderConfig> getConfigurationClass() {
+      return LogFileCacheStoreConfig.class;
+   }
+
+   public void store(InternalCacheEntry entry) throws CacheLoaderException {
+      long expiryTime = entry.getExpiryTime();
+      ByteBuffer record = createRecord(marshall(entry.getKey()), marshall(entry.toInternalCacheValue()), expiryTime);
+      synchronized (appendLock) {
+         EntryPosition previous = index.put(entry.getKey(), append(record, expiryTime));
+         if (previous != null) addGarbage(previous);
+      }
+   }
+
+   public boolean remove(Object key) throws CacheLoaderException {
+      if (!index.containsKey(key)) return false;
+      ByteBuffer record = createRecord(marshall(key), null, -1);
+      synchronized (appendLock) {
+         EntryPosition previous = index.remove(key);
+         if (previous == null) return false;
+         addGarbage(previous);
+         addGarbage(append(record, -1));
+      }
+      return true;
+   }
+
+   public InternalCacheEntry load(Object key) throws CacheLoaderException {
+      InternalCacheValue value = readValue(key);
+      if (value == null) return null;
+      InternalCacheEntry entry = value.toInternalCacheEntry(key);
+      if (entry.isExpired()) {
+         remove(key);
+         return null;
+      }
+      return entry;
+   }
+
+   public Set<InternalCacheEntry> loadAll() throws CacheLoaderException {
+      return load(Integer.MAX_VALUE);
+   }
+
+   public Set<InternalCacheEntry> load(int numEntries) throws CacheLoaderException {
+      Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+      for (Object key : index.keySet()) {
+         if (result.size() >= numEntries) break;
+         InternalCacheEntry entry = load(key);
+         if (entry != null) result.add(entry);
+      }
+      return result;
+   }
+
+   public Set<Object> loadAllKeys(Set<Object> keysToExclude) throws CacheLoaderException {
+      long now = System.currentTimeMillis();
+      Set<Object> result = new HashSet<Object>();
+      for (Map.Entry<Object, EntryPosition> e : index.entrySet()) {
+         if (e.getValue().isExpired(now)) continue;
+         if (keysToExclude == null || !keysToExclude.contains(e.getKey())) result.add(e.getKey());
+      }
+      return result;
+   }
+
+   public void clear() throws CacheLoaderException {
+      synchronized (appendLock) {
+         fileLock.writeLock().lock();
+         try {
+            index.clear();
+            for (LogFile f : logFiles.values()) {
+               f.close();
+               if (!f.file.delete()) log.problemsRemovingFile(f.file);
+            }
+            logFiles.clear();
+            current = openLogFile(nextFileId++);
+         } catch (IOException e) {
+            throw new CacheLoaderException("Unable to start a new log file in " + root, e);
+         } finally {
+            fileLock.writeLock().unlock();
+         }
+      }
+   }
+
+   /**
+    * Writes all entries to the stream, terminated by a <tt>null</tt>.
+    */
+   public void toStream(ObjectOutput out) throws CacheLoaderException {
+      try {
+         for (InternalCacheEntry entry : loadAll()) getMarshaller().objectToObjectStream(entry, out);
+         getMarshaller().objectToObjectStream(null, out);
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O exception while generating stream", e);
+      }
+   }
+
+   /**
+    * Reads entries written by {@link #toStream(java.io.ObjectOutput)} until the terminating <tt>null</tt>.
+    */
+   public void fromStream(ObjectInput in) throws CacheLoaderException {
+      try {
+         InternalCacheEntry entry;
+         while ((entry = (InternalCacheEntry) getMarshaller().objectFromObjectStream(in)) != null) store(entry);
+      } catch (IOException e) {
+         throw new CacheLoaderException("I/O error", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unexpected exception", e);
+      } catch (InterruptedException ie) {
+         if (trace) log.trace("Interrupted while reading from stream");
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Expiry times are kept in the index, so expired entries are found without touching the disk; each is removed by
+    * appending a tombstone.
+    */
+   @Override
+   protected void purgeInternal() throws CacheLoaderException {
+      if (trace) log.trace("purgeInternal()");
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Object, EntryPosition> e : index.entrySet()) {
+         if (e.getValue().isExpired(now)) remove(e.getKey());
+      }
+   }
+
+   /**
+    * Synchronously compacts all log files which have reached the compaction threshold.
+    */
+   void compactLogFiles() throws CacheLoaderException {
+      List<LogFile> candidates = new ArrayList<LogFile>();
+      synchronized (appendLock) {
+         for (LogFile f : logFiles.values()) {
+            if (isCompactionCandidate(f)) candidates.add(f);
+         }
+      }
+      for (LogFile f : candidates) {
+         if (compacting.add(f.id)) {
+            try {
+               compact(f);
+            } finally {
+               compacting.remove(f.id);
+            }
+         }
+      }
+   }
+
+   int getLogFileCount() {
+      return logFiles.size();
+   }
+
+   private InternalCacheValue readValue(Object key) throws CacheLoaderException {
+      fileLock.readLock().lock();
+      try {
+         EntryPosition position = index.get(key);
+         if (position == null || position.isExpired(System.currentTimeMillis())) return null;
+         LogFile f = logFiles.get(position.fileId);
+         ByteBuffer record = ByteBuffer.allocate(position.length);
+         readFully(f.channel, record, position.offset);
+         int keyLength = record.getInt(0);
+         int valueOffset = HEADER_SIZE + keyLength;
+         return (InternalCacheValue) marshaller.objectFromByteBuffer(record.array(), valueOffset, position.length - valueOffset);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to read entry for key " + key, e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unable to unmarshall entry for key " + key, e);
+      } finally {
+         fileLock.readLock().unlock();
+      }
+   }
+
+   private static ByteBuffer createRecord(byte[] key, byte[] value, long expiryTime) {
+      int length = HEADER_SIZE + key.length + (value == null ? 0 : value.length);
+      ByteBuffer record = ByteBuffer.allocate(length);
+      record.putInt(key.length).putInt(value == null ? TOMBSTONE : value.length).putLong(expiryTime).put(key);
+      if (value != null) record.put(value);
+      record.flip();
+      return record;
+   }
+
+   /**
+    * Appends a record to the current log file, starting a new one first if it is full.  Callers must hold the append
+    * lock.
+    */
+   private EntryPosition append(ByteBuffer record, long expiryTime) throws CacheLoaderException {
+      try {
+         if (current.size >= config.getMaxLogFileSize()) {
+            LogFile full = current;
+            current = openLogFile(nextFileId++);
+            if (isCompactionCandidate(full)) scheduleCompaction(full);
+         }
+         int length = record.remaining();
+         long offset = current.size;
+         while (record.hasRemaining()) current.channel.write(record, offset + record.position());
+         if (config.isSyncWrites()) current.channel.force(false);
+         current.size += length;
+         return new EntryPosition(current.id, offset, length, expiryTime);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to append to log file " + current.file, e);
+      }
+   }
+
+   /**
+    * Accounts for a record which has been superseded.  Callers must hold the append lock.
+    */
+   private void addGarbage(EntryPosition position) {
+      LogFile f = logFiles.get(position.fileId);
+      if (f == null) return;
+      f.garbage += position.length;
+      if (isCompactionCandidate(f)) scheduleCompaction(f);
+   }
+
+   private boolean isCompactionCandidate(LogFile f) {
+      return f != current && f.garbage >= f.size * config.getCompactionThreshold();
+   }
+
+   private void scheduleCompaction(final LogFile f) {
+      if (compactor.isShutdown() || !compacting.add(f.id)) return;
+      compactor.execute(new Runnable() {
+         public void run() {
+            try {
+               compact(f);
+            } catch (CacheLoaderException e) {
+               log.problemsPurgingFile(f.file, e);
+            } finally {
+               compacting.remove(f.id);
+            }
+         }
+      });
+   }
+
+   /**
+    * Copies the records of the given log file which are still referenced by the index to the current log file, then
+    * deletes it.  Tombstones are carried over as long as an older log file exists that may still hold a record for the
+    * removed key, otherwise that record would be resurrected when the index is rebuilt.
+    */
+   private void compact(LogFile f) throws CacheLoaderException {
+      if (trace) log.tracef("Compacting log file %s", f.file);
+      try {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         long offset = 0;
+         while (offset < f.size) {
+            header.clear();
+            readFully(f.channel, header, offset);
+            int keyLength = header.getInt(0);
+            int valueLength = header.getInt(4);
+            long expiryTime = header.getLong(8);
+            int length = HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(f.channel, record, offset);
+            record.flip();
+            Object key = unmarshall(record.array(), HEADER_SIZE, keyLength);
+            synchronized (appendLock) {
+               if (!logFiles.containsKey(f.id)) return; // cleared in the meantime
+               if (valueLength == TOMBSTONE) {
+                  if (!index.containsKey(key) && hasOlderLogFile(f.id)) addGarbage(append(record, expiryTime));
+               } else {
+                  EntryPosition position = index.get(key);
+                  if (position != null && position.fileId == f.id && position.offset == offset)
+                     index.put(key, append(record, expiryTime));
+               }
+            }
+            offset += length;
+         }
+      } catch (IOException e) {
+         if (!logFiles.containsKey(f.id)) return; // closed by clear() or stop()
+         throw new CacheLoaderException("Unable to compact log file " + f.file, e);
+      }
+
+      fileLock.writeLock().lock();
+      try {
+         if (logFiles.remove(f.id) == null) return;
+         f.close();
+         if (!f.file.delete()) log.problemsRemovingFile(f.file);
+      } finally {
+         fileLock.writeLock().unlock();
+      }
+   }
+
+   private boolean hasOlderLogFile(int fileId) {
+      for (Integer id : logFiles.keySet()) {
+         if (id < fileId) return true;
+      }
+      return false;
+   }
+
+   /**
+    * Opens all existing log files in the order they were written and replays their headers and keys into the index.  A
+    * record which was only partially written before a crash ends the scan of its file, and the file is truncated to its
+    * last complete record.
+    */
+   private void rebuildIndex() throws IOException, CacheLoaderException {
+      List<Integer> ids = new ArrayList<Integer>();
+      String[] names = root.list(LOG_FILE_FILTER);
+      if (names != null) {
+         for (String name : names) {
+            try {
+               ids.add(Integer.parseInt(name.substring(0, name.length() - LOG_FILE_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+               if (trace) log.tracef("Ignoring unexpected file %s", name);
+            }
+         }
+      }
+      Collections.sort(ids);
+
+      synchronized (appendLock) {
+         for (Integer id : ids) scan(openLogFile(id));
+         if (ids.isEmpty()) {
+            nextFileId = 0;
+            current = openLogFile(nextFileId++);
+         } else {
+            nextFileId = ids.get(ids.size() - 1) + 1;
+            current = logFiles.get(ids.get(ids.size() - 1));
+         }
+         for (LogFile f : logFiles.values()) {
+            if (isCompactionCandidate(f)) scheduleCompaction(f);
+         }
+      }
+      if (log.isDebugEnabled()) log.debugf("Rebuilt index of %d entries from %d log files", index.size(), ids.size());
+   }
+
+   private void scan(LogFile f) throws IOException, CacheLoaderException {
+      long fileSize = f.channel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      long offset = 0;
+      while (offset + HEADER_SIZE <= fileSize) {
+         header.clear();
+         readFully(f.channel, header, offset);
+         int keyLength = header.getInt(0);
+         int valueLength = header.getInt(4);
+         long expiryTime = header.getLong(8);
+         int length = HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+         if (keyLength < 0 || valueLength < TOMBSTONE || offset + length > fileSize) break;
+
+         ByteBuffer keyBytes = ByteBuffer.allocate(keyLength);
+         readFully(f.channel, keyBytes, offset + HEADER_SIZE);
+         Object key = unmarshall(keyBytes.array(), 0, keyLength);
+         EntryPosition previous;
+         if (valueLength == TOMBSTONE) {
+            previous = index.remove(key);
+            f.garbage += length;
+         } else {
+            previous = index.put(key, new EntryPosition(f.id, offset, length, expiryTime));
+         }
+         if (previous != null) logFiles.get(previous.fileId).garbage += previous.length;
+         offset += length;
+      }
+      if (offset < fileSize) {
+         log.debugf("Truncating incomplete record at offset %d of log file %s", offset, f.file);
+         f.channel.truncate(offset);
+      }
+      f.size = offset;
+   }
+
+   private LogFile openLogFile(int id) throws IOException {
+      LogFile f = new LogFile(id, new File(root, id + LOG_FILE_SUFFIX));
+      logFiles.put(id, f);
+      return f;
+   }
+
+   private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+      while (buffer.hasRemaining()) {
+         if (channel.read(buffer, position + buffer.position()) < 0)
+            throw new EOFException("Unexpected end of file at position " + (position + buffer.position()));
+      }
+   }
+
+   private byte[] marshall(Object o) throws CacheLoaderException {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to marshall " + o, e);
+      } catch (InterruptedException ie) {
+         Thread.currentThread().interrupt();
+         throw new CacheLoaderException("Interrupted while marshalling " + o, ie);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes, int offset, int length) throws CacheLoaderException {
+      try {
+         return marshaller.objectFromByteBuffer(bytes, offset, length);
+      } catch (IOException e) {
+         throw new CacheLoaderException("Unable to unmarshall key", e);
+      } catch (ClassNotFoundException e) {
+         throw new CacheLoaderException("Unable to unmarshall key", e);
+      }
+   }
+
+   /**
+    * Location of the most recent record of a key.
+    */
+   private static final class EntryPosition {
+      final int fileId;
+      final long offset;
+      final int length;
+      final long expiryTime;
+
+      EntryPosition(int fileId, long offset, int length, long expiryTime) {
+         this.fileId = fileId;
+         this.offset = offset;
+         this.length = length;
+         this.expiryTime = expiryTime;
+      }
+
+      boolean isExpired(long now) {
+         return expiryTime > 0 && expiryTime <= now;
+      }
+   }
+
+   private static final class LogFile {
+      final int id;
+      final File file;
+      final FileChannel channel;
+      /**
+       * Both only modified while holding the append lock.
+       */
+      long size;
+      long garbage;
+
+      LogFile(int id, File file) throws IOException {
+         this.id = id;
+         this.file = file;
+         this.channel = new RandomAccessFile(file, "rw").getChannel();
+      }
+
+      void close() {
+         try {
+            channel.close();
+         } catch (IOException e) {
+            if (trace) log.tracef("Unable to close log file %s", file);
+         }
+      }
+   }
+}
@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import org.infinispan.loaders.AbstractCacheStoreConfig;
+
+/**
+ * Configures {@link LogFileCacheStore}.
+ * <p/>
+ *    <ul>
+ *       <li><tt>location</tt> - a location on disk where the store can write its log files.  This defaults to
+ * <tt>Infinispan-LogFileCacheStore</tt> in the current working directory.</li>
+ *       <li><tt>maxLogFileSize</tt> - the size, in bytes, after which the store stops appending to a log file and starts
+ * a new one.  Only log files which are no longer appended to are compacted.  By default, this is set to
+ * <tt>16777216</tt> (16MB).</li>
+ *       <li><tt>compactionThreshold</tt> - the fraction of a log file which has to be made up of overwritten or removed
+ * entries before the live entries are copied out and the file is deleted.  By default, this is set to <tt>0.5</tt>.</li>
+ *       <li><tt>syncWrites</tt> - whether every write is forced to disk before returning.  By default, this is set to
+ * <tt>false</tt>, leaving it to the operating system to flush appended data.</li>
+ *    </ul>
+ *
+ * @since 5.0
+ */
+public class LogFileCacheStoreConfig extends AbstractCacheStoreConfig {
+
+   private static final long serialVersionUID = -2861407428497224567L;
+
+   private String location = "Infinispan-LogFileCacheStore";
+   private long maxLogFileSize = 16 * 1024 * 1024;
+   private double compactionThreshold = 0.5;
+   private boolean syncWrites = false;
+
+   public LogFileCacheStoreConfig() {
+      setCacheLoaderClassName(LogFileCacheStore.class.getName());
+   }
+
+   public String getLocation() {
+      return location;
+   }
+
+   /**
+    * @deprecated The visibility of this will be reduced, use {@link #location(String)}
+    */
+   @Deprecated
+   public void setLocation(String location) {
+      testImmutability("location");
+      this.location = location;
+   }
+
+   public LogFileCacheStoreConfig location(String location) {
+      setLocation(location);
+      return this;
+   }
+
+   public long getMaxLogFileSize() {
+      return maxLogFileSize;
+   }
+
+   /**
+    * @deprecated The visibility of this will be reduced, use {@link #maxLogFileSize(long)}
+    */
+   @Deprecated
+   public void setMaxLogFileSize(long maxLogFileSize) {
+      testImmutability("maxLogFileSize");
+      this.maxLogFileSize = maxLogFileSize;
+   }
+
+   public LogFileCacheStoreConfig maxLogFileSize(long maxLogFileSize) {
+      setMaxLogFileSize(maxLogFileSize);
+      return this;
+   }
+
+   public double getCompactionThreshold() {
+      return compactionThreshold;
+   }
+
+   /**
+    * @deprecated The visibility of this will be reduced, use {@link #compactionThreshold(double)}
+    */
+   @Deprecated
+   public void setCompactionThreshold(double compactionThreshold) {
+      testImmutability("compactionThreshold");
+      this.compactionThreshold = compactionThreshold;
+   }
+
+   public LogFileCacheStoreConfig compactionThreshold(double compactionThreshold) {
+      setCompactionThreshold(compactionThreshold);
+      return this;
+   }
+
+   public boolean isSyncWrites() {
+      return syncWrites;
+   }
+
+   /**
+    * @deprecated The visibility of this will be reduced, use {@link #syncWrites(boolean)}
+    */
+   @Deprecated
+   public void setSyncWrites(boolean syncWrites) {
+      testImmutability("syncWrites");
+      this.syncWrites = syncWrites;
+   }
+
+   public LogFileCacheStoreConfig syncWrites(boolean syncWrites) {
+      setSyncWrites(syncWrites);
+      return this;
+   }
+
+   // Method overrides below are used to make configuration more fluent.
+
+   @Override
+   public LogFileCacheStoreConfig purgeOnStartup(Boolean purgeOnStartup) {
+      super.purgeOnStartup(purgeOnStartup);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig purgeSynchronously(Boolean purgeSynchronously) {
+      super.purgeSynchronously(purgeSynchronously);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig fetchPersistentState(Boolean fetchPersistentState) {
+      super.fetchPersistentState(fetchPersistentState);
+      return this;
+   }
+
+   @Override
+   public LogFileCacheStoreConfig ignoreModifications(Boolean ignoreModifications) {
+      super.ignoreModifications(ignoreModifications);
+      return this;
+   }
+}
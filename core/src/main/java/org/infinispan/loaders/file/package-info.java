@@ -22,6 +22,7 @@
  */
 
 /**
- * Simple filesystem-based {@link CacheStore} implementation.
+ * Simple filesystem-based {@link CacheStore} implementations: a bucket-per-file store and an append-only,
+ * log-structured store.
  */
 package org.infinispan.loaders.file;
\ No newline at end of file
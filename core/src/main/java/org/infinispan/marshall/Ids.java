@@ -96,4 +96,11 @@ public interface Ids {
 
    int COMPLETE_TX_COMMAND = 71;
    int GET_IN_DOUBT_TX_INFO_COMMAND = 72;
+
+   int FINE_GRAINED_ATOMIC_HASH_MAP = 73;
+   int FINE_GRAINED_ATOMIC_MAP_SUB_KEY = 74;
+
+   int SEGMENTED_CONSISTENT_HASH = 75;
+
+   int FINE_GRAINED_ATOMIC_HASH_MAP_DELTA = 76;
 }
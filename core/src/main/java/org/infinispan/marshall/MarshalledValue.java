@@ -154,6 +154,15 @@ public class MarshalledValue {
       return raw;
    }
 
+   /**
+    * Returns the serialized form of this value without serializing it if that has not happened yet.
+    *
+    * @return the serialized form, or null if this value is currently only held as an instance
+    */
+   public byte[] peekRaw() {
+      return raw;
+   }
+
    /**
     * Returns the 'cached' instance. Impl note: this method is synchronized so that it synchronizez with the code that
     * nullifies the instance.
@@ -31,7 +31,10 @@ import org.infinispan.commands.control.RehashControlCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.IntermediateResultsCommand;
 import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.read.ReduceCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
 import org.infinispan.commands.remote.recovery.GetInDoubtTransactionsCommand;
@@ -117,10 +120,11 @@ public class ReplicableCommandExternalizer extends AbstractExternalizer<Replicab
    @Override
    public Set<Class<? extends ReplicableCommand>> getTypeClasses() {
        Set<Class<? extends ReplicableCommand>> coreCommands = Util.asSet(
-            MapReduceCommand.class, DistributedExecuteCommand.class,    
+            MapReduceCommand.class, IntermediateResultsCommand.class, ReduceCommand.class,
+            DistributedExecuteCommand.class,
             LockControlCommand.class, RehashControlCommand.class,
             StateTransferControlCommand.class, GetKeyValueCommand.class,
-            ClusteredGetCommand.class, MultipleRpcCommand.class,
+            ClusteredGetCommand.class, ClusteredGetAllCommand.class, MultipleRpcCommand.class,
             SingleRpcCommand.class, CommitCommand.class,
             PrepareCommand.class, RollbackCommand.class,
             ClearCommand.class, EvictCommand.class,
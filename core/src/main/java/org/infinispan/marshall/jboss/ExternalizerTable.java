@@ -26,6 +26,8 @@ package org.infinispan.marshall.jboss;
 import org.infinispan.CacheException;
 import org.infinispan.atomic.AtomicHashMap;
 import org.infinispan.atomic.AtomicHashMapDelta;
+import org.infinispan.atomic.FineGrainedAtomicHashMap;
+import org.infinispan.atomic.FineGrainedAtomicHashMapDelta;
 import org.infinispan.atomic.ClearOperation;
 import org.infinispan.atomic.PutOperation;
 import org.infinispan.atomic.RemoveOperation;
@@ -45,6 +47,7 @@ import org.infinispan.container.entries.TransientMortalCacheValue;
 import org.infinispan.distribution.RemoteTransactionLogDetails;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
 import org.infinispan.distribution.ch.NodeTopologyInfo;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.distribution.ch.UnionConsistentHash;
 import org.infinispan.distribution.ch.VirtualAddress;
@@ -164,10 +167,14 @@ class ExternalizerTable implements ObjectTable {
       internalExternalizers.add(new PutOperation.Externalizer());
       internalExternalizers.add(new RemoveOperation.Externalizer());
       internalExternalizers.add(new ClearOperation.Externalizer());
+      internalExternalizers.add(new FineGrainedAtomicHashMap.Externalizer());
+      internalExternalizers.add(new FineGrainedAtomicHashMap.SubKey.Externalizer());
+      internalExternalizers.add(new FineGrainedAtomicHashMapDelta.Externalizer());
       internalExternalizers.add(new DefaultConsistentHash.Externalizer());
       internalExternalizers.add(new UnionConsistentHash.Externalizer());
       internalExternalizers.add(new NodeTopologyInfo.Externalizer());
       internalExternalizers.add(new TopologyAwareConsistentHash.Externalizer());
+      internalExternalizers.add(new SegmentedConsistentHash.Externalizer());
       internalExternalizers.add(new ByteArrayKey.Externalizer());
 
       internalExternalizers.add(new RemoteTransactionLogDetails.Externalizer());
@@ -0,0 +1,212 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies, expressed in nanoseconds.
+ * <p/>
+ * Values are counted in log-linear buckets: each power of two is split in {@link #SUB_BUCKETS} equally sized buckets,
+ * so that a reported percentile is never more than 12.5% above the real value. Latencies above 2<sup>40</sup> ns
+ * (about 18 minutes) all fall in the last bucket, although the maximum is still tracked exactly.
+ * <p/>
+ * In order to spread the updates of concurrent threads, the histogram is split in up to four stripes,
+ * and a thread records in the stripe picked by its id. Threads whose ids map to the same stripe still share its
+ * counters, so striping lowers contention rather than removing it. Stripes are only summed up when a {@link Snapshot}
+ * is taken; the count and total, which statistics read far more often than percentiles, are kept in dedicated slots so
+ * that {@link #getCount()} and {@link #getTotal()} do not need a snapshot. Snapshots and {@link #reset()} are not atomic
+ * with respect to concurrent recordings, which is fine for statistics.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class LatencyHistogram {
+
+   static final int SUB_BUCKET_BITS = 3;
+   static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   static final int MAX_MAGNITUDE = 40;
+   static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+   private static final int SUM = BUCKETS;
+   private static final int MAX = BUCKETS + 1;
+   private static final int COUNT = BUCKETS + 2;
+   // the extra slots keep the hot count, sum and max of a stripe away from the first buckets of the next one
+   private static final int STRIPE_LENGTH = BUCKETS + 16;
+   private static final int MAX_STRIPES = 4;
+
+   private final AtomicLongArray counters;
+   private final int stripeMask;
+
+   public LatencyHistogram() {
+      int stripes = 1;
+      while (stripes < MAX_STRIPES && stripes < Runtime.getRuntime().availableProcessors()) stripes <<= 1;
+      stripeMask = stripes - 1;
+      counters = new AtomicLongArray(stripes * STRIPE_LENGTH);
+   }
+
+   /**
+    * Records one operation which took the given number of nanoseconds.
+    */
+   public void record(long nanos) {
+      record(nanos, 1);
+   }
+
+   /**
+    * Records <tt>samples</tt> operations, each of which took the given number of nanoseconds.
+    */
+   public void record(long nanos, long samples) {
+      if (samples <= 0) return;
+      if (nanos < 0) nanos = 0;
+      int base = (int) (Thread.currentThread().getId() & stripeMask) * STRIPE_LENGTH;
+      counters.addAndGet(base + bucketIndex(nanos), samples);
+      counters.addAndGet(base + SUM, nanos * samples);
+      counters.addAndGet(base + COUNT, samples);
+      int maxIndex = base + MAX;
+      long max;
+      while (nanos > (max = counters.get(maxIndex)) && !counters.compareAndSet(maxIndex, max, nanos)) {
+         // retry, another thread raised the max concurrently
+      }
+   }
+
+   /**
+    * Returns the number of operations recorded, without taking a snapshot.
+    */
+   public long getCount() {
+      return sumStripes(COUNT);
+   }
+
+   /**
+    * Returns the total latency of the operations recorded, in nanoseconds, without taking a snapshot.
+    */
+   public long getTotal() {
+      return sumStripes(SUM);
+   }
+
+   private long sumStripes(int slot) {
+      long total = 0;
+      for (int base = 0; base < counters.length(); base += STRIPE_LENGTH) total += counters.get(base + slot);
+      return total;
+   }
+
+   public Snapshot snapshot() {
+      long[] buckets = new long[BUCKETS];
+      long sum = 0;
+      long max = 0;
+      for (int base = 0; base < counters.length(); base += STRIPE_LENGTH) {
+         for (int i = 0; i < BUCKETS; i++) buckets[i] += counters.get(base + i);
+         sum += counters.get(base + SUM);
+         max = Math.max(max, counters.get(base + MAX));
+      }
+      return new Snapshot(buckets, sum, max);
+   }
+
+   public void reset() {
+      for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+   }
+
+   static int bucketIndex(long nanos) {
+      if (nanos < SUB_BUCKETS) return (int) nanos;
+      int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+      if (magnitude > MAX_MAGNITUDE) return BUCKETS - 1;
+      int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+   }
+
+   /**
+    * Returns the highest value which falls in the given bucket.
+    */
+   static long bucketUpperBound(int index) {
+      if (index < SUB_BUCKETS) return index;
+      int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      int subBucket = index % SUB_BUCKETS;
+      return ((SUB_BUCKETS + subBucket + 1L) << (magnitude - SUB_BUCKET_BITS)) - 1;
+   }
+
+   /**
+    * A point in time copy of a {@link LatencyHistogram}. All values are expressed in nanoseconds.
+    */
+   @Immutable
+   public static final class Snapshot {
+      static final Snapshot EMPTY = new Snapshot(new long[BUCKETS], 0, 0);
+
+      private final long[] buckets;
+      private final long count;
+      private final long sum;
+      private final long max;
+
+      Snapshot(long[] buckets, long sum, long max) {
+         long count = 0;
+         for (long b : buckets) count += b;
+         this.buckets = buckets;
+         this.count = count;
+         this.sum = sum;
+         this.max = max;
+      }
+
+      public long getCount() {
+         return count;
+      }
+
+      public long getTotal() {
+         return sum;
+      }
+
+      public long getMax() {
+         return max;
+      }
+
+      public long getMean() {
+         return count == 0 ? 0 : sum / count;
+      }
+
+      /**
+       * Returns the latency below which the given percentage of the operations fall, e.g. 99.9 for the 99.9th
+       * percentile, or 0 if no operation was recorded.
+       */
+      public long getPercentile(double percentile) {
+         if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, but was " + percentile);
+         if (count == 0) return 0;
+         long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+         long seen = 0;
+         for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return Math.min(bucketUpperBound(i), max);
+         }
+         return max;
+      }
+
+      /**
+       * Returns a snapshot holding the operations of both this snapshot and the given one.
+       */
+      public Snapshot merge(Snapshot other) {
+         long[] merged = new long[BUCKETS];
+         for (int i = 0; i < BUCKETS; i++) merged[i] = buckets[i] + other.buckets[i];
+         return new Snapshot(merged, sum + other.sum, Math.max(max, other.max));
+      }
+   }
+}
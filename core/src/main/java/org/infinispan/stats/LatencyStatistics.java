@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+
+/**
+ * Per cache registry of the latency histograms of the main cache operations. The interceptors measuring an operation
+ * record its duration here, and {@link org.infinispan.interceptors.CacheMgmtInterceptor} exposes the resulting
+ * percentiles over JMX.
+ * <p/>
+ * Each operation has a histogram covering everything since the statistics were last reset, and one covering only the
+ * last {@link #WINDOW_MILLIS} milliseconds. Nothing is allocated, and nothing is recorded, unless JMX statistics are
+ * exposed for the cache.
+ *
+ * @since 5.0
+ */
+@Scope(Scopes.NAMED_CACHE)
+public class LatencyStatistics {
+
+   public static enum Operation {
+      GET_HIT, GET_MISS, PUT, REMOVE, PUT_MAP, REMOTE_GET, STORE_LOAD
+   }
+
+   public static final long WINDOW_MILLIS = 60000;
+   private static final int WINDOW_INTERVALS = 4;
+
+   private Configuration configuration;
+   private volatile boolean enabled;
+   private LatencyHistogram[] totals;
+   private WindowedLatencyHistogram[] recent;
+
+   @Inject
+   public void injectConfiguration(Configuration configuration) {
+      this.configuration = configuration;
+   }
+
+   @Start
+   public void start() {
+      if (configuration.isExposeJmxStatistics()) {
+         Operation[] operations = Operation.values();
+         totals = new LatencyHistogram[operations.length];
+         recent = new WindowedLatencyHistogram[operations.length];
+         for (int i = 0; i < operations.length; i++) {
+            totals[i] = new LatencyHistogram();
+            recent[i] = new WindowedLatencyHistogram(WINDOW_MILLIS, WINDOW_INTERVALS);
+         }
+         enabled = true;
+      }
+   }
+
+   /**
+    * Returns whether latencies are being recorded. Callers can check it to avoid reading the clock needlessly.
+    */
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   public void record(Operation operation, long nanos) {
+      record(operation, nanos, 1);
+   }
+
+   /**
+    * Records <tt>samples</tt> executions of the given operation, each of which took <tt>nanos</tt> nanoseconds.
+    */
+   public void record(Operation operation, long nanos, long samples) {
+      if (enabled) {
+         totals[operation.ordinal()].record(nanos, samples);
+         recent[operation.ordinal()].record(nanos, samples);
+      }
+   }
+
+   /**
+    * Returns the latencies of the given operation since the statistics were last reset.
+    */
+   public LatencyHistogram.Snapshot getSnapshot(Operation operation) {
+      return enabled ? totals[operation.ordinal()].snapshot() : LatencyHistogram.Snapshot.EMPTY;
+   }
+
+   /**
+    * Returns the number of executions of the given operation since the statistics were last reset. Cheaper than
+    * taking a snapshot.
+    */
+   public long getCount(Operation operation) {
+      return enabled ? totals[operation.ordinal()].getCount() : 0;
+   }
+
+   /**
+    * Returns the total time, in nanoseconds, spent in the given operation since the statistics were last reset.
+    * Cheaper than taking a snapshot.
+    */
+   public long getTotal(Operation operation) {
+      return enabled ? totals[operation.ordinal()].getTotal() : 0;
+   }
+
+   /**
+    * Returns the latencies of the given operation during the last {@link #WINDOW_MILLIS} milliseconds.
+    */
+   public LatencyHistogram.Snapshot getRecentSnapshot(Operation operation) {
+      return enabled ? recent[operation.ordinal()].snapshot() : LatencyHistogram.Snapshot.EMPTY;
+   }
+
+   public void reset() {
+      if (enabled) {
+         for (LatencyHistogram h : totals) h.reset();
+         for (WindowedLatencyHistogram h : recent) h.reset();
+      }
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link LatencyHistogram} which only reports the operations recorded during a recent window of time.
+ * <p/>
+ * The window is split in a number of intervals, each having its own histogram. Recordings go to the histogram of the
+ * current interval, which gets reset when it is reused for a new interval. A snapshot therefore covers at least
+ * <tt>(intervals - 1) * intervalMillis</tt> and at most <tt>intervals * intervalMillis</tt> milliseconds. A few
+ * operations recorded at the exact moment an interval is rolled over might be lost.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class WindowedLatencyHistogram {
+
+   private final long intervalMillis;
+   private final LatencyHistogram[] histograms;
+   private final AtomicLongArray intervalOfHistogram;
+
+   public WindowedLatencyHistogram(long windowMillis, int intervals) {
+      if (intervals < 1 || windowMillis < intervals)
+         throw new IllegalArgumentException("Invalid window of " + windowMillis + " ms split in " + intervals + " intervals");
+      this.intervalMillis = windowMillis / intervals;
+      this.histograms = new LatencyHistogram[intervals];
+      for (int i = 0; i < intervals; i++) histograms[i] = new LatencyHistogram();
+      this.intervalOfHistogram = new AtomicLongArray(intervals);
+   }
+
+   public void record(long nanos, long samples) {
+      long interval = System.currentTimeMillis() / intervalMillis;
+      int index = (int) (interval % histograms.length);
+      long current = intervalOfHistogram.get(index);
+      if (current < interval && intervalOfHistogram.compareAndSet(index, current, interval)) {
+         histograms[index].reset();
+      }
+      histograms[index].record(nanos, samples);
+   }
+
+   public LatencyHistogram.Snapshot snapshot() {
+      long interval = System.currentTimeMillis() / intervalMillis;
+      LatencyHistogram.Snapshot snapshot = LatencyHistogram.Snapshot.EMPTY;
+      for (int i = 0; i < histograms.length; i++) {
+         if (intervalOfHistogram.get(i) > interval - histograms.length) {
+            snapshot = snapshot.merge(histograms[i].snapshot());
+         }
+      }
+      return snapshot;
+   }
+
+   public long getWindowMillis() {
+      return intervalMillis * histograms.length;
+   }
+
+   public void reset() {
+      for (int i = 0; i < histograms.length; i++) {
+         intervalOfHistogram.set(i, 0);
+         histograms[i].reset();
+      }
+   }
+}
@@ -236,12 +236,22 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       volatile V value;
       final HashEntry<K, V> next;
       volatile Recency state;
+      /**
+       * Estimated memory footprint of key and value, only maintained when the map is bounded by memory.
+       * Always accessed while holding the segment lock.
+       */
+      long size;
 
       HashEntry(K key, int hash, HashEntry<K, V> next, V value) {
+         this(key, hash, next, value, 0);
+      }
+
+      HashEntry(K key, int hash, HashEntry<K, V> next, V value, long size) {
          this.key = key;
          this.hash = hash;
          this.next = next;
          this.value = value;
+         this.size = size;
          this.state = Recency.HIR_RESIDENT;
       }
 
@@ -302,13 +312,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       LRU {
          @Override
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
-            return new LRU<K, V>(s,capacity,lf,capacity*10,lf);
+            return new LRU<K, V>(s,capacity,lf,Math.min(capacity, EvictionPolicy.MAX_BATCH_SIZE)*10,lf);
          }
       },
       LIRS {
          @Override
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
-            return new LIRS<K,V>(s,capacity,capacity*10,lf);
+            return new LIRS<K,V>(s,capacity,Math.min(capacity, EvictionPolicy.MAX_BATCH_SIZE)*10,lf);
          }
       };
 
@@ -326,6 +336,21 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
    }
 
+   /**
+    * Estimates the memory footprint of a mapping. Used to bound segments by memory rather than, or in addition to,
+    * their number of entries.
+    */
+   public interface SizeEstimator<K, V> {
+      /**
+       * Estimates the number of bytes taken by the given key and value.
+       * <p>
+       * Invoked while holding a lock on Segment, hence it should be cheap.
+       *
+       * @return estimated size of the mapping in bytes, never negative
+       */
+      long estimateSize(K key, V value);
+   }
+
    public interface EvictionPolicy<K, V> {
 
       public final static int MAX_BATCH_SIZE = 64;
@@ -466,7 +491,10 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             }
             while (isOverflow()) {
                HashEntry<K, V> first = lruQueue.getLast();
-               segment.remove(first.key, first.hash, null);
+               if (segment.remove(first.key, first.hash, null) == null) {
+                  // make sure progress is made even if the entry was already gone from the segment
+                  lruQueue.remove(first);
+               }
                evicted.add(first);
             }
          } finally {
@@ -476,7 +504,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
 
       private boolean isOverflow() {
-         return lruQueue.size() > trimDownSize;
+         return lruQueue.size() > trimDownSize || (!lruQueue.isEmpty() && segment.isMemoryOverflow());
       }
 
       @Override
@@ -567,12 +595,55 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                }
             }
             removeFromSegment(evicted);
+            evictWhileMemoryOverflow(evicted);
          } finally {
             accessQueue.clear();
          }
          return evicted;
       }
 
+      /**
+       * Evicts HIR resident entries, oldest first, and then the bottom of the LIRS stack, until the segment fits in
+       * its memory budget. Non resident entries have already left the segment, so they are pruned from the stack
+       * rather than evicted again; otherwise a map bounded by memory only, whose HIR limit is never reached, would
+       * accumulate them forever.
+       */
+      private void evictWhileMemoryOverflow(Set<HashEntry<K, V>> evicted) {
+         if (!segment.isMemoryOverflow()) {
+            return;
+         }
+         pruneNonResident();
+         while (segment.isMemoryOverflow()) {
+            HashEntry<K, V> victim = queue.isEmpty() ? bottomResident() : queue.getFirst();
+            if (victim == null) {
+               break;
+            }
+            if (segment.remove(victim.key, victim.hash, null) != null) {
+               evicted.add(victim);
+            } else {
+               // make sure progress is made even if the entry was already gone from the segment
+               onEntryRemove(victim);
+            }
+         }
+      }
+
+      private void pruneNonResident() {
+         for (Iterator<HashEntry<K, V>> i = stack.values().iterator(); i.hasNext();) {
+            if (i.next().recency() == Recency.HIR_NONRESIDENT) {
+               i.remove();
+            }
+         }
+      }
+
+      private HashEntry<K, V> bottomResident() {
+         for (HashEntry<K, V> e : stack.values()) {
+            if (e.recency() != Recency.HIR_NONRESIDENT) {
+               return e;
+            }
+         }
+         return null;
+      }
+
       private void handleHIRHit(HashEntry<K, V> e, Set<HashEntry<K, V>> evicted) {
          boolean inStack = stack.containsKey(e.key);
          if (inStack) {
@@ -795,13 +866,63 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
       transient final EvictionListener<K, V> evictionListener;
 
+      /**
+       * Estimates the memory footprint of mappings, null unless this segment is bounded by memory.
+       */
+      transient final SizeEstimator<K, V> sizeEstimator;
+
+      /**
+       * Upper bound for the estimated memory footprint of this segment, -1 if unbounded.
+       */
+      final long maxMemory;
+
+      /**
+       * The estimated memory footprint of the mappings in this segment. Only written while holding the lock.
+       */
+      transient volatile long memory;
+
+      /**
+       * Whether the number of entries of this segment is bounded by the size of its table. Segments only bounded by
+       * memory grow their table as needed instead.
+       */
+      final boolean boundedByCount;
+
       Segment(int cap, float lf, Eviction es, EvictionListener<K, V> listener) {
+         this(cap, lf, es, listener, -1, null, true);
+      }
+
+      Segment(int cap, float lf, Eviction es, EvictionListener<K, V> listener, long maxMemory,
+            SizeEstimator<K, V> sizeEstimator, boolean boundedByCount) {
          loadFactor = lf;
-         eviction = es.make(this, cap, lf);
+         this.maxMemory = maxMemory;
+         this.sizeEstimator = sizeEstimator;
+         this.boundedByCount = boundedByCount;
+         eviction = es.make(this, boundedByCount ? cap : MAXIMUM_CAPACITY, lf);
          evictionListener = listener;
          setTable(HashEntry.<K, V> newArray(cap));
       }
 
+      boolean isMemoryOverflow() {
+         return maxMemory > -1 && memory > maxMemory;
+      }
+
+      private long sizeOf(K key, V value) {
+         return sizeEstimator == null ? 0 : sizeEstimator.estimateSize(key, value);
+      }
+
+      /**
+       * Sets the value of an entry, keeping the memory footprint of the segment up to date.
+       * Call only while holding lock.
+       */
+      private void setValue(HashEntry<K, V> e, V value) {
+         if (sizeEstimator != null) {
+            long size = sizeOf(e.key, value);
+            memory += size - e.size;
+            e.size = size;
+         }
+         e.value = value;
+      }
+
       @SuppressWarnings("unchecked")
       static final <K,V> Segment<K,V>[] newArray(int i) {
          return new Segment[i];
@@ -920,8 +1041,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             boolean replaced = false;
             if (e != null && oldValue.equals(e.value)) {
                replaced = true;
-               e.value = newValue;
-               if (eviction.onEntryHit(e)) {
+               setValue(e, newValue);
+               if (eviction.onEntryHit(e) || isMemoryOverflow()) {
                   evicted = attemptEviction(true);
                }
             }
@@ -944,8 +1065,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             V oldValue = null;
             if (e != null) {
                oldValue = e.value;
-               e.value = newValue;
-               if (eviction.onEntryHit(e)) {
+               setValue(e, newValue);
+               if (eviction.onEntryHit(e) || isMemoryOverflow()) {
                   evicted = attemptEviction(true);
                }
             }
@@ -961,7 +1082,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          Set<HashEntry<K, V>> evicted = null;
          try {
             int c = count;
-            if (c++ > threshold && eviction.strategy() == Eviction.NONE) {
+            if (c++ > threshold && (eviction.strategy() == Eviction.NONE || !boundedByCount)) {
                rehash();
             }
             HashEntry<K, V>[] tab = table;
@@ -976,33 +1097,34 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
             if (e != null) {
                oldValue = e.value;
                if (!onlyIfAbsent) {
-                  e.value = value;
+                  setValue(e, value);
                   eviction.onEntryHit(e);
+                  if (isMemoryOverflow()) {
+                     evicted = eviction.execute();
+                  }
                }
             } else {
                oldValue = null;
                ++modCount;
                count = c; // write-volatile
+               long size = sizeOf(key, value);
+               memory += size;
                if (eviction.strategy() != Eviction.NONE) {
-                  if (c > tab.length) {
+                  if (boundedByCount && c > tab.length) {
                      // remove entries;lower count
                      evicted = eviction.execute();
                      // re-read first
                      first = tab[index];
                   }
                   // add a new entry
-                  tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  tab[index] = new HashEntry<K, V>(key, hash, first, value, size);
                   // notify a miss
-                  Set<HashEntry<K, V>> newlyEvicted = eviction.onEntryMiss(tab[index]);
-                  if (!newlyEvicted.isEmpty()) {
-                     if (evicted != null) {
-                        evicted.addAll(newlyEvicted);
-                     } else {
-                        evicted = newlyEvicted;
-                     }
+                  evicted = merge(evicted, eviction.onEntryMiss(tab[index]));
+                  if (isMemoryOverflow()) {
+                     evicted = merge(evicted, eviction.execute());
                   }
                } else {
-                  tab[index] = new HashEntry<K, V>(key, hash, first, value);
+                  tab[index] = new HashEntry<K, V>(key, hash, first, value, size);
                }
             }
             return oldValue;
@@ -1068,7 +1190,8 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                      int k = p.hash & sizeMask;
                      HashEntry<K,V> n = newTable[k];
                      newTable[k] = new HashEntry<K,V>(p.key, p.hash,
-                           n, p.value);
+                           n, p.value, p.size);
+                     newTable[k].state = p.state;
                   }
                }
             }
@@ -1103,12 +1226,13 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
 
                   // e was removed
                   eviction.onEntryRemove(e);
+                  memory -= e.size;
 
                   HashEntry<K, V> newFirst = e.next;
                   for (HashEntry<K, V> p = first; p != e; p = p.next) {
                      // allow p to be GC-ed
                      eviction.onEntryRemove(p);
-                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value);
+                     newFirst = new HashEntry<K, V>(p.key, p.hash, newFirst, p.value, p.size);
                      // and notify eviction algorithm about new hash entries
                      eviction.onEntryMiss(newFirst);
                   }
@@ -1133,6 +1257,7 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
                }
                ++modCount;
                eviction.clear();
+               memory = 0;
                count = 0; // write-volatile
             } finally {
                unlock();
@@ -1140,6 +1265,18 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          }
       }
 
+      private Set<HashEntry<K, V>> merge(Set<HashEntry<K, V>> evicted, Set<HashEntry<K, V>> newlyEvicted) {
+         if (newlyEvicted.isEmpty()) {
+            return evicted;
+         }
+         if (evicted == null || evicted.isEmpty()) {
+            return newlyEvicted;
+         }
+         Set<HashEntry<K, V>> merged = new HashSet<HashEntry<K, V>>(evicted);
+         merged.addAll(newlyEvicted);
+         return merged;
+      }
+
       private Set<HashEntry<K, V>> attemptEviction(boolean lockedAlready) {
          Set<HashEntry<K, V>> evicted = null;
          boolean obtainedLock = !lockedAlready ? tryLock() : true;
@@ -1205,16 +1342,61 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
     */
    public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
          Eviction evictionStrategy, EvictionListener<K, V> evictionListener) {
-      if (capacity < 0 || concurrencyLevel <= 0) {
+      this(capacity, concurrencyLevel, evictionStrategy, evictionListener, -1, null);
+   }
+
+   /**
+    * Creates a new, empty map with the specified maximum capacity, maximum memory footprint, load factor and
+    * concurrency level. Each segment is bounded by its share of both the capacity and the estimated memory
+    * footprint, and evicts entries using the given eviction strategy as soon as either bound is exceeded.
+    *
+    * @param capacity
+    *            is the upper bound capacity for the number of elements in this map, or zero or less to bound the map
+    *            by memory only, in which case maxMemory must be bounded
+    *
+    * @param concurrencyLevel
+    *            the estimated number of concurrently updating threads. The implementation performs
+    *            internal sizing to try to accommodate this many threads.
+    *
+    * @param evictionStrategy
+    *            the algorithm used to evict elements from this map
+    *
+    * @param evictionListener
+    *            the evicton listener callback to be notified about evicted elements
+    *
+    * @param maxMemory
+    *            is the upper bound, in bytes, for the estimated memory footprint of this map, -1 if unbounded
+    *
+    * @param sizeEstimator
+    *            estimates the memory footprint of mappings, required if maxMemory is bounded
+    *
+    * @throws IllegalArgumentException
+    *             if the capacity is negative while maxMemory is unbounded, or the load factor or concurrencyLevel
+    *             are nonpositive, or if maxMemory is bounded and no size estimator is given.
+    */
+   public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
+         Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
+         long maxMemory, SizeEstimator<K, V> sizeEstimator) {
+      boolean boundedByCount = maxMemory < 0 || capacity > 0;
+      if ((boundedByCount && capacity < 0) || concurrencyLevel <= 0) {
          throw new IllegalArgumentException();
       }
 
-      concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
-      concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
+      if (maxMemory > -1 && (sizeEstimator == null || evictionStrategy == Eviction.NONE)) {
+         throw new IllegalArgumentException("Bounding by memory requires a size estimator and an eviction strategy");
+      }
+
+      if (boundedByCount) {
+         concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
+         concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
 
-      // minimum two elements per segment
-      if (capacity < concurrencyLevel * 2 && capacity != 1) {
-         throw new IllegalArgumentException("Maximum capacity has to be at least twice the concurrencyLevel");
+         // minimum two elements per segment
+         if (capacity < concurrencyLevel * 2 && capacity != 1) {
+            throw new IllegalArgumentException("Maximum capacity has to be at least twice the concurrencyLevel");
+         }
+      } else {
+         // the segment tables grow as needed, so start from the default size
+         capacity = DEFAULT_MAXIMUM_CAPACITY;
       }
 
       if (evictionStrategy == null || evictionListener == null) {
@@ -1248,8 +1430,17 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
          cap <<= 1;
       }
 
+      long segmentMaxMemory = -1;
+      if (maxMemory > -1) {
+         segmentMaxMemory = maxMemory / ssize;
+         if (segmentMaxMemory * ssize < maxMemory) {
+            ++segmentMaxMemory;
+         }
+      }
+
       for (int i = 0; i < this.segments.length; ++i) {
-         this.segments[i] = new Segment<K, V>(cap, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener);
+         this.segments[i] = new Segment<K, V>(cap, DEFAULT_LOAD_FACTOR, evictionStrategy, evictionListener,
+               segmentMaxMemory, sizeEstimator, boundedByCount);
       }
    }
 
@@ -1412,6 +1603,22 @@ public class BoundedConcurrentHashMap<K, V> extends AbstractMap<K, V>
       }
    }
 
+   /**
+    * Returns the estimated memory footprint, in bytes, of the mappings in this map. Only maintained
+    * when the map was created with a {@link SizeEstimator}, otherwise returns 0. The value is a
+    * sum of per-segment counters read without locking, so it is only approximate under concurrent
+    * modification.
+    *
+    * @return the estimated memory footprint of this map
+    */
+   public long estimatedMemorySize() {
+      long sum = 0;
+      for (Segment<K, V> segment : segments) {
+         sum += segment.memory;
+      }
+      return sum;
+   }
+
    /**
     * Returns the value to which the specified key is mapped,
     * or {@code null} if this map contains no mapping for the key.
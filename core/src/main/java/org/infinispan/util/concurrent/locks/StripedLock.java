@@ -26,7 +26,9 @@ import net.jcip.annotations.ThreadSafe;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -150,23 +152,44 @@ public class StripedLock {
    }
 
    /**
-    * Releases locks on all keys passed in.  Makes multiple calls to {@link #releaseLock(Object)}. This method is
-    * idempotent.
+    * Releases locks on all keys passed in, as acquired by {@link #acquireAllLocks(java.util.Collection, boolean)}.
     *
     * @param keys keys to unlock
     */
-   public void releaseAllLocks(List<Object> keys) {
-      for (Object k : keys) releaseLock(k);
+   public void releaseAllLocks(Collection<?> keys) {
+      for (int index : lockIndexes(keys)) {
+         ReentrantReadWriteLock lock = sharedLocks[index];
+         if (lock.isWriteLockedByCurrentThread()) {
+            lock.writeLock().unlock();
+         } else {
+            lock.readLock().unlock();
+         }
+      }
    }
 
    /**
-    * Acquires locks on keys passed in.  Makes multiple calls to {@link #acquireLock(Object, boolean)}
+    * Acquires locks on keys passed in. Each of the underlying shared locks is acquired once, in a fixed order, so that
+    * two threads locking overlapping sets of keys cannot deadlock.
     *
-    * @param keys      keys to unlock
+    * @param keys      keys to lock
     * @param exclusive whether locks are exclusive.
     */
-   public void acquireAllLocks(List<Object> keys, boolean exclusive) {
-      for (Object k : keys) acquireLock(k, exclusive);
+   public void acquireAllLocks(Collection<?> keys, boolean exclusive) {
+      for (int index : lockIndexes(keys)) {
+         ReentrantReadWriteLock lock = sharedLocks[index];
+         if (exclusive) {
+            lock.writeLock().lock();
+         } else {
+            lock.readLock().lock();
+         }
+      }
+      if (log.isTraceEnabled()) log.tracef("%s acquired for %s", exclusive ? "WL" : "RL", keys);
+   }
+
+   private SortedSet<Integer> lockIndexes(Collection<?> keys) {
+      SortedSet<Integer> indexes = new TreeSet<Integer>();
+      for (Object k : keys) indexes.add(hashToIndex(k));
+      return indexes;
    }
 
    /**
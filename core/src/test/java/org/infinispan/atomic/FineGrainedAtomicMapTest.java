@@ -0,0 +1,188 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.atomic;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.util.HashMap;
+import java.util.Map;
+
+@Test(groups = "functional", testName = "atomic.FineGrainedAtomicMapTest")
+public class FineGrainedAtomicMapTest extends AbstractInfinispanTest {
+   Cache<String, Object> cache;
+   TransactionManager tm;
+   private EmbeddedCacheManager cm;
+
+   @BeforeMethod
+   public void setUp() {
+      Configuration c = new Configuration();
+      c.setInvocationBatchingEnabled(true);
+      c.setLockAcquisitionTimeout(100);
+      cm = TestCacheManagerFactory.createCacheManager(c, true);
+      cache = cm.getCache();
+      tm = TestingUtil.getTransactionManager(cache);
+   }
+
+   @AfterMethod
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cm);
+      cache = null;
+      tm = null;
+   }
+
+   public void testChanges() {
+      AtomicMap<String, String> map = AtomicMapLookup.getFineGrainedAtomicMap(cache, "key");
+      assert map.isEmpty();
+      map.put("a", "1");
+      map.put("b", "2");
+      assert "1".equals(map.put("a", "3"));
+      assert "2".equals(map.remove("b"));
+      Map<String, String> others = new HashMap<String, String>();
+      others.put("c", "4");
+      others.put("d", "5");
+      map.putAll(others);
+
+      AtomicMap<String, String> reread = AtomicMapLookup.getFineGrainedAtomicMap(cache, "key");
+      assert reread.size() == 3 : "Unexpected contents " + reread.entrySet();
+      assert "3".equals(reread.get("a"));
+      assert !reread.containsKey("b");
+      assert "4".equals(reread.get("c"));
+
+      reread.clear();
+      assert AtomicMapLookup.getFineGrainedAtomicMap(cache, "key").isEmpty();
+   }
+
+   public void testTxChangesAreIsolated() throws Exception {
+      AtomicMap<String, String> map = AtomicMapLookup.getFineGrainedAtomicMap(cache, "key");
+      map.put("a", "1");
+
+      tm.begin();
+      map.put("a", "2");
+      map.put("b", "3");
+      assert "2".equals(map.get("a"));
+      assert map.size() == 2;
+      Transaction t = tm.suspend();
+
+      assert "1".equals(map.get("a"));
+      assert !map.containsKey("b");
+
+      tm.resume(t);
+      tm.commit();
+      assert "2".equals(map.get("a"));
+      assert "3".equals(map.get("b"));
+   }
+
+   public void testRollback() throws Exception {
+      AtomicMap<String, String> map = AtomicMapLookup.getFineGrainedAtomicMap(cache, "key");
+      map.put("a", "1");
+
+      tm.begin();
+      map.put("a", "2");
+      map.remove("a");
+      assert !map.containsKey("a");
+      tm.rollback();
+
+      assert "1".equals(map.get("a"));
+   }
+
+   public void testWritersOfDifferentSubKeysDoNotBlock() throws Exception {
+      AtomicMap<String, String> map = AtomicMapLookup.getFineGrainedAtomicMap(cache, "key");
+
+      tm.begin();
+      map.put("a", "1");
+      Transaction first = tm.suspend();
+
+      tm.begin();
+      map.put("b", "2");
+      tm.commit();
+
+      tm.resume(first);
+      tm.commit();
+
+      assert "1".equals(map.get("a"));
+      assert "2".equals(map.get("b"));
+   }
+
+   public void testWritersOfTheSameSubKeyConflict() throws Exception {
+      AtomicMap<String, String> map = AtomicMapLookup.getFineGrainedAtomicMap(cache, "key");
+
+      tm.begin();
+      map.put("a", "1");
+      Transaction first = tm.suspend();
+
+      tm.begin();
+      try {
+         map.put("a", "2");
+         assert false : "The sub-key should have been locked";
+      } catch (TimeoutException expected) {
+      } finally {
+         tm.rollback();
+      }
+
+      tm.resume(first);
+      tm.commit();
+      assert "1".equals(map.get("a"));
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testCoarseMapIsNotFineGrained() {
+      AtomicMapLookup.getAtomicMap(cache, "coarse");
+      AtomicMapLookup.getFineGrainedAtomicMap(cache, "coarse");
+   }
+
+   public void testImplicitTransactionWithoutBatching() {
+      Configuration c = new Configuration();
+      c.setLockAcquisitionTimeout(100);
+      EmbeddedCacheManager txCm = TestCacheManagerFactory.createCacheManager(c, true);
+      try {
+         Cache<String, Object> txCache = txCm.getCache();
+         AtomicMap<String, String> map = AtomicMapLookup.getFineGrainedAtomicMap(txCache, "key");
+         map.put("a", "1");
+         assert "1".equals(AtomicMapLookup.getFineGrainedAtomicMap(txCache, "key").get("a"));
+      } finally {
+         TestingUtil.killCacheManagers(txCm);
+      }
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class)
+   public void testWriteRequiresTransactionManager() {
+      EmbeddedCacheManager nonTxCm = TestCacheManagerFactory.createCacheManager(new Configuration(), false);
+      try {
+         Cache<String, Object> nonTxCache = nonTxCm.getCache();
+         AtomicMapLookup.<String, String, String>getFineGrainedAtomicMap(nonTxCache, "key").put("a", "1");
+      } finally {
+         TestingUtil.killCacheManagers(nonTxCm);
+      }
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionThreadPolicy;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Test(groups = "unit", testName = "container.OffHeapDataContainerTest")
+public class OffHeapDataContainerTest extends SimpleDataContainerTest {
+
+   private final Map<Object, InternalCacheEntry> evicted = new HashMap<Object, InternalCacheEntry>();
+
+   @Override
+   protected DataContainer createContainer() {
+      return createContainer(new OffHeapDataContainer(16));
+   }
+
+   private OffHeapDataContainer createContainer(OffHeapDataContainer container) {
+      evicted.clear();
+      container.initialize(new RecordingEvictionManager(), new TestObjectStreamMarshaller());
+      return container;
+   }
+
+   /**
+    * Entries are detached copies, so the last used stamp has to be checked on freshly retrieved instances.
+    */
+   @Override
+   public void testUpdatingLastUsed() throws Exception {
+      long idle = 600000;
+      dc.put("k", "v", -1, -1);
+      InternalCacheEntry ice = dc.get("k");
+      assert ice.getClass().equals(immortaltype());
+      assert ice.getExpiryTime() == -1;
+      dc.put("k", "v", -1, idle);
+      long oldTime = System.currentTimeMillis();
+      Thread.sleep(100); // for time calc granularity
+      ice = dc.get("k");
+      assert ice.getClass().equals(transienttype());
+      assert ice.getLastUsed() > oldTime;
+      assert ice.getMaxIdle() == idle;
+      assert ice.getLifespan() == -1;
+
+      oldTime = System.currentTimeMillis();
+      Thread.sleep(100); // for time calc granularity
+      assert dc.get("k") != null;
+      assert dc.get("k").getLastUsed() > oldTime;
+   }
+
+   public void testOverwriteAndRemove() {
+      dc.put("k", "v1", -1, -1);
+      dc.put("k", "v2", -1, -1);
+      assert dc.size() == 1;
+      assert "v2".equals(dc.get("k").getValue());
+      InternalCacheEntry removed = dc.remove("k");
+      assert "v2".equals(removed.getValue());
+      assert dc.get("k") == null;
+      assert dc.size() == 0;
+      assert dc.remove("k") == null;
+   }
+
+   public void testCompaction() {
+      OffHeapDataContainer container = (OffHeapDataContainer) dc;
+      container.setBlockSize(1024);
+      byte[] value = new byte[200];
+      for (int i = 0; i < 1000; i++) container.put("k" + (i % 10), value, -1, -1);
+      assert container.size() == 10;
+      assert container.getAllocatedBytes() < 1000 * value.length : "Garbage was not reclaimed";
+      for (int i = 0; i < 10; i++) {
+         byte[] stored = (byte[]) container.get("k" + i).getValue();
+         assert stored.length == value.length;
+      }
+   }
+
+   public void testLruEviction() {
+      OffHeapDataContainer container = createContainer(new OffHeapDataContainer(1, 3, EvictionStrategy.LRU, EvictionThreadPolicy.DEFAULT));
+      container.put("k1", "v1", -1, -1);
+      container.put("k2", "v2", -1, -1);
+      container.put("k3", "v3", -1, -1);
+      container.get("k1");
+      container.put("k4", "v4", -1, -1);
+
+      assert container.size() == 3;
+      assert evicted.size() == 1 : "Expected one eviction but got " + evicted;
+      assert "v2".equals(evicted.get("k2").getValue());
+      assert container.containsKey("k1");
+      assert !container.containsKey("k2");
+   }
+
+   private class RecordingEvictionManager implements EvictionManager {
+      public void processEviction() {
+      }
+
+      public boolean isEnabled() {
+         return true;
+      }
+
+      public void onEntryEviction(Map<Object, InternalCacheEntry> entries) {
+         evicted.putAll(entries);
+      }
+   }
+}
@@ -120,6 +120,42 @@ public class SimpleDataContainerTest extends AbstractInfinispanTest {
       assert ice.getLastUsed() < System.currentTimeMillis();
    }
 
+   public void testPurgeOnlyRemovesExpiredEntries() throws Exception {
+      dc.put("immortal", "v", -1, -1);
+      dc.put("mortal", "v", 100, -1);
+      dc.put("longLived", "v", 6000000, -1);
+      dc.put("transient", "v", -1, 1000);
+
+      Thread.sleep(600);
+      assert dc.get("transient") != null;
+      Thread.sleep(600);
+      // the original idle deadline has passed, but the entry was used since
+      dc.purgeExpired();
+      assert dc.size() == 3 : "Expected only the mortal entry to be purged but found " + dc.keySet();
+      assert !dc.containsKey("mortal");
+
+      Thread.sleep(1000);
+      dc.purgeExpired();
+      assert dc.size() == 2 : "Expected the idle entry to be purged but found " + dc.keySet();
+      assert dc.containsKey("immortal");
+      assert dc.containsKey("longLived");
+   }
+
+   public void testRemoveUnschedulesExpiration() throws InterruptedException {
+      DefaultDataContainer container = new DefaultDataContainer(16);
+      container.put("removed", "v", 6000000, -1);
+      container.put("expired", "v", 0, -1);
+      container.put("kept", "v", -1, 6000000);
+      assert container.getScheduledExpirations() == 3;
+      Thread.sleep(10); // a lifespan of 0 only expires once the clock has moved on
+
+      container.remove("removed");
+      assert container.get("expired") == null;
+      assert container.getScheduledExpirations() == 1;
+      container.clear();
+      assert container.getScheduledExpirations() == 0;
+   }
+
    protected Class<? extends InternalCacheEntry> mortaltype() {
       return MortalCacheEntry.class;
    }
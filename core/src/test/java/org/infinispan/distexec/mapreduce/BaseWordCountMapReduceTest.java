@@ -122,6 +122,34 @@ public abstract class BaseWordCountMapReduceTest extends MultipleCacheManagersTe
       testinvokeMapReduce(null, new IsolationMapper(), new IsolationReducer());
    }
    
+   public void testinvokeMapReduceOnAllKeysWithCombiner() throws Exception {
+      MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null);
+      task.combinedWith(new WordCountReducer());
+      Map<String, Integer> mapReduce = task.execute();
+      Integer count = mapReduce.get("Infinispan");
+      assert count == 3;
+      count = mapReduce.get("RedHat");
+      assert count == 2;
+   }
+
+   /**
+    * Enough keys for the map phase to be split among several threads on multi-core machines
+    */
+   public void testinvokeMapReduceOnManyKeys() throws Exception {
+      Cache<String, String> c1 = cache(0, cacheName());
+      for (int i = 0; i < 5000; i++) {
+         c1.put("many" + i, "word" + (i % 10) + " common");
+      }
+      MapReduceTask<String, String, String, Integer> task = new MapReduceTask<String, String, String, Integer>(c1);
+      task.mappedWith(new WordCountMapper()).reducedWith(new WordCountReducer()).combinedWith(new WordCountReducer());
+      Map<String, Integer> mapReduce = task.execute();
+      assert mapReduce.size() == 11 : "Obtained " + mapReduce;
+      assert mapReduce.get("common") == 5000;
+      for (int i = 0; i < 10; i++) {
+         assert mapReduce.get("word" + i) == 500;
+      }
+   }
+
    public void testinvokeMapReduceOnAllKeysAsync() throws Exception {
       MapReduceTask<String,String,String,Integer> task = testinvokeMapReduce(null);
       Future<Map<String, Integer>> future = task.executeAsynchronously();
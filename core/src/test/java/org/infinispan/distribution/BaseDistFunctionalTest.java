@@ -75,6 +75,7 @@ public abstract class BaseDistFunctionalTest extends MultipleCacheManagersTest {
    protected int numOwners = 2;
    protected int lockTimeout = 45;
    protected int numVirtualNodes = 1;
+   protected Class<? extends ConsistentHash> consistentHashClass = null;
 
    protected void createCacheManagers() throws Throwable {
       cacheName = "dist";
@@ -92,6 +93,7 @@ public abstract class BaseDistFunctionalTest extends MultipleCacheManagersTest {
       configuration.setLockAcquisitionTimeout(lockTimeout, TimeUnit.SECONDS);
       configuration.setL1CacheEnabled(l1CacheEnabled);
       configuration.fluent().clustering().hash().numVirtualNodes(numVirtualNodes);
+      if (consistentHashClass != null) configuration.fluent().clustering().hash().consistentHashClass(consistentHashClass);
       if (l1CacheEnabled) configuration.setL1OnRehash(l1OnRehash);
       if (l1CacheEnabled) configuration.setL1InvalidationThreshold(l1Threshold);
       caches = createClusteredCaches(INIT_CLUSTER_SIZE, cacheName, configuration);
@@ -23,11 +23,13 @@
 package org.infinispan.distribution;
 
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
 import org.infinispan.test.AbstractInfinispanTest;
 import org.infinispan.test.TestingUtil;
 import org.infinispan.util.Util;
+import org.infinispan.util.hash.MurmurHash3;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
@@ -57,24 +59,36 @@ public class ConsistentHashPerfTest extends AbstractInfinispanTest {
       ch.setCaches(addresses);
    }
 
+   private ConsistentHash createConsistentHash(boolean segmented) {
+      return segmented ? new SegmentedConsistentHash(new MurmurHash3()) : BaseDistFunctionalTest.createNewConsistentHash(null);
+   }
+
    public void testSpeed() {
+      doSpeedTest(false);
+   }
+
+   public void testSegmentedSpeed() {
+      doSpeedTest(true);
+   }
+
+   private void doSpeedTest(boolean segmented) {
       int[] numNodes = {1, 10, 100, 1000, 10000};
       int iterations = 100000;
       // warmup
-      doPerfTest(numNodes, iterations);
-      Map<Integer, Long> performance = doPerfTest(numNodes, iterations);
+      doPerfTest(numNodes, iterations, segmented);
+      Map<Integer, Long> performance = doPerfTest(numNodes, iterations, segmented);
 
       for (int i: numNodes) {
          System.out.println("With "+i+" cache(s), time to do " +iterations+ " lookups was " + Util.prettyPrintTime(TimeUnit.NANOSECONDS.toMillis(performance.get(i))));
       }
    }
 
-   private Map<Integer, Long> doPerfTest(int[] numNodes, int iterations) {
+   private Map<Integer, Long> doPerfTest(int[] numNodes, int iterations, boolean segmented) {
       Map<Integer, Long> performance = new HashMap<Integer, Long>();
       for (int nn : numNodes) {
          System.gc();
          TestingUtil.sleepThread(1000);
-         ConsistentHash ch = BaseDistFunctionalTest.createNewConsistentHash(null);
+         ConsistentHash ch = createConsistentHash(segmented);
          addCaches(ch, nn);
          long start = System.nanoTime();
          Object key = new Object();
@@ -86,11 +100,19 @@ public class ConsistentHashPerfTest extends AbstractInfinispanTest {
    }
 
    public void testDistribution() {
+      doDistributionTest(false);
+   }
+
+   public void testSegmentedDistribution() {
+      doDistributionTest(true);
+   }
+
+   private void doDistributionTest(boolean segmented) {
       final int numKeys = 100000;
       final int numNodes = 100;
 
       List<Object> keys = new ArrayList<Object>(numKeys);
-      ConsistentHash ch = BaseDistFunctionalTest.createNewConsistentHash(null);
+      ConsistentHash ch = createConsistentHash(segmented);
       addCaches(ch, numNodes);
       for (int i = 0; i < numKeys; i++) keys.add(UUID.randomUUID());
 
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@Test(groups = "functional", testName = "distribution.DistGetAllTest")
+public class DistGetAllTest extends BaseDistFunctionalTest {
+
+   public DistGetAllTest() {
+      sync = true;
+      tx = false;
+      testRetVals = true;
+   }
+
+   public void testGetAll() {
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 50; i++) {
+         c1.put("k" + i, "v" + i);
+         keys.add("k" + i);
+      }
+      keys.add("nonexistent");
+
+      Map<Object, String> values = c1.getAdvancedCache().getAll(keys);
+      assert values.size() == 50 : "Expected 50 values but got " + values;
+      for (int i = 0; i < 50; i++) assert ("v" + i).equals(values.get("k" + i));
+      assert !values.containsKey("nonexistent");
+
+      for (int i = 0; i < 50; i++) {
+         if (!isOwner(c1, "k" + i)) assertIsInL1(c1, "k" + i);
+      }
+   }
+
+   public void testGetAllFromEachNode() {
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 20; i++) {
+         c2.put("key" + i, "value" + i);
+         keys.add("key" + i);
+      }
+      for (Cache<Object, String> c : caches) {
+         Map<Object, String> values = c.getAdvancedCache().getAll(keys);
+         assert values.size() == 20 : "Expected 20 values on " + addressOf(c) + " but got " + values;
+         for (int i = 0; i < 20; i++) assert ("value" + i).equals(values.get("key" + i));
+      }
+   }
+
+   public void testGetAllOfRemovedKeys() {
+      c3.put("gone", "value");
+      c3.put("kept", "value");
+      c4.remove("gone");
+      Set<Object> keys = new HashSet<Object>();
+      keys.add("gone");
+      keys.add("kept");
+      Map<Object, String> values = c1.getAdvancedCache().getAll(keys);
+      assert values.size() == 1 : "Expected one value but got " + values;
+      assert "value".equals(values.get("kept"));
+   }
+}
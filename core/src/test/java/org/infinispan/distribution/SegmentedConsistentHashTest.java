@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.hash.MurmurHash3;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Test(groups = "unit", testName = "distribution.SegmentedConsistentHashTest")
+public class SegmentedConsistentHashTest extends AbstractInfinispanTest {
+
+   private SegmentedConsistentHash createConsistentHash(Set<Address> servers, int numOwners) {
+      SegmentedConsistentHash ch = new SegmentedConsistentHash(new MurmurHash3());
+      ch.setNumOwners(numOwners);
+      ch.setCaches(servers);
+      return ch;
+   }
+
+   private Set<Address> createServers(int numServers) {
+      Set<Address> servers = new LinkedHashSet<Address>();
+      for (int i = 0; i < numServers; i++) servers.add(new TestAddress(i));
+      return servers;
+   }
+
+   public void testLocate() {
+      SegmentedConsistentHash ch = createConsistentHash(createServers(5), 2);
+      for (int i = 0; i < 1000; i++) {
+         String key = "key" + i;
+         List<Address> owners = ch.locate(key, 2);
+         assert owners.size() == 2;
+         assert !owners.get(0).equals(owners.get(1));
+         assert owners.equals(ch.locate(key, 2));
+         assert owners.equals(ch.getSegmentOwners(ch.getSegment(key)));
+         for (Address a : ch.getCaches()) assert ch.isKeyLocalToAddress(a, key, 2) == owners.contains(a);
+      }
+   }
+
+   public void testLocateMoreCopiesThanPrecomputed() {
+      SegmentedConsistentHash ch = createConsistentHash(createServers(5), 2);
+      List<Address> owners = ch.locate("k", 4);
+      assert owners.size() == 4;
+      assert new HashSet<Address>(owners).size() == 4;
+      assert owners.subList(0, 2).equals(ch.locate("k", 2));
+      for (Address a : owners) assert ch.isKeyLocalToAddress(a, "k", 4);
+
+      assert ch.locate("k", 10).size() == 5;
+   }
+
+   public void testMemberOrderDoesNotMatter() {
+      Set<Address> servers = createServers(10);
+      List<Address> reversed = new ArrayList<Address>(servers);
+      Collections.reverse(reversed);
+
+      SegmentedConsistentHash ch1 = createConsistentHash(servers, 2);
+      SegmentedConsistentHash ch2 = createConsistentHash(new LinkedHashSet<Address>(reversed), 2);
+      assert ch1.equals(ch2);
+      for (int segment = 0; segment < ch1.getNumSegments(); segment++)
+         assert ch1.getSegmentOwners(segment).equals(ch2.getSegmentOwners(segment));
+   }
+
+   public void testOwnershipIsBalanced() {
+      int numServers = 7;
+      SegmentedConsistentHash ch = createConsistentHash(createServers(numServers), 3);
+      int floor = ch.getNumSegments() / numServers;
+
+      Map<Address, Integer> primaries = new HashMap<Address, Integer>();
+      for (int segment = 0; segment < ch.getNumSegments(); segment++) {
+         List<Address> owners = ch.getSegmentOwners(segment);
+         assert owners.size() == 3;
+         assert new HashSet<Address>(owners).size() == 3 : "Segment " + segment + " has duplicate owners " + owners;
+         Address primary = owners.get(0);
+         primaries.put(primary, primaries.containsKey(primary) ? primaries.get(primary) + 1 : 1);
+      }
+
+      for (Address a : ch.getCaches()) {
+         int owned = primaries.get(a);
+         assert owned == floor || owned == floor + 1 : a + " is primary owner of " + owned + " segments";
+         int total = ch.getOwnedSegments(a, 3).size();
+         assert total >= 3 * floor && total <= 3 * (floor + 1) : a + " owns " + total + " segments";
+      }
+   }
+
+   public void testJoinMovesFewSegments() {
+      SegmentedConsistentHash before = createConsistentHash(createServers(10), 2);
+      SegmentedConsistentHash after = createConsistentHash(createServers(11), 2);
+      Address joiner = new TestAddress(10);
+
+      int moved = 0;
+      for (int segment = 0; segment < before.getNumSegments(); segment++) {
+         if (!before.getSegmentOwners(segment).get(0).equals(after.getSegmentOwners(segment).get(0))) moved++;
+      }
+      int joinerSegments = after.getOwnedSegments(joiner, 1).size();
+      assert moved >= joinerSegments;
+      assert moved < before.getNumSegments() / 4 : moved + " primary segments moved when adding one node to ten";
+   }
+
+   public void testStateProvidersOnLeave() {
+      SegmentedConsistentHash ch = createConsistentHash(createServers(5), 2);
+      Address leaver = new TestAddress(3);
+      List<Address> providers = ch.getStateProvidersOnLeave(leaver, 2);
+      assert !providers.contains(leaver);
+      assert providers.size() == 4 : "Expected every other member to provide state, but got " + providers;
+   }
+
+   public void testStateReceiversOnLeave() {
+      Set<Address> servers = createServers(6);
+      SegmentedConsistentHash before = createConsistentHash(servers, 2);
+      Address leaver = new TestAddress(2);
+      servers.remove(leaver);
+      SegmentedConsistentHash after = createConsistentHash(servers, 2);
+
+      List<Address> receivers = after.getStateReceivers(before, 2);
+      assert !receivers.isEmpty();
+      List<Address> providers = before.getStateProvidersOnLeave(leaver, 2);
+      for (int segment = 0; segment < after.getNumSegments(); segment++) {
+         List<Address> oldOwners = before.getSegmentOwners(segment);
+         for (Address owner : after.getSegmentOwners(segment)) {
+            if (oldOwners.contains(owner)) continue;
+            assert receivers.contains(owner) : owner + " gains segment " + segment + " but is not a receiver";
+            // some surviving old owner must be able to send the segment's state
+            boolean hasProvider = false;
+            for (Address oldOwner : oldOwners) hasProvider |= providers.contains(oldOwner);
+            assert hasProvider : "No provider for segment " + segment;
+         }
+      }
+      for (Address receiver : receivers) {
+         assert !before.getOwnedSegments(receiver, 2).containsAll(after.getOwnedSegments(receiver, 2));
+      }
+   }
+
+   public void testBackupsForNode() {
+      SegmentedConsistentHash ch = createConsistentHash(createServers(5), 2);
+      Address node = new TestAddress(1);
+      List<Address> backups = ch.getBackupsForNode(node, 2);
+      assert backups.get(0).equals(node);
+      for (int segment : ch.getOwnedSegments(node, 1)) {
+         assert backups.containsAll(ch.getSegmentOwners(segment));
+      }
+   }
+}
@@ -0,0 +1,53 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.rehash;
+
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the single leave scenarios with a {@link SegmentedConsistentHash}, whose rebalancing also moves segments
+ * between the remaining nodes, and checks that no entry is lost when a node leaves.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "distribution.rehash.SegmentedLeaveTest")
+public class SegmentedLeaveTest extends SingleLeaveTest {
+
+   public SegmentedLeaveTest() {
+      consistentHashClass = SegmentedConsistentHash.class;
+   }
+
+   public void testManyKeys() {
+      int numKeys = 200;
+      for (int i = 0; i < numKeys; i++) c1.put("k" + i, "v" + i);
+      for (int i = 0; i < numKeys; i++) assertOnAllCachesAndOwnership("k" + i, "v" + i);
+
+      performRehashEvent(false);
+      waitForRehashCompletion();
+      additionalWait();
+
+      for (int i = 0; i < numKeys; i++) assertOnAllCachesAndOwnership("k" + i, "v" + i);
+      assertProperConsistentHashOnAllCaches();
+   }
+}
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.config.ConfigurationException;
+import org.infinispan.config.ConfigurationValidatingVisitor;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.SizeEstimator;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+@Test(groups = "unit", testName = "eviction.MemoryBoundedEvictionTest")
+public class MemoryBoundedEvictionTest extends AbstractInfinispanTest {
+
+   private static final long MAX_MEMORY = 10000;
+
+   public void testLRUMemoryBound() {
+      testMemoryBound(Eviction.LRU);
+   }
+
+   public void testLIRSMemoryBound() {
+      testMemoryBound(Eviction.LIRS);
+   }
+
+   public void testLargeValueEvictsSeveralEntries() {
+      final Map<String, byte[]> evicted = new HashMap<String, byte[]>();
+      BoundedConcurrentHashMap<String, byte[]> map = new BoundedConcurrentHashMap<String, byte[]>(
+            1000, 1, Eviction.LRU, new RecordingListener(evicted), MAX_MEMORY, new ByteArraySizeEstimator());
+      for (int i = 0; i < 10; i++) map.put("k" + i, new byte[500]);
+      assert evicted.isEmpty();
+      assert map.estimatedMemorySize() == 5000;
+
+      map.put("big", new byte[8000]);
+      assert map.estimatedMemorySize() <= MAX_MEMORY;
+      assert map.containsKey("big");
+      assert evicted.size() == 6 : "Expected the 6 least recently used entries to be evicted but got " + evicted.keySet();
+      for (int i = 0; i < 6; i++) assert evicted.containsKey("k" + i);
+
+      map.remove("big");
+      assert map.estimatedMemorySize() == 2000;
+      map.clear();
+      assert map.estimatedMemorySize() == 0;
+   }
+
+   public void testDataContainerMemoryBound() {
+      DefaultDataContainer dc = (DefaultDataContainer) DefaultDataContainer.boundedDataContainer(1, 1000, MAX_MEMORY,
+            EvictionStrategy.LRU, EvictionThreadPolicy.DEFAULT, new DefaultEntrySizeEstimator());
+      EvictionManager evictionManager = createNiceMock(EvictionManager.class);
+      replay(evictionManager);
+      dc.initialize(evictionManager);
+
+      for (int i = 0; i < 100; i++) dc.put(i, new byte[1000], -1, -1);
+      assert dc.estimatedMemorySize() > 0;
+      assert dc.estimatedMemorySize() <= MAX_MEMORY : "Estimated size " + dc.estimatedMemorySize() + " exceeds bound";
+      assert dc.size() < 10 : "Expected less than 10 entries but got " + dc.size();
+      assert dc.containsKey(99);
+   }
+
+   public void testLRUMemoryOnlyBound() {
+      testMemoryOnlyBound(Eviction.LRU);
+   }
+
+   public void testLIRSMemoryOnlyBound() {
+      testMemoryOnlyBound(Eviction.LIRS);
+   }
+
+   public void testLIRSEvictsEachEntryOnce() {
+      for (int capacity : new int[] { -1, 64 }) {
+         final Map<String, Integer> notifications = new HashMap<String, Integer>();
+         BoundedConcurrentHashMap<String, byte[]> map = new BoundedConcurrentHashMap<String, byte[]>(
+               capacity, 1, Eviction.LIRS, new EvictionListener<String, byte[]>() {
+                  @Override
+                  public void onEntryEviction(Map<String, byte[]> entries) {
+                     for (String key : entries.keySet()) {
+                        Integer n = notifications.get(key);
+                        notifications.put(key, n == null ? 1 : n + 1);
+                     }
+                  }
+               }, MAX_MEMORY / 4, new ByteArraySizeEstimator());
+         Random random = new Random(1);
+         for (int i = 0; i < 10000; i++) {
+            map.put("k" + i, new byte[10 + random.nextInt(90)]);
+            // re-reading recent keys moves entries between the LIR and HIR sets
+            for (int j = 0; j < 3; j++) map.get("k" + (i - random.nextInt(50)));
+            assert map.estimatedMemorySize() <= MAX_MEMORY / 4;
+         }
+         for (Map.Entry<String, Integer> e : notifications.entrySet()) {
+            assert e.getValue() == 1 : e.getKey() + " was evicted " + e.getValue() + " times";
+            assert !map.containsKey(e.getKey()) : e.getKey() + " was evicted but is still present";
+         }
+         assert map.size() + notifications.size() == 10000;
+      }
+   }
+
+   public void testValidatorAcceptsMemoryOnlyBound() {
+      Configuration c = new Configuration().fluent()
+         .eviction().strategy(EvictionStrategy.LRU).maxMemory(MAX_MEMORY)
+         .build();
+      c.accept(new ConfigurationValidatingVisitor());
+   }
+
+   @Test(expectedExceptions = ConfigurationException.class)
+   public void testValidatorRejectsUnboundedEviction() {
+      Configuration c = new Configuration().fluent()
+         .eviction().strategy(EvictionStrategy.LRU)
+         .build();
+      c.accept(new ConfigurationValidatingVisitor());
+   }
+
+   private void testMemoryOnlyBound(Eviction eviction) {
+      final Map<String, byte[]> evicted = new HashMap<String, byte[]>();
+      BoundedConcurrentHashMap<String, byte[]> map = new BoundedConcurrentHashMap<String, byte[]>(
+            -1, 4, eviction, new RecordingListener(evicted), MAX_MEMORY, new ByteArraySizeEstimator());
+      // many more entries than the initial segment tables hold, all within the memory bound
+      for (int i = 0; i < 5000; i++) map.put("k" + i, new byte[1]);
+      assert evicted.isEmpty() : evicted.size() + " entries evicted although the map fits its memory bound";
+      assert map.size() == 5000;
+
+      // pushes its segment over its share of the budget
+      map.put("big", new byte[(int) MAX_MEMORY / 5]);
+      assert map.containsKey("big");
+      assert !evicted.isEmpty();
+      assert map.size() + evicted.size() == 5001 : "Entries got lost, " + map.size() + " left and " + evicted.size() + " evicted";
+      assert map.estimatedMemorySize() <= MAX_MEMORY : "Estimated size " + map.estimatedMemorySize() + " exceeds bound";
+   }
+
+   private void testMemoryBound(Eviction eviction) {
+      final Map<String, byte[]> evicted = new HashMap<String, byte[]>();
+      BoundedConcurrentHashMap<String, byte[]> map = new BoundedConcurrentHashMap<String, byte[]>(
+            1000, 1, eviction, new RecordingListener(evicted), MAX_MEMORY, new ByteArraySizeEstimator());
+      for (int i = 0; i < 100; i++) {
+         map.put("k" + i, new byte[i % 2 == 0 ? 100 : 1000]);
+         assert map.estimatedMemorySize() <= MAX_MEMORY : "Estimated size " + map.estimatedMemorySize() + " exceeds bound";
+      }
+      assert map.size() + evicted.size() == 100 : "Entries got lost, " + map.size() + " left and " + evicted.size() + " evicted";
+      long expected = 0;
+      for (byte[] value : map.values()) expected += value.length;
+      assert map.estimatedMemorySize() == expected;
+   }
+
+   private static class ByteArraySizeEstimator implements SizeEstimator<String, byte[]> {
+      @Override
+      public long estimateSize(String key, byte[] value) {
+         return value.length;
+      }
+   }
+
+   private static class RecordingListener implements EvictionListener<String, byte[]> {
+      private final Map<String, byte[]> evicted;
+
+      RecordingListener(Map<String, byte[]> evicted) {
+         this.evicted = evicted;
+      }
+
+      @Override
+      public void onEntryEviction(Map<String, byte[]> entries) {
+         evicted.putAll(entries);
+      }
+   }
+}
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.io;
+
+import org.infinispan.Cache;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+@Test(groups = "functional", testName = "io.GridFilesystemTest")
+public class GridFilesystemTest extends SingleCacheManagerTest {
+
+   private Cache<String, byte[]> dataCache;
+   private Cache<String, GridFile.Metadata> metadataCache;
+   private GridFilesystem fs;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      return TestCacheManagerFactory.createLocalCacheManager();
+   }
+
+   @BeforeMethod
+   protected void setUpFilesystem() {
+      dataCache = cacheManager.getCache("data");
+      metadataCache = cacheManager.getCache("metadata");
+      dataCache.clear();
+      metadataCache.clear();
+      fs = new GridFilesystem(dataCache, metadataCache);
+   }
+
+   public void testListingUsesDirectoryIndex() throws IOException {
+      assert fs.getFile("/dir/sub").mkdirs();
+      assert fs.getFile("/dir/a.txt").createNewFile();
+      assert fs.getFile("/dir/b.txt").createNewFile();
+      assert fs.getFile("/dir/sub/c.txt").createNewFile();
+      assert fs.getFile("/other").mkdir();
+
+      assert metadataCache.get("/dir").isIndexed();
+      assertChildren(fs.getFile("/dir").list(), "/dir/sub", "/dir/a.txt", "/dir/b.txt");
+      assertChildren(fs.getFile("/dir/sub").list(), "/dir/sub/c.txt");
+      assertChildren(fs.getFile("/").list(), "/dir", "/other");
+
+      String[] filtered = fs.getFile("/dir").list(new FilenameFilter() {
+         public boolean accept(File dir, String name) {
+            return name.endsWith(".txt");
+         }
+      });
+      assertChildren(filtered, "/dir/a.txt", "/dir/b.txt");
+   }
+
+   public void testDeleteUpdatesDirectoryIndex() throws IOException {
+      assert fs.getFile("/dir").mkdir();
+      assert fs.getFile("/dir/a.txt").createNewFile();
+      assert fs.getFile("/dir/sub").mkdir();
+
+      assert !fs.getFile("/dir").delete() : "A directory with children should not be deleted";
+      assert ((GridFile) fs.getFile("/dir/a.txt")).delete(true);
+      assertChildren(fs.getFile("/dir").list(), "/dir/sub");
+      assert ((GridFile) fs.getFile("/dir/sub")).delete(true);
+      assertChildren(fs.getFile("/dir").list());
+      assert ((GridFile) fs.getFile("/dir")).delete(true);
+      assert !fs.getFile("/dir").exists();
+      for (String key : metadataCache.keySet())
+         assert !key.startsWith("/dir") : "Index bucket " + key + " should have been removed";
+   }
+
+   public void testListingDirectoryCreatedBeforeIndexing() throws IOException {
+      assert fs.getFile("/dir").mkdir();
+      long now = System.currentTimeMillis();
+      metadataCache.put("/dir/legacy", new GridFile.Metadata(0, now, 8000, GridFile.Metadata.DIR));
+      metadataCache.put("/dir/legacy/a.txt", new GridFile.Metadata(0, now, 8000, GridFile.Metadata.FILE));
+      assert fs.getFile("/dir/legacy/b.txt").createNewFile();
+      assert fs.getFile("/dir/legacy/sub").mkdir();
+
+      assertChildren(fs.getFile("/dir/legacy").list(), "/dir/legacy/a.txt", "/dir/legacy/b.txt", "/dir/legacy/sub");
+      assertChildren(fs.getFile("/dir/legacy/sub").list());
+   }
+
+   public void testReadMetadataWithoutChildIndex() throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeInt(0);
+      out.writeLong(1000);
+      out.writeInt(8000);
+      out.writeByte(GridFile.Metadata.DIR);
+      out.close();
+
+      GridFile.Metadata metadata = new GridFile.Metadata();
+      metadata.readExternal(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      assert metadata.isDirectory();
+      assert !metadata.isIndexed();
+      assert metadata.getModificationTime() == 1000;
+      assert metadata.getChunkSize() == 8000;
+   }
+
+   public void testMkdirKeepsExistingChildren() throws IOException {
+      assert fs.getFile("/dir").mkdir();
+      assert fs.getFile("/dir/a.txt").createNewFile();
+      assert fs.getFile("/dir").mkdirs();
+      assertChildren(fs.getFile("/dir").list(), "/dir/a.txt");
+      assert !fs.getFile("/dir/a.txt").mkdir() : "A file should not be turned into a directory";
+   }
+
+   public void testStreamsPipelineChunks() throws IOException {
+      fs = new GridFilesystem(dataCache, metadataCache, 10, 3, 2);
+      byte[] content = content(1005);
+      OutputStream out = fs.getOutput("/file.bin");
+      out.write(content, 0, 500);
+      for (int i = 500; i < content.length; i++)
+         out.write(content[i]);
+      out.close();
+      assert fs.getFile("/file.bin").length() == content.length;
+
+      InputStream in = fs.getInput("/file.bin");
+      byte[] read = new byte[content.length];
+      int off = 0, n;
+      while (off < read.length && (n = in.read(read, off, Math.min(37, read.length - off))) > 0)
+         off += n;
+      assert off == content.length;
+      assert in.read() == -1;
+      in.close();
+      assert Arrays.equals(content, read);
+   }
+
+   public void testPositionalRead() throws IOException {
+      fs = new GridFilesystem(dataCache, metadataCache, 10, 2, 2);
+      byte[] content = content(95);
+      OutputStream out = fs.getOutput("/file.bin");
+      out.write(content);
+      out.close();
+
+      ReadableGridFileChannel channel = fs.getReadableChannel("/file.bin");
+      assert channel.size() == content.length;
+      ByteBuffer buf = ByteBuffer.allocate(43);
+      assert channel.read(buf, 17) == 43;
+      assert Arrays.equals(Arrays.copyOfRange(content, 17, 60), buf.array());
+      assert channel.position() == 0;
+
+      buf = ByteBuffer.allocate(100);
+      assert channel.position(80).read(buf) == 15;
+      assert channel.position() == content.length;
+      assert Arrays.equals(Arrays.copyOfRange(content, 80, 95), Arrays.copyOf(buf.array(), 15));
+      assert channel.read(buf) == -1;
+      channel.close();
+   }
+
+   private static byte[] content(int length) {
+      byte[] content = new byte[length];
+      for (int i = 0; i < length; i++)
+         content[i] = (byte) i;
+      return content;
+   }
+
+   private void assertChildren(String[] actual, String... expected) {
+      Set<String> actualSet = new HashSet<String>(Arrays.asList(actual));
+      assert actualSet.equals(new HashSet<String>(Arrays.asList(expected))) : "Expected " + Arrays.toString(expected) + " but got " + actualSet;
+   }
+}
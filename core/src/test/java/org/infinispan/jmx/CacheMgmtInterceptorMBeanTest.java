@@ -108,6 +108,20 @@ public class CacheMgmtInterceptorMBeanTest extends SingleCacheManagerTest {
       assertAttributeValue("HitRatio", 0.25f);
    }
 
+   public void testLatencyPercentiles() throws Exception {
+      for (int i = 0; i < 100; i++) cache.put("key" + i, "value" + i);
+      for (int i = 0; i < 100; i++) cache.get("key" + i);
+      String[] signature = {String.class.getName(), double.class.getName()};
+      double p50 = (Double) threadMBeanServer.invoke(mgmtInterceptor, "getLatencyPercentile", new Object[]{"get_hit", 50d}, signature);
+      double p99 = (Double) threadMBeanServer.invoke(mgmtInterceptor, "getLatencyPercentile", new Object[]{"GET_HIT", 99d}, signature);
+      double recentP99 = (Double) threadMBeanServer.invoke(mgmtInterceptor, "getRecentLatencyPercentile", new Object[]{"GET_HIT", 99d}, signature);
+      assert p50 > 0 && p50 <= p99 : "p50=" + p50 + ", p99=" + p99;
+      assert recentP99 == p99 : "recentP99=" + recentP99 + ", p99=" + p99;
+      assert (Double) threadMBeanServer.getAttribute(mgmtInterceptor, "RecentWriteTimeP99") > 0;
+      String summary = (String) threadMBeanServer.getAttribute(mgmtInterceptor, "RecentLatencySummary");
+      assert summary.contains("GET_HIT{count=100") : summary;
+   }
+
    public void testStores() throws Exception {
       assertEvictions(0);
       assertStores(0);
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders;
+
+import org.infinispan.config.CacheLoaderManagerConfig;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.dummy.DummyInMemoryCacheStore;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests that {@link org.infinispan.AdvancedCache#getAll(java.util.Set)} fetches every key missing from memory with a
+ * single {@link MultiKeyCacheLoader#loadAll(java.util.Collection)} call.
+ *
+ * @since 5.0
+ */
+@Test(testName = "loaders.MultiKeyLoadingTest", groups = "functional")
+public class MultiKeyLoadingTest extends SingleCacheManagerTest {
+   MultiKeyCacheStore store;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration cfg = getDefaultStandaloneConfig(false);
+      CacheLoaderManagerConfig clmc = new CacheLoaderManagerConfig();
+      DummyInMemoryCacheStore.Cfg storeCfg = new DummyInMemoryCacheStore.Cfg();
+      storeCfg.setCacheLoaderClassName(MultiKeyCacheStore.class.getName());
+      clmc.addCacheLoaderConfig(storeCfg);
+      cfg.setCacheLoaderManagerConfig(clmc);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(cfg, true);
+      cache = cm.getCache();
+      store = (MultiKeyCacheStore) TestingUtil.extractComponent(cache, CacheLoaderManager.class).getCacheLoader();
+      return cm;
+   }
+
+   public void testGetAllLoadsMissingKeysAtOnce() throws CacheLoaderException {
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 10; i++) {
+         store.store(InternalEntryFactory.create("k" + i, "v" + i));
+         keys.add("k" + i);
+      }
+      cache.put("inMemory", "m");
+      keys.add("inMemory");
+      keys.add("nonexistent");
+      store.clearStats();
+      store.bulkLoads = 0;
+
+      Map<Object, Object> values = cache.getAdvancedCache().getAll(keys);
+
+      assert values.size() == 11 : "Expected 11 values but got " + values;
+      for (int i = 0; i < 10; i++) assert ("v" + i).equals(values.get("k" + i));
+      assert "m".equals(values.get("inMemory"));
+      assert !values.containsKey("nonexistent");
+      assert store.bulkLoads == 1 : "Expected 1, was " + store.bulkLoads;
+      // only the keys missing from memory are handed to the loader
+      assert store.stats().get("load") == 11 : "Expected 11, was " + store.stats().get("load");
+
+      // everything found is now in memory, so only the missing key goes back to the store
+      values = cache.getAdvancedCache().getAll(keys);
+      assert values.size() == 11;
+      assert store.bulkLoads == 2 : "Expected 2, was " + store.bulkLoads;
+      assert store.stats().get("load") == 12 : "Expected 12, was " + store.stats().get("load");
+   }
+
+   public static class MultiKeyCacheStore extends DummyInMemoryCacheStore implements MultiKeyCacheLoader {
+      volatile int bulkLoads;
+
+      @Override
+      public Set<InternalCacheEntry> loadAll(Collection<?> keys) {
+         bulkLoads++;
+         Set<InternalCacheEntry> result = new HashSet<InternalCacheEntry>();
+         for (Object key : keys) {
+            InternalCacheEntry ice = load(key);
+            if (ice != null) result.add(ice);
+         }
+         return result;
+      }
+   }
+}
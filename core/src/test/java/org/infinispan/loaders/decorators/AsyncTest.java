@@ -44,6 +44,7 @@ import org.testng.annotations.Test;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -366,6 +367,93 @@ public class AsyncTest extends AbstractInfinispanTest {
       }
    }
 
+   public void testWritesCoalescedUntilBatchIsFull(final Method m) throws Exception {
+      try {
+         final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+         DummyInMemoryCacheStore underlying = new DummyInMemoryCacheStore() {
+            @Override
+            public void prepare(List<? extends Modification> mods, GlobalTransaction tx, boolean isOnePhase) throws CacheLoaderException {
+               batchSizes.add(mods.size());
+               super.prepare(mods, tx, isOnePhase);
+            }
+         };
+         store = new AsyncStore(underlying, new AsyncStoreConfig().batchSize(5).flushDelay(60000L));
+         dummyCfg = new DummyInMemoryCacheStore.Cfg();
+         dummyCfg.setStore(m.getName());
+         store.init(dummyCfg, null, null);
+         store.start();
+
+         for (int i = 0; i < 100; i++) store.store(InternalEntryFactory.create(k(m, 0), v(m, i)));
+         for (int i = 1; i < 5; i++) store.store(InternalEntryFactory.create(k(m, i), v(m, i)));
+
+         final AsyncStore asyncStore = store;
+         eventually(new Condition() {
+            public boolean isSatisfied() throws Exception {
+               return asyncStore.loadAll().size() == 5;
+            }
+         });
+         assert batchSizes.size() == 1 && batchSizes.get(0) == 5 : "Expected a single batch of 5 but got " + batchSizes;
+         assert store.load(k(m, 0)).getValue().equals(v(m, 99));
+         eventually(new Condition() {
+            public boolean isSatisfied() throws Exception {
+               // 100 writes to the same key plus 4 others end up as 5 writes to the store
+               return Math.abs(asyncStore.getCoalescingRatio() - (1 - 5d / 104)) < 0.001;
+            }
+         });
+      } finally {
+         store.delegate.clear();
+         store.stop();
+         store = null;
+      }
+   }
+
+   public void testWritersBlockedWhenQueueIsFull(final Method m) throws Exception {
+      final CountDownLatch storeUnblocked = new CountDownLatch(1);
+      try {
+         DummyInMemoryCacheStore underlying = new DummyInMemoryCacheStore() {
+            @Override
+            public void prepare(List<? extends Modification> mods, GlobalTransaction tx, boolean isOnePhase) throws CacheLoaderException {
+               try {
+                  storeUnblocked.await();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+               super.prepare(mods, tx, isOnePhase);
+            }
+         };
+         store = new AsyncStore(underlying, new AsyncStoreConfig().modificationQueueSize(2));
+         dummyCfg = new DummyInMemoryCacheStore.Cfg();
+         dummyCfg.setStore(m.getName());
+         store.init(dummyCfg, null, null);
+         store.start();
+
+         final CountDownLatch writerDone = new CountDownLatch(1);
+         final AsyncStore asyncStore = store;
+         Thread writer = new Thread() {
+            @Override
+            public void run() {
+               for (int i = 0; i < 10; i++) asyncStore.store(InternalEntryFactory.create(k(m, i), v(m, i)));
+               writerDone.countDown();
+            }
+         };
+         writer.start();
+         assert !writerDone.await(1, TimeUnit.SECONDS) : "Writer should be blocked while the store is busy";
+
+         storeUnblocked.countDown();
+         assert writerDone.await(10, TimeUnit.SECONDS);
+         eventually(new Condition() {
+            public boolean isSatisfied() throws Exception {
+               return asyncStore.load(k(m, 9)) != null;
+            }
+         });
+      } finally {
+         storeUnblocked.countDown();
+         store.delegate.clear();
+         store.stop();
+         store = null;
+      }
+   }
+
    private void doTestPut(int number, String key, String value) throws Exception {
       for (int i = 0; i < number; i++) {
          InternalCacheEntry cacheEntry = InternalEntryFactory.create(key + i, value + i);
@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.loaders.file;
+
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.loaders.BaseCacheStoreTest;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+@Test(groups = "unit", testName = "loaders.file.LogFileCacheStoreTest")
+public class LogFileCacheStoreTest extends BaseCacheStoreTest {
+
+   private LogFileCacheStore lfcs;
+   private String tmpDirectory;
+
+   @BeforeClass
+   @Parameters({"basedir"})
+   protected void setUpTempDir(@Optional(value = "/tmp") String basedir) {
+      tmpDirectory = TestingUtil.tmpDirectory(basedir, this);
+   }
+
+   @AfterClass
+   protected void clearTempDir() {
+      TestingUtil.recursiveFileRemove(tmpDirectory);
+      new File(tmpDirectory).mkdirs();
+   }
+
+   protected CacheStore createCacheStore() throws CacheLoaderException {
+      clearTempDir();
+      lfcs = new LogFileCacheStore();
+      LogFileCacheStoreConfig cfg = new LogFileCacheStoreConfig()
+            .location(tmpDirectory)
+            .maxLogFileSize(4096)
+            .purgeSynchronously(true); // for more accurate unit testing
+      lfcs.init(cfg, getCache(), getMarshaller());
+      lfcs.start();
+      return lfcs;
+   }
+
+   public void testIndexRebuiltOnRestart() throws Exception {
+      for (int i = 0; i < 100; i++) cs.store(InternalEntryFactory.create("k" + i, "v" + i));
+      for (int i = 0; i < 100; i += 2) cs.remove("k" + i);
+      cs.store(InternalEntryFactory.create("k1", "updated"));
+
+      cs.stop();
+      cs.start();
+
+      assert cs.loadAllKeys(null).size() == 50;
+      for (int i = 0; i < 100; i += 2) assert !cs.containsKey("k" + i);
+      assert cs.load("k1").getValue().equals("updated");
+      assert cs.load("k99").getValue().equals("v99");
+   }
+
+   public void testCompaction() throws Exception {
+      for (int i = 0; i < 500; i++) cs.store(InternalEntryFactory.create("k" + (i % 5), "v" + i));
+      // files which the background compactor is still working on are skipped by compactLogFiles()
+      eventually(new Condition() {
+         public boolean isSatisfied() throws Exception {
+            lfcs.compactLogFiles();
+            return lfcs.getLogFileCount() <= 2;
+         }
+      });
+      for (int i = 0; i < 5; i++) assert cs.load("k" + i).getValue().equals("v" + (495 + i));
+   }
+
+   public void testRemovalSurvivesCompactionAndRestart() throws Exception {
+      cs.store(InternalEntryFactory.create("removed", "v"));
+      for (int i = 0; i < 100; i++) cs.store(InternalEntryFactory.create("k" + i, "v" + i));
+      cs.remove("removed");
+      for (int i = 0; i < 200; i++) cs.store(InternalEntryFactory.create("k" + (i % 100), "v" + i));
+      lfcs.compactLogFiles();
+
+      cs.stop();
+      cs.start();
+
+      assert !cs.containsKey("removed");
+      assert cs.loadAllKeys(null).size() == 100;
+   }
+
+   public void testTruncatedRecordIgnoredOnRestart() throws Exception {
+      cs.store(InternalEntryFactory.create("k1", "v1"));
+      cs.stop();
+
+      File logFile = new File(tmpDirectory + File.separator + getCache().getName(), "0" + LogFileCacheStore.LOG_FILE_SUFFIX);
+      RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+      try {
+         raf.seek(raf.length());
+         raf.writeInt(10); // header of a record whose write never completed
+      } finally {
+         raf.close();
+      }
+
+      cs.start();
+      assert cs.load("k1").getValue().equals("v1");
+      cs.store(InternalEntryFactory.create("k2", "v2"));
+      cs.stop();
+      cs.start();
+      assert cs.load("k1").getValue().equals("v1");
+      assert cs.load("k2").getValue().equals("v2");
+   }
+}
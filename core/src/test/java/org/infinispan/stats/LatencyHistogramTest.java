@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stats;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link LatencyHistogram} and {@link WindowedLatencyHistogram}.
+ *
+ * @since 5.0
+ */
+@Test(groups = "unit", testName = "stats.LatencyHistogramTest")
+public class LatencyHistogramTest {
+
+   public void testBucketsCoverValues() {
+      for (long v = 0; v < 100000; v += 7) {
+         int index = LatencyHistogram.bucketIndex(v);
+         assert LatencyHistogram.bucketUpperBound(index) >= v;
+         assert index == 0 || LatencyHistogram.bucketUpperBound(index - 1) < v;
+      }
+      assert LatencyHistogram.bucketIndex(Long.MAX_VALUE) == LatencyHistogram.BUCKETS - 1;
+   }
+
+   public void testPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (long i = 1; i <= 1000; i++) histogram.record(i * 1000);
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+      assert snapshot.getCount() == 1000;
+      assert snapshot.getMax() == 1000000;
+      assert snapshot.getMean() == 500500;
+      assert histogram.getCount() == 1000;
+      assert histogram.getTotal() == snapshot.getTotal();
+      assertWithinPrecision(snapshot.getPercentile(50), 500000);
+      assertWithinPrecision(snapshot.getPercentile(99), 990000);
+      assertWithinPrecision(snapshot.getPercentile(99.9), 999000);
+      assert snapshot.getPercentile(100) == 1000000;
+   }
+
+   public void testMultipleSamplesAndReset() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(10, 9);
+      histogram.record(5000);
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+      assert snapshot.getCount() == 10;
+      assert snapshot.getPercentile(90) == 10;
+      assert snapshot.getPercentile(99) == 5000;
+
+      histogram.reset();
+      snapshot = histogram.snapshot();
+      assert snapshot.getCount() == 0;
+      assert histogram.getCount() == 0;
+      assert histogram.getTotal() == 0;
+      assert snapshot.getPercentile(99) == 0;
+   }
+
+   public void testConcurrentRecording() throws Exception {
+      final LatencyHistogram histogram = new LatencyHistogram();
+      Thread[] threads = new Thread[8];
+      for (int i = 0; i < threads.length; i++) {
+         threads[i] = new Thread() {
+            @Override
+            public void run() {
+               for (int j = 0; j < 10000; j++) histogram.record(j);
+            }
+         };
+         threads[i].start();
+      }
+      for (Thread t : threads) t.join();
+      assert histogram.snapshot().getCount() == 80000;
+      assert histogram.getCount() == 80000;
+      assert histogram.snapshot().getMax() == 9999;
+   }
+
+   public void testWindowForgetsOldIntervals() throws Exception {
+      WindowedLatencyHistogram histogram = new WindowedLatencyHistogram(200, 2);
+      histogram.record(1000, 1);
+      assert histogram.snapshot().getCount() == 1;
+      Thread.sleep(450);
+      assert histogram.snapshot().getCount() == 0;
+      histogram.record(2000, 1);
+      assert histogram.snapshot().getCount() == 1;
+      assert histogram.snapshot().getMax() == 2000;
+   }
+
+   private void assertWithinPrecision(long actual, long expected) {
+      assert actual >= expected && actual <= expected * 1.125 : "Expected about " + expected + " but got " + actual;
+   }
+}
@@ -81,6 +81,12 @@ public class InfinispanDirectory extends Directory {
     */
    public final static int DEFAULT_BUFFER_SIZE = 16 * 1024;
 
+   /**
+    * Default number of chunks prefetched when an IndexInput is read sequentially, can be changed with
+    * {@link #setReadAheadChunks(int)}.
+    */
+   public final static int DEFAULT_READ_AHEAD_CHUNKS = 4;
+
    private static final Log log = LogFactory.getLog(InfinispanDirectory.class);
 
    // own flag required if we are not in this same package what org.apache.lucene.store.Directory,
@@ -97,6 +103,8 @@ public class InfinispanDirectory extends Directory {
 
    private final FileListOperations fileOps;
    private final SegmentReadLocker readLocks;
+   private final LocalChunkCache localChunks = new LocalChunkCache(LocalChunkCache.DEFAULT_MAX_BYTES);
+   private volatile int readAheadChunks = DEFAULT_READ_AHEAD_CHUNKS;
 
    /**
     * @param metadataCache the cache to be used for all smaller metadata: prefer replication over distribution, avoid eviction
@@ -229,6 +237,7 @@ public class InfinispanDirectory extends Directory {
    public void deleteFile(String name) {
       checkIsOpen();
       fileOps.deleteFileName(name);
+      localChunks.invalidate(name);
       readLocks.deleteOrReleaseReadLock(name);
       if (log.isDebugEnabled()) {
          log.debugf("Removed file: %s from index: %s", name, indexName);
@@ -263,6 +272,7 @@ public class InfinispanDirectory extends Directory {
       if (batching) metadataCache.endBatch(true);
       
       // now trigger deletion of old file chunks:
+      localChunks.invalidate(from);
       readLocks.deleteOrReleaseReadLock(from);
       if (log.isTraceEnabled()) {
          log.tracef("Renamed file from: %s to: %s in index %s", from, to, indexName);
@@ -288,6 +298,8 @@ public class InfinispanDirectory extends Directory {
     */
    public IndexOutput createOutput(String name) {
       final FileCacheKey key = new FileCacheKey(indexName, name);
+      // the name could be reused: don't serve chunks of a previous file from the local cache
+      localChunks.invalidate(name);
       // creating new file, metadata is added on flush() or close() of IndexOutPut
       return new InfinispanIndexOutput(metadataCache, chunksCache, key, chunkSize, fileOps);
    }
@@ -311,7 +323,7 @@ public class InfinispanDirectory extends Directory {
             // safest reaction is to tell this file doesn't exist anymore.
             throw new FileNotFoundException("Error loading medatada for index file: " + fileKey);
          }
-         return new InfinispanIndexInput(chunksCache, fileKey, fileMetadata, readLocks);
+         return new InfinispanIndexInput(chunksCache, fileKey, fileMetadata, readLocks, localChunks, readAheadChunks);
       }
    }
 
@@ -320,6 +332,7 @@ public class InfinispanDirectory extends Directory {
     */
    public void close() {
       isOpen = false;
+      localChunks.stop();
    }
 
    private void checkIsOpen() throws AlreadyClosedException {
@@ -345,6 +358,38 @@ public class InfinispanDirectory extends Directory {
        return indexName;
    }
    
+   /**
+    * Sets how many chunks are prefetched in a single request when an IndexInput detects sequential reads; affects
+    * IndexInputs opened after the change.
+    * @param readAheadChunks number of chunks, 0 disables read-ahead
+    */
+   public void setReadAheadChunks(int readAheadChunks) {
+      if (readAheadChunks < 0)
+         throw new IllegalArgumentException("readAheadChunks must not be negative");
+      this.readAheadChunks = readAheadChunks;
+   }
+
+   public int getReadAheadChunks() {
+      return readAheadChunks;
+   }
+
+   /**
+    * Sets the maximum amount of memory used by the node-local cache of chunks shared by all IndexInputs of this
+    * directory.
+    * @param maxBytes the maximum size in bytes, 0 disables the local cache
+    */
+   public void setLocalChunkCacheSize(long maxBytes) {
+      localChunks.setMaxBytes(maxBytes);
+   }
+
+   public long getLocalChunkCacheSize() {
+      return localChunks.getMaxBytes();
+   }
+
+   LocalChunkCache getLocalChunkCache() {
+      return localChunks;
+   }
+
    private static LockFactory makeDefaultLockFactory(Cache cache, String indexName) {
       checkNotNull(cache, "cache");
       checkNotNull(indexName, "indexName");
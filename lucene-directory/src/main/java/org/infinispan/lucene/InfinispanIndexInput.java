@@ -46,27 +46,51 @@ final public class InfinispanIndexInput extends IndexInput {
    private static final Log log = LogFactory.getLog(InfinispanIndexInput.class);
    private static final boolean trace = log.isTraceEnabled();
 
+   /**
+    * Number of consecutive chunks which have to be read before read-ahead kicks in.
+    */
+   private static final int SEQUENTIAL_THRESHOLD = 2;
+
    private final AdvancedCache chunksCache;
    private final FileCacheKey fileKey;
    private final int chunkSize;
    private final SegmentReadLocker readLocks;
    private final String filename;
    private final long fileLength;
+   private final long fileLastModified;
+   private final int lastChunk;
+   private final LocalChunkCache localChunks;
+   private final int readAheadChunks;
 
    private int currentBufferSize;
    private byte[] buffer;
    private int bufferPosition;
    private int currentLoadedChunk = -1;
+   private int sequentialChunks;
+   private int prefetchedUpTo = -1;
 
    private boolean isClone;
 
    public InfinispanIndexInput(final AdvancedCache chunksCache, final FileCacheKey fileKey, final FileMetadata fileMetadata, final SegmentReadLocker readLocks) {
+      this(chunksCache, fileKey, fileMetadata, readLocks, null, 0);
+   }
+
+   /**
+    * @param localChunks node-local cache to check before hitting <code>chunksCache</code>, or null
+    * @param readAheadChunks how many chunks to prefetch once sequential access is detected; 0 disables read-ahead
+    */
+   InfinispanIndexInput(final AdvancedCache chunksCache, final FileCacheKey fileKey, final FileMetadata fileMetadata, final SegmentReadLocker readLocks,
+            final LocalChunkCache localChunks, final int readAheadChunks) {
       this.chunksCache = chunksCache;
       this.fileKey = fileKey;
       this.chunkSize = fileMetadata.getBufferSize();
       this.fileLength = fileMetadata.getSize();
+      this.fileLastModified = fileMetadata.getLastModified();
       this.readLocks = readLocks;
       this.filename = fileKey.getFileName();
+      this.lastChunk = (int) ((fileLength - 1) / chunkSize);
+      this.localChunks = localChunks;
+      this.readAheadChunks = localChunks == null ? 0 : readAheadChunks;
       if (trace) {
          log.tracef("Opened new IndexInput for file:%s in index: %s", filename, fileKey.getIndexName());
       }
@@ -121,6 +145,7 @@ final public class InfinispanIndexInput extends IndexInput {
       bufferPosition = (int) (pos % chunkSize);
       final int targetChunk = (int) (pos / chunkSize);
       if (targetChunk != currentLoadedChunk) {
+         sequentialChunks = targetChunk == currentLoadedChunk + 1 ? sequentialChunks + 1 : 0;
          currentLoadedChunk = targetChunk;
          setBufferToCurrentChunkIfPossible();
       }
@@ -128,12 +153,47 @@ final public class InfinispanIndexInput extends IndexInput {
    
    private void nextChunk() throws IOException {
       currentLoadedChunk++;
+      sequentialChunks++;
+      readAheadIfSequential();
       setBufferToCurrentChunk();
    }
 
+   /**
+    * Once enough consecutive chunks have been read, keeps up to <code>readAheadChunks</code> chunks ahead of the
+    * current one loading in the background. A new batch is only requested when half of the previous one has been
+    * consumed, so that each prefetch groups several chunks in a single multi-key get.
+    */
+   private void readAheadIfSequential() {
+      if (readAheadChunks <= 0 || sequentialChunks < SEQUENTIAL_THRESHOLD) return;
+      if (prefetchedUpTo - currentLoadedChunk > readAheadChunks / 2) return;
+      int first = Math.max(prefetchedUpTo, currentLoadedChunk) + 1;
+      int last = Math.min(lastChunk, currentLoadedChunk + readAheadChunks);
+      if (first <= last) {
+         localChunks.prefetch(chunksCache, fileKey.getIndexName(), filename, fileLastModified, fileLength, first, last);
+         prefetchedUpTo = last;
+      }
+   }
+
+   private byte[] loadChunk(final ChunkCacheKey key) {
+      if (localChunks == null) {
+         return (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+      }
+      byte[] chunk = localChunks.get(key, fileLastModified, fileLength);
+      if (chunk == null) {
+         localChunks.awaitPrefetch(key, fileLastModified, fileLength);
+         chunk = localChunks.get(key, fileLastModified, fileLength);
+      }
+      if (chunk == null) {
+         int generation = localChunks.generation();
+         chunk = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+         if (chunk != null) localChunks.put(key, fileLastModified, fileLength, chunk, generation);
+      }
+      return chunk;
+   }
+
    private void setBufferToCurrentChunk() throws IOException {
       ChunkCacheKey key = new ChunkCacheKey(fileKey.getIndexName(), filename, currentLoadedChunk);
-      buffer = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+      buffer = loadChunk(key);
       if (buffer == null) {
          throw new IOException("Read past EOF: Chunk value could not be found for key " + key);
       }
@@ -144,7 +204,7 @@ final public class InfinispanIndexInput extends IndexInput {
    // RAMDirectory teaches to position the cursor to the end of previous chunk in this case
    private void setBufferToCurrentChunkIfPossible() {
       ChunkCacheKey key = new ChunkCacheKey(fileKey.getIndexName(), filename, currentLoadedChunk);
-      buffer = (byte[]) chunksCache.withFlags(Flag.SKIP_LOCKING).get(key);
+      buffer = loadChunk(key);
       if (buffer == null) {
          currentLoadedChunk--;
          bufferPosition = chunkSize;
@@ -0,0 +1,291 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lucene;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.context.Flag;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * Node-local LRU cache of chunk contents, shared by all the {@link InfinispanIndexInput}s (and their clones) opened by
+ * the same {@link InfinispanDirectory}. Chunks are bounded by their total size in bytes.
+ * <p>
+ * A file can be deleted and written again under the same name, possibly by another node, e.g. <code>segments.gen</code>
+ * or the files of a segment whose commit was never completed. Chunks are therefore cached together with the
+ * last-modified time and size of the file they were read from, so readers of a rewritten file miss instead of getting
+ * stale chunks, whichever node rewrote it. The directory also calls {@link #invalidate(String)} when it deletes,
+ * renames or recreates a file, to free the memory early; chunks of files rewritten by other nodes are eventually
+ * evicted.
+ * <p>
+ * Also responsible for the asynchronous read-ahead: {@link #prefetch(AdvancedCache, String, String, long, long, int, int)} loads a
+ * range of chunks with a single {@link AdvancedCache#getAll(java.util.Set)} on a small pool of daemon threads.
+ *
+ * @since 5.0
+ */
+@SuppressWarnings("unchecked")
+final class LocalChunkCache {
+
+   /**
+    * Default upper bound for the size of the cached chunks, in bytes.
+    */
+   public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+   private static final Log log = LogFactory.getLog(LocalChunkCache.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final int PREFETCH_THREADS = 2;
+   private static final int PREFETCH_QUEUE_SIZE = 64;
+
+   private static final AtomicInteger threadId = new AtomicInteger(0);
+
+   // access ordered: iteration starts from the least recently used chunk
+   private final LinkedHashMap<VersionedKey, byte[]> chunks = new LinkedHashMap<VersionedKey, byte[]>(64, 0.75f, true);
+   private final ConcurrentMap<VersionedKey, Future<?>> pending = new ConcurrentHashMap<VersionedKey, Future<?>>();
+   private final ThreadPoolExecutor executor;
+
+   private volatile long maxBytes;
+   // guarded by this
+   private long currentBytes;
+   // guarded by this; bumped on each invalidation so that loads started earlier don't resurrect stale chunks
+   private int generation;
+
+   LocalChunkCache(long maxBytes) {
+      setMaxBytes(maxBytes);
+      executor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, 60, TimeUnit.SECONDS,
+               new LinkedBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE),
+               new ThreadFactory() {
+                  public Thread newThread(Runnable r) {
+                     Thread t = new Thread(r, "LuceneChunkPrefetcher-" + threadId.getAndIncrement());
+                     t.setDaemon(true);
+                     return t;
+                  }
+               });
+      // a directory which is never closed must not keep threads around
+      executor.allowCoreThreadTimeOut(true);
+   }
+
+   void setMaxBytes(long maxBytes) {
+      if (maxBytes < 0)
+         throw new IllegalArgumentException("maxBytes must not be negative");
+      this.maxBytes = maxBytes;
+      synchronized (this) {
+         evictIfNeeded();
+      }
+   }
+
+   long getMaxBytes() {
+      return maxBytes;
+   }
+
+   synchronized long getCurrentBytes() {
+      return currentBytes;
+   }
+
+   synchronized int size() {
+      return chunks.size();
+   }
+
+   /**
+    * @param lastModified last-modified time of the file the reader opened
+    * @param size size of the file the reader opened
+    */
+   synchronized byte[] get(ChunkCacheKey key, long lastModified, long size) {
+      return chunks.get(new VersionedKey(key, lastModified, size));
+   }
+
+   /**
+    * Returns a token to be passed to {@link #put(ChunkCacheKey, long, long, byte[], int)} for a chunk about to be loaded.
+    */
+   synchronized int generation() {
+      return generation;
+   }
+
+   /**
+    * Caches a chunk, unless an invalidation happened since <code>expectedGeneration</code> was read.
+    */
+   synchronized void put(ChunkCacheKey key, long lastModified, long size, byte[] chunk, int expectedGeneration) {
+      put(new VersionedKey(key, lastModified, size), chunk, expectedGeneration);
+   }
+
+   private void put(VersionedKey key, byte[] chunk, int expectedGeneration) {
+      if (expectedGeneration != generation || chunk.length > maxBytes) return;
+      byte[] previous = chunks.put(key, chunk);
+      if (previous != null) currentBytes -= previous.length;
+      currentBytes += chunk.length;
+      evictIfNeeded();
+   }
+
+   /**
+    * Drops all cached chunks of the given file.
+    */
+   synchronized void invalidate(String fileName) {
+      generation++;
+      for (Iterator<Map.Entry<VersionedKey, byte[]>> it = chunks.entrySet().iterator(); it.hasNext();) {
+         Map.Entry<VersionedKey, byte[]> entry = it.next();
+         if (entry.getKey().key.getFileName().equals(fileName)) {
+            currentBytes -= entry.getValue().length;
+            it.remove();
+         }
+      }
+   }
+
+   /**
+    * If the chunk is being prefetched, waits for the prefetch to complete. Failures are ignored, as the caller falls
+    * back to a regular read.
+    */
+   void awaitPrefetch(ChunkCacheKey key, long lastModified, long size) {
+      Future<?> future = pending.get(new VersionedKey(key, lastModified, size));
+      if (future == null) return;
+      try {
+         future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+         if (trace) log.tracef(e.getCause(), "Prefetch of %s failed", key);
+      }
+   }
+
+   /**
+    * Asynchronously loads chunks <code>firstChunk</code> to <code>lastChunk</code> (inclusive) of a file, skipping the
+    * chunks which are already cached or being loaded.
+    */
+   void prefetch(final AdvancedCache chunksCache, String indexName, String fileName, long lastModified, long size,
+            int firstChunk, int lastChunk) {
+      // the prefetched chunks would be discarded
+      if (maxBytes == 0) return;
+      final Set<VersionedKey> keys = new HashSet<VersionedKey>();
+      synchronized (this) {
+         for (int i = firstChunk; i <= lastChunk; i++) {
+            VersionedKey key = new VersionedKey(new ChunkCacheKey(indexName, fileName, i), lastModified, size);
+            if (!chunks.containsKey(key)) keys.add(key);
+         }
+      }
+      if (keys.isEmpty()) return;
+      final int expectedGeneration = generation();
+      final FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+         public void run() {
+            Map<ChunkCacheKey, VersionedKey> chunkKeys = new HashMap<ChunkCacheKey, VersionedKey>(keys.size());
+            for (VersionedKey key : keys) chunkKeys.put(key.key, key);
+            Map<ChunkCacheKey, byte[]> loaded = chunksCache.withFlags(Flag.SKIP_LOCKING).getAll(chunkKeys.keySet());
+            synchronized (LocalChunkCache.this) {
+               for (Map.Entry<ChunkCacheKey, byte[]> entry : loaded.entrySet()) {
+                  put(chunkKeys.get(entry.getKey()), entry.getValue(), expectedGeneration);
+               }
+            }
+         }
+      }, null) {
+         @Override
+         protected void done() {
+            removePending(keys, this);
+         }
+      };
+      // claim the keys, leaving out those another reader is already prefetching
+      for (Iterator<VersionedKey> it = keys.iterator(); it.hasNext();) {
+         if (pending.putIfAbsent(it.next(), task) != null) it.remove();
+      }
+      if (keys.isEmpty()) return;
+      try {
+         executor.execute(task);
+         if (trace) log.tracef("Prefetching %d chunks between %d and %d of file %s", keys.size(), firstChunk, lastChunk, fileName);
+      } catch (RejectedExecutionException e) {
+         // too many prefetches queued, or stopped: readers will load the chunks themselves
+         task.cancel(false);
+      }
+   }
+
+   void stop() {
+      executor.shutdownNow();
+      synchronized (this) {
+         generation++;
+         chunks.clear();
+         currentBytes = 0;
+      }
+   }
+
+   private void removePending(Set<VersionedKey> keys, Future<?> task) {
+      for (VersionedKey key : keys) pending.remove(key, task);
+   }
+
+   /**
+    * A chunk key qualified by the version of the file the chunk belongs to.
+    */
+   private static final class VersionedKey {
+      final ChunkCacheKey key;
+      final long lastModified;
+      final long size;
+
+      VersionedKey(ChunkCacheKey key, long lastModified, long size) {
+         this.key = key;
+         this.lastModified = lastModified;
+         this.size = size;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof VersionedKey)) return false;
+         VersionedKey other = (VersionedKey) o;
+         return lastModified == other.lastModified && size == other.size && key.equals(other.key);
+      }
+
+      @Override
+      public int hashCode() {
+         int result = key.hashCode();
+         result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+         result = 31 * result + (int) (size ^ (size >>> 32));
+         return result;
+      }
+
+      @Override
+      public String toString() {
+         return key + "@" + lastModified + "/" + size;
+      }
+   }
+
+   private void evictIfNeeded() {
+      for (Iterator<byte[]> it = chunks.values().iterator(); currentBytes > maxBytes && it.hasNext();) {
+         currentBytes -= it.next().length;
+         it.remove();
+      }
+   }
+
+}
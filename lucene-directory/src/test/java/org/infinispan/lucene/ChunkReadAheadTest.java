@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.infinispan.Cache;
+import org.infinispan.lucene.testutils.RepeatableLongByteSequence;
+import org.infinispan.manager.CacheContainer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies the read-ahead of InfinispanIndexInput and the node-local chunk cache shared by the inputs of a directory.
+ *
+ * @since 5.0
+ */
+@SuppressWarnings("unchecked")
+@Test(groups = "functional", testName = "lucene.ChunkReadAheadTest", sequential = true)
+public class ChunkReadAheadTest {
+
+   private static final String INDEXNAME = "index";
+   private static final String FILENAME = "readAhead.bin";
+   private static final int CHUNK_SIZE = 64;
+   private static final int CHUNKS = 20;
+
+   private CacheContainer cacheManager;
+
+   @BeforeTest
+   public void prepareCacheManager() {
+      cacheManager = CacheTestSupport.createTestCacheManager();
+   }
+
+   @AfterTest
+   public void killCacheManager() {
+      cacheManager.stop();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void clearCache() {
+      cacheManager.getCache().clear();
+   }
+
+   public void testSequentialReadPrefetchesChunks() throws Exception {
+      Cache cache = cacheManager.getCache();
+      InfinispanDirectory dir = new InfinispanDirectory(cache, cache, cache, INDEXNAME, CHUNK_SIZE);
+      dir.setReadAheadChunks(4);
+      writeFile(dir);
+      LocalChunkCache localChunks = dir.getLocalChunkCache();
+
+      RepeatableLongByteSequence bytesGenerator = new RepeatableLongByteSequence();
+      IndexInput input = dir.openInput(FILENAME);
+      // reading into the third chunk makes the access sequential and triggers the prefetch of the chunks ahead
+      for (int i = 0; i < 2 * CHUNK_SIZE + 1; i++) {
+         Assert.assertEquals(input.readByte(), bytesGenerator.nextByte());
+      }
+      ChunkCacheKey prefetched = new ChunkCacheKey(INDEXNAME, FILENAME, 5);
+      FileMetadata file = (FileMetadata) cache.get(new FileCacheKey(INDEXNAME, FILENAME));
+      long lastModified = file.getLastModified(), size = file.getSize();
+      for (int i = 0; i < 100 && localChunks.get(prefetched, lastModified, size) == null; i++) {
+         Thread.sleep(50);
+      }
+      assert localChunks.get(prefetched, lastModified, size) != null : "Chunk 5 was not prefetched";
+
+      for (int i = 2 * CHUNK_SIZE + 1; i < CHUNKS * CHUNK_SIZE; i++) {
+         Assert.assertEquals(input.readByte(), bytesGenerator.nextByte());
+      }
+
+      // clones share the local cache and read the same content
+      IndexInput clone = (IndexInput) input.clone();
+      clone.seek(CHUNK_SIZE * 7 + 3);
+      bytesGenerator.reset();
+      for (int i = 0; i < CHUNK_SIZE * 7 + 3; i++) bytesGenerator.nextByte();
+      Assert.assertEquals(clone.readByte(), bytesGenerator.nextByte());
+      clone.close();
+      input.close();
+
+      Assert.assertEquals(localChunks.size(), CHUNKS);
+      dir.deleteFile(FILENAME);
+      Assert.assertEquals(localChunks.size(), 0);
+      Assert.assertEquals(localChunks.getCurrentBytes(), 0);
+      dir.close();
+   }
+
+   public void testRecreatedFileIsNotServedFromLocalCache() throws IOException {
+      Cache cache = cacheManager.getCache();
+      InfinispanDirectory dir = new InfinispanDirectory(cache, cache, cache, INDEXNAME, CHUNK_SIZE);
+      writeFile(dir);
+      IndexInput input = dir.openInput(FILENAME);
+      input.seek(CHUNK_SIZE * 3);
+      input.readByte();
+      input.close();
+      assert dir.getLocalChunkCache().size() > 0;
+
+      IndexOutput output = dir.createOutput(FILENAME);
+      assert dir.getLocalChunkCache().size() == 0;
+      for (int i = 0; i < CHUNKS * CHUNK_SIZE; i++) {
+         output.writeByte((byte) 7);
+      }
+      output.close();
+      input = dir.openInput(FILENAME);
+      input.seek(CHUNK_SIZE * 3);
+      Assert.assertEquals(input.readByte(), (byte) 7);
+      input.close();
+      dir.close();
+   }
+
+   public void testFileRewrittenElsewhereIsNotServedFromLocalCache() throws Exception {
+      Cache cache = cacheManager.getCache();
+      InfinispanDirectory dir = new InfinispanDirectory(cache, cache, cache, INDEXNAME, CHUNK_SIZE);
+      // stands for the directory of another node, which does not invalidate the local cache of the first one
+      InfinispanDirectory otherDir = new InfinispanDirectory(cache, cache, cache, INDEXNAME, CHUNK_SIZE);
+      writeFile(dir);
+      IndexInput input = dir.openInput(FILENAME);
+      input.seek(CHUNK_SIZE * 3);
+      input.readByte();
+      input.close();
+      assert dir.getLocalChunkCache().size() > 0;
+
+      // same name and size, only the last-modified time tells the versions apart
+      Thread.sleep(10);
+      otherDir.deleteFile(FILENAME);
+      IndexOutput output = otherDir.createOutput(FILENAME);
+      for (int i = 0; i < CHUNKS * CHUNK_SIZE; i++) {
+         output.writeByte((byte) 7);
+      }
+      output.close();
+      assert dir.getLocalChunkCache().size() > 0;
+
+      input = dir.openInput(FILENAME);
+      input.seek(CHUNK_SIZE * 3);
+      Assert.assertEquals(input.readByte(), (byte) 7);
+      input.close();
+      otherDir.close();
+      dir.close();
+   }
+
+   public void testLocalChunkCacheIsBounded() {
+      LocalChunkCache localChunks = new LocalChunkCache(100);
+      try {
+         ChunkCacheKey k1 = new ChunkCacheKey(INDEXNAME, "a", 0);
+         ChunkCacheKey k2 = new ChunkCacheKey(INDEXNAME, "a", 1);
+         ChunkCacheKey k3 = new ChunkCacheKey(INDEXNAME, "b", 0);
+         localChunks.put(k1, 1, 100, new byte[40], localChunks.generation());
+         localChunks.put(k2, 1, 100, new byte[40], localChunks.generation());
+         // makes k2 the eldest entry
+         assert localChunks.get(k1, 1, 100) != null;
+         localChunks.put(k3, 1, 100, new byte[40], localChunks.generation());
+         Assert.assertEquals(localChunks.size(), 2);
+         Assert.assertEquals(localChunks.getCurrentBytes(), 80);
+         assert localChunks.get(k2, 1, 100) == null;
+         assert localChunks.get(k1, 1, 100) != null;
+         // another version of the same file
+         assert localChunks.get(k1, 2, 100) == null;
+         assert localChunks.get(k1, 1, 90) == null;
+
+         // a load started before an invalidation must not be cached
+         int generation = localChunks.generation();
+         localChunks.invalidate("a");
+         localChunks.put(k2, 1, 100, new byte[10], generation);
+         assert localChunks.get(k2, 1, 100) == null;
+         Assert.assertEquals(localChunks.size(), 1);
+
+         localChunks.setMaxBytes(0);
+         Assert.assertEquals(localChunks.size(), 0);
+      } finally {
+         localChunks.stop();
+      }
+   }
+
+   private void writeFile(InfinispanDirectory dir) throws IOException {
+      RepeatableLongByteSequence bytesGenerator = new RepeatableLongByteSequence();
+      IndexOutput output = dir.createOutput(FILENAME);
+      for (int i = 0; i < CHUNKS * CHUNK_SIZE; i++) {
+         output.writeByte(bytesGenerator.nextByte());
+      }
+      output.close();
+   }
+
+}
@@ -0,0 +1,432 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.backend;
+
+import org.hibernate.search.backend.TransactionContext;
+import org.hibernate.search.backend.Work;
+import org.hibernate.search.backend.WorkType;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.infinispan.CacheException;
+import org.infinispan.query.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies index work asynchronously, off the write path. Work is queued and coalesced per document: only the last
+ * operation enqueued for a key (and entity type) since the previous flush is applied. A background thread flushes the
+ * queue in batches, either every <code>flushInterval</code> milliseconds or as soon as <code>batchSize</code> documents
+ * are pending. Each batch is handed to the Hibernate Search worker as a single unit of work.
+ * <p/>
+ * The number of pending documents is bounded: when the queue is full, writers block until the flusher catches up.
+ * <p/>
+ * Enabled through the indexing properties of the cache, see {@link #ASYNC}.
+ *
+ * @since 5.0
+ */
+public class AsyncIndexingQueue {
+
+   /**
+    * Indexing property enabling asynchronous indexing, <code>false</code> by default.
+    */
+   public static final String ASYNC = "infinispan.query.indexing.async";
+
+   /**
+    * Indexing property setting the maximum number of documents applied in a single batch.
+    */
+   public static final String BATCH_SIZE = "infinispan.query.indexing.async.batch_size";
+
+   /**
+    * Indexing property setting the maximum number of documents waiting to be indexed before writers are blocked.
+    */
+   public static final String QUEUE_SIZE = "infinispan.query.indexing.async.queue_size";
+
+   /**
+    * Indexing property setting how often the queue is flushed, in milliseconds.
+    */
+   public static final String FLUSH_INTERVAL = "infinispan.query.indexing.async.flush_interval";
+
+   public static final int DEFAULT_BATCH_SIZE = 1000;
+   public static final int DEFAULT_QUEUE_SIZE = 10000;
+   public static final long DEFAULT_FLUSH_INTERVAL = 100;
+
+   private static final Log log = LogFactory.getLog(AsyncIndexingQueue.class, Log.class);
+
+   private final SearchFactoryIntegrator searchFactory;
+   private final int batchSize;
+   private final int queueSize;
+   private final long flushInterval;
+
+   // guards pending; insertion ordered, so that the oldest work is applied first
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition notFull = lock.newCondition();
+   private final Condition flushNeeded = lock.newCondition();
+   private final LinkedHashMap<WorkKey, PendingWork> pending = new LinkedHashMap<WorkKey, PendingWork>();
+   // held while a batch is applied, so that a purge can't be overtaken by older work
+   private final ReentrantLock applyLock = new ReentrantLock();
+
+   private final AtomicLong enqueued = new AtomicLong(0);
+   private final AtomicLong coalesced = new AtomicLong(0);
+   private final AtomicLong applied = new AtomicLong(0);
+   private final AtomicLong failed = new AtomicLong(0);
+   private final AtomicLong batches = new AtomicLong(0);
+   private volatile long lastBatchAppliedAt;
+
+   private volatile boolean running;
+   private boolean flushRequested; // guarded by lock
+   private Thread flusher;
+
+   public AsyncIndexingQueue(SearchFactoryIntegrator searchFactory, int batchSize, int queueSize, long flushInterval) {
+      if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+      if (queueSize < batchSize) throw new IllegalArgumentException("queueSize must not be smaller than batchSize");
+      if (flushInterval < 1) throw new IllegalArgumentException("flushInterval must be positive");
+      this.searchFactory = searchFactory;
+      this.batchSize = batchSize;
+      this.queueSize = queueSize;
+      this.flushInterval = flushInterval;
+   }
+
+   /**
+    * @return a new queue if asynchronous indexing is enabled in the indexing properties, null otherwise
+    */
+   public static AsyncIndexingQueue fromProperties(SearchFactoryIntegrator searchFactory, Properties properties) {
+      if (properties == null || !Boolean.parseBoolean(properties.getProperty(ASYNC, "false").trim())) return null;
+      return new AsyncIndexingQueue(searchFactory,
+            Integer.parseInt(properties.getProperty(BATCH_SIZE, String.valueOf(DEFAULT_BATCH_SIZE)).trim()),
+            Integer.parseInt(properties.getProperty(QUEUE_SIZE, String.valueOf(DEFAULT_QUEUE_SIZE)).trim()),
+            Long.parseLong(properties.getProperty(FLUSH_INTERVAL, String.valueOf(DEFAULT_FLUSH_INTERVAL)).trim()));
+   }
+
+   public void start() {
+      running = true;
+      flusher = new Thread(new Runnable() {
+         public void run() {
+            flushLoop();
+         }
+      }, "AsyncIndexingQueue-" + System.identityHashCode(this));
+      flusher.setDaemon(true);
+      flusher.start();
+   }
+
+   /**
+    * Applies the pending work and stops the background flusher.
+    */
+   public void stop() {
+      lock.lock();
+      try {
+         running = false;
+         flushNeeded.signalAll();
+      } finally {
+         lock.unlock();
+      }
+      if (flusher != null) {
+         try {
+            flusher.join();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         flusher = null;
+      }
+      // whatever was enqueued concurrently with the shutdown
+      while (applyNextBatch()) ;
+   }
+
+   /**
+    * Queues index work for a document, replacing any work still pending for the same document. Blocks while the
+    * queue is full.
+    */
+   public void enqueue(Object value, String id, WorkType type) {
+      if (value == null) throw new NullPointerException("Cannot handle a null value!");
+      WorkKey key = new WorkKey(id, value.getClass());
+      lock.lock();
+      try {
+         PendingWork previous = pending.get(key);
+         while (previous == null && pending.size() >= queueSize && running) {
+            // backpressure: wait for the flusher to make room
+            flushRequested = true;
+            flushNeeded.signal();
+            try {
+               notFull.await(flushInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new CacheException("Interrupted while waiting for the indexing queue", e);
+            }
+            previous = pending.get(key);
+         }
+         enqueued.incrementAndGet();
+         if (previous == null) {
+            pending.put(key, new PendingWork(value, type, System.currentTimeMillis()));
+            if (pending.size() >= batchSize) {
+               flushRequested = true;
+               flushNeeded.signal();
+            }
+         } else {
+            coalesced.incrementAndGet();
+            previous.merge(value, type);
+         }
+      } finally {
+         lock.unlock();
+      }
+      if (!running) {
+         // stopped: nobody else is going to apply it
+         flush();
+      }
+   }
+
+   /**
+    * Drops the pending work and runs the given purge, making sure it is not overtaken by a batch being applied.
+    */
+   public void purge(Runnable purgeWork) {
+      applyLock.lock();
+      try {
+         lock.lock();
+         try {
+            pending.clear();
+            notFull.signalAll();
+         } finally {
+            lock.unlock();
+         }
+         purgeWork.run();
+      } finally {
+         applyLock.unlock();
+      }
+   }
+
+   /**
+    * Synchronously applies all the pending work.
+    */
+   public void flush() {
+      while (applyNextBatch()) ;
+   }
+
+   public int getPendingCount() {
+      lock.lock();
+      try {
+         return pending.size();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return how long the oldest pending work has been waiting, in milliseconds
+    */
+   public long getLag() {
+      lock.lock();
+      try {
+         if (pending.isEmpty()) return 0;
+         return System.currentTimeMillis() - pending.values().iterator().next().enqueuedAt;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public long getEnqueuedCount() {
+      return enqueued.get();
+   }
+
+   public long getCoalescedCount() {
+      return coalesced.get();
+   }
+
+   public long getAppliedCount() {
+      return applied.get();
+   }
+
+   public long getFailedCount() {
+      return failed.get();
+   }
+
+   public long getBatchCount() {
+      return batches.get();
+   }
+
+   public long getLastBatchAppliedAt() {
+      return lastBatchAppliedAt;
+   }
+
+   public int getBatchSize() {
+      return batchSize;
+   }
+
+   public int getQueueSize() {
+      return queueSize;
+   }
+
+   public long getFlushInterval() {
+      return flushInterval;
+   }
+
+   private void flushLoop() {
+      while (true) {
+         lock.lock();
+         try {
+            if (running && !flushRequested) {
+               try {
+                  flushNeeded.await(flushInterval, TimeUnit.MILLISECONDS);
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+               }
+            }
+            flushRequested = false;
+            if (!running) return;
+         } finally {
+            lock.unlock();
+         }
+         // drain everything pending at this point, one batch at a time
+         while (applyNextBatch()) ;
+      }
+   }
+
+   /**
+    * @return false if there was nothing to apply
+    */
+   private boolean applyNextBatch() {
+      applyLock.lock();
+      try {
+         List<Map.Entry<WorkKey, PendingWork>> batch;
+         lock.lock();
+         try {
+            if (pending.isEmpty()) return false;
+            batch = new ArrayList<Map.Entry<WorkKey, PendingWork>>(Math.min(batchSize, pending.size()));
+            Iterator<Map.Entry<WorkKey, PendingWork>> it = pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < batchSize) {
+               batch.add(it.next());
+               it.remove();
+            }
+            notFull.signalAll();
+         } finally {
+            lock.unlock();
+         }
+         apply(batch);
+         return true;
+      } finally {
+         applyLock.unlock();
+      }
+   }
+
+   private void apply(List<Map.Entry<WorkKey, PendingWork>> batch) {
+      BatchTransactionContext context = new BatchTransactionContext();
+      try {
+         for (Map.Entry<WorkKey, PendingWork> entry : batch) {
+            PendingWork work = entry.getValue();
+            searchFactory.getWorker().performWork(new Work<Object>(work.value, entry.getKey().id, work.type), context);
+         }
+         context.commit();
+         applied.addAndGet(batch.size());
+         batches.incrementAndGet();
+         lastBatchAppliedAt = System.currentTimeMillis();
+      } catch (RuntimeException e) {
+         failed.addAndGet(batch.size());
+         log.failedApplyingIndexWork(batch.size(), e);
+      }
+   }
+
+   private static final class WorkKey {
+      final String id;
+      final Class<?> type;
+
+      WorkKey(String id, Class<?> type) {
+         this.id = id;
+         this.type = type;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof WorkKey)) return false;
+         WorkKey other = (WorkKey) o;
+         return id.equals(other.id) && type.equals(other.type);
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * id.hashCode() + type.hashCode();
+      }
+   }
+
+   private static final class PendingWork {
+      final long enqueuedAt;
+      Object value;
+      WorkType type;
+
+      PendingWork(Object value, WorkType type, long enqueuedAt) {
+         this.value = value;
+         this.type = type;
+         this.enqueuedAt = enqueuedAt;
+      }
+
+      /**
+       * Replaces this work with a later one on the same document. The document did not exist before an ADD, so it
+       * is still an ADD as long as it isn't deleted; on the contrary adding after a pending DELETE or UPDATE has to
+       * replace the indexed document.
+       */
+      void merge(Object newValue, WorkType newType) {
+         if (newType != WorkType.DELETE && type == WorkType.ADD) {
+            newType = WorkType.ADD;
+         } else if (newType == WorkType.ADD) {
+            newType = WorkType.UPDATE;
+         }
+         value = newValue;
+         type = newType;
+      }
+   }
+
+   /**
+    * Presents a batch to Hibernate Search as a transaction, so that the worker queues all of its work and applies
+    * it at once on {@link #commit()}.
+    */
+   private static final class BatchTransactionContext implements TransactionContext {
+      private final List<Synchronization> synchronizations = new ArrayList<Synchronization>(1);
+
+      public boolean isTransactionInProgress() {
+         return true;
+      }
+
+      public Object getTransactionIdentifier() {
+         return this;
+      }
+
+      public void registerSynchronization(Synchronization synchronization) {
+         synchronizations.add(synchronization);
+      }
+
+      void commit() {
+         for (Synchronization s : synchronizations) s.beforeCompletion();
+         for (Synchronization s : synchronizations) s.afterCompletion(Status.STATUS_COMMITTED);
+      }
+   }
+
+}
@@ -35,15 +35,30 @@ import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
 import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.marshall.MarshalledValue;
-
+import org.infinispan.query.impl.EntityLoader;
+import org.rhq.helpers.pluginAnnotations.agent.DataType;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Units;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import javax.transaction.TransactionManager;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -55,17 +70,23 @@ import static org.infinispan.query.backend.KeyTransformationHandler.keyToString;
  * This type of interceptor will allow the indexing of data even when it comes from other caches within a cluster.
  * <p/>
  * However, if the a cache would not be putting the data locally, the interceptor will not index it.
+ * <p/>
+ * When {@link AsyncIndexingQueue#ASYNC} is set in the indexing properties, index work is not applied in the write path
+ * but handed to an {@link AsyncIndexingQueue}, after the transaction commits if there is one.
  *
  * @author Navin Surtani
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  * @since 4.0
  */
+@MBean(objectName = "Indexing", description = "Statistics of the index updates")
 public class QueryInterceptor extends CommandInterceptor {
 
    private final SearchFactoryIntegrator searchFactory;
    private final ConcurrentHashMap<Class,Class> knownClasses = new ConcurrentHashMap<Class,Class>();
    private final Lock mutating = new ReentrantLock();
    protected TransactionManager transactionManager;
+   private volatile AsyncIndexingQueue asyncQueue;
+   private volatile ExecutorService prefetchExecutor;
 
    public QueryInterceptor(SearchFactoryIntegrator searchFactory) {
       this.searchFactory = searchFactory;
@@ -75,6 +96,38 @@ public class QueryInterceptor extends CommandInterceptor {
    public void init(TransactionManager transactionManager) {
    }
 
+   @Start
+   public void start() {
+      AsyncIndexingQueue queue = AsyncIndexingQueue.fromProperties(searchFactory, configuration.getIndexingProperties());
+      if (queue != null) {
+         queue.start();
+         asyncQueue = queue;
+      }
+      prefetchExecutor = EntityLoader.createPrefetchExecutor(configuration.getIndexingProperties());
+   }
+
+   @Stop
+   public void stop() {
+      AsyncIndexingQueue queue = asyncQueue;
+      if (queue != null) {
+         queue.stop();
+         asyncQueue = null;
+      }
+      ExecutorService executor = prefetchExecutor;
+      if (executor != null) {
+         executor.shutdownNow();
+         prefetchExecutor = null;
+      }
+   }
+
+   /**
+    * @return the executor prefetching lazy query results, or null if prefetching is disabled
+    * @see EntityLoader#PREFETCH_THREADS
+    */
+   public ExecutorService getPrefetchExecutor() {
+      return prefetchExecutor;
+   }
+
    protected boolean shouldModifyIndexes(InvocationContext ctx) {
       return true;
    }
@@ -168,18 +221,32 @@ public class QueryInterceptor extends CommandInterceptor {
       if (shouldModifyIndexes(ctx)) {
          if (trace) log.trace("shouldModifyIndexes() is true and we can clear the indexes");
 
-         for (Class c : this.knownClasses.keySet()) {
-            DirectoryProvider[] providers = this.searchFactory.getDirectoryProviders(c);
-            Serializable id = null;
-            if (providers != null && providers.length > 0) { //check as not all known classes are indexed
-               searchFactory.getWorker().performWork(new Work<Object>(c, id, WorkType.PURGE_ALL),
-                                                  new TransactionalEventTransactionContext(transactionManager));
-            }
+         AsyncIndexingQueue queue = asyncQueue;
+         if (queue != null) {
+            // pending work is obsolete, and must not be applied after the purge
+            queue.purge(new Runnable() {
+               public void run() {
+                  purgeIndexes();
+               }
+            });
+         } else {
+            purgeIndexes();
          }
       }
       return returnValue;
    }
 
+   private void purgeIndexes() {
+      for (Class c : this.knownClasses.keySet()) {
+         DirectoryProvider[] providers = this.searchFactory.getDirectoryProviders(c);
+         Serializable id = null;
+         if (providers != null && providers.length > 0) { //check as not all known classes are indexed
+            searchFactory.getWorker().performWork(new Work<Object>(c, id, WorkType.PURGE_ALL),
+                                               new TransactionalEventTransactionContext(transactionManager));
+         }
+      }
+   }
+
    // Method that will be called when data needs to be added into Lucene.
    protected void addToIndexes(Object value, Object key) {
       if (trace) log.tracef("Adding to indexes for key [%s] and value [%s]", key, value);
@@ -188,8 +255,7 @@ public class QueryInterceptor extends CommandInterceptor {
       // The key is going to be the documentID for Lucene.
       // The object parameter is the actual value that needs to be put into lucene.
       if (value == null) throw new NullPointerException("Cannot handle a null value!");
-      TransactionContext transactionContext = new TransactionalEventTransactionContext(transactionManager);
-      searchFactory.getWorker().performWork(new Work<Object>(value, keyToString(key), WorkType.ADD), transactionContext);
+      performWork(value, key, WorkType.ADD);
    }
 
    // Method that will be called when data needs to be removed from Lucene.
@@ -199,8 +265,7 @@ public class QueryInterceptor extends CommandInterceptor {
       // The key is going to be the documentID for Lucene.
       // The object parameter is the actual value that needs to be removed from lucene.
       if (value == null) throw new NullPointerException("Cannot handle a null value!");
-      TransactionContext transactionContext = new TransactionalEventTransactionContext(transactionManager);
-      searchFactory.getWorker().performWork(new Work<Object>(value, keyToString(key), WorkType.DELETE), transactionContext);
+      performWork(value, key, WorkType.DELETE);
    }
 
    protected void updateIndexes(Object value, Object key){
@@ -208,8 +273,90 @@ public class QueryInterceptor extends CommandInterceptor {
       // The key is going to be the documentID for Lucene.
       // The object parameter is the actual value that needs to be removed from lucene.
       if (value == null) throw new NullPointerException("Cannot handle a null value!");
+      performWork(value, key, WorkType.UPDATE);
+   }
+
+   private void performWork(final Object value, Object key, final WorkType workType) {
+      final String id = keyToString(key);
       TransactionContext transactionContext = new TransactionalEventTransactionContext(transactionManager);
-      searchFactory.getWorker().performWork(new Work<Object>(value, keyToString(key), WorkType.UPDATE), transactionContext);
+      final AsyncIndexingQueue queue = asyncQueue;
+      if (queue == null) {
+         searchFactory.getWorker().performWork(new Work<Object>(value, id, workType), transactionContext);
+      } else if (transactionContext.isTransactionInProgress()) {
+         // only committed modifications are indexed
+         transactionContext.registerSynchronization(new Synchronization() {
+            public void beforeCompletion() {
+            }
+
+            public void afterCompletion(int status) {
+               if (status == Status.STATUS_COMMITTED) queue.enqueue(value, id, workType);
+            }
+         });
+      } else {
+         queue.enqueue(value, id, workType);
+      }
+   }
+
+   @ManagedAttribute(description = "Whether index updates are applied asynchronously")
+   @Metric(displayName = "Asynchronous indexing", dataType = DataType.TRAIT, displayType = DisplayType.SUMMARY)
+   public boolean isAsyncIndexing() {
+      return asyncQueue != null;
+   }
+
+   @ManagedAttribute(description = "Number of documents waiting to be indexed")
+   @Metric(displayName = "Pending index updates", displayType = DisplayType.SUMMARY)
+   public int getPendingIndexUpdates() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getPendingCount();
+   }
+
+   @ManagedAttribute(description = "Time the oldest pending index update has been waiting, in milliseconds")
+   @Metric(displayName = "Indexing lag", units = Units.MILLISECONDS, displayType = DisplayType.SUMMARY)
+   public long getIndexingLag() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getLag();
+   }
+
+   @ManagedAttribute(description = "Number of index updates queued for asynchronous indexing")
+   @Metric(displayName = "Queued index updates", measurementType = MeasurementType.TRENDSUP)
+   public long getQueuedIndexUpdates() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getEnqueuedCount();
+   }
+
+   @ManagedAttribute(description = "Number of queued index updates superseded by a later update of the same document")
+   @Metric(displayName = "Coalesced index updates", measurementType = MeasurementType.TRENDSUP)
+   public long getCoalescedIndexUpdates() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getCoalescedCount();
+   }
+
+   @ManagedAttribute(description = "Number of documents indexed asynchronously")
+   @Metric(displayName = "Applied index updates", measurementType = MeasurementType.TRENDSUP)
+   public long getAppliedIndexUpdates() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getAppliedCount();
+   }
+
+   @ManagedAttribute(description = "Number of asynchronous index updates which could not be applied")
+   @Metric(displayName = "Failed index updates", measurementType = MeasurementType.TRENDSUP)
+   public long getFailedIndexUpdates() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getFailedCount();
+   }
+
+   @ManagedAttribute(description = "Number of batches of index updates applied")
+   @Metric(displayName = "Index update batches", measurementType = MeasurementType.TRENDSUP)
+   public long getIndexUpdateBatches() {
+      AsyncIndexingQueue queue = asyncQueue;
+      return queue == null ? 0 : queue.getBatchCount();
+   }
+
+   @ManagedOperation(description = "Applies the pending index updates")
+   @Operation(displayName = "Flush index updates")
+   public void flushIndexUpdates() {
+      AsyncIndexingQueue queue = asyncQueue;
+      if (queue != null) queue.flush();
    }
 
    private Object extractValue(Object wrappedValue) {
@@ -22,7 +22,6 @@
  */
 package org.infinispan.query.impl;
 
-import org.infinispan.Cache;
 import org.infinispan.query.QueryIterator;
 
 /**
@@ -37,7 +36,7 @@ import org.infinispan.query.QueryIterator;
 public abstract class AbstractIterator implements QueryIterator {
 
    protected Object[] buffer;
-   protected Cache cache;
+   protected EntityLoader loader;
 
    protected int index = 0;
    protected int bufferIndex = -1;
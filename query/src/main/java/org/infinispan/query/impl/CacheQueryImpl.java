@@ -40,7 +40,6 @@ import org.hibernate.search.spi.SearchFactoryIntegrator;
 import org.infinispan.Cache;
 import org.infinispan.query.CacheQuery;
 import org.infinispan.query.QueryIterator;
-import org.infinispan.query.backend.KeyTransformationHandler;
 
 /**
  * Implementation class of the CacheQuery interface.
@@ -129,7 +128,7 @@ public class CacheQueryImpl implements CacheQuery {
       hSearchQuery.getTimeoutManager().start();
       List<EntityInfo> entityInfos = hSearchQuery.queryEntityInfos();
       List<Object> keyList = fromEntityInfosToKeys(entityInfos);
-      return new EagerIterator(keyList, cache, fetchSize);
+      return new EagerIterator(keyList, getLoader(), fetchSize);
    }
 
    public QueryIterator lazyIterator() {
@@ -137,7 +136,7 @@ public class CacheQueryImpl implements CacheQuery {
    }
 
    public QueryIterator lazyIterator(int fetchSize) {
-      return new LazyIterator(hSearchQuery, cache, fetchSize);
+      return new LazyIterator(hSearchQuery, getLoader(), fetchSize);
    }
 
    public List<Object> list() throws SearchException {
@@ -155,8 +154,7 @@ public class CacheQueryImpl implements CacheQuery {
    private List<Object> fromEntityInfosToKeys(final List<EntityInfo> entityInfos) {
       List<Object> keyList = new ArrayList<Object>(entityInfos.size());
       for (EntityInfo ei : entityInfos) {
-         Object cacheKey = KeyTransformationHandler.stringToKey(ei.getId().toString());
-         keyList.add(cacheKey);
+         keyList.add(EntityLoader.toKey(ei));
       }
       return keyList;
    }
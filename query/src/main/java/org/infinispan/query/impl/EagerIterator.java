@@ -49,12 +49,16 @@ public class EagerIterator extends AbstractIterator {
 
 
    public EagerIterator(List<Object> idList, Cache cache, int fetchSize) {
+      this(idList, new EntityLoader(cache, null), fetchSize);
+   }
+
+   public EagerIterator(List<Object> idList, EntityLoader loader, int fetchSize) {
       if (fetchSize < 1) {
          throw new IllegalArgumentException("Incorrect value for fetchsize passed. Your fetchSize is less than 1");
       }
 
       this.idList = idList;
-      this.cache = cache;
+      this.loader = loader;
       this.fetchSize = fetchSize;
 
       // Set the values of first and max so that they can be used by the methods on the superclass.
@@ -108,29 +112,21 @@ public class EagerIterator extends AbstractIterator {
          int indexToReturn = index - bufferIndex;
          toReturn = buffer[indexToReturn];
       } else {
-         // We need to populate the buffer.
-
-         toReturn = cache.get(idList.get(index));
+         // We need to populate the buffer: buffer item at index "index", as well as the next "fetchsize - 1" elements,
+         // loading them all at once. I.e., a total of fetchsize elements will be buffered.
 
          //Wiping bufferObjects and the bufferIndex so that there is no stale data.
-
          Arrays.fill(buffer, null);
-         buffer[0] = toReturn;
-
-         // we now need to buffer item at index "index", as well as the next "fetchsize - 1" elements.  I.e., a total of fetchsize elements will be buffered.
-         //now loop through bufferSize times to add the rest of the objects into the list.
 
-         for (int i = 1; i < bufferSize; i++) {
-            if (index + i > max) {
-               log.debug("Your current index + bufferSize exceeds the size of your number of hits");
-               break;
-            }
-
-            Object toBuffer = cache.get(idList.get(index + i));
-            buffer[i] = toBuffer;
+         int end = index + bufferSize;
+         if (end > max + 1) {
+            log.debug("Your current index + bufferSize exceeds the size of your number of hits");
+            end = max + 1;
          }
+         List<Object> values = loader.loadKeys(idList.subList(index, end));
+         values.toArray(buffer);
+         toReturn = buffer[0];
          bufferIndex = index;
-
       }
 
       index++;
@@ -159,24 +155,21 @@ public class EagerIterator extends AbstractIterator {
          int indexToReturn = bufferIndex - index;        // Unlike next() we have to make sure that we are subtracting index from bufferIndex
          toReturn = buffer[indexToReturn];
       } else {
-         toReturn = cache.get(idList.get(index));
          // Wiping bufferObjects and the bufferIndex so that there is no stale data.
-
          Arrays.fill(buffer, null);
-         buffer[0] = toReturn;
-
-         // we now need to buffer objects at index "index", as well as the next "fetchsize - 1" elements.
-         // I.e., a total of fetchsize elements will be buffered.
-         // now loop through bufferSize times to add the rest of the objects into the list.
-
-         for (int i = 1; i < bufferSize; i++) {
-            if (index - i < first) {
-               log.debug("Your current index - bufferSize exceeds the size of your number of hits");
-               break;
-            }
-            Object toBuffer = cache.get(idList.get(index - i));
-            buffer[i] = toBuffer;
+
+         // we now need to buffer objects at index "index", as well as the previous "fetchsize - 1" elements.
+         // I.e., a total of fetchsize elements will be buffered, in reverse order.
+         int start = index - bufferSize + 1;
+         if (start < first) {
+            log.debug("Your current index - bufferSize exceeds the size of your number of hits");
+            start = first;
+         }
+         List<Object> values = loader.loadKeys(idList.subList(start, index + 1));
+         for (int i = 0; i < values.size(); i++) {
+            buffer[i] = values.get(values.size() - 1 - i);
          }
+         toReturn = buffer[0];
          bufferIndex = index;
       }
       index--;
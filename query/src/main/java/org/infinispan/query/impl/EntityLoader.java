@@ -24,37 +24,163 @@
 package org.infinispan.query.impl;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
 
 import org.hibernate.search.query.engine.spi.EntityInfo;
 import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
+import org.infinispan.CacheException;
 import org.infinispan.query.backend.KeyTransformationHandler;
+import org.infinispan.query.backend.QueryInterceptor;
 
 /**
+ * Loads the entities matching query hits from the cache. Several entities are loaded with a single
+ * {@link AdvancedCache#getAll(java.util.Set)}, which fetches the keys owned by each node with one remote call.
+ * <p>
+ * Pages of lazy query results are prefetched by a small executor dedicated to this task, owned by the cache's
+ * {@link QueryInterceptor} and sized with {@link #PREFETCH_THREADS}, so that prefetching never competes with the
+ * transport for threads.
+ *
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  * @since 5.0
  */
 public class EntityLoader {
-   
+
+   /**
+    * Indexing property setting the number of threads prefetching lazy query results, 0 disables prefetching.
+    */
+   public static final String PREFETCH_THREADS = "infinispan.query.lazy_iterator.prefetch_threads";
+
+   /**
+    * Indexing property setting the maximum number of pages waiting to be prefetched. Pages beyond it are loaded when
+    * the iterator reaches them.
+    */
+   public static final String PREFETCH_QUEUE_SIZE = "infinispan.query.lazy_iterator.prefetch_queue_size";
+
+   public static final int DEFAULT_PREFETCH_THREADS = 2;
+   public static final int DEFAULT_PREFETCH_QUEUE_SIZE = 100;
+
    private final AdvancedCache cache;
+   private final ExecutorService asyncExecutor;
    
    public EntityLoader(Cache cache) {
+      this(cache, prefetchExecutorOf(cache));
+   }
+
+   /**
+    * @param asyncExecutor used by {@link #loadAsync(List)}, can be null to disable asynchronous loading
+    */
+   public EntityLoader(Cache cache, ExecutorService asyncExecutor) {
       this.cache = cache.getAdvancedCache();
+      this.asyncExecutor = asyncExecutor;
+   }
+
+   private static ExecutorService prefetchExecutorOf(Cache cache) {
+      QueryInterceptor queryInterceptor = cache.getAdvancedCache().getComponentRegistry()
+            .getComponent(QueryInterceptor.class);
+      return queryInterceptor == null ? null : queryInterceptor.getPrefetchExecutor();
+   }
+
+   /**
+    * @return a new executor for prefetching lazy query results, configured by the indexing properties, or null if
+    *         prefetching is disabled
+    */
+   public static ExecutorService createPrefetchExecutor(Properties properties) {
+      String threadsProperty = properties == null ? null : properties.getProperty(PREFETCH_THREADS);
+      String queueProperty = properties == null ? null : properties.getProperty(PREFETCH_QUEUE_SIZE);
+      int threads = threadsProperty == null ? DEFAULT_PREFETCH_THREADS : Integer.parseInt(threadsProperty.trim());
+      int queueSize = queueProperty == null ? DEFAULT_PREFETCH_QUEUE_SIZE : Integer.parseInt(queueProperty.trim());
+      if (threads < 1) return null;
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+         private final AtomicInteger counter = new AtomicInteger(0);
+
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "QueryPrefetch-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+   }
+
+   public static Object toKey(EntityInfo entityInfo) {
+      return KeyTransformationHandler.stringToKey(entityInfo.getId().toString());
    }
 
    public Object load(EntityInfo entityInfo) {
-      Object cacheKey = KeyTransformationHandler.stringToKey(entityInfo.getId().toString());
-      return cache.get(cacheKey);
+      return cache.get(toKey(entityInfo));
    }
 
    public List load(EntityInfo... entityInfos) {
-      int size = entityInfos.length;
-      ArrayList<Object> list = new ArrayList<Object>(size);
+      ArrayList<Object> keys = new ArrayList<Object>(entityInfos.length);
       for (EntityInfo e : entityInfos) {
-         list.add(load(e));
+         keys.add(toKey(e));
+      }
+      return loadKeys(keys);
+   }
+
+   /**
+    * Loads the values of several keys at once.
+    *
+    * @return the values in the same order as the keys, null for the keys which are not mapped
+    */
+   public List<Object> loadKeys(List<?> keys) {
+      ArrayList<Object> list = new ArrayList<Object>(keys.size());
+      if (keys.size() == 1) {
+         list.add(cache.get(keys.get(0)));
+         return list;
+      }
+      Map values = cache.getAll(new LinkedHashSet<Object>(keys));
+      for (Object key : keys) {
+         list.add(values.get(key));
       }
       return list;
    }
 
+   /**
+    * Starts loading the values of several keys in the background, as {@link #loadKeys(List)} would.
+    *
+    * @return the future result, or null if the keys can't be loaded asynchronously: when no executor is available,
+    *         when it is saturated or when the calling thread is part of a transaction, whose context would not be
+    *         visible to the loading thread
+    */
+   public Future<List<Object>> loadAsync(final List<?> keys) {
+      if (asyncExecutor == null || isInTransaction()) return null;
+      try {
+         return asyncExecutor.submit(new Callable<List<Object>>() {
+            public List<Object> call() {
+               return loadKeys(keys);
+            }
+         });
+      } catch (RejectedExecutionException e) {
+         return null;
+      }
+   }
+
+   private boolean isInTransaction() {
+      TransactionManager tm = cache.getTransactionManager();
+      try {
+         return tm != null && tm.getTransaction() != null;
+      } catch (SystemException e) {
+         throw new CacheException(e);
+      }
+   }
+
 }
@@ -28,32 +28,50 @@ import org.hibernate.search.query.engine.spi.DocumentExtractor;
 import org.hibernate.search.query.engine.spi.HSQuery;
 import org.infinispan.Cache;
 import org.infinispan.CacheException;
-import org.infinispan.query.backend.KeyTransformationHandler;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Implementation for {@link org.infinispan.query.QueryIterator}. This is what is returned when the {@link
  * org.infinispan.query.CacheQuery#lazyIterator()} method is called. This loads the results only when required and hence
  * differs from {@link EagerIterator} which is the other implementation of QueryResultIterator.
+ * <p/>
+ * Each page of <code>fetchSize</code> results is loaded with a single multi-key request, and while the caller consumes
+ * a page the next one is loaded in the background.
  *
  * @author Navin Surtani
  */
 @NotThreadSafe
 public class LazyIterator extends AbstractIterator {
 
+   private static final Log log = LogFactory.getLog(LazyIterator.class);
+
    private final DocumentExtractor extractor;
 
+   // the page being loaded in the background, starting at prefetchIndex
+   private Future<List<Object>> prefetch;
+   private int prefetchIndex = -1;
+
    public LazyIterator(HSQuery hSearchQuery, Cache cache, int fetchSize) {
+      this(hSearchQuery, new EntityLoader(cache), fetchSize);
+   }
+
+   public LazyIterator(HSQuery hSearchQuery, EntityLoader loader, int fetchSize) {
       if (fetchSize < 1) {
          throw new IllegalArgumentException("Incorrect value for fetchsize passed. Your fetchSize is less than 1");
       }
       this.extractor = hSearchQuery.queryDocumentExtractor(); //triggers actual Lucene search
       this.index = 0;
       this.max = hSearchQuery.queryResultSize() - 1;
-      this.cache = cache;
+      this.loader = loader;
       this.fetchSize = fetchSize;
       //Create an buffer with size fetchSize (which is the size of the required buffer).
       buffer = new Object[this.fetchSize];
@@ -68,6 +86,7 @@ public class LazyIterator extends AbstractIterator {
 
    @Override
    public void close() {
+      cancelPrefetch();
       extractor.close();
    }
 
@@ -87,28 +106,24 @@ public class LazyIterator extends AbstractIterator {
          toReturn = buffer[indexToReturn];
       } else {
          // else we need to populate the buffer and get what we need.
+         // we now need to buffer item at index "index", as well as the next "fetchsize - 1" elements.  I.e., a total of fetchsize elements will be buffered.
 
-         try {
-            String documentId = (String) extractor.extract(index).getId();
-            toReturn = cache.get(KeyTransformationHandler.stringToKey(documentId));
-
-            //Wiping bufferObjects and the bufferIndex so that there is no stale data.
-            Arrays.fill(buffer, null);
-            buffer[0] = toReturn;
-
-            // we now need to buffer item at index "index", as well as the next "fetchsize - 1" elements.  I.e., a total of fetchsize elements will be buffered.
-            // ignore loop below, in needs fixing
-            //now loop through bufferSize times to add the rest of the objects into the list.
+         //Wiping bufferObjects and the bufferIndex so that there is no stale data.
+         Arrays.fill(buffer, null);
 
-            for (int i = 1; i < bufferSize; i++) {
-               String bufferDocumentId = (String) extractor.extract(index + i).getId();
-               Object toBuffer = cache.get(KeyTransformationHandler.stringToKey(bufferDocumentId));
-               buffer[i] = toBuffer;
-            }
-            bufferIndex = index;
+         int end = Math.min(index + bufferSize, max + 1);
+         List<Object> values = prefetched(index, end);
+         if (values == null) {
+            values = loader.loadKeys(extractKeys(index, end));
          }
-         catch (IOException e) {
-            throw new CacheException();
+         values.toArray(buffer);
+         toReturn = buffer[0];
+         bufferIndex = index;
+
+         // start loading the following page while the caller consumes this one
+         if (end <= max) {
+            prefetchIndex = end;
+            prefetch = loader.loadAsync(extractKeys(end, Math.min(end + bufferSize, max + 1)));
          }
       }
 
@@ -131,31 +146,73 @@ public class LazyIterator extends AbstractIterator {
          // now we can get this from the buffer.  Sweet!
          int indexToReturn = bufferIndex - index;        // Unlike next() we have to make sure that we are subtracting index from bufferIndex
          toReturn = buffer[indexToReturn];
-      }
-
-      try {
+      } else {
          //Wiping the buffer
          Arrays.fill(buffer, null);
 
-         String documentId = (String) extractor.extract(index).getId();
-         toReturn = cache.get(KeyTransformationHandler.stringToKey(documentId));
+         //buffer the element at index and the previous "fetchsize - 1" elements, in reverse order
+         int start = Math.max(index - bufferSize + 1, first);
+         List<Object> values = loader.loadKeys(extractKeys(start, index + 1));
+         for (int i = 0; i < values.size(); i++) {
+            buffer[i] = values.get(values.size() - 1 - i);
+         }
+         toReturn = buffer[0];
+         bufferIndex = index;
+      }
+      index--;
+      return toReturn;
+   }
 
-         buffer[0] = toReturn;
+   /**
+    * Returns the page starting at <code>start</code> if it was prefetched, waiting for the background load to complete.
+    * A prefetched page starting elsewhere is discarded.
+    */
+   private List<Object> prefetched(int start, int end) {
+      Future<List<Object>> future = prefetch;
+      int futureIndex = prefetchIndex;
+      prefetch = null;
+      prefetchIndex = -1;
+      if (future == null) return null;
+      if (futureIndex != start) {
+         future.cancel(false);
+         return null;
+      }
+      try {
+         List<Object> values = future.get();
+         // the page size is fixed, but double check we don't return a partial page
+         return values.size() == end - start ? values : null;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while loading query results", e);
+      } catch (ExecutionException e) {
+         // retried synchronously by the caller, which will get the failure if it persists
+         log.debug("Failed to prefetch query results", e.getCause());
+         return null;
+      }
+   }
 
-         //now loop through bufferSize times to add the rest of the objects into the list.
-         for (int i = 1; i < bufferSize; i++) {
-            String bufferDocumentId = (String) extractor.extract(index - i).getId();    //In this case it has to be index - i because previous() is called.
-            Object toBuffer = cache.get(KeyTransformationHandler.stringToKey(bufferDocumentId));
-            buffer[i] = toBuffer;
-         }
+   private void cancelPrefetch() {
+      if (prefetch != null) {
+         prefetch.cancel(false);
+         prefetch = null;
+         prefetchIndex = -1;
+      }
+   }
 
-         bufferIndex = index;
+   /**
+    * @return the keys of the hits from <code>start</code> (inclusive) to <code>end</code> (exclusive)
+    */
+   private List<Object> extractKeys(int start, int end) {
+      List<Object> keys = new ArrayList<Object>(end - start);
+      try {
+         for (int i = start; i < end; i++) {
+            keys.add(EntityLoader.toKey(extractor.extract(i)));
+         }
       }
       catch (IOException e) {
-         e.printStackTrace();
+         throw new CacheException(e);
       }
-      index--;
-      return toReturn;
+      return keys;
    }
 
    public int nextIndex() {
@@ -52,4 +52,8 @@ public interface Log extends org.infinispan.util.logging.Log {
    @Message(value = "Registering Query interceptor", id = 14003)
    void registeringQueryInterceptor();
 
+   @LogMessage(level = ERROR)
+   @Message(value = "Failed to apply a batch of %d asynchronous index updates", id = 14004)
+   void failedApplyingIndexWork(int size, @Cause Throwable t);
+
 }
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.query.blackbox;
+
+import org.apache.lucene.queryParser.ParseException;
+import org.infinispan.config.FluentConfiguration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.query.backend.AsyncIndexingQueue;
+import org.infinispan.query.backend.QueryInterceptor;
+import org.infinispan.query.test.Person;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.infinispan.config.Configuration.CacheMode.LOCAL;
+import static org.infinispan.query.helper.TestQueryHelperFactory.createCacheQuery;
+
+/**
+ * Verifies index updates are queued, coalesced and applied in batches when asynchronous indexing is enabled.
+ *
+ * @since 5.0
+ */
+@Test(groups = "functional", testName = "query.blackbox.AsyncIndexingTest")
+public class AsyncIndexingTest extends SingleCacheManagerTest {
+
+   public AsyncIndexingTest() {
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      FluentConfiguration cfg = getDefaultClusteredConfig(LOCAL, true).fluent();
+      cfg
+         .indexing()
+            .indexLocalOnly(false)
+            .addProperty("hibernate.search.default.directory_provider", "ram")
+            .addProperty(AsyncIndexingQueue.ASYNC, "true")
+            // only explicit flushes apply the queued work
+            .addProperty(AsyncIndexingQueue.FLUSH_INTERVAL, "600000");
+      return TestCacheManagerFactory.createCacheManager(cfg.build(), true);
+   }
+
+   public void testUpdatesAreCoalescedAndAppliedOnFlush() throws ParseException {
+      QueryInterceptor interceptor = queryInterceptor();
+      assert interceptor.isAsyncIndexing();
+
+      Person person1 = person("Navin", "Eats fish");
+      cache.put("p1", person1);
+      Person person2 = person("MiniGoat", "Eats grass");
+      cache.put("p2", person2);
+      person1 = person("Navin", "Plays with fish");
+      cache.put("p1", person1);
+
+      assert interceptor.getPendingIndexUpdates() == 2;
+      assert interceptor.getCoalescedIndexUpdates() == 1;
+      assert interceptor.getQueuedIndexUpdates() == 3;
+      assert createCacheQuery(cache, "blurb", "fish").list().isEmpty() : "Index updated before the flush";
+
+      interceptor.flushIndexUpdates();
+      assert interceptor.getPendingIndexUpdates() == 0;
+      assert interceptor.getAppliedIndexUpdates() == 2;
+      assert interceptor.getIndexUpdateBatches() == 1;
+      assert interceptor.getIndexingLag() == 0;
+
+      List<Object> found = createCacheQuery(cache, "blurb", "fish").list();
+      assert found.size() == 1 : "Expected 1 but was " + found.size();
+      assert found.get(0).equals(person1);
+      assert createCacheQuery(cache, "blurb", "plays").list().size() == 1;
+      assert createCacheQuery(cache, "blurb", "grass").list().size() == 1;
+
+      // a put immediately removed must not reach the index
+      cache.put("p3", person("BigGoat", "Eats grass too"));
+      cache.remove("p3");
+      cache.remove("p2");
+      interceptor.flushIndexUpdates();
+      assert createCacheQuery(cache, "blurb", "grass").list().isEmpty();
+      assert interceptor.getFailedIndexUpdates() == 0;
+   }
+
+   public void testClearDropsPendingUpdates() throws ParseException {
+      QueryInterceptor interceptor = queryInterceptor();
+      cache.put("p1", person("Navin", "Eats fish"));
+      interceptor.flushIndexUpdates();
+      cache.put("p2", person("MiniGoat", "Eats fish too"));
+      cache.clear();
+      assert interceptor.getPendingIndexUpdates() == 0;
+      interceptor.flushIndexUpdates();
+      assert createCacheQuery(cache, "blurb", "fish").list().isEmpty();
+   }
+
+   public void testStopAppliesPendingUpdates() {
+      QueryInterceptor interceptor = queryInterceptor();
+      cache.put("p1", person("Navin", "Eats fish"));
+      assert interceptor.getPendingIndexUpdates() == 1;
+      interceptor.stop();
+      assert interceptor.getAppliedIndexUpdates() == 1;
+      assert !interceptor.isAsyncIndexing();
+   }
+
+   private QueryInterceptor queryInterceptor() {
+      return cache.getAdvancedCache().getComponentRegistry().getComponent(QueryInterceptor.class);
+   }
+
+   private static Person person(String name, String blurb) {
+      Person person = new Person();
+      person.setName(name);
+      person.setBlurb(blurb);
+      return person;
+   }
+
+}
@@ -25,7 +25,7 @@ package org.infinispan.query.impl;
 import org.easymock.EasyMock;
 import static org.easymock.EasyMock.*;
 import org.easymock.IAnswer;
-import org.infinispan.Cache;
+import org.infinispan.AdvancedCache;
 import org.infinispan.query.QueryIterator;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Navin Surtani
@@ -48,7 +49,7 @@ public class EagerIteratorTest {
    Map<String, String> dummyResults;
    QueryIterator iterator;
    int fetchSize = 1;
-   Cache<String, String> cache;
+   AdvancedCache<String, String> cache;
 
    @BeforeMethod
    public void setUp() throws Exception {
@@ -65,17 +66,27 @@ public class EagerIteratorTest {
       }
 
       // create the instance of the iterator.
-      cache = createMock(Cache.class);
+      cache = createMock(AdvancedCache.class);
 
+      expect(cache.getAdvancedCache()).andReturn(cache).anyTimes();
       expect(cache.get(anyObject())).andAnswer(new IAnswer<String>() {
          public String answer() throws Throwable {
             String k = getCurrentArguments()[0].toString();
             return dummyResults.get(k);
          }
       }).anyTimes();
+      expect(cache.getAll((Set) anyObject())).andAnswer(new IAnswer<Map<String, String>>() {
+         public Map<String, String> answer() throws Throwable {
+            Map<String, String> values = new HashMap<String, String>();
+            for (Object k : (Set) getCurrentArguments()[0]) {
+               values.put(k.toString(), dummyResults.get(k.toString()));
+            }
+            return values;
+         }
+      }).anyTimes();
+      EasyMock.replay(cache);
 
       iterator = new EagerIterator(keys, cache, fetchSize);
-      EasyMock.replay(cache);
    }
 
    @AfterMethod (alwaysRun = true)
@@ -238,4 +249,18 @@ public class EagerIteratorTest {
       assert iterator.previousIndex() == (keys.size() - 2);
    }
 
+   public void testPagedIteration() {
+      QueryIterator paged = new EagerIterator(keys, cache, 4);
+      for (int i = 0; i < keys.size(); i++) {
+         assert dummyResults.get(keys.get(i)) == paged.next();
+      }
+      assert !paged.hasNext();
+
+      paged.last();
+      for (int i = keys.size() - 1; i >= 0; i--) {
+         assert dummyResults.get(keys.get(i)) == paged.previous();
+      }
+      assert !paged.hasPrevious();
+   }
+
 }
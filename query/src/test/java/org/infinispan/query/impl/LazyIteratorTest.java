@@ -29,7 +29,7 @@ import org.hibernate.search.query.engine.impl.EntityInfoImpl;
 import org.hibernate.search.query.engine.spi.DocumentExtractor;
 import org.hibernate.search.query.engine.spi.EntityInfo;
 import org.hibernate.search.query.engine.spi.HSQuery;
-import org.infinispan.Cache;
+import org.infinispan.AdvancedCache;
 import org.infinispan.query.test.Person;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -41,6 +41,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.easymock.EasyMock.*;
 
@@ -50,7 +55,7 @@ import static org.easymock.EasyMock.*;
  */
 @Test(groups = "functional")
 public class LazyIteratorTest {
-   Cache<String, Person> cache;
+   AdvancedCache<String, Person> cache;
    LazyIterator iterator = null;
    int fetchSize = 1;
    StringBuilder builder;
@@ -58,6 +63,7 @@ public class LazyIteratorTest {
    Person[] persons; //position zero unused!
    List<String> keyList;
    private DocumentExtractor extractor;
+   private HSQuery hsQuery;
 
    @BeforeTest
    public void setUpBeforeTest() throws Exception {
@@ -80,8 +86,19 @@ public class LazyIteratorTest {
    public void setUp() throws ParseException, IOException {
 
       // Setting up the cache mock instance
-      cache = createMock(Cache.class);
-
+      cache = createMock(AdvancedCache.class);
+
+      expect(cache.getAdvancedCache()).andReturn(cache).anyTimes();
+      expect(cache.getTransactionManager()).andReturn(null).anyTimes();
+      expect(cache.getAll((Set) anyObject())).andAnswer(new IAnswer<Map<String, Person>>() {
+         public Map<String, Person> answer() throws Throwable {
+            Map<String, Person> values = new HashMap<String, Person>();
+            for (Object k : (Set) getCurrentArguments()[0]) {
+               values.put(k.toString(), dummyDataMap.get(k.toString()));
+            }
+            return values;
+         }
+      }).anyTimes();
       expect(cache.get(anyObject())).andAnswer(new IAnswer<Person>() {
 
          public Person answer() throws Throwable {
@@ -91,7 +108,7 @@ public class LazyIteratorTest {
       }).anyTimes();
 
       extractor = createStrictMock(DocumentExtractor.class);
-      HSQuery hsQuery = createMock(HSQuery.class);
+      hsQuery = createMock(HSQuery.class);
       expect(hsQuery.queryDocumentExtractor()).andReturn(extractor).once();
       expect(hsQuery.queryResultSize()).andReturn(dummyDataMap.size()).once();
       expect(extractor.extract(anyInt())).andAnswer(new IAnswer<EntityInfo>() {
@@ -105,7 +122,7 @@ public class LazyIteratorTest {
       extractor.close();
       expectLastCall().once();
       EasyMock.replay(cache, extractor, hsQuery);
-      iterator = new LazyIterator(hsQuery, cache, fetchSize);
+      iterator = new LazyIterator(hsQuery, new EntityLoader(cache, null), fetchSize);
    }
 
    @AfterMethod(alwaysRun = false)
@@ -324,4 +341,43 @@ public class LazyIteratorTest {
       iterator.close();
    }
 
+   public void testPagedIterationWithPrefetch() {
+      // replaces the iterator created by setUp, sharing its extractor
+      EasyMock.reset(hsQuery);
+      expect(hsQuery.queryDocumentExtractor()).andReturn(extractor).once();
+      expect(hsQuery.queryResultSize()).andReturn(dummyDataMap.size()).once();
+      EasyMock.replay(hsQuery);
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         LazyIterator paged = new LazyIterator(hsQuery, new EntityLoader(cache, executor), 3);
+         for (int i = 1; i <= 10; i++) {
+            assert paged.hasNext();
+            assert persons[i] == paged.next();
+         }
+         assert !paged.hasNext();
+         paged.close();
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   public void testPrefetchExecutorConfiguration() {
+      Properties properties = new Properties();
+      properties.setProperty(EntityLoader.PREFETCH_THREADS, "0");
+      assert EntityLoader.createPrefetchExecutor(properties) == null;
+
+      properties.setProperty(EntityLoader.PREFETCH_THREADS, "1");
+      properties.setProperty(EntityLoader.PREFETCH_QUEUE_SIZE, "1");
+      ExecutorService executor = EntityLoader.createPrefetchExecutor(properties);
+      assert executor != null;
+      try {
+         assert ((ThreadPoolExecutor) executor).getMaximumPoolSize() == 1;
+         assert ((ThreadPoolExecutor) executor).getQueue().remainingCapacity() == 1;
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
 }
@@ -60,6 +60,19 @@ abstract class AbstractProtocolDecoder[K, V <: CacheValue](transport: NettyTrans
    protected var rawValue: Array[Byte] = null.asInstanceOf[Array[Byte]]
    protected var cache: Cache[K, V] = null
 
+   /**
+    * Netty's decoder keeps calling {@link #decode} while there are bytes left in the received buffer, so all complete
+    * requests a client pipelined are executed here, and their responses get written together when a
+    * {@link ResponseBatcher} is present in the pipeline.
+    */
+   override def messageReceived(ctx: ChannelHandlerContext, e: MessageEvent) {
+      val batcher = ctx.getPipeline.get(classOf[ResponseBatcher])
+      if (batcher == null)
+         super.messageReceived(ctx, e)
+      else
+         batcher.batch(super.messageReceived(ctx, e))
+   }
+
    override def decode(ctx: ChannelHandlerContext, ch: Channel, buffer: ChannelBuffer, state: DecoderState): AnyRef = {
       val ch = ctx.getChannel
       try {
@@ -96,8 +96,20 @@ abstract class AbstractProtocolServer(threadNamePrefix: String) extends Protocol
 
    def startTransport(idleTimeout: Int, tcpNoDelay: Boolean, sendBufSize: Int, recvBufSize: Int, typedProps: TypedProperties) {
       val address = new InetSocketAddress(host, port)
+      val responseBatchSize = typedProps.getIntProperty(PROP_KEY_RESPONSE_BATCH_SIZE, RESPONSE_BATCH_SIZE_DEFAULT, true)
+      if (responseBatchSize < 0)
+         throw new IllegalArgumentException("Response batch size can't be lower than 0: " + responseBatchSize)
+
+      val operationThreads = typedProps.getIntProperty(PROP_KEY_OPERATION_THREADS, OPERATION_THREADS_DEFAULT, true)
+      if (operationThreads < 0)
+         throw new IllegalArgumentException("Operation threads can't be lower than 0: " + operationThreads)
+
+      val operationQueueSize = typedProps.getLongProperty(PROP_KEY_OPERATION_QUEUE_SIZE, OPERATION_QUEUE_SIZE_DEFAULT, true)
+      if (operationQueueSize <= 0)
+         throw new IllegalArgumentException("Operation queue size must be greater than 0: " + operationQueueSize)
+
       transport = new NettyTransport(this, getEncoder, address, masterThreads, workerThreads, idleTimeout,
-         threadNamePrefix, tcpNoDelay, sendBufSize, recvBufSize)
+         threadNamePrefix, tcpNoDelay, sendBufSize, recvBufSize, responseBatchSize, operationThreads, operationQueueSize)
       transport.start
    }
 
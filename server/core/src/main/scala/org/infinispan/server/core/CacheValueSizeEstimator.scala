@@ -0,0 +1,49 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core
+
+import org.infinispan.eviction.DefaultEntrySizeEstimator
+
+/**
+ * Entry size estimator for protocol caches, which accounts for the exact
+ * footprint of {@link CacheValue} instances. Configure it as eviction size
+ * estimator when bounding protocol caches by memory.
+ *
+ * @since 5.0
+ */
+class CacheValueSizeEstimator extends DefaultEntrySizeEstimator {
+
+   override protected def sizeOf(o: AnyRef): Long = {
+      o match {
+         // Object header, data array reference and version
+         case v: CacheValue => CacheValueSizeEstimator.align(12 + 4 + 8) +
+               CacheValueSizeEstimator.align(16 + v.data.length)
+         case _ => super.sizeOf(o)
+      }
+   }
+
+}
+
+object CacheValueSizeEstimator {
+   private def align(size: Long): Long = (size + 7) & ~7L
+}
@@ -53,6 +53,9 @@ object Main extends Log {
    val PROP_KEY_TCP_NO_DELAY = "infinispan.server.tcp_no_delay"
    val PROP_KEY_SEND_BUF_SIZE = "infinispan.server.send_buf_size"
    val PROP_KEY_RECV_BUF_SIZE = "infinispan.server.recv_buf_size"
+   val PROP_KEY_RESPONSE_BATCH_SIZE = "infinispan.server.response_batch_size"
+   val PROP_KEY_OPERATION_THREADS = "infinispan.server.operation_threads"
+   val PROP_KEY_OPERATION_QUEUE_SIZE = "infinispan.server.operation_queue_size"
    val PROP_KEY_PROXY_HOST = "infinispan.server.proxy_host"
    val PROP_KEY_PROXY_PORT = "infinispan.server.proxy_port"
    val PROP_KEY_TOPOLOGY_LOCK_TIMEOUT = "infinispan.server.topology.lock_timeout"
@@ -66,6 +69,9 @@ object Main extends Log {
    val TCP_NO_DELAY_DEFAULT = true
    val SEND_BUF_SIZE_DEFAULT = 0
    val RECV_BUF_SIZE_DEFAULT = 0
+   val RESPONSE_BATCH_SIZE_DEFAULT = 65536
+   val OPERATION_THREADS_DEFAULT = 0
+   val OPERATION_QUEUE_SIZE_DEFAULT = 64L * 1024 * 1024
    val TOPO_LOCK_TIMEOUT_DEFAULT = 10000L
    val TOPO_REPL_TIMEOUT_DEFAULT = 10000L
    val TOPO_STATE_TRANSFER_DEFAULT = true
@@ -182,7 +188,7 @@ object Main extends Log {
    }
 
    private def processCommandLine(args: Array[String]) {
-      val sopts = "-:hD:Vp:l:m:t:c:r:i:n:s:e:o:x:k:u:a:f:"
+      val sopts = "-:hD:Vp:l:m:t:w:q:c:r:i:n:s:e:b:o:x:k:u:a:f:"
       val lopts = Array(
          new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h'),
          new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V'),
@@ -190,12 +196,15 @@ object Main extends Log {
          new LongOpt("host", LongOpt.REQUIRED_ARGUMENT, null, 'l'),
          new LongOpt("master_threads", LongOpt.REQUIRED_ARGUMENT, null, 'm'),
          new LongOpt("worker_threads", LongOpt.REQUIRED_ARGUMENT, null, 't'),
+         new LongOpt("operation_threads", LongOpt.REQUIRED_ARGUMENT, null, 'w'),
+         new LongOpt("operation_queue_size", LongOpt.REQUIRED_ARGUMENT, null, 'q'),
          new LongOpt("cache_config", LongOpt.REQUIRED_ARGUMENT, null, 'c'),
          new LongOpt("protocol", LongOpt.REQUIRED_ARGUMENT, null, 'r'),
          new LongOpt("idle_timeout", LongOpt.REQUIRED_ARGUMENT, null, 'i'),
          new LongOpt("tcp_no_delay", LongOpt.REQUIRED_ARGUMENT, null, 'n'),
          new LongOpt("send_buf_size", LongOpt.REQUIRED_ARGUMENT, null, 's'),
          new LongOpt("recv_buf_size", LongOpt.REQUIRED_ARGUMENT, null, 'e'),
+         new LongOpt("response_batch_size", LongOpt.REQUIRED_ARGUMENT, null, 'b'),
          new LongOpt("proxy_host", LongOpt.REQUIRED_ARGUMENT, null, 'o'),
          new LongOpt("topo_lock_timeout", LongOpt.REQUIRED_ARGUMENT, null, 'k'),
          new LongOpt("topo_repl_timeout", LongOpt.REQUIRED_ARGUMENT, null, 'u'),
@@ -217,12 +226,15 @@ object Main extends Log {
             case 'l' => props.setProperty(PROP_KEY_HOST, getopt.getOptarg)
             case 'm' => props.setProperty(PROP_KEY_MASTER_THREADS, getopt.getOptarg)
             case 't' => props.setProperty(PROP_KEY_WORKER_THREADS, getopt.getOptarg)
+            case 'w' => props.setProperty(PROP_KEY_OPERATION_THREADS, getopt.getOptarg)
+            case 'q' => props.setProperty(PROP_KEY_OPERATION_QUEUE_SIZE, getopt.getOptarg)
             case 'c' => props.setProperty(PROP_KEY_CACHE_CONFIG, getopt.getOptarg)
             case 'r' => props.setProperty(PROP_KEY_PROTOCOL, getopt.getOptarg)
             case 'i' => props.setProperty(PROP_KEY_IDLE_TIMEOUT, getopt.getOptarg)
             case 'n' => props.setProperty(PROP_KEY_TCP_NO_DELAY, getopt.getOptarg)
             case 's' => props.setProperty(PROP_KEY_SEND_BUF_SIZE, getopt.getOptarg)
             case 'e' => props.setProperty(PROP_KEY_RECV_BUF_SIZE, getopt.getOptarg)
+            case 'b' => props.setProperty(PROP_KEY_RESPONSE_BATCH_SIZE, getopt.getOptarg)
             case 'o' => props.setProperty(PROP_KEY_PROXY_HOST, getopt.getOptarg)
             case 'x' => props.setProperty(PROP_KEY_PROXY_PORT, getopt.getOptarg)
             case 'k' => props.setProperty(PROP_KEY_TOPOLOGY_LOCK_TIMEOUT, getopt.getOptarg)
@@ -275,6 +287,12 @@ object Main extends Log {
       println
       println("    -t, --work_threads=<num>           Number of threads processing incoming requests and sending responses (default: unlimited while resources are available)")
       println
+      println("    -w, --operation_threads=<num>      Number of threads decoding and executing requests, so that slow cache operations do not block the")
+      println("                                       threads doing network I/O. Requests of a connection are still executed in order.")
+      println("                                       Passing 0 executes requests in the network I/O threads (default: 0).")
+      println
+      println("    -q, --operation_queue_size=<num>   Maximum number of bytes of received requests waiting for an operation thread (default: 67108864).")
+      println
       println("    -c, --cache_config=<filename>      Cache configuration file (default: creates cache with default values)")
       println
       println("    -r, --protocol=                    Protocol to understand by the server. This is a mandatory option and you should choose one of these options")
@@ -290,6 +308,9 @@ object Main extends Log {
       println
       println("    -e, --recv_buf_size=<num>          Receive buffer size (default: as defined by the OS).")
       println
+      println("    -b, --response_batch_size=<num>    Maximum number of bytes of responses to pipelined requests that are written together (default: 65536).")
+      println("                                       Passing 0 disables response batching.")
+      println
       println("    -o, --proxy_host=<host or ip>      Host address to expose in topology information sent to clients.")
       println("                                       If not present, it defaults to configured host.")
       println("                                       Servers that do not transmit topology information ignore this setting.")
@@ -55,8 +55,15 @@ object ExtendedChannelBuffer {
     * If the length is 0, an empty String is returned.
     */
    def readString(bf: ChannelBuffer): String = {
-      val bytes = readRangedBytes(bf)
-      if (!bytes.isEmpty) new String(bytes, "UTF8") else ""
+      val length = readUnsignedInt(bf)
+      if (length > 0) {
+         // Decode straight from the buffer rather than through an intermediate array
+         val s = bf.toString(bf.readerIndex, length, "UTF8")
+         bf.skipBytes(length)
+         s
+      } else {
+         ""
+      }
    }
 
    def writeUnsignedShort(i: Int, bf: ChannelBuffer) = bf.writeShort(i)
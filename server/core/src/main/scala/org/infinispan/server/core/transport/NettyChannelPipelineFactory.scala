@@ -31,18 +31,28 @@ import org.jboss.netty.util.{HashedWheelTimer, Timer}
  * Pipeline factory for Netty based channels. For each pipeline created, a new decoder is created which means that
  * each incoming connection deals with a unique decoder instance. Since the encoder does not maintain any state,
  * a single encoder instance is shared by all incoming connections, if and only if, the protocol mandates an encoder.
+ * Unless disabled, a {@link ResponseBatcher} sits in front of the encoder so that responses to pipelined requests
+ * are written together, and when operation threads are configured, a shared {@link OperationDispatcher} hands
+ * decoding and execution of requests over to them.
  *
  * @author Galder Zamarreño
  * @since 4.1
  */
 class NettyChannelPipelineFactory(server: ProtocolServer, encoder: ChannelDownstreamHandler,
-                                  transport: NettyTransport, idleTimeout: Int)
+                                  transport: NettyTransport, idleTimeout: Int, responseBatchSize: Int,
+                                  operationDispatcher: OperationDispatcher)
       extends ChannelPipelineFactory {
 
    private var timer: Timer = _
 
    override def getPipeline: ChannelPipeline = {
       val pipeline = Channels.pipeline
+      // Response batching is disabled with a 0 value
+      if (responseBatchSize > 0)
+         pipeline.addLast("responseBatcher", new ResponseBatcher(responseBatchSize))
+      // Without operation threads, requests are decoded and executed by the I/O worker threads
+      if (operationDispatcher != null)
+         pipeline.addLast("operationDispatcher", operationDispatcher)
       pipeline.addLast("decoder", server.getDecoder)
       if (encoder != null)
          pipeline.addLast("encoder", encoder)
@@ -44,11 +44,21 @@ import org.infinispan.server.core.logging.Log
 class NettyTransport(server: ProtocolServer, encoder: ChannelDownstreamHandler,
                      address: SocketAddress, masterThreads: Int, workerThreads: Int,
                      idleTimeout: Int, threadNamePrefix: String, tcpNoDelay: Boolean,
-                     sendBufSize: Int, recvBufSize: Int) extends Transport with Log {
+                     sendBufSize: Int, recvBufSize: Int, responseBatchSize: Int, operationThreads: Int,
+                     operationQueueSize: Long) extends Transport with Log {
 
    private val serverChannels = new DefaultChannelGroup(threadNamePrefix + "-Channels")
    val acceptedChannels = new DefaultChannelGroup(threadNamePrefix + "-Accepted")
-   private val pipeline = new NettyChannelPipelineFactory(server, encoder, this, idleTimeout)
+   val operationDispatcher = {
+      if (operationThreads == 0) {
+         null
+      } else {
+         if (isDebugEnabled) debug("Configured %d threads for operation thread pool", operationThreads)
+         new OperationDispatcher(operationThreads, operationQueueSize, threadNamePrefix)
+      }
+   }
+   private val pipeline = new NettyChannelPipelineFactory(server, encoder, this, idleTimeout, responseBatchSize,
+                                                          operationDispatcher)
    private val factory = {
       if (workerThreads == 0)
          new NioServerSocketChannelFactory(masterExecutor, workerExecutor)
@@ -133,6 +143,8 @@ class NettyTransport(server: ProtocolServer, encoder: ChannelDownstreamHandler,
             }
          }
       }
+      if (operationDispatcher != null)
+         operationDispatcher.releaseExternalResources
       pipeline.stop
       if (isDebugEnabled) debug("Channel group completely closed, release external resources");
       factory.releaseExternalResources();
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core.transport
+
+import org.jboss.netty.handler.execution.{ChannelEventRunnable, ExecutionHandler, OrderedMemoryAwareThreadPoolExecutor}
+import org.jboss.netty.channel.{ChannelEvent, ChannelHandlerContext}
+import org.infinispan.stats.{LatencyHistogram, LatencyStatistics, WindowedLatencyHistogram}
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ThreadFactory, TimeUnit}
+
+/**
+ * Hands the events received on the channels over to a bounded pool of operation threads, so that decoding and the
+ * cache operations, which may block on a cache store, on a remote call or on a lock, never hold up the Netty I/O
+ * workers and with them every other connection served by the same worker.
+ *
+ * Events of a channel are processed one at a time and in the order they were received, which keeps requests and
+ * responses of a connection in order. The executor accounts for the size of the queued events: once more than
+ * <tt>maxQueuedBytes</tt> are waiting, the I/O workers block until the operation threads catch up, and a single
+ * channel with more than {@link OperationDispatcher#MaxChannelQueuedBytes} waiting stops being read from.
+ *
+ * The time events spend waiting for an operation thread is recorded, both since the server started and for the
+ * last minute.
+ *
+ * @since 5.0
+ */
+class OperationDispatcher(threads: Int, maxQueuedBytes: Long, threadNamePrefix: String)
+      extends ExecutionHandler(OperationDispatcher.createExecutor(threads, maxQueuedBytes, threadNamePrefix)) {
+
+   private val queued = new AtomicInteger
+   private val queueDelays = new LatencyHistogram
+   private val recentQueueDelays = new WindowedLatencyHistogram(LatencyStatistics.WINDOW_MILLIS, 4)
+
+   override def handleUpstream(ctx: ChannelHandlerContext, e: ChannelEvent) {
+      queued.incrementAndGet
+      getExecutor.execute(new QueuedEvent(ctx, e))
+   }
+
+   /**
+    * Returns the number of received events waiting for an operation thread.
+    */
+   def getQueuedEvents: Int = queued.get
+
+   /**
+    * Returns the time, in nanoseconds, events waited for an operation thread since the server started.
+    */
+   def getQueueDelays: LatencyHistogram.Snapshot = queueDelays.snapshot
+
+   /**
+    * Returns the time, in nanoseconds, events waited for an operation thread during the last minute.
+    */
+   def getRecentQueueDelays: LatencyHistogram.Snapshot = recentQueueDelays.snapshot
+
+   def getThreads = threads
+
+   private class QueuedEvent(ctx: ChannelHandlerContext, e: ChannelEvent) extends ChannelEventRunnable(ctx, e) {
+      private val queuedAt = System.nanoTime
+
+      override def run {
+         val delay = System.nanoTime - queuedAt
+         queued.decrementAndGet
+         queueDelays.record(delay)
+         recentQueueDelays.record(delay, 1)
+         super.run
+      }
+   }
+
+}
+
+object OperationDispatcher {
+   val MaxChannelQueuedBytes = 1024 * 1024
+
+   private def createExecutor(threads: Int, maxQueuedBytes: Long, threadNamePrefix: String) = {
+      val threadFactory = new ThreadFactory {
+         private val threadCounter = new AtomicInteger
+         override def newThread(r: Runnable): Thread =
+            new Thread(r, threadNamePrefix + "Operation-" + threadCounter.incrementAndGet)
+      }
+      new OrderedMemoryAwareThreadPoolExecutor(threads, math.min(MaxChannelQueuedBytes, maxQueuedBytes),
+         maxQueuedBytes, 60, TimeUnit.SECONDS, threadFactory)
+   }
+}
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core.transport
+
+import org.jboss.netty.handler.queue.BufferedWriteHandler
+import org.jboss.netty.channel.{MessageEvent, ChannelHandlerContext}
+import org.jboss.netty.buffer.ChannelBuffer
+
+/**
+ * Holds back the responses written while a chunk of received data is being decoded, so that the responses to all
+ * the requests a client pipelined into that chunk reach the socket as a single consolidated write, instead of paying
+ * a system call per response. Responses written outside of a batch go out straight away, and a batch is flushed
+ * early once it holds more than <tt>maxBatchBytes</tt> bytes, so that large responses are not all kept in memory.
+ *
+ * This handler must sit closer to the socket than any encoder, so that it only ever sees encoded buffers. There is
+ * one instance per channel.
+ *
+ * @since 5.0
+ */
+class ResponseBatcher(maxBatchBytes: Int) extends BufferedWriteHandler(true) {
+
+   @volatile private var batching = false
+   @volatile private var pendingBytes = 0L
+
+   /**
+    * Runs the given function, typically decoding of received data, writing all responses produced by it in one go
+    * once it returns.
+    */
+   def batch[T](f: => T): T = {
+      batching = true
+      try {
+         f
+      } finally {
+         batching = false
+         flush
+      }
+   }
+
+   override def writeRequested(ctx: ChannelHandlerContext, e: MessageEvent) {
+      super.writeRequested(ctx, e)
+      if (!batching) {
+         flush
+      } else {
+         e.getMessage match {
+            case b: ChannelBuffer => {
+               pendingBytes += b.readableBytes
+               if (pendingBytes >= maxBatchBytes) flush
+            }
+            case _ => // not encoded, cannot be sized
+         }
+      }
+   }
+
+   override def flush(consolidateOnFlush: Boolean) {
+      pendingBytes = 0
+      super.flush(consolidateOnFlush)
+   }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.core.transport
+
+import org.jboss.netty.buffer.{ChannelBuffers, ChannelBuffer}
+import collection.mutable.ListBuffer
+import ExtendedChannelBuffer._
+
+/**
+ * Accumulates an encoded response without copying the large byte arrays in it, which in practice are the cached
+ * values. Small fields are written into {@link #buffer}, whereas arrays of at least {@link ResponseBuffer#WrapThreshold}
+ * bytes are wrapped as they are and become components of the composite buffer returned by {@link #toChannelBuffer}.
+ *
+ * As {@link #buffer} changes after a large array is written, callers must not hold on to it.
+ *
+ * @since 5.0
+ */
+class ResponseBuffer(private var current: ChannelBuffer) {
+   import ResponseBuffer._
+
+   private val components = new ListBuffer[ChannelBuffer]
+
+   def this() = this(dynamicBuffer)
+
+   /**
+    * Returns the buffer small fields have to be written to.
+    */
+   def buffer: ChannelBuffer = current
+
+   /**
+    * Writes the length of the given array followed by its contents, as
+    * {@link ExtendedChannelBuffer#writeRangedBytes} does.
+    */
+   def writeRangedBytes(src: Array[Byte]) {
+      writeUnsignedInt(src.length, current)
+      writeBytes(src)
+   }
+
+   /**
+    * Writes the contents of the given array.
+    */
+   def writeBytes(src: Array[Byte]) {
+      if (src.length < WrapThreshold) {
+         current.writeBytes(src)
+      } else {
+         if (current.readable) components += current
+         components += ChannelBuffers.wrappedBuffer(src)
+         current = ChannelBuffers.dynamicBuffer(FieldsCapacity)
+      }
+   }
+
+   def toChannelBuffer: ChannelBuffer = {
+      if (components.isEmpty) {
+         current
+      } else {
+         if (current.readable) components += current
+         ChannelBuffers.wrappedBuffer(components: _*)
+      }
+   }
+
+}
+
+object ResponseBuffer {
+   /**
+    * Below this size, copying an array is cheaper than adding a component to the composite buffer.
+    */
+   val WrapThreshold = 1024
+
+   private val FieldsCapacity = 64
+}
@@ -27,6 +27,7 @@ import org.infinispan.stats.Stats
 import org.infinispan.util.ByteArrayKey
 import org.jboss.netty.buffer.ChannelBuffer
 import org.infinispan.server.core.{RequestParameters, CacheValue}
+import org.infinispan.server.core.transport.NettyTransport
 
 /**
  * This class represents the work to be done by a decoder of a particular Hot Rod protocol version.
@@ -51,6 +52,32 @@ abstract class AbstractVersionedDecoder {
     */
    def readParameters(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Boolean)
 
+   /**
+    * Read the keys of a multi-key operation.
+    */
+   def readKeys(header: HotRodHeader, buffer: ChannelBuffer): Array[ByteArrayKey]
+
+   /**
+    * Read the parameters and the key/value pairs of a multi-key store operation.
+    */
+   def readEntries(header: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Array[(ByteArrayKey, Array[Byte])])
+
+   /**
+    * Read the options of an entry iteration: whether only entries this node is the primary owner of are to be
+    * returned, and whether entries only present in the cache store are to be returned as well.
+    */
+   def readIterationStart(header: HotRodHeader, buffer: ChannelBuffer): (Boolean, Boolean)
+
+   /**
+    * Read the id of the iteration to continue and the maximum number of entries to return.
+    */
+   def readIterationNext(header: HotRodHeader, buffer: ChannelBuffer): (String, Int)
+
+   /**
+    * Read the id of the iteration to end.
+    */
+   def readIterationId(header: HotRodHeader, buffer: ChannelBuffer): String
+
    /**
     * Read the value part of the operation.
     */
@@ -76,6 +103,36 @@ abstract class AbstractVersionedDecoder {
     */
    def createGetResponse(header: HotRodHeader, v: CacheValue): AnyRef
 
+   /**
+    * Create a response for a multi-key get request, holding the entries found.
+    */
+   def createGetAllResponse(header: HotRodHeader, entries: java.util.Map[ByteArrayKey, CacheValue]): AnyRef
+
+   /**
+    * Create a response for a multi-key store or remove request.
+    */
+   def createMultiKeyResponse(header: HotRodHeader): AnyRef
+
+   /**
+    * Create a response for a started entry iteration.
+    */
+   def createIterationStartResponse(header: HotRodHeader, iterationId: String): AnyRef
+
+   /**
+    * Create a response holding the next batch of an iteration, or indicating that the iteration does not exist.
+    */
+   def createIterationNextResponse(header: HotRodHeader, batch: Option[(Seq[(ByteArrayKey, CacheValue)], Boolean)]): AnyRef
+
+   /**
+    * Create a response for an iteration ended by the client.
+    */
+   def createIterationEndResponse(header: HotRodHeader, found: Boolean): AnyRef
+
+   /**
+    * Create a response confirming that the connection will receive invalidations for the header's cache.
+    */
+   def createAddNearCacheListenerResponse(header: HotRodHeader): AnyRef
+
    /**
     * Handle a protocol specific header reading.
     */
@@ -92,9 +149,10 @@ abstract class AbstractVersionedDecoder {
    def customReadValue(header: HotRodHeader, buffer: ChannelBuffer, cache: Cache[ByteArrayKey, CacheValue]): AnyRef
 
    /**
-    * Create a response for the stats command.
+    * Create a response for the stats command, including the statistics of the operation thread pool if the server
+    * has one.
     */
-   def createStatsResponse(header: HotRodHeader, stats: Stats): AnyRef
+   def createStatsResponse(header: HotRodHeader, stats: Stats, transport: NettyTransport): AnyRef
 
    /**
     * Create an error response based on the Throwable instance received.
@@ -37,6 +37,8 @@ import org.infinispan.context.Flag.SKIP_REMOTE_LOOKUP
 import org.infinispan.util.ByteArrayKey
 import org.jboss.netty.buffer.ChannelBuffer
 import org.infinispan.server.core.transport.ExtendedChannelBuffer._
+import org.infinispan.server.core.transport.NettyTransport
+import java.util.concurrent.TimeUnit.NANOSECONDS
 
 /**
  * HotRod protocol decoder specific for specification version 1.0.
@@ -47,6 +49,7 @@ import org.infinispan.server.core.transport.ExtendedChannelBuffer._
 object Decoder10 extends AbstractVersionedDecoder with Log {
    import OperationResponse._
    import ProtocolFlag._
+   import IterationFlag._
    type SuitableHeader = HotRodHeader
 
    override def readHeader(buffer: ChannelBuffer, messageId: Long): (HotRodHeader, Boolean) = {
@@ -65,6 +68,13 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case 0x15 => (StatsRequest, true)
          case 0x17 => (PingRequest, true)
          case 0x19 => (BulkGetRequest, false)
+         case 0x1B => (GetAllRequest, false)
+         case 0x1D => (PutAllRequest, false)
+         case 0x1F => (RemoveAllRequest, false)
+         case 0x21 => (IterationStartRequest, false)
+         case 0x23 => (IterationNextRequest, false)
+         case 0x25 => (IterationEndRequest, false)
+         case 0x27 => (AddNearCacheListenerRequest, true)
          case _ => throw new HotRodUnknownOperationException("Unknown operation: " + streamOp, messageId)
       }
       if (isTraceEnabled) trace("Operation code: %d has been matched to %s", streamOp, op)
@@ -113,6 +123,35 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
       }
    }
 
+   override def readKeys(h: HotRodHeader, buffer: ChannelBuffer): Array[ByteArrayKey] = {
+      val count = readUnsignedInt(buffer)
+      val keys = new Array[ByteArrayKey](count)
+      for (i <- 0 until count) keys(i) = readKey(buffer)
+      keys
+   }
+
+   override def readEntries(h: HotRodHeader, buffer: ChannelBuffer): (RequestParameters, Array[(ByteArrayKey, Array[Byte])]) = {
+      val lifespan = readLifespanOrMaxIdle(buffer)
+      val maxIdle = readLifespanOrMaxIdle(buffer)
+      val count = readUnsignedInt(buffer)
+      val entries = new Array[(ByteArrayKey, Array[Byte])](count)
+      for (i <- 0 until count) entries(i) = (readKey(buffer), readRangedBytes(buffer))
+      (new RequestParameters(-1, lifespan, maxIdle, -1), entries)
+   }
+
+   override def readIterationStart(h: HotRodHeader, buffer: ChannelBuffer): (Boolean, Boolean) = {
+      val flags = buffer.readUnsignedByte
+      ((flags & PrimaryOwnedOnly) != 0, (flags & IncludeCacheStore) != 0)
+   }
+
+   override def readIterationNext(h: HotRodHeader, buffer: ChannelBuffer): (String, Int) = {
+      val iterationId = readString(buffer)
+      val batchSize = readUnsignedInt(buffer)
+      (iterationId, batchSize)
+   }
+
+   override def readIterationId(h: HotRodHeader, buffer: ChannelBuffer): String = readString(buffer)
+
    private def readLifespanOrMaxIdle(buffer: ChannelBuffer): Int = {
       val stream = readUnsignedInt(buffer)
       if (stream <= 0) -1 else stream
@@ -152,6 +191,31 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
             h.topologyId, None, 0)
    }
 
+   override def createGetAllResponse(h: HotRodHeader, entries: java.util.Map[ByteArrayKey, CacheValue]): AnyRef =
+      new GetAllResponse(h.messageId, h.cacheName, h.clientIntel, GetAllResponse, Success, h.topologyId, entries)
+
+   override def createMultiKeyResponse(h: HotRodHeader): AnyRef =
+      new Response(h.messageId, h.cacheName, h.clientIntel, toResponse(h.op), Success, h.topologyId)
+
+   override def createIterationStartResponse(h: HotRodHeader, iterationId: String): AnyRef =
+      new IterationStartResponse(h.messageId, h.cacheName, h.clientIntel, h.topologyId, iterationId)
+
+   override def createIterationNextResponse(h: HotRodHeader, batch: Option[(Seq[(ByteArrayKey, CacheValue)], Boolean)]): AnyRef = {
+      batch match {
+         case Some((entries, finished)) =>
+            new IterationNextResponse(h.messageId, h.cacheName, h.clientIntel, h.topologyId, entries, finished)
+         case None =>
+            new Response(h.messageId, h.cacheName, h.clientIntel, IterationNextResponse, KeyDoesNotExist, h.topologyId)
+      }
+   }
+
+   override def createIterationEndResponse(h: HotRodHeader, found: Boolean): AnyRef =
+      new Response(h.messageId, h.cacheName, h.clientIntel, IterationEndResponse,
+         if (found) Success else KeyDoesNotExist, h.topologyId)
+
+   override def createAddNearCacheListenerResponse(h: HotRodHeader): AnyRef =
+      new Response(h.messageId, h.cacheName, h.clientIntel, AddNearCacheListenerResponse, Success, h.topologyId)
+
    override def customReadHeader(h: HotRodHeader, buffer: ChannelBuffer, cache: Cache[ByteArrayKey, CacheValue]): AnyRef = {
       h.op match {
          case ClearRequest => {
@@ -200,7 +264,7 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
 
    override def customReadValue(header: HotRodHeader, buffer: ChannelBuffer, cache: Cache[ByteArrayKey, CacheValue]): AnyRef = null
 
-   override def createStatsResponse(h: HotRodHeader, cacheStats: Stats): AnyRef = {
+   override def createStatsResponse(h: HotRodHeader, cacheStats: Stats, t: NettyTransport): AnyRef = {
       val stats = mutable.Map.empty[String, String]
       stats += ("timeSinceStart" -> cacheStats.getTimeSinceStart.toString)
       stats += ("currentNumberOfEntries" -> cacheStats.getCurrentNumberOfEntries.toString)
@@ -211,6 +275,15 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
       stats += ("misses" -> cacheStats.getMisses.toString)
       stats += ("removeHits" -> cacheStats.getRemoveHits.toString)
       stats += ("removeMisses" -> cacheStats.getRemoveMisses.toString)
+      val dispatcher = t.operationDispatcher
+      if (dispatcher != null) {
+         // Time requests waited for an operation thread during the last minute, in microseconds
+         val delays = dispatcher.getRecentQueueDelays
+         stats += ("queuedOperations" -> dispatcher.getQueuedEvents.toString)
+         stats += ("operationQueueDelayP50" -> NANOSECONDS.toMicros(delays.getPercentile(50)).toString)
+         stats += ("operationQueueDelayP99" -> NANOSECONDS.toMicros(delays.getPercentile(99)).toString)
+         stats += ("operationQueueDelayMax" -> NANOSECONDS.toMicros(delays.getMax).toString)
+      }
       new StatsResponse(h.messageId, h.cacheName, h.clientIntel, immutable.Map[String, String]() ++ stats, h.topologyId)
    }
 
@@ -248,6 +321,13 @@ object Decoder10 extends AbstractVersionedDecoder with Log {
          case StatsRequest => StatsResponse
          case PingRequest => PingResponse
          case BulkGetRequest => BulkGetResponse
+         case GetAllRequest => GetAllResponse
+         case PutAllRequest => PutAllResponse
+         case RemoveAllRequest => RemoveAllResponse
+         case IterationStartRequest => IterationStartResponse
+         case IterationNextRequest => IterationNextResponse
+         case IterationEndRequest => IterationEndResponse
+         case AddNearCacheListenerRequest => AddNearCacheListenerResponse
       }
    }
 
@@ -268,7 +348,24 @@ object OperationResponse extends Enumeration {
    val StatsResponse = Value(0x16)
    val PingResponse = Value(0x18)
    val BulkGetResponse = Value(0x1A)
+   val GetAllResponse = Value(0x1C)
+   val PutAllResponse = Value(0x1E)
+   val RemoveAllResponse = Value(0x20)
+   val IterationStartResponse = Value(0x22)
+   val IterationNextResponse = Value(0x24)
+   val IterationEndResponse = Value(0x26)
+   val AddNearCacheListenerResponse = Value(0x28)
    val ErrorResponse = Value(0x50)
+   // Pushed by the server rather than sent in reply to a request
+   val InvalidationEvent = Value(0x60)
+}
+
+/**
+ * Bits of the flags byte sent when starting an entry iteration.
+ */
+object IterationFlag {
+   val PrimaryOwnedOnly = 0x01
+   val IncludeCacheStore = 0x02
 }
 
 object ProtocolFlag extends Enumeration {
@@ -29,6 +29,9 @@ import OperationStatus._
 import org.infinispan.manager.EmbeddedCacheManager
 import org.infinispan.server.hotrod.ProtocolFlag._
 import org.infinispan.server.hotrod.OperationResponse._
+import org.infinispan.server.hotrod.HotRodOperation._
+import org.infinispan.context.Flag.SKIP_REMOTE_LOOKUP
+import java.util.concurrent.TimeUnit
 import org.infinispan.server.core.transport.ExtendedChannelBuffer._
 import java.nio.channels.ClosedChannelException
 import org.infinispan.Cache
@@ -44,7 +47,8 @@ import org.jboss.netty.channel.Channel
  * @author Galder Zamarreño
  * @since 4.1
  */
-class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTransport)
+class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTransport, iterationManager: IterationManager,
+                    nearCacheNotifier: NearCacheNotifier)
         extends AbstractProtocolDecoder[ByteArrayKey, CacheValue](transport) {
    import HotRodDecoder._
    import HotRodServer._
@@ -144,17 +148,70 @@ class HotRodDecoder(cacheManager: EmbeddedCacheManager, transport: NettyTranspor
    override def createMultiGetResponse(pairs: Map[ByteArrayKey, CacheValue]): AnyRef =
       null // Unsupported
 
-   override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef =
-      writeResponse(ch, header.decoder.customReadHeader(header, buffer, cache))
+   override protected def customDecodeHeader(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case AddNearCacheListenerRequest => {
+            nearCacheNotifier.addListener(ch, header.cacheName, header.messageId, cache) {
+               writeResponse(ch, header.decoder.createAddNearCacheListenerResponse(header))
+            }
+         }
+         case _ => writeResponse(ch, header.decoder.customReadHeader(header, buffer, cache))
+      }
+   }
 
-   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef =
-      writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+   override protected def customDecodeKey(ch: Channel, buffer: ChannelBuffer): AnyRef = {
+      header.op match {
+         case GetAllRequest => writeResponse(ch, getAll(buffer))
+         case PutAllRequest => writeResponse(ch, putAll(buffer))
+         case RemoveAllRequest => writeResponse(ch, removeAll(buffer))
+         case IterationStartRequest => {
+            val (primaryOwnedOnly, includeStore) = header.decoder.readIterationStart(header, buffer)
+            val iterationId = iterationManager.start(cache, primaryOwnedOnly, includeStore)
+            writeResponse(ch, header.decoder.createIterationStartResponse(header, iterationId))
+         }
+         case IterationNextRequest => {
+            val (iterationId, batchSize) = header.decoder.readIterationNext(header, buffer)
+            writeResponse(ch, header.decoder.createIterationNextResponse(header, iterationManager.next(iterationId, batchSize)))
+         }
+         case IterationEndRequest => {
+            val iterationId = header.decoder.readIterationId(header, buffer)
+            writeResponse(ch, header.decoder.createIterationEndResponse(header, iterationManager.end(iterationId)))
+         }
+         case _ => writeResponse(ch, header.decoder.customReadKey(header, buffer, cache))
+      }
+   }
+
+   private def getAll(buffer: ChannelBuffer): AnyRef = {
+      val keys = new java.util.HashSet[ByteArrayKey]
+      header.decoder.readKeys(header, buffer).foreach(keys.add(_))
+      // Keys not owned by this node are fetched with one remote call per owner
+      header.decoder.createGetAllResponse(header, cache.getAdvancedCache.getAll(keys))
+   }
+
+   private def putAll(buffer: ChannelBuffer): AnyRef = {
+      val (params, entries) = header.decoder.readEntries(header, buffer)
+      val map = new java.util.HashMap[ByteArrayKey, CacheValue]
+      for ((k, rawValue) <- entries)
+         map.put(k, header.decoder.createValue(params, generateVersion(cache), rawValue))
+      // Previous values are never returned, so avoid fetching them
+      cache.getAdvancedCache.withFlags(SKIP_REMOTE_LOOKUP).putAll(map,
+         toMillis(params.lifespan), TimeUnit.MILLISECONDS,
+         toMillis(params.maxIdle), TimeUnit.MILLISECONDS)
+      header.decoder.createMultiKeyResponse(header)
+   }
+
+   private def removeAll(buffer: ChannelBuffer): AnyRef = {
+      val keys = header.decoder.readKeys(header, buffer)
+      val optimized = cache.getAdvancedCache.withFlags(SKIP_REMOTE_LOOKUP)
+      keys.foreach(optimized.remove(_))
+      header.decoder.createMultiKeyResponse(header)
+   }
 
    override protected def customDecodeValue(ch: Channel, buffer: ChannelBuffer): AnyRef =
       writeResponse(ch, header.decoder.customReadValue(header, buffer, cache))
 
    override def createStatsResponse: AnyRef =
-      header.decoder.createStatsResponse(header, cache.getAdvancedCache.getStats)
+      header.decoder.createStatsResponse(header, cache.getAdvancedCache.getStats, transport)
 
    override def createErrorResponse(t: Throwable): AnyRef = {
       t match {
@@ -34,6 +34,7 @@ import org.jboss.netty.handler.codec.oneone.OneToOneEncoder
 import org.jboss.netty.channel.Channel
 import org.jboss.netty.buffer.ChannelBuffer
 import org.infinispan.server.core.transport.ExtendedChannelBuffer._
+import org.infinispan.server.core.transport.ResponseBuffer
 
 /**
  * Hot Rod specific encoder.
@@ -53,27 +54,27 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
       val isTrace = isTraceEnabled
 
       if (isTrace) trace("Encode msg %s", msg)
-      val buffer: ChannelBuffer = msg match { 
-         case r: Response => writeHeader(r, isTrace, getTopologyResponse(r))
+      val out = msg match {
+         case r: Response => new ResponseBuffer(writeHeader(r, isTrace, getTopologyResponse(r)))
       }
       msg match {
          case r: ResponseWithPrevious => {
             if (r.previous == None)
-               writeUnsignedInt(0, buffer)
+               writeUnsignedInt(0, out.buffer)
             else
-               writeRangedBytes(r.previous.get, buffer)
+               out.writeRangedBytes(r.previous.get)
          }
          case s: StatsResponse => {
-            writeUnsignedInt(s.stats.size, buffer)
+            writeUnsignedInt(s.stats.size, out.buffer)
             for ((key, value) <- s.stats) {
-               writeString(key, buffer)
-               writeString(value, buffer)
+               writeString(key, out.buffer)
+               writeString(value, out.buffer)
             }
          }
          case g: GetWithVersionResponse => {
             if (g.status == Success) {
-               buffer.writeLong(g.version)
-               writeRangedBytes(g.data.get, buffer)
+               out.buffer.writeLong(g.version)
+               out.writeRangedBytes(g.data.get)
             }
          }
          case g: BulkGetResponse => {
@@ -86,18 +87,37 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
                   iterator = iterator.take(g.count)
                }
                for (entry <- iterator) {
-                  buffer.writeByte(1) // Not done
-                  writeRangedBytes(entry.getKey.getData, buffer)
-                  writeRangedBytes(entry.getValue.data, buffer)
+                  out.buffer.writeByte(1) // Not done
+                  out.writeRangedBytes(entry.getKey.getData)
+                  out.writeRangedBytes(entry.getValue.data)
                }
-               buffer.writeByte(0) // Done
+               out.buffer.writeByte(0) // Done
             }
          }
-         case g: GetResponse => if (g.status == Success) writeRangedBytes(g.data.get, buffer)
-         case e: ErrorResponse => writeString(e.msg, buffer)
-         case _ => if (buffer == null) throw new IllegalArgumentException("Response received is unknown: " + msg);         
+         case g: GetAllResponse => {
+            for (entry <- asIterator(g.entries.entrySet.iterator)) {
+               out.buffer.writeByte(1) // Not done
+               out.writeRangedBytes(entry.getKey.getData)
+               out.writeRangedBytes(entry.getValue.data)
+            }
+            out.buffer.writeByte(0) // Done
+         }
+         case i: IterationStartResponse => writeString(i.iterationId, out.buffer)
+         case i: IterationNextResponse => {
+            writeUnsignedInt(i.entries.size, out.buffer)
+            for ((k, v) <- i.entries) {
+               out.writeRangedBytes(k.getData)
+               out.writeRangedBytes(v.data)
+            }
+            out.buffer.writeByte(if (i.finished) 1 else 0)
+         }
+         case e: InvalidationEvent => out.writeRangedBytes(e.key)
+         case g: GetResponse => if (g.status == Success) out.writeRangedBytes(g.data.get)
+         case e: ErrorResponse => writeString(e.msg, out.buffer)
+         case _ => if (out == null) throw new IllegalArgumentException("Response received is unknown: " + msg);
       }
-      buffer
+      // Values are not copied into the response, but wrapped into a composite buffer
+      out.toChannelBuffer
    }
 
    val DEFAULT_HASH_FUNCTION_VERSION: Byte = 2
@@ -111,11 +131,15 @@ class HotRodEncoder(cacheManager: EmbeddedCacheManager) extends OneToOneEncoder
                if (r.topologyId != currentTopologyView.topologyId) {
                   val cache = getCacheInstance(r.cacheName, cacheManager)
                   val config = cache.getConfiguration
-                  if (r.clientIntel == 2 || !config.getCacheMode.isDistributed) {
+                  val hashSpace =
+                     if (r.clientIntel == 2 || !config.getCacheMode.isDistributed) 0
+                     else cache.getAdvancedCache.getDistributionManager.getConsistentHash.getHashSpace
+                  if (hashSpace <= 0) {
+                     // Either the client or the cache cannot do hash distribution, or the consistent hash is not
+                     // wheel based (i.e. segmented), so clients cannot locate keys with hash ids: topology only
                      TopologyAwareResponse(TopologyView(currentTopologyView.topologyId, currentTopologyView.members))
-                  } else { // Must be 3 and distributed
+                  } else { // Must be 3, distributed and with a hash wheel
                      // TODO: Retrieve hash function when we have specified functions
-                     val hashSpace = cache.getAdvancedCache.getDistributionManager.getConsistentHash.getHashSpace
                      HashDistAwareResponse(TopologyView(currentTopologyView.topologyId, currentTopologyView.members),
                            config.getNumOwners, DEFAULT_HASH_FUNCTION_VERSION, hashSpace)
                   }
@@ -37,5 +37,12 @@ object HotRodOperation extends Enumeration(20) {
    val QuitRequest = Value
    val PingRequest = Value
    val BulkGetRequest = Value
+   val GetAllRequest = Value
+   val PutAllRequest = Value
+   val RemoveAllRequest = Value
+   val IterationStartRequest = Value
+   val IterationNextRequest = Value
+   val IterationEndRequest = Value
+   val AddNearCacheListenerRequest = Value
 
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged
 import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent
 import scala.collection.JavaConversions._
 import java.util.concurrent.TimeUnit._
+import java.util.concurrent.Executors
 import org.infinispan.{CacheException, Cache}
 import org.infinispan.remoting.transport.Address
 import org.infinispan.manager.EmbeddedCacheManager
@@ -56,13 +57,16 @@ class HotRodServer extends AbstractProtocolServer("HotRod") with Log {
    private var topologyCache: Cache[String, TopologyView] = _
    private val rand = new Random
    private val maxWaitTime = SECONDS.toMillis(30) // TODO: Make this configurable?
+   private val iterationManager = new IterationManager(IterationTimeout)
+   private val nearCacheNotifier = new NearCacheNotifier
+   protected lazy val scheduler = Executors.newScheduledThreadPool(1)
 
    def getAddress: TopologyAddress = address
 
    override def getEncoder = new HotRodEncoder(getCacheManager)
 
    override def getDecoder() : HotRodDecoder = {
-      var hotRodDecoder: HotRodDecoder = new HotRodDecoder(getCacheManager, transport)
+      var hotRodDecoder: HotRodDecoder = new HotRodDecoder(getCacheManager, transport, iterationManager, nearCacheNotifier)
       hotRodDecoder.versionGenerator = this.versionGenerator
       hotRodDecoder
    }
@@ -74,6 +78,9 @@ class HotRodServer extends AbstractProtocolServer("HotRod") with Log {
          defineTopologyCacheConfig(cacheManager, TypedProperties.toTypedProperties(properties))
          
       super.start(properties, cacheManager, 11222)
+      scheduler.scheduleWithFixedDelay(new Runnable {
+         override def run = iterationManager.purgeIdleIterations
+      }, IterationPurgeInterval, IterationPurgeInterval, MILLISECONDS)
    }
 
    override def startTransport(idleTimeout: Int, tcpNoDelay: Boolean, sendBufSize: Int, recvBufSize: Int, typedProps: TypedProperties) {
@@ -193,6 +200,8 @@ class HotRodServer extends AbstractProtocolServer("HotRod") with Log {
 
    override def stop {
       super.stop
+      scheduler.shutdown
+      nearCacheNotifier.stop
       if (isClustered && topologyCache != null)
          removeSelfFromTopologyView
    }
@@ -316,6 +325,15 @@ class HotRodServer extends AbstractProtocolServer("HotRod") with Log {
 
 object HotRodServer {
    val TopologyCacheName = "___hotRodTopologyCache"
+   /**
+    * Time after which an entry iteration the client stopped pulling from is discarded.
+    */
+   val IterationTimeout = MINUTES.toMillis(5)
+
+   /**
+    * How often iterations idle for longer than the timeout are looked for.
+    */
+   val IterationPurgeInterval = MINUTES.toMillis(1)
 
    def getCacheInstance(cacheName: String, cacheManager: EmbeddedCacheManager): Cache[ByteArrayKey, CacheValue] = {
       if (cacheName.isEmpty) cacheManager.getCache[ByteArrayKey, CacheValue]
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.hotrod
+
+import logging.Log
+import org.infinispan.Cache
+import org.infinispan.server.core.CacheValue
+import org.infinispan.util.ByteArrayKey
+import org.infinispan.container.entries.InternalCacheEntry
+import org.infinispan.loaders.{CacheLoader, CacheLoaderManager}
+import org.infinispan.remoting.transport.Address
+import org.infinispan.distribution.ch.ConsistentHash
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import collection.mutable.ArrayBuffer
+
+/**
+ * Keeps track of the entry iterations opened by clients. An iteration walks the local data container lazily, and
+ * optionally the cache store afterwards, handing out one batch of entries per request, so that the cache contents are
+ * never materialized as a whole. The only exception are the keys of the cache store, see `Iteration.loadStoreKeys`.
+ * Iterations are not bound to a connection, so a client can pull the next batch over any
+ * of its pooled connections. Iterations nobody pulled from for longer than the timeout are discarded by
+ * `purgeIdleIterations`, which the server calls periodically.
+ *
+ * @since 5.0
+ */
+class IterationManager(timeoutMillis: Long) extends Log {
+   private val iterations = new ConcurrentHashMap[String, Iteration]
+
+   def start(cache: Cache[ByteArrayKey, CacheValue], primaryOwnedOnly: Boolean, includeStore: Boolean): String = {
+      val id = UUID.randomUUID.toString
+      iterations.put(id, new Iteration(cache, primaryOwnedOnly, includeStore))
+      if (isTraceEnabled) trace("Started iteration %s over cache %s", id, cache.getName)
+      id
+   }
+
+   /**
+    * Returns the next batch of entries along with whether the iteration has finished, or None if the iteration does
+    * not exist, e.g. because it had been idle for too long.
+    */
+   def next(id: String, batchSize: Int): Option[(Seq[(ByteArrayKey, CacheValue)], Boolean)] = {
+      val iteration = iterations.get(id)
+      if (iteration == null) {
+         None
+      } else {
+         val (batch, finished) = iteration.synchronized {
+            val batch = iteration.next(batchSize)
+            (batch, !iteration.hasNext)
+         }
+         if (finished) iterations.remove(id)
+         Some((batch, finished))
+      }
+   }
+
+   def end(id: String): Boolean = iterations.remove(id) != null
+
+   def size: Int = iterations.size
+
+   def purgeIdleIterations {
+      val now = System.currentTimeMillis
+      val it = iterations.entrySet.iterator
+      while (it.hasNext) {
+         val entry = it.next
+         if (now - entry.getValue.lastAccess > timeoutMillis) {
+            if (isDebugEnabled) debug("Discarding idle iteration %s", entry.getKey)
+            it.remove
+         }
+      }
+   }
+}
+
+private class Iteration(cache: Cache[ByteArrayKey, CacheValue], primaryOwnedOnly: Boolean, includeStore: Boolean) {
+   @volatile var lastAccess = System.currentTimeMillis
+   private val dataContainer = cache.getAdvancedCache.getDataContainer
+   private val entries = dataContainer.iterator
+   private val consistentHash: ConsistentHash =
+      if (primaryOwnedOnly && cache.getConfiguration.getCacheMode.isDistributed)
+         cache.getAdvancedCache.getDistributionManager.getConsistentHash
+      else null
+   private val localAddress: Address = cache.getCacheManager.getAddress
+   private var loader: CacheLoader = null
+   private var storeKeys: java.util.Iterator[AnyRef] = null
+   private var nextEntry: (ByteArrayKey, CacheValue) = null
+
+   def next(batchSize: Int): Seq[(ByteArrayKey, CacheValue)] = {
+      lastAccess = System.currentTimeMillis
+      val batch = new ArrayBuffer[(ByteArrayKey, CacheValue)](batchSize)
+      while (batch.size < batchSize && hasNext) {
+         batch += nextEntry
+         nextEntry = null
+      }
+      batch
+   }
+
+   def hasNext: Boolean = {
+      while (nextEntry == null) {
+         if (entries.hasNext) {
+            nextEntry = toEntry(entries.next)
+         } else if (includeStore && storeKeys == null) {
+            storeKeys = loadStoreKeys
+         } else if (storeKeys != null && storeKeys.hasNext) {
+            val k = storeKeys.next
+            // Entries in memory have been returned already
+            if (!dataContainer.containsKey(k)) nextEntry = toEntry(loader.load(k))
+         } else {
+            return false
+         }
+      }
+      true
+   }
+
+   private def toEntry(ice: InternalCacheEntry): (ByteArrayKey, CacheValue) = {
+      if (ice == null || ice.isExpired) return null
+      val k = ice.getKey.asInstanceOf[ByteArrayKey]
+      // Backup copies and L1 entries are returned by the primary owner
+      if (consistentHash != null && !consistentHash.isKeyLocalToAddress(localAddress, k, 1)) return null
+      (k, ice.getValue.asInstanceOf[CacheValue])
+   }
+
+   /**
+    * Loads the keys of the whole cache store at once, as the cache loader API offers no cursor over them. The values
+    * are still loaded one at a time, so an iteration holds the stored keys but never the stored entries.
+    */
+   private def loadStoreKeys: java.util.Iterator[AnyRef] = {
+      val loaderManager = cache.getAdvancedCache.getComponentRegistry.getComponent(classOf[CacheLoaderManager])
+      if (loaderManager != null && loaderManager.isEnabled) {
+         loader = loaderManager.getCacheLoader
+         loader.loadAllKeys(null).iterator
+      } else {
+         java.util.Collections.emptySet[AnyRef].iterator
+      }
+   }
+}
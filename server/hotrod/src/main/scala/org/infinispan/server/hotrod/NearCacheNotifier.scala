@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.hotrod
+
+import logging.Log
+import org.infinispan.Cache
+import org.infinispan.server.core.CacheValue
+import org.infinispan.util.ByteArrayKey
+import org.infinispan.notifications.Listener
+import org.infinispan.notifications.cachelistener.annotation.{CacheEntryRemoved, CacheEntryModified}
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent
+import org.jboss.netty.channel.{ChannelFuture, ChannelFutureListener, Channel}
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Pushes the keys modified or removed in a cache to the clients that keep a near cache of it. A client registers a
+ * connection per server and cache, and from then on the connection receives an invalidation event, tagged with the
+ * message id of the registration, for every modification applied to the data of this server. Since every
+ * modification is applied on the server that received it and on the key owners, a client registered with all servers
+ * learns about all of them, whatever the cache mode. Registrations end when the connection is closed.
+ *
+ * Events are written without waiting for the client to read them. A connection that cannot keep up and whose outbound
+ * buffer is full is closed, which makes the client drop its near cache and register again, rather than buffering an
+ * unbounded number of events in the server.
+ *
+ * @since 5.0
+ */
+class NearCacheNotifier extends Log {
+   private val listeners = new ConcurrentHashMap[String, InvalidationListener]
+
+   /**
+    * Registers the channel for invalidations of the cache and writes the response with the given function. Events
+    * are only written once the response has been, so that the client can tell when it is fully registered.
+    */
+   def addListener[T](ch: Channel, cacheName: String, messageId: Long, cache: Cache[ByteArrayKey, CacheValue])
+                     (respond: => T): T = {
+      val listener = getOrCreateListener(cacheName, cache)
+      val registration = new Registration(ch, messageId, cacheName)
+      registration.synchronized {
+         listener.channels.put(ch, registration)
+         ch.getCloseFuture.addListener(new ChannelFutureListener {
+            override def operationComplete(f: ChannelFuture) = listener.channels.remove(ch)
+         })
+         if (isDebugEnabled) debug("Channel %s registered for invalidations of cache %s", ch, cacheName)
+         respond
+      }
+   }
+
+   def stop {
+      val it = listeners.values.iterator
+      while (it.hasNext) {
+         val listener = it.next
+         listener.cache.removeListener(listener)
+      }
+      listeners.clear
+   }
+
+   private def getOrCreateListener(cacheName: String, cache: Cache[ByteArrayKey, CacheValue]): InvalidationListener = {
+      val existing = listeners.get(cacheName)
+      if (existing != null) {
+         existing
+      } else {
+         listeners.synchronized {
+            val current = listeners.get(cacheName)
+            if (current != null) {
+               current
+            } else {
+               val listener = new InvalidationListener(cache)
+               cache.addListener(listener)
+               listeners.put(cacheName, listener)
+               listener
+            }
+         }
+      }
+   }
+
+   // Invoked by the thread applying the modification, which only pays for handing the event to Netty
+   @Listener
+   private class InvalidationListener(val cache: Cache[ByteArrayKey, CacheValue]) {
+      val channels = new ConcurrentHashMap[Channel, Registration]
+
+      @CacheEntryModified
+      @CacheEntryRemoved
+      def entryChanged(e: CacheEntryEvent[ByteArrayKey, CacheValue]) {
+         if (!e.isPre && !channels.isEmpty) {
+            val key = e.getKey.getData
+            val it = channels.values.iterator
+            while (it.hasNext) it.next.invalidate(key)
+         }
+      }
+   }
+
+   private class Registration(ch: Channel, messageId: Long, cacheName: String) {
+      def invalidate(key: Array[Byte]) {
+         synchronized {
+            if (ch.isWritable) {
+               ch.write(new InvalidationEvent(messageId, cacheName, key))
+            } else if (ch.isOpen) {
+               if (isDebugEnabled) debug("Closing channel %s, too slow to read invalidations of cache %s", ch, cacheName)
+               ch.close
+            }
+         }
+      }
+   }
+}
@@ -24,7 +24,8 @@ package org.infinispan.server.hotrod
 
 import OperationStatus._
 import OperationResponse._
-import org.infinispan.util.Util
+import org.infinispan.util.{ByteArrayKey, Util}
+import org.infinispan.server.core.CacheValue
 
 /**
  * A basic responses. The rest of this file contains other response types.
@@ -87,6 +88,59 @@ class BulkGetResponse(override val messageId: Long, override val cacheName: Stri
    }
 }
 
+class GetAllResponse(override val messageId: Long, override val cacheName: String, override val clientIntel: Short,
+                     override val operation: OperationResponse, override val status: OperationStatus,
+                     override val topologyId: Int, val entries: java.util.Map[ByteArrayKey, CacheValue])
+      extends Response(messageId, cacheName, clientIntel, operation, status, topologyId) {
+   override def toString = {
+      new StringBuilder().append("GetAllResponse").append("{")
+         .append("messageId=").append(messageId)
+         .append(", operation=").append(operation)
+         .append(", status=").append(status)
+         .append(", size=").append(entries.size)
+         .append("}").toString
+   }
+}
+
+class IterationStartResponse(override val messageId: Long, override val cacheName: String,
+                             override val clientIntel: Short, override val topologyId: Int, val iterationId: String)
+      extends Response(messageId, cacheName, clientIntel, IterationStartResponse, Success, topologyId) {
+   override def toString = {
+      new StringBuilder().append("IterationStartResponse").append("{")
+         .append("messageId=").append(messageId)
+         .append(", iterationId=").append(iterationId)
+         .append("}").toString
+   }
+}
+
+class IterationNextResponse(override val messageId: Long, override val cacheName: String,
+                            override val clientIntel: Short, override val topologyId: Int,
+                            val entries: Seq[(ByteArrayKey, CacheValue)], val finished: Boolean)
+      extends Response(messageId, cacheName, clientIntel, IterationNextResponse, Success, topologyId) {
+   override def toString = {
+      new StringBuilder().append("IterationNextResponse").append("{")
+         .append("messageId=").append(messageId)
+         .append(", size=").append(entries.size)
+         .append(", finished=").append(finished)
+         .append("}").toString
+   }
+}
+
+/**
+ * Tells a client that registered a near cache listener to drop the key from its near cache. It carries the message id
+ * of the registration request, and no topology information.
+ */
+class InvalidationEvent(override val messageId: Long, override val cacheName: String, val key: Array[Byte])
+      extends Response(messageId, cacheName, 1, InvalidationEvent, Success, 0) {
+   override def toString = {
+      new StringBuilder().append("InvalidationEvent").append("{")
+         .append("messageId=").append(messageId)
+         .append(", cacheName=").append(cacheName)
+         .append(", key=").append(Util.printArray(key, true))
+         .append("}").toString
+   }
+}
+
 class GetWithVersionResponse(override val messageId: Long, override val cacheName: String,
                              override val clientIntel: Short, override val operation: OperationResponse,
                              override val status: OperationStatus,
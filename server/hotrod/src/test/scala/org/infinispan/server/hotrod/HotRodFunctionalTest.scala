@@ -410,4 +410,12 @@ class HotRodFunctionalTest extends HotRodSingleNodeTest {
       assertStatus(status, Success)
    }
 
+   def testGetBigSizeValue(m: Method) {
+      // Big enough to be wrapped into the response rather than copied
+      val value = generateRandomString(64 * 1024).getBytes
+      assertStatus(client.put(k(m), 0, 0, value).status, Success)
+      assertSuccess(client.assertGet(m), value)
+      assertSuccess(client.getWithVersion(k(m), 0), value, 0)
+   }
+
 }
\ No newline at end of file
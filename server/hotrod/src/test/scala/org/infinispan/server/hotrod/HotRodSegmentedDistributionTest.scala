@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.hotrod
+
+import org.testng.annotations.Test
+import org.infinispan.config.Configuration.CacheMode
+import org.infinispan.config.Configuration
+import java.lang.reflect.Method
+import org.infinispan.server.hotrod.OperationStatus._
+import test.HotRodTestingUtil._
+import org.testng.Assert._
+import org.infinispan.distribution.ch.SegmentedConsistentHash
+import org.infinispan.test.AbstractCacheTest._ // Do not remove, otherwise getDefaultClusteredConfig is not found
+
+/**
+ * Tests that hash-distribution-aware clients talking to a distributed cache backed by a
+ * segmented consistent hash, which has no hash wheel, only get topology information.
+ *
+ * @since 5.0
+ */
+@Test(groups = Array("functional"), testName = "server.hotrod.HotRodSegmentedDistributionTest")
+class HotRodSegmentedDistributionTest extends HotRodMultiNodeTest {
+
+   override protected def cacheName: String = "hotRodSegmentedDistSync"
+
+   override protected def createCacheConfig: Configuration = {
+      val config = getDefaultClusteredConfig(CacheMode.DIST_SYNC)
+      config.setConsistentHashClass(classOf[SegmentedConsistentHash].getName)
+      config
+   }
+
+   def testHashAwareClientOnlyReceivesTopology(m: Method) {
+      val consistentHash = cacheManagers.get(0).getCache(cacheName).getAdvancedCache.getDistributionManager.getConsistentHash
+      assertTrue(consistentHash.isInstanceOf[SegmentedConsistentHash])
+
+      val resp = clients.head.ping(3, 0)
+      assertStatus(resp.status, Success)
+      assertNoHashTopologyReceived(resp.topologyResponse.get, servers,
+         List(Map(cacheName -> 0), Map(cacheName -> 0)))
+
+      assertStatus(clients.head.put(k(m) , 0, 0, v(m), 3, 2).status, Success)
+      assertSuccess(clients.tail.head.get(k(m), 0), v(m))
+   }
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.hotrod
+
+import org.testng.annotations.Test
+import org.testng.Assert._
+import org.infinispan.server.core.CacheValue
+import org.infinispan.test.TestingUtil
+import org.infinispan.test.fwk.TestCacheManagerFactory
+import org.infinispan.util.ByteArrayKey
+
+/**
+ * Tests that idle entry iterations are discarded.
+ *
+ * @since 5.0
+ */
+@Test(groups = Array("functional"), testName = "server.hotrod.IterationManagerTest")
+class IterationManagerTest {
+
+   def testPurgeIdleIterations {
+      val cacheManager = TestCacheManagerFactory.createLocalCacheManager
+      try {
+         val cache = cacheManager.getCache[ByteArrayKey, CacheValue]
+         val manager = new IterationManager(500)
+         val id = manager.start(cache, false, false)
+         assertEquals(manager.size, 1)
+         manager.purgeIdleIterations
+         assertEquals(manager.size, 1)
+         Thread.sleep(600)
+         manager.purgeIdleIterations
+         assertEquals(manager.size, 0)
+         assertEquals(manager.next(id, 10), None)
+      } finally {
+         TestingUtil.killCacheManagers(cacheManager)
+      }
+   }
+}
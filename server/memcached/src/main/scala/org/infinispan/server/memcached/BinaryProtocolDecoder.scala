@@ -0,0 +1,344 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import logging.Log
+import org.infinispan.Cache
+import org.jboss.netty.buffer.{ChannelBuffers, ChannelBuffer}
+import org.jboss.netty.channel.{ChannelFutureListener, Channel}
+import java.io.StreamCorruptedException
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.atomic.AtomicLong
+import org.infinispan.server.core.transport.ResponseBuffer
+import BinaryProtocolDecoder._
+
+/**
+ * Memcached binary protocol support. Each request is a fixed size header followed by a body whose length is given
+ * in the header, so there's no line parsing involved, and quiet requests only send a response when they fail, which
+ * allows clients to pipeline a batch of them and terminate it with a NOOP.
+ *
+ * It relies on the owning {@link MemcachedDecoder} for version generation, expiry conversion and statistics.
+ *
+ * @since 5.0
+ */
+class BinaryProtocolDecoder(cache: Cache[String, MemcachedValue], decoder: MemcachedDecoder)
+      extends TextProtocolUtil with Log {
+
+   /**
+    * Reads and executes a request. As the buffer replays on underflow, the whole request is read before executing it.
+    */
+   def decode(ch: Channel, buffer: ChannelBuffer) {
+      val magic = buffer.readUnsignedByte
+      if (magic != RequestMagic)
+         throw new StreamCorruptedException("Invalid magic in binary request: " + magic)
+      val opcode = buffer.readUnsignedByte
+      val keyLength = buffer.readUnsignedShort
+      val extrasLength = buffer.readUnsignedByte
+      buffer.skipBytes(3) // data type and vbucket id, both unused
+      val bodyLength = buffer.readInt
+      val opaque = buffer.readInt
+      val cas = buffer.readLong
+      val extras = readBytes(buffer, extrasLength)
+      val key = readBytes(buffer, keyLength)
+      val value = readBytes(buffer, bodyLength - extrasLength - keyLength)
+      val request = new BinaryRequest(opcode, opaque, cas, extras, key, value)
+      if (isTraceEnabled) trace("Binary request %s", request)
+      val response =
+         try {
+            execute(ch, request)
+         } catch {
+            case e: Exception => {
+               logExceptionReported(e)
+               createResponse(request, InternalError, 0, Empty, Empty, e.toString.getBytes)
+            }
+         }
+      if (response != null)
+         ch.write(response)
+   }
+
+   private def readBytes(buffer: ChannelBuffer, length: Int): Array[Byte] = {
+      if (length < 0) throw new StreamCorruptedException("Binary request body shorter than its key and extras")
+      val bytes = new Array[Byte](length)
+      buffer.readBytes(bytes)
+      bytes
+   }
+
+   private def execute(ch: Channel, r: BinaryRequest): ChannelBuffer = {
+      r.opcode match {
+         case Get | GetQ | GetK | GetKQ => get(r)
+         case Set | SetQ | Add | AddQ | Replace | ReplaceQ => store(r)
+         case Delete | DeleteQ => delete(r)
+         case Increment | IncrementQ | Decrement | DecrementQ => incrDecr(r)
+         case Append | AppendQ | Prepend | PrependQ => appendPrepend(r)
+         case Flush | FlushQ => {
+            decoder.flush(if (r.extras.length == 4) ChannelBuffers.wrappedBuffer(r.extras).readInt else 0)
+            success(r, 0, Empty)
+         }
+         case Noop => success(r, 0, Empty)
+         case Version => success(r, 0, org.infinispan.Version.VERSION.getBytes)
+         case Quit | QuitQ => {
+            if (r.opcode == Quit)
+               ch.write(success(r, 0, Empty)).addListener(ChannelFutureListener.CLOSE)
+            else
+               ch.close
+            null
+         }
+         case _ => failure(r, UnknownCommand)
+      }
+   }
+
+   private def get(r: BinaryRequest): ChannelBuffer = {
+      val v = cache.get(r.keyString)
+      if (v == null) {
+         if (r.isQuiet) null else failure(r, KeyNotFound)
+      } else {
+         val flags = ChannelBuffers.buffer(4)
+         flags.writeInt(v.flags.toInt)
+         val key = if (r.opcode == GetK || r.opcode == GetKQ) r.key else Empty
+         createResponse(r, NoError, v.version, flags.array, key, v.data)
+      }
+   }
+
+   private def store(r: BinaryRequest): ChannelBuffer = {
+      if (r.extras.length != 8) return failure(r, InvalidArguments)
+      val extras = ChannelBuffers.wrappedBuffer(r.extras)
+      val flags = extras.readUnsignedInt
+      val lifespan = decoder.expiry(extras.readInt)
+      val k = r.keyString
+      val v = new MemcachedValue(r.value, decoder.nextVersion, flags)
+      val status =
+         if (r.cas != 0 && r.opcode != Add && r.opcode != AddQ) {
+            compareAndSwap(k, r.cas, v, lifespan)
+         } else {
+            r.opcode match {
+               case Set | SetQ => {
+                  cache.put(k, v, lifespan, MILLISECONDS, -1, MILLISECONDS)
+                  NoError
+               }
+               case Add | AddQ =>
+                  if (cache.putIfAbsent(k, v, lifespan, MILLISECONDS, -1, MILLISECONDS) == null) NoError else KeyExists
+               case Replace | ReplaceQ =>
+                  if (cache.replace(k, v, lifespan, MILLISECONDS, -1, MILLISECONDS) != null) NoError else KeyNotFound
+            }
+         }
+      if (status == NoError) success(r, v.version, Empty) else failure(r, status)
+   }
+
+   private def compareAndSwap(k: String, cas: Long, v: MemcachedValue, lifespan: Long): Int = {
+      val prev = cache.get(k)
+      if (prev == null) {
+         count(decoder.replaceIfUnmodifiedMisses)
+         KeyNotFound
+      } else if (prev.version == cas && cache.replace(k, prev, v, lifespan, MILLISECONDS, -1, MILLISECONDS)) {
+         count(decoder.replaceIfUnmodifiedHits)
+         NoError
+      } else {
+         count(decoder.replaceIfUnmodifiedBadval)
+         KeyExists
+      }
+   }
+
+   private def delete(r: BinaryRequest): ChannelBuffer = {
+      val k = r.keyString
+      val status =
+         if (r.cas == 0) {
+            if (cache.remove(k) != null) NoError else KeyNotFound
+         } else {
+            val prev = cache.get(k)
+            if (prev == null) KeyNotFound
+            else if (prev.version == r.cas && cache.remove(k, prev)) NoError
+            else KeyExists
+         }
+      if (status == NoError) success(r, 0, Empty) else failure(r, status)
+   }
+
+   private def incrDecr(r: BinaryRequest): ChannelBuffer = {
+      if (r.extras.length != 20) return failure(r, InvalidArguments)
+      val extras = ChannelBuffers.wrappedBuffer(r.extras)
+      val delta = unsigned(extras.readLong)
+      val initial = unsigned(extras.readLong)
+      val expiration = extras.readInt
+      val isIncrement = r.opcode == Increment || r.opcode == IncrementQ
+      val k = r.keyString
+      val prev = cache.get(k)
+      if (prev == null) {
+         if (isIncrement) count(decoder.incrMisses) else count(decoder.decrMisses)
+         if (expiration == NoAutoCreate) {
+            failure(r, KeyNotFound)
+         } else {
+            val v = createCounter(initial, 0)
+            if (cache.putIfAbsent(k, v, decoder.expiry(expiration), MILLISECONDS, -1, MILLISECONDS) == null)
+               counterResponse(r, v, initial)
+            else
+               incrDecr(r) // Created concurrently, so apply the delta to it instead
+         }
+      } else {
+         val counter =
+            try {
+               BigInt(new String(prev.data))
+            } catch {
+               case n: NumberFormatException => return failure(r, NonNumericValue)
+            }
+         // Increments wrap around at 64 bits, whereas decrements stop at 0
+         val next = if (isIncrement) (counter + delta) % UnsignedLongRange else (counter - delta).max(MIN_UNSIGNED)
+         val v = createCounter(next, prev.flags)
+         if (cache.replace(k, prev, v)) {
+            if (isIncrement) count(decoder.incrHits) else count(decoder.decrHits)
+            counterResponse(r, v, next)
+         } else {
+            incrDecr(r) // Modified concurrently, so apply the delta to the new value
+         }
+      }
+   }
+
+   private def createCounter(counter: BigInt, flags: Long): MemcachedValue =
+      new MemcachedValue(counter.toString.getBytes, decoder.nextVersion, flags)
+
+   private def counterResponse(r: BinaryRequest, v: MemcachedValue, counter: BigInt): ChannelBuffer = {
+      val value = ChannelBuffers.buffer(8)
+      value.writeLong(counter.longValue)
+      success(r, v.version, value.array)
+   }
+
+   private def appendPrepend(r: BinaryRequest): ChannelBuffer = {
+      val k = r.keyString
+      val prev = cache.get(k)
+      if (prev == null) {
+         failure(r, ItemNotStored)
+      } else {
+         val data = if (r.opcode == Append || r.opcode == AppendQ) concat(prev.data, r.value) else concat(r.value, prev.data)
+         val v = new MemcachedValue(data, decoder.nextVersion, prev.flags)
+         // If there's a concurrent modification on this key, treat it as we couldn't store it, like the text protocol
+         if (cache.replace(k, prev, v)) success(r, v.version, Empty) else failure(r, ItemNotStored)
+      }
+   }
+
+   private def success(r: BinaryRequest, cas: Long, value: Array[Byte]): ChannelBuffer =
+      if (r.isQuiet) null else createResponse(r, NoError, cas, Empty, Empty, value)
+
+   /**
+    * Failures are reported even for quiet requests.
+    */
+   private def failure(r: BinaryRequest, status: Int): ChannelBuffer =
+      createResponse(r, status, 0, Empty, Empty, Empty)
+
+   private def createResponse(r: BinaryRequest, status: Int, cas: Long, extras: Array[Byte], key: Array[Byte],
+                              value: Array[Byte]): ChannelBuffer = {
+      val bodyLength = extras.length + key.length + value.length
+      // Large values are wrapped rather than copied, so only room for small ones is needed
+      val copiedLength = if (value.length < ResponseBuffer.WrapThreshold) value.length else 0
+      val out = new ResponseBuffer(ChannelBuffers.buffer(HeaderLength + extras.length + key.length + copiedLength))
+      val buffer = out.buffer
+      buffer.writeByte(ResponseMagic)
+      buffer.writeByte(r.opcode)
+      buffer.writeShort(key.length)
+      buffer.writeByte(extras.length)
+      buffer.writeByte(0) // raw bytes data type
+      buffer.writeShort(status)
+      buffer.writeInt(bodyLength)
+      buffer.writeInt(r.opaque)
+      buffer.writeLong(cas)
+      buffer.writeBytes(extras)
+      buffer.writeBytes(key)
+      out.writeBytes(value)
+      out.toChannelBuffer
+   }
+
+   private def count(counter: AtomicLong) {
+      if (decoder.isStatsEnabled) counter.incrementAndGet
+   }
+
+   private def unsigned(l: Long): BigInt = if (l < 0) BigInt(l) + UnsignedLongRange else BigInt(l)
+
+}
+
+object BinaryProtocolDecoder {
+   val RequestMagic = 0x80
+   val ResponseMagic = 0x81
+   val HeaderLength = 24
+
+   val Get = 0x00
+   val Set = 0x01
+   val Add = 0x02
+   val Replace = 0x03
+   val Delete = 0x04
+   val Increment = 0x05
+   val Decrement = 0x06
+   val Quit = 0x07
+   val Flush = 0x08
+   val GetQ = 0x09
+   val Noop = 0x0A
+   val Version = 0x0B
+   val GetK = 0x0C
+   val GetKQ = 0x0D
+   val Append = 0x0E
+   val Prepend = 0x0F
+   val SetQ = 0x11
+   val AddQ = 0x12
+   val ReplaceQ = 0x13
+   val DeleteQ = 0x14
+   val IncrementQ = 0x15
+   val DecrementQ = 0x16
+   val QuitQ = 0x17
+   val FlushQ = 0x18
+   val AppendQ = 0x19
+   val PrependQ = 0x1A
+
+   val NoError = 0x0000
+   val KeyNotFound = 0x0001
+   val KeyExists = 0x0002
+   val InvalidArguments = 0x0004
+   val ItemNotStored = 0x0005
+   val NonNumericValue = 0x0006
+   val UnknownCommand = 0x0081
+   val InternalError = 0x0084
+
+   /**
+    * Expiration sent in increment and decrement requests so that missing counters are not created.
+    */
+   val NoAutoCreate = 0xFFFFFFFF
+
+   private val QuietOps = scala.collection.immutable.Set(GetQ, GetKQ, SetQ, AddQ, ReplaceQ, DeleteQ, IncrementQ,
+      DecrementQ, QuitQ, FlushQ, AppendQ, PrependQ)
+
+   private val UnsignedLongRange = BigInt(1) << 64
+
+   private val Empty = Array[Byte]()
+
+   class BinaryRequest(val opcode: Int, val opaque: Int, val cas: Long, val extras: Array[Byte], val key: Array[Byte],
+                       val value: Array[Byte]) {
+      def keyString = new String(key)
+
+      def isQuiet = QuietOps.contains(opcode)
+
+      override def toString = {
+         new StringBuilder().append("BinaryRequest").append("{")
+            .append("opcode=").append(opcode)
+            .append(", opaque=").append(opaque)
+            .append(", cas=").append(cas)
+            .append(", key=").append(keyString)
+            .append(", valueLength=").append(value.length)
+            .append("}").toString
+      }
+   }
+}
@@ -38,10 +38,11 @@ import scala.collection.immutable
 import org.jboss.netty.buffer.ChannelBuffer
 import transport.NettyTransport
 import DecoderState._
-import org.jboss.netty.channel.Channel
+import org.jboss.netty.channel.{ExceptionEvent, ChannelHandlerContext, Channel}
 
 /**
- * A Memcached protocol specific decoder
+ * A Memcached protocol specific decoder. The text protocol is decoded here, whereas binary protocol requests, which
+ * are detected by the first byte received in the connection, are delegated to a {@link BinaryProtocolDecoder}.
  *
  * @author Galder Zamarreño
  * @since 4.1
@@ -56,14 +57,39 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
    type SuitableParameters = MemcachedParameters
    type SuitableHeader = RequestHeader
 
-   private lazy val isStatsEnabled = cache.getConfiguration.isExposeJmxStatistics
-   private final val incrMisses = new AtomicLong(0)
-   private final val incrHits = new AtomicLong(0)
-   private final val decrMisses = new AtomicLong(0)
-   private final val decrHits = new AtomicLong(0)
-   private final val replaceIfUnmodifiedMisses = new AtomicLong(0)
-   private final val replaceIfUnmodifiedHits = new AtomicLong(0)
-   private final val replaceIfUnmodifiedBadval = new AtomicLong(0)
+   private[memcached] lazy val isStatsEnabled = cache.getConfiguration.isExposeJmxStatistics
+   private[memcached] final val incrMisses = new AtomicLong(0)
+   private[memcached] final val incrHits = new AtomicLong(0)
+   private[memcached] final val decrMisses = new AtomicLong(0)
+   private[memcached] final val decrHits = new AtomicLong(0)
+   private[memcached] final val replaceIfUnmodifiedMisses = new AtomicLong(0)
+   private[memcached] final val replaceIfUnmodifiedHits = new AtomicLong(0)
+   private[memcached] final val replaceIfUnmodifiedBadval = new AtomicLong(0)
+
+   private var isProtocolDetected = false
+   private var binaryDecoder: BinaryProtocolDecoder = null
+
+   override def decode(ctx: ChannelHandlerContext, ch: Channel, buffer: ChannelBuffer, state: DecoderState): AnyRef = {
+      if (!isProtocolDetected) {
+         // Text commands are plain ASCII, so they can never start with the binary request magic
+         if (buffer.getUnsignedByte(buffer.readerIndex) == BinaryProtocolDecoder.RequestMagic)
+            binaryDecoder = new BinaryProtocolDecoder(cache, this)
+         isProtocolDetected = true
+      }
+      if (binaryDecoder != null) {
+         binaryDecoder.decode(ctx.getChannel, buffer)
+         checkpointTo(DECODE_HEADER)
+      } else {
+         super.decode(ctx, ch, buffer, state)
+      }
+   }
+
+   private[memcached] def nextVersion: Long = generateVersion(cache)
+
+   /**
+    * Converts an expiry sent by the client, in seconds or unix time, into a lifespan in milliseconds.
+    */
+   private[memcached] def expiry(lifespan: Int): Long = if (lifespan <= 0) -1 else toMillis(lifespan)
 
    override def readHeader(buffer: ChannelBuffer): (Option[RequestHeader], Boolean) = {
       var (streamOp, endOfOp) = readElement(buffer)
@@ -337,14 +363,17 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
 
    private def flushAll(b: ChannelBuffer, ch: Channel, isReadParams: Boolean): AnyRef = {
       if (isReadParams) readParameters(ch, b)
+      flush(if (params == null) 0 else params.flushDelay)
+      val ret = if (params == null || !params.noReply) OK else null
+      writeResponse(ch, ret)
+   }
+
+   private[memcached] def flush(flushDelay: Int) {
       val flushFunction = (cache: AdvancedCache[String, MemcachedValue]) => cache.withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_STORE).clear
-      val flushDelay = if (params == null) 0 else params.flushDelay
       if (flushDelay == 0)
          flushFunction(cache.getAdvancedCache)
       else
          scheduler.schedule(new DelayedFlushAll(cache, flushFunction), toMillis(flushDelay), TimeUnit.MILLISECONDS)
-      val ret = if (params == null || !params.noReply) OK else null
-      writeResponse(ch, ret)
    }
 
    private def validateDelta(delta: String): BigInt = {
@@ -436,6 +465,16 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
       }
    }
 
+   override def exceptionCaught(ctx: ChannelHandlerContext, e: ExceptionEvent) {
+      if (binaryDecoder != null) {
+         // Binary requests only fail to decode when corrupted, and then the stream cannot be resynchronized
+         logExceptionReported(e.getCause)
+         closeChannel(ctx.getChannel)
+      } else {
+         super.exceptionCaught(ctx, e)
+      }
+   }
+
    override protected def createServerException(e: Exception, b: ChannelBuffer): (MemcachedException, Boolean) = {
       e match {
          case i: IOException => (new MemcachedException(CLIENT_ERROR_BAD_FORMAT + i.getMessage, i), true)
@@ -489,9 +528,26 @@ class MemcachedDecoder(memcachedCache: Cache[String, MemcachedValue], scheduler:
          buildStat("limit_maxbytes", 0, sb), // Unsupported
          buildStat("threads", 0, sb), // TODO: Through netty?
          buildStat("conn_yields", 0, sb), // Unsupported
-         buildStat("reclaimed", 0, sb), // Unsupported
-         wrappedBuffer(END)
-      )
+         buildStat("reclaimed", 0, sb) // Unsupported
+      ) ::: createOperationStats(sb) ::: List(wrappedBuffer(END))
+   }
+
+   /**
+    * Time requests waited for an operation thread during the last minute, in microseconds.
+    */
+   private def createOperationStats(sb: StringBuilder): List[ChannelBuffer] = {
+      val dispatcher = transport.operationDispatcher
+      if (dispatcher == null) {
+         Nil
+      } else {
+         val delays = dispatcher.getRecentQueueDelays
+         List[ChannelBuffer] (
+            buildStat("queued_operations", dispatcher.getQueuedEvents, sb),
+            buildStat("operation_queue_delay_p50", TimeUnit.NANOSECONDS.toMicros(delays.getPercentile(50)), sb),
+            buildStat("operation_queue_delay_p99", TimeUnit.NANOSECONDS.toMicros(delays.getPercentile(99)), sb),
+            buildStat("operation_queue_delay_max", TimeUnit.NANOSECONDS.toMicros(delays.getMax), sb)
+         )
+      }
    }
 
    private def buildStat(stat: String, value: Any, sb: StringBuilder): ChannelBuffer = {
@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.server.memcached
+
+import java.lang.reflect.Method
+import java.util.concurrent.TimeUnit
+import java.util.{Arrays, Random}
+import org.testng.Assert._
+import org.testng.annotations.Test
+import net.spy.memcached.{MemcachedClient, CASResponse}
+
+/**
+ * Tests the Memcached binary protocol against Infinispan Memcached server.
+ *
+ * @since 5.0
+ */
+@Test(groups = Array("functional"), testName = "server.memcached.MemcachedBinaryFunctionalTest")
+class MemcachedBinaryFunctionalTest extends MemcachedSingleNodeTest {
+
+   override protected def createTestClient(timeout: Long, port: Int): MemcachedClient =
+      createMemcachedBinaryClient(timeout, port)
+
+   def testSetAndGet(m: Method) {
+      assertTrue(client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m)), v(m))
+      assertNull(client.get(k(m, "missing-")))
+   }
+
+   def testSetAndGetBigValue(m: Method) {
+      // Big enough to be wrapped into the response rather than copied
+      val value = new Array[Byte](8192)
+      new Random().nextBytes(value)
+      assertTrue(client.set(k(m), 0, value).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(Arrays.equals(client.get(k(m)).asInstanceOf[Array[Byte]], value))
+   }
+
+   def testAddAndReplace(m: Method) {
+      assertFalse(client.replace(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(client.add(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertFalse(client.add(k(m), 0, v(m, "v1-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(client.replace(k(m), 0, v(m, "v1-")).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m)), v(m, "v1-"))
+   }
+
+   def testCas(m: Method) {
+      client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS)
+      val value = client.gets(k(m))
+      assertEquals(value.getValue, v(m))
+      assertTrue(value.getCas != 0)
+      assertEquals(client.cas(k(m), value.getCas, v(m, "v1-")), CASResponse.OK)
+      assertEquals(client.cas(k(m), value.getCas, v(m, "v2-")), CASResponse.EXISTS)
+      assertEquals(client.cas(k(m, "missing-"), value.getCas, v(m)), CASResponse.NOT_FOUND)
+      assertEquals(client.get(k(m)), v(m, "v1-"))
+   }
+
+   def testIncrementAndDecrement(m: Method) {
+      assertEquals(client.incr(k(m), 1), -1)
+      assertEquals(client.incr(k(m), 1, 10), 10)
+      assertEquals(client.incr(k(m), 5), 15)
+      assertEquals(client.decr(k(m), 20), 0)
+      // Counters are stored as text, so they can be read back as such
+      client.set(k(m, "text-"), 0, "7").get(timeout, TimeUnit.SECONDS)
+      assertEquals(client.incr(k(m, "text-"), 3), 10)
+      assertEquals(client.get(k(m, "text-")), "10")
+   }
+
+   def testDelete(m: Method) {
+      client.set(k(m), 0, v(m)).get(timeout, TimeUnit.SECONDS)
+      assertTrue(client.delete(k(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertFalse(client.delete(k(m)).get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertNull(client.get(k(m)))
+   }
+
+   def testAppendAndPrepend(m: Method) {
+      client.set(k(m), 0, "b").get(timeout, TimeUnit.SECONDS)
+      assertTrue(client.append(0, k(m), "c").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertTrue(client.prepend(0, k(m), "a").get(timeout, TimeUnit.SECONDS).booleanValue)
+      assertEquals(client.get(k(m)), "abc")
+      assertFalse(client.append(0, k(m, "missing-"), "c").get(timeout, TimeUnit.SECONDS).booleanValue)
+   }
+
+   def testGetBulkIsPipelined(m: Method) {
+      for (i <- 0 until 50) client.set(k(m) + i, 0, v(m) + i).get(timeout, TimeUnit.SECONDS)
+      val keys = new java.util.ArrayList[String]
+      for (i <- 0 until 60) keys.add(k(m) + i)
+      // Quiet gets for all keys, terminated by a noop; misses send no response
+      val values = client.getBulk(keys)
+      assertEquals(values.size, 50)
+      for (i <- 0 until 50) assertEquals(values.get(k(m) + i), v(m) + i)
+   }
+
+   def testVersion() {
+      assertEquals(client.getVersions.values.iterator.next, org.infinispan.Version.VERSION)
+   }
+}
@@ -263,6 +263,18 @@ class MemcachedFunctionalTest extends MemcachedSingleNodeTest {
       assertTrue(responses.tail.head == "END", "Instead response was: " + responses.tail.head)
    }
 
+   def testPipelinedResponsesInOrder(m: Method) {
+      val req = new StringBuilder
+      for (i <- 0 until 200) {
+         req.append("set ").append(k(m, i + "-")).append(" 0 0 1\r\nx\r\n")
+         req.append("delete ").append(k(m, i + "-")).append("\r\n")
+         req.append("delete ").append(k(m, i + "-")).append("\r\n")
+      }
+      val responses = sendMulti(req.toString, 600, true)
+      assertEquals(responses.length, 600)
+      responses.grouped(3).foreach(r => assertEquals(r, List("STORED", "DELETED", "NOT_FOUND")))
+   }
+
    def testIncrementBasic(m: Method) {
       val f = client.set(k(m), 0, "1")
       assertTrue(f.get(timeout, TimeUnit.SECONDS).booleanValue)
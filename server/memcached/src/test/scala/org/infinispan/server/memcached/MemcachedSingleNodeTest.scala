@@ -46,11 +46,16 @@ abstract class MemcachedSingleNodeTest extends SingleCacheManagerTest with Memca
 
    override def createCacheManager: EmbeddedCacheManager = {
       cacheManager = createTestCacheManager
-      memcachedServer = startMemcachedTextServer(cacheManager)
-      memcachedClient = createMemcachedClient(60000, server.getPort)
+      memcachedServer = startTestServer(cacheManager)
+      memcachedClient = createTestClient(60000, server.getPort)
       return cacheManager
    }
 
+   protected def startTestServer(cacheManager: EmbeddedCacheManager): MemcachedServer =
+      startMemcachedTextServer(cacheManager)
+
+   protected def createTestClient(timeout: Long, port: Int): MemcachedClient = createMemcachedClient(timeout, port)
+
    protected def createTestCacheManager: EmbeddedCacheManager = TestCacheManagerFactory.createLocalCacheManager
 
    @AfterClass(alwaysRun = true)
@@ -23,7 +23,7 @@
 package org.infinispan.server.memcached.test
 
 import java.lang.reflect.Method
-import net.spy.memcached.{DefaultConnectionFactory, MemcachedClient}
+import net.spy.memcached.{BinaryConnectionFactory, DefaultConnectionFactory, MemcachedClient}
 import java.net.InetSocketAddress
 import java.util.concurrent.atomic.AtomicInteger
 import org.infinispan.server.memcached.{MemcachedDecoder, MemcachedValue, MemcachedServer}
@@ -55,6 +55,13 @@ trait MemcachedTestingUtil {
       return new MemcachedClient(d, Arrays.asList(new InetSocketAddress(host, port)))
    }
 
+   def createMemcachedBinaryClient(timeout: Long, port: Int): MemcachedClient = {
+      val d = new BinaryConnectionFactory {
+         override def getOperationTimeout: Long = timeout
+      }
+      new MemcachedClient(d, Arrays.asList(new InetSocketAddress(host, port)))
+   }
+
    def startMemcachedTextServer(cacheManager: EmbeddedCacheManager): MemcachedServer =
       startMemcachedTextServer(cacheManager, UniquePortThreadLocal.get.intValue)
 
@@ -64,6 +71,14 @@ trait MemcachedTestingUtil {
       server
    }
 
+   def startMemcachedTextServer(cacheManager: EmbeddedCacheManager, extraProperties: Properties): MemcachedServer = {
+      val server = new MemcachedServer
+      val properties = getProperties(host, UniquePortThreadLocal.get.intValue)
+      properties.putAll(extraProperties)
+      server.start(properties, cacheManager)
+      server
+   }
+
    private def getProperties(host: String, port: Int): Properties = {
       val properties = new Properties
       properties.setProperty(PROP_KEY_HOST, host)